@@ -0,0 +1,71 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.hierynomus.asn1.ASN1InputStream;
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder;
+import com.hierynomus.asn1.types.ASN1Object;
+
+/**
+ * Measures decoding the {@link Corpus} messages with {@link ASN1InputStream#readObject()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ASN1InputStreamBenchmark {
+
+    @Param
+    private Corpus corpus;
+
+    private BERDecoder decoder;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        decoder = new BERDecoder();
+        encoded = corpus.encoded();
+    }
+
+    /**
+     * Only reads the top level object, leaving whatever the library decodes on demand untouched.
+     */
+    @Benchmark
+    public ASN1Object readObject() throws IOException {
+        try (ASN1InputStream stream = new ASN1InputStream(decoder, encoded)) {
+            return stream.readObject();
+        }
+    }
+
+    /**
+     * Reads the top level object and visits every nested object, as a caller that uses the full message does.
+     */
+    @Benchmark
+    public int readAndWalkObject() throws IOException {
+        try (ASN1InputStream stream = new ASN1InputStream(decoder, encoded)) {
+            return Corpus.walk(stream.readObject());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.hierynomus.asn1.ASN1InputStream;
+import com.hierynomus.asn1.ASN1ReverseWriter;
+import com.hierynomus.asn1.ASN1StreamReader;
+import com.hierynomus.asn1.annotations.ASN1;
+import com.hierynomus.asn1.binding.ASN1Fields;
+import com.hierynomus.asn1.binding.ASN1Mapper;
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder;
+import com.hierynomus.asn1.encodingrules.der.DEREncoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.types.ASN1TagClass;
+import com.hierynomus.asn1.types.constructed.ASN1Sequence;
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject;
+import com.hierynomus.asn1.types.primitive.ASN1Enumerated;
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier;
+import com.hierynomus.asn1.types.string.ASN1OctetString;
+
+/**
+ * Compares mapping a NegTokenResp with the {@link ASN1Mapper} to hand-written code reading and writing the same
+ * components, and to decoding it into an object tree and picking the components from it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ASN1MapperBenchmark {
+
+    @ASN1.ASN1Sequence
+    public static class NegTokenResp {
+        @ASN1.Tagged(0) @ASN1.ASN1Enumerated(optional = true) Integer negState;
+        @ASN1.Tagged(1) @ASN1.ASN1ObjectIdentifier(optional = true) String supportedMech;
+        @ASN1.Tagged(2) @ASN1.ASN1OctetString(optional = true) byte[] responseToken;
+        @ASN1.Tagged(3) @ASN1.ASN1OctetString(optional = true) byte[] mechListMIC;
+    }
+
+    private static final ASN1Tag<?> TAG_0 = ASN1Tag.contextSpecific(0).constructed();
+    private static final ASN1Tag<?> TAG_1 = ASN1Tag.contextSpecific(1).constructed();
+    private static final ASN1Tag<?> TAG_2 = ASN1Tag.contextSpecific(2).constructed();
+    private static final ASN1Tag<?> TAG_3 = ASN1Tag.contextSpecific(3).constructed();
+
+    private final ASN1Mapper mapper = new ASN1Mapper();
+    private final BERDecoder decoder = new BERDecoder();
+    private final ASN1ReverseWriter writer = new ASN1ReverseWriter(new DEREncoder(), 1024);
+    private NegTokenResp negTokenResp;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        negTokenResp = new NegTokenResp();
+        negTokenResp.negState = 1;
+        negTokenResp.supportedMech = Corpus.NTLMSSP;
+        negTokenResp.responseToken = Arrays.copyOf(Corpus.NTLMSSP.getBytes(), 250);
+        negTokenResp.mechListMIC = new byte[16];
+        encoded = mapper.encode(negTokenResp);
+        encodeByHand();
+        if (!Arrays.equals(encoded, writer.toByteArray())) {
+            throw new IllegalStateException("The mapper and the hand-written code encode differently");
+        }
+    }
+
+    @Benchmark
+    public NegTokenResp decodeWithMapper() {
+        return mapper.decode(NegTokenResp.class, encoded);
+    }
+
+    @Benchmark
+    public NegTokenResp decodeByHand() {
+        ASN1StreamReader reader = new ASN1StreamReader(decoder, ByteBuffer.wrap(encoded));
+        reader.next();
+        NegTokenResp resp = new NegTokenResp();
+        reader.next();
+        if (ASN1Fields.isTag(reader, ASN1TagClass.CONTEXT_SPECIFIC, 0)) {
+            reader.next();
+            resp.negState = ASN1Fields.readInt(reader);
+            reader.next();
+            reader.next();
+        }
+        if (ASN1Fields.isTag(reader, ASN1TagClass.CONTEXT_SPECIFIC, 1)) {
+            reader.next();
+            resp.supportedMech = ASN1Fields.readObjectIdentifier(reader);
+            reader.next();
+            reader.next();
+        }
+        if (ASN1Fields.isTag(reader, ASN1TagClass.CONTEXT_SPECIFIC, 2)) {
+            reader.next();
+            resp.responseToken = ASN1Fields.readBytes(reader);
+            reader.next();
+            reader.next();
+        }
+        if (ASN1Fields.isTag(reader, ASN1TagClass.CONTEXT_SPECIFIC, 3)) {
+            reader.next();
+            resp.mechListMIC = ASN1Fields.readBytes(reader);
+            reader.next();
+            reader.next();
+        }
+        return resp;
+    }
+
+    @Benchmark
+    public NegTokenResp decodeFromObjectTree() throws IOException {
+        try (ASN1InputStream stream = new ASN1InputStream(decoder, encoded)) {
+            ASN1Sequence sequence = stream.readObject();
+            NegTokenResp resp = new NegTokenResp();
+            for (ASN1Object object : sequence) {
+                ASN1TaggedObject tagged = (ASN1TaggedObject) object;
+                switch (tagged.getTagNo()) {
+                    case 0:
+                        resp.negState = ((ASN1Enumerated) tagged.getObject()).getValue().intValue();
+                        break;
+                    case 1:
+                        resp.supportedMech = ((ASN1ObjectIdentifier) tagged.getObject()).getValue();
+                        break;
+                    case 2:
+                        resp.responseToken = ((ASN1OctetString) tagged.getObject()).getValue();
+                        break;
+                    case 3:
+                        resp.mechListMIC = ((ASN1OctetString) tagged.getObject()).getValue();
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return resp;
+        }
+    }
+
+    @Benchmark
+    public int encodeWithMapper() throws IOException {
+        writer.reset();
+        mapper.encode(negTokenResp, writer);
+        return writer.size();
+    }
+
+    @Benchmark
+    public int encodeByHand() {
+        writer.reset();
+        int end = writer.size();
+        int end3 = writer.size();
+        ASN1Fields.writeBytes(writer, ASN1Tag.OCTET_STRING, negTokenResp.mechListMIC);
+        writer.writeHeader(TAG_3, writer.size() - end3);
+        int end2 = writer.size();
+        ASN1Fields.writeBytes(writer, ASN1Tag.OCTET_STRING, negTokenResp.responseToken);
+        writer.writeHeader(TAG_2, writer.size() - end2);
+        int end1 = writer.size();
+        ASN1Fields.writeObjectIdentifier(writer, ASN1Tag.OBJECT_IDENTIFIER, negTokenResp.supportedMech);
+        writer.writeHeader(TAG_1, writer.size() - end1);
+        int end0 = writer.size();
+        ASN1Fields.writeLong(writer, ASN1Tag.ENUMERATED, negTokenResp.negState);
+        writer.writeHeader(TAG_0, writer.size() - end0);
+        writer.writeHeader(ASN1Tag.SEQUENCE, writer.size() - end);
+        return writer.size();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.hierynomus.asn1.ASN1InputStream;
+import com.hierynomus.asn1.ASN1OutputStream;
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder;
+import com.hierynomus.asn1.encodingrules.der.DEREncoder;
+import com.hierynomus.asn1.encodingrules.der.ReverseDEREncoder;
+import com.hierynomus.asn1.types.ASN1Object;
+
+/**
+ * Measures encoding the {@link Corpus} messages with {@link ASN1OutputStream#writeObject(ASN1Object)} and
+ * {@link DEREncoder#encode(ASN1Object)}, and with the {@link ReverseDEREncoder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ASN1OutputStreamBenchmark {
+
+    @Param
+    private Corpus corpus;
+
+    private DEREncoder encoder;
+    private ReverseDEREncoder reverseEncoder;
+    private ByteBuffer target;
+    private ASN1Object decoded;
+    private int size;
+
+    @Setup
+    public void setup() throws IOException {
+        encoder = new DEREncoder();
+        byte[] encoded = corpus.encoded();
+        size = encoded.length;
+        reverseEncoder = new ReverseDEREncoder();
+        target = ByteBuffer.allocate(size);
+        try (ASN1InputStream stream = new ASN1InputStream(new BERDecoder(), encoded)) {
+            decoded = stream.readObject();
+        }
+    }
+
+    /**
+     * Builds the message from scratch and encodes it, as a caller that sends a new message does.
+     */
+    @Benchmark
+    public byte[] buildAndWriteObject() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(size);
+        new ASN1OutputStream(encoder, baos).writeObject(corpus.build());
+        return baos.toByteArray();
+    }
+
+    /**
+     * Encodes a message that was decoded before, as a caller that forwards a received message does.
+     */
+    @Benchmark
+    public byte[] writeDecodedObject() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(size);
+        new ASN1OutputStream(encoder, baos).writeObject(decoded);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Builds the message from scratch and encodes it into an exactly sized array.
+     */
+    @Benchmark
+    public byte[] buildAndEncode() throws IOException {
+        return encoder.encode(corpus.build());
+    }
+
+    /**
+     * Builds the message from scratch and encodes it back to front into a reused buffer.
+     */
+    @Benchmark
+    public ByteBuffer buildAndReverseEncode() throws IOException {
+        target.clear();
+        reverseEncoder.encode(corpus.build(), target);
+        return target;
+    }
+
+    /**
+     * Encodes a message that was decoded before back to front into a reused buffer.
+     */
+    @Benchmark
+    public ByteBuffer reverseEncodeDecodedObject() throws IOException {
+        target.clear();
+        reverseEncoder.encode(decoded, target);
+        return target;
+    }
+}
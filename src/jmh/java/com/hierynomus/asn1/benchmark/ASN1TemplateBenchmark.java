@@ -0,0 +1,88 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.hierynomus.asn1.ASN1Template;
+import com.hierynomus.asn1.encodingrules.der.DEREncoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.types.constructed.ASN1Sequence;
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject;
+import com.hierynomus.asn1.types.primitive.ASN1Enumerated;
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier;
+import com.hierynomus.asn1.types.string.ASN1OctetString;
+
+/**
+ * Measures encoding a NegTokenResp of which only the response token changes, by building and encoding the message
+ * and by filling an {@link ASN1Template}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ASN1TemplateBenchmark {
+
+    @Param({"16", "250", "4000"})
+    private int tokenLength;
+
+    private DEREncoder encoder;
+    private ASN1Template template;
+    private byte[] token;
+
+    @Setup
+    public void setup() throws IOException {
+        encoder = new DEREncoder();
+        token = new byte[tokenLength];
+        ASN1TaggedObject responseToken = responseToken(new byte[16]);
+        template = ASN1Template.builder(encoder, negTokenResp(responseToken)).slot("responseToken", responseToken).build();
+    }
+
+    @Benchmark
+    public byte[] buildAndEncode() throws IOException {
+        return encoder.encode(negTokenResp(responseToken(token)));
+    }
+
+    @Benchmark
+    public byte[] encodeTemplate() throws IOException {
+        Map<String, ASN1Object> values = Collections.<String, ASN1Object>singletonMap("responseToken", responseToken(token));
+        return template.encode(values);
+    }
+
+    private static ASN1TaggedObject responseToken(byte[] token) {
+        return new ASN1TaggedObject(ASN1Tag.contextSpecific(2).constructed(), new ASN1OctetString(token));
+    }
+
+    private static ASN1Object negTokenResp(ASN1TaggedObject responseToken) {
+        List<ASN1Object> objects = new ArrayList<>();
+        objects.add(new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), ASN1Enumerated.valueOf(1)));
+        objects.add(new ASN1TaggedObject(ASN1Tag.contextSpecific(1).constructed(), new ASN1ObjectIdentifier(Corpus.NTLMSSP)));
+        objects.add(responseToken);
+        return new ASN1TaggedObject(ASN1Tag.contextSpecific(1).constructed(), new ASN1Sequence(objects));
+    }
+}
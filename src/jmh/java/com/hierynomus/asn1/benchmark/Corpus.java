@@ -0,0 +1,234 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import com.hierynomus.asn1.ASN1OutputStream;
+import com.hierynomus.asn1.encodingrules.der.DEREncoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.types.ASN1TagClass;
+import com.hierynomus.asn1.types.constructed.ASN1Sequence;
+import com.hierynomus.asn1.types.constructed.ASN1Set;
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject;
+import com.hierynomus.asn1.types.primitive.ASN1Boolean;
+import com.hierynomus.asn1.types.primitive.ASN1Enumerated;
+import com.hierynomus.asn1.types.primitive.ASN1Integer;
+import com.hierynomus.asn1.types.primitive.ASN1Null;
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier;
+import com.hierynomus.asn1.types.string.ASN1BitString;
+import com.hierynomus.asn1.types.string.ASN1OctetString;
+
+/**
+ * The messages the benchmarks run against.
+ *
+ * The library has no support for the character string and time types, so the certificate and CRL shaped messages
+ * carry their names and dates as OCTET STRINGs. The structure, nesting and sizes follow real world messages.
+ */
+public enum Corpus {
+    NEG_TOKEN_INIT {
+        @Override
+        public ASN1Object build() {
+            ASN1Sequence mechTypes = new ASN1Sequence(objects(new ASN1ObjectIdentifier(NTLMSSP), new ASN1ObjectIdentifier(NEGOEX)));
+            ASN1Sequence negTokenInit = new ASN1Sequence(objects(
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), mechTypes),
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(1).constructed(), new ASN1BitString(BitSet.valueOf(new byte[]{0x03}))),
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(2).constructed(), new ASN1OctetString(blob(40)))));
+            ASN1Sequence gssApi = new ASN1Sequence(objects(
+                new ASN1ObjectIdentifier(SPNEGO),
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), negTokenInit)));
+            return new ASN1TaggedObject(ASN1Tag.application(0).constructed(), gssApi, false);
+        }
+    },
+    NEG_TOKEN_RESP {
+        @Override
+        public ASN1Object build() {
+            ASN1Sequence negTokenResp = new ASN1Sequence(objects(
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), new ASN1Enumerated(1)),
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(1).constructed(), new ASN1ObjectIdentifier(NTLMSSP)),
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(2).constructed(), new ASN1OctetString(blob(250))),
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(3).constructed(), new ASN1OctetString(blob(16)))));
+            return new ASN1TaggedObject(ASN1Tag.contextSpecific(1).constructed(), negTokenResp);
+        }
+    },
+    CERTIFICATE {
+        @Override
+        public ASN1Object build() {
+            ASN1Sequence signatureAlgorithm = algorithm("1.2.840.113549.1.1.11");
+            List<ASN1Object> extensions = new ArrayList<>();
+            extensions.add(extension("2.5.29.15", true, new ASN1BitString(BitSet.valueOf(new byte[]{(byte) 0xa0}))));
+            extensions.add(extension("2.5.29.19", true, new ASN1Sequence(objects(new ASN1Boolean(false)))));
+            extensions.add(extension("2.5.29.14", false, new ASN1OctetString(blob(20))));
+            extensions.add(extension("2.5.29.35", false, new ASN1Sequence(objects(
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(0).primitive(), new ASN1OctetString(blob(20)), false)))));
+            extensions.add(extension("2.5.29.37", false, new ASN1Sequence(objects(
+                new ASN1ObjectIdentifier("1.3.6.1.5.5.7.3.1"), new ASN1ObjectIdentifier("1.3.6.1.5.5.7.3.2")))));
+            ASN1Sequence subjectPublicKeyInfo = new ASN1Sequence(objects(
+                algorithm("1.2.840.113549.1.1.1"),
+                new ASN1BitString(blob(270), 0)));
+            ASN1Sequence tbsCertificate = new ASN1Sequence(objects(
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), new ASN1Integer(2)),
+                new ASN1Integer(new BigInteger(1, blob(16))),
+                signatureAlgorithm,
+                distinguishedName("Example Issuing CA", "Example Corp", "NL"),
+                new ASN1Sequence(objects(new ASN1OctetString("230306120000Z".getBytes()), new ASN1OctetString("330306120000Z".getBytes()))),
+                distinguishedName("server.example.com", "Example Corp", "NL"),
+                subjectPublicKeyInfo,
+                new ASN1TaggedObject(ASN1Tag.contextSpecific(3).constructed(), new ASN1Sequence(extensions))));
+            return new ASN1Sequence(objects(tbsCertificate, algorithm("1.2.840.113549.1.1.11"), new ASN1BitString(blob(256), 0)));
+        }
+    },
+    REVOCATION_LIST {
+        @Override
+        public ASN1Object build() {
+            List<ASN1Object> revoked = new ArrayList<>(REVOKED_ENTRIES);
+            for (int i = 0; i < REVOKED_ENTRIES; i++) {
+                revoked.add(new ASN1Sequence(objects(
+                    new ASN1Integer(new BigInteger(1, blob(16)).add(BigInteger.valueOf(i))),
+                    new ASN1OctetString("230306120000Z".getBytes()))));
+            }
+            ASN1Sequence tbsCertList = new ASN1Sequence(objects(
+                new ASN1Integer(1),
+                algorithm("1.2.840.113549.1.1.11"),
+                distinguishedName("Example Issuing CA", "Example Corp", "NL"),
+                new ASN1OctetString("230306120000Z".getBytes()),
+                new ASN1OctetString("230313120000Z".getBytes()),
+                new ASN1Sequence(revoked)));
+            return new ASN1Sequence(objects(tbsCertList, algorithm("1.2.840.113549.1.1.11"), new ASN1BitString(blob(256), 0)));
+        }
+    },
+    NESTED_TAGGED_OBJECTS {
+        @Override
+        public ASN1Object build() {
+            ASN1Object object = new ASN1Integer(42);
+            for (int i = 0; i < NESTING_DEPTH; i++) {
+                object = new ASN1TaggedObject(ASN1Tag.contextSpecific(i % 30).constructed(), object);
+            }
+            return object;
+        }
+    };
+
+    static final String SPNEGO = "1.3.6.1.5.5.2";
+    static final String NTLMSSP = "1.3.6.1.4.1.311.2.2.10";
+    static final String NEGOEX = "1.3.6.1.4.1.311.2.2.30";
+    static final int REVOKED_ENTRIES = 10000;
+    static final int NESTING_DEPTH = 64;
+
+    /**
+     * Builds a fresh object tree for this message, the way a caller does when it creates a message to send.
+     *
+     * @return the object tree.
+     */
+    public abstract ASN1Object build();
+
+    /**
+     * The DER encoding of this message.
+     *
+     * @return the encoded message.
+     */
+    public byte[] encoded() {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            new ASN1OutputStream(new DEREncoder(), baos).writeObject(build());
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode the " + this + " corpus", e);
+        }
+    }
+
+    /**
+     * Walks through an object tree, forcing every nested object to be decoded.
+     *
+     * Application tagged objects in the corpus are implicitly tagged SEQUENCEs, context specific tagged objects are
+     * explicitly tagged.
+     *
+     * @param object the root of the tree.
+     * @return the number of objects visited.
+     */
+    public static int walk(ASN1Object object) {
+        int count = 1;
+        if (object instanceof ASN1TaggedObject) {
+            ASN1TaggedObject tagged = (ASN1TaggedObject) object;
+            if (tagged.getTag().getAsn1TagClass() == ASN1TagClass.APPLICATION) {
+                count += walk(tagged.getObject(ASN1Tag.SEQUENCE));
+            } else if (tagged.getTag().isConstructed()) {
+                count += walk(tagged.getObject());
+            }
+        } else if (object instanceof ASN1Sequence || object instanceof ASN1Set) {
+            for (Object child : (Iterable<?>) object) {
+                count += walk((ASN1Object) child);
+            }
+        }
+        return count;
+    }
+
+    private static final byte[] RANDOM_BYTES = new byte[512];
+
+    static {
+        new Random(42).nextBytes(RANDOM_BYTES);
+    }
+
+    /**
+     * Pseudo-random content of the given length, identical for every run.
+     */
+    private static byte[] blob(int length) {
+        return Arrays.copyOf(RANDOM_BYTES, length);
+    }
+
+    private static List<ASN1Object> objects(ASN1Object... objects) {
+        List<ASN1Object> list = new ArrayList<>(objects.length);
+        for (ASN1Object object : objects) {
+            list.add(object);
+        }
+        return list;
+    }
+
+    private static ASN1Sequence algorithm(String oid) {
+        return new ASN1Sequence(objects(new ASN1ObjectIdentifier(oid), new ASN1Null()));
+    }
+
+    private static ASN1Sequence extension(String oid, boolean critical, ASN1Object value) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            new ASN1OutputStream(new DEREncoder(), baos).writeObject(value);
+            return new ASN1Sequence(objects(new ASN1ObjectIdentifier(oid), new ASN1Boolean(critical), new ASN1OctetString(baos.toByteArray())));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode extension " + oid, e);
+        }
+    }
+
+    private static ASN1Sequence distinguishedName(String commonName, String organization, String country) {
+        return new ASN1Sequence(objects(
+            rdn("2.5.4.6", country),
+            rdn("2.5.4.10", organization),
+            rdn("2.5.4.3", commonName)));
+    }
+
+    private static ASN1Set rdn(String oid, String value) {
+        Set<ASN1Object> attributes = new HashSet<>();
+        attributes.add(new ASN1Sequence(objects(new ASN1ObjectIdentifier(oid), new ASN1OctetString(value.getBytes()))));
+        return new ASN1Set(attributes);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1;
+
+import java.util.Arrays;
+import com.hierynomus.asn1.encodingrules.ASN1Decoder;
+import com.hierynomus.asn1.encodingrules.ASN1Encoder;
+import com.hierynomus.asn1.encodingrules.AbstractASN1Decoder;
+import com.hierynomus.asn1.encodingrules.AbstractASN1Encoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+
+/**
+ * The parsers of a decoder, or the serializers of an encoder, shared between all objects of the same type.
+ *
+ * Codecs are indexed by {@link ASN1Tag#getCodecId()}, so looking up a cached codec is a single array access. The array
+ * is copied when a codec is added, which only happens for the first object of each type. Parsers and serializers are
+ * stateless apart from their decoder or encoder, so the shared instances are thread-safe.
+ *
+ * @param <C> The type of codec, {@link ASN1Parser} or {@link ASN1Serializer}
+ */
+public abstract class ASN1CodecCache<C> {
+    // Tags of custom types created over and over get new codec ids, their codecs are created but not cached
+    private static final int MAX_CACHED_CODECS = 1024;
+
+    private volatile Object[] codecs = new Object[16];
+
+    /**
+     * @param decoder The decoder the parsers are created for
+     * @return A cache of the parsers of the decoder.
+     */
+    public static ASN1CodecCache<ASN1Parser<?>> parsers(final ASN1Decoder decoder) {
+        return new ASN1CodecCache<ASN1Parser<?>>() {
+            @Override
+            protected ASN1Parser<?> newCodec(ASN1Tag<?> tag) {
+                return tag.newParser(decoder);
+            }
+        };
+    }
+
+    /**
+     * @param encoder The encoder the serializers are created for
+     * @return A cache of the serializers of the encoder.
+     */
+    public static ASN1CodecCache<ASN1Serializer<?>> serializers(final ASN1Encoder encoder) {
+        return new ASN1CodecCache<ASN1Serializer<?>>() {
+            @Override
+            protected ASN1Serializer<?> newCodec(ASN1Tag<?> tag) {
+                return tag.newSerializer(encoder);
+            }
+        };
+    }
+
+    /**
+     * Get the parser of any decoder. The decoders of this library share their parsers, for other decoders a parser is
+     * created for every object.
+     *
+     * @param decoder The decoder
+     * @param tag The tag of the objects
+     * @return The parser
+     */
+    public static <T extends ASN1Object> ASN1Parser<T> parser(ASN1Decoder decoder, ASN1Tag<T> tag) {
+        if (decoder instanceof AbstractASN1Decoder) {
+            return ((AbstractASN1Decoder) decoder).getParser(tag);
+        }
+        return tag.newParser(decoder);
+    }
+
+    /**
+     * Get the serializer of any encoder. The encoders of this library share their serializers, for other encoders and
+     * without an encoder a serializer is created for every object.
+     *
+     * @param encoder The encoder, or <code>null</code>
+     * @param tag The tag of the objects
+     * @return The serializer
+     */
+    public static <T extends ASN1Object> ASN1Serializer<T> serializer(ASN1Encoder encoder, ASN1Tag<T> tag) {
+        if (encoder instanceof AbstractASN1Encoder) {
+            return ((AbstractASN1Encoder) encoder).getSerializer(tag);
+        }
+        return tag.newSerializer(encoder);
+    }
+
+    protected abstract C newCodec(ASN1Tag<?> tag);
+
+    /**
+     * @param tag The tag of the objects
+     * @return The codec for objects with the tag.
+     */
+    @SuppressWarnings("unchecked")
+    public C get(ASN1Tag<?> tag) {
+        int id = tag.getCodecId();
+        Object[] current = codecs;
+        if (id < current.length && current[id] != null) {
+            return (C) current[id];
+        }
+        return add(tag, id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized C add(ASN1Tag<?> tag, int id) {
+        Object[] current = codecs;
+        if (id < current.length && current[id] != null) {
+            return (C) current[id];
+        }
+        C codec = newCodec(tag);
+        if (id < MAX_CACHED_CODECS) {
+            Object[] updated = Arrays.copyOf(current, Math.max(current.length, Integer.highestOneBit(id) * 2));
+            updated[id] = codec;
+            codecs = updated;
+        }
+        return codec;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import com.hierynomus.asn1.encodingrules.ASN1Decoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.util.ByteBufferInputStream;
+
+import static com.hierynomus.asn1.encodingrules.ASN1Decoder.INDEFINITE_LENGTH;
+
+/**
+ * Collects top-level objects from fragments of a byte stream as they arrive, such as the reads of a non-blocking
+ * channel, without blocking on a partly received object.
+ *
+ * Each fragment passed to {@link #feed(ByteBuffer)} is read once: the headers are scanned as they arrive and the bytes
+ * of the object being received are copied into an array of its own. Once an object is complete, its encoding is
+ * available from {@link #pollEncoded()} and the decoded object from {@link #poll()}. Between fragments, only the
+ * header being read and the array of the object being received are kept. That array grows as the bytes of the object
+ * arrive, so a header claiming a large length does not reserve memory by itself.
+ *
+ * After an {@link ASN1ParseException} the position in the byte stream is lost, the stream should not be read further.
+ * A decoder is meant to be used by one thread, or one connection, at a time.
+ */
+public class ASN1IncrementalDecoder {
+    // A tag number and a length that fit into an int take up to 11 bytes, leaving room for leading zero length bytes
+    private static final int MAX_HEADER_LENGTH = 16;
+    private static final int INITIAL_LENGTH = 4096;
+
+    /**
+     * The maximum length of the encoding of a top-level object, unless another maximum is passed.
+     */
+    public static final int DEFAULT_MAX_OBJECT_LENGTH = 1024 * 1024;
+
+    private final ASN1Decoder decoder;
+    private final int maxObjectLength;
+    private final byte[] header = new byte[MAX_HEADER_LENGTH];
+    private final ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+    private final ByteBufferInputStream headerStream = new ByteBufferInputStream(headerBuffer);
+    private final Queue<ByteBuffer> complete = new ArrayDeque<>();
+    private int headerLength;
+    private int tagLength;
+    private byte[] object;
+    private int objectLength;
+    // The length the array of the object being received never needs to exceed
+    private int objectLimit;
+    private int remaining;
+    private int depth;
+
+    /**
+     * Create a decoder for top-level objects of up to {@link #DEFAULT_MAX_OBJECT_LENGTH} bytes.
+     *
+     * @param decoder The decoder for the headers and the objects
+     */
+    public ASN1IncrementalDecoder(ASN1Decoder decoder) {
+        this(decoder, DEFAULT_MAX_OBJECT_LENGTH);
+    }
+
+    /**
+     * @param decoder The decoder for the headers and the objects
+     * @param maxObjectLength The maximum length of the encoding of a top-level object, longer objects are not buffered
+     *                        but result in an {@link ASN1ParseException}
+     */
+    public ASN1IncrementalDecoder(ASN1Decoder decoder, int maxObjectLength) {
+        this.decoder = decoder;
+        this.maxObjectLength = maxObjectLength;
+    }
+
+    /**
+     * Read the remaining bytes of the fragment, which is left at its limit. The bytes are copied, the fragment can be
+     * reused once this returns.
+     *
+     * @param fragment The next bytes of the stream
+     * @throws ASN1ParseException If a header is invalid, or an object is longer than allowed
+     */
+    public void feed(ByteBuffer fragment) {
+        while (fragment.hasRemaining()) {
+            if (remaining > 0) {
+                int length = Math.min(remaining, fragment.remaining());
+                ensureCapacity(length);
+                fragment.get(object, objectLength, length);
+                objectLength += length;
+                remaining -= length;
+                if (remaining == 0 && depth == 0) {
+                    completeObject();
+                }
+            } else if (readHeaderByte(fragment.get())) {
+                readHeader();
+            }
+        }
+    }
+
+    /**
+     * @return Whether a complete object is available.
+     */
+    public boolean hasObject() {
+        return !complete.isEmpty();
+    }
+
+    /**
+     * @return Whether the bytes fed so far end within an object, for instance to detect a truncated stream once it is
+     * closed.
+     */
+    public boolean hasPartialObject() {
+        return headerLength > 0 || object != null;
+    }
+
+    /**
+     * Take the encoding of the next complete object.
+     *
+     * @return The tag, length and value of the object, or <code>null</code> if no complete object is available.
+     */
+    public ByteBuffer pollEncoded() {
+        return complete.poll();
+    }
+
+    /**
+     * Take and decode the next complete object. Like objects decoded from a buffer, the object is decoded lazily from
+     * its encoding.
+     *
+     * @return The object, or <code>null</code> if no complete object is available.
+     * @throws ASN1ParseException If the object could not be decoded
+     */
+    public <T extends ASN1Object> T poll() {
+        ByteBuffer encoded = complete.poll();
+        if (encoded == null) {
+            return null;
+        }
+        return new ASN1InputStream(decoder, encoded).readObject();
+    }
+
+    /**
+     * Add a byte to the header being read.
+     *
+     * @return Whether the header is complete.
+     */
+    private boolean readHeaderByte(byte b) {
+        if (headerLength == MAX_HEADER_LENGTH) {
+            throw new ASN1ParseException("The ASN.1 header %s is longer than %s bytes", Arrays.toString(header), MAX_HEADER_LENGTH);
+        }
+        header[headerLength++] = b;
+        if (tagLength == 0) {
+            if (headerLength == 1 ? (b & 0x1f) != 0x1f : (b & 0x80) == 0) {
+                tagLength = headerLength;
+            }
+            return false;
+        }
+        int first = header[tagLength] & 0xff;
+        return headerLength == tagLength + 1 + (first > 0x80 ? first & 0x7f : 0);
+    }
+
+    private void readHeader() {
+        headerBuffer.clear().limit(headerLength);
+        ASN1Tag<?> tag = decoder.readTag(headerStream);
+        int length = decoder.readLength(headerStream);
+        if (depth == 0) {
+            if (tag == ASN1Tag.END_OF_CONTENTS) {
+                throw new ASN1ParseException("Unexpected end-of-contents octets found");
+            }
+            startObject(length);
+        } else {
+            append(header, headerLength);
+        }
+        if (tag == ASN1Tag.END_OF_CONTENTS) {
+            if (length != 0) {
+                throw new ASN1ParseException("The end-of-contents octets should have length 0, not %s", length);
+            }
+            depth--;
+        } else if (length == INDEFINITE_LENGTH) {
+            depth++;
+        } else {
+            if (length > objectLimit - objectLength) {
+                throw new ASN1ParseException("The ASN.1 object is longer than the maximum of %s bytes", maxObjectLength);
+            }
+            remaining = length;
+        }
+        headerLength = 0;
+        tagLength = 0;
+        if (depth == 0 && remaining == 0) {
+            completeObject();
+        }
+    }
+
+    /**
+     * Start a top-level object. The array of an object of definite length grows up to exactly its length.
+     */
+    private void startObject(int length) {
+        if (length != INDEFINITE_LENGTH && length > maxObjectLength - headerLength) {
+            throw new ASN1ParseException("The ASN.1 object of %s bytes is longer than the maximum of %s bytes", (long) headerLength + length, maxObjectLength);
+        }
+        objectLimit = length != INDEFINITE_LENGTH ? headerLength + length : maxObjectLength;
+        object = new byte[Math.min(INITIAL_LENGTH, Math.max(objectLimit, headerLength))];
+        objectLength = 0;
+        append(header, headerLength);
+    }
+
+    private void append(byte[] bytes, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, 0, object, objectLength, length);
+        objectLength += length;
+    }
+
+    private void ensureCapacity(int length) {
+        if (length > object.length - objectLength) {
+            if (length > objectLimit - objectLength) {
+                throw new ASN1ParseException("The ASN.1 object is longer than the maximum of %s bytes", maxObjectLength);
+            }
+            int newLength = (int) Math.min(Math.max(object.length * 2L, (long) objectLength + length), objectLimit);
+            object = Arrays.copyOf(object, newLength);
+        }
+    }
+
+    private void completeObject() {
+        complete.add(ByteBuffer.wrap(object, 0, objectLength).slice());
+        object = null;
+        objectLength = 0;
+    }
+}
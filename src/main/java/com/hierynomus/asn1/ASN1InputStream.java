@@ -15,10 +15,12 @@
  */
 package com.hierynomus.asn1;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -27,31 +29,86 @@ import org.slf4j.LoggerFactory;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.types.ASN1Object;
 import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.util.ByteBufferInputStream;
+import com.hierynomus.asn1.util.ScratchBuffers.ScratchOutputStream;
+
+import static com.hierynomus.asn1.encodingrules.ASN1Decoder.INDEFINITE_LENGTH;
+import static com.hierynomus.asn1.util.Checks.checkState;
 
 public class ASN1InputStream extends FilterInputStream implements Iterable<ASN1Object> {
     private static final Logger logger = LoggerFactory.getLogger(ASN1InputStream.class);
     private final ASN1Decoder decoder;
+    private final ByteBuffer buffer;
+    private final boolean untilEndOfContents;
+    private ASN1Tag peekedTag;
+    private int peekedTagStart;
+    private boolean endOfContents;
 
     public ASN1InputStream(ASN1Decoder decoder, InputStream wrapped) {
         super(wrapped);
         this.decoder = decoder;
+        this.buffer = null;
+        this.untilEndOfContents = false;
     }
 
     public ASN1InputStream(ASN1Decoder decoder, byte[] value) {
-        super(new ByteArrayInputStream(value));
+        this(decoder, ByteBuffer.wrap(value));
+    }
+
+    /**
+     * Create an ASN.1 InputStream reading from the remaining bytes of the buffer.
+     *
+     * The values of the read objects are not copied from the buffer, but are handed to the parsers as a view on the
+     * buffer. The position of the passed buffer is not changed.
+     *
+     * @param decoder The decoder to use
+     * @param buffer The buffer to read from
+     */
+    public ASN1InputStream(ASN1Decoder decoder, ByteBuffer buffer) {
+        super(new ByteBufferInputStream(buffer.slice()));
         this.decoder = decoder;
+        this.buffer = ((ByteBufferInputStream) in).getBuffer();
+        this.untilEndOfContents = false;
+    }
+
+    /**
+     * Create an ASN.1 InputStream reading the contents of an object in the indefinite length form from the enclosing
+     * stream. The stream ends at the end-of-contents octets.
+     */
+    private ASN1InputStream(ASN1InputStream enclosing) {
+        super(enclosing);
+        this.decoder = enclosing.decoder;
+        this.buffer = enclosing.buffer;
+        this.untilEndOfContents = true;
     }
 
     public <T extends ASN1Object> T readObject() {
         try {
-            ASN1Tag tag = decoder.readTag(this);
+            int start = peekedTag != null ? peekedTagStart : buffer != null ? buffer.position() : -1;
+            ASN1Tag tag = readTag();
             logger.trace("Read ASN.1 tag {}", tag);
+            if (tag == ASN1Tag.END_OF_CONTENTS) {
+                throw new ASN1ParseException("Unexpected end-of-contents octets found");
+            }
             int length = decoder.readLength(this);
             logger.trace("Read ASN.1 object length: {}", length);
-            byte[] value = decoder.readValue(length, this);
 
-            //noinspection unchecked
-            ASN1Object parse = tag.newParser(decoder).parse(tag, value);
+            ASN1Parser parser = ASN1CodecCache.parser(decoder, tag);
+            ASN1Object parse;
+            if (length == INDEFINITE_LENGTH) {
+                parse = readIndefiniteObject(tag);
+            } else if (buffer != null) {
+                //noinspection unchecked
+                parse = parser.parse(tag, readValueBuffer(length));
+            } else {
+                byte[] value = decoder.readValue(length, this);
+                //noinspection unchecked
+                parse = parser.parse(tag, value);
+            }
+            if (buffer != null) {
+                //noinspection unchecked
+                parse = parser.decodedFrom(parse, buffer, start, buffer.position() - start);
+            }
             logger.debug("Read ASN.1 object: {}", parse);
             return (T) parse;
         } catch (ASN1ParseException pe) {
@@ -61,20 +118,228 @@ public class ASN1InputStream extends FilterInputStream implements Iterable<ASN1O
         }
     }
 
+    /**
+     * Parse an object in the indefinite length form, of which the tag and length have been read. The parser reads the
+     * contents from a stream that ends at the end-of-contents octets, anything it leaves unread is skipped.
+     */
+    ASN1Object readIndefiniteObject(ASN1Tag tag) {
+        if (!tag.isConstructed()) {
+            throw new ASN1ParseException("The indefinite length form cannot be used for the primitive %s", tag);
+        }
+        ASN1InputStream contents = new ASN1InputStream(this);
+        //noinspection unchecked
+        ASN1Object parse = ASN1CodecCache.parser(decoder, tag).parse(tag, contents);
+        while (contents.hasNextObject()) {
+            contents.readObject();
+        }
+        return parse;
+    }
+
+    /**
+     * Skip the next object without decoding it. Only its tag and length are read, its value is skipped by moving the
+     * position when reading from a buffer, or with {@link InputStream#skip(long)}. Of an object in the indefinite
+     * length form, only the headers of the nested objects are read.
+     */
+    public void skipObject() {
+        ASN1Tag tag = readTag();
+        if (tag == ASN1Tag.END_OF_CONTENTS) {
+            throw new ASN1ParseException("Unexpected end-of-contents octets found");
+        }
+        int length = decoder.readLength(this);
+        logger.trace("Skipping ASN.1 object with tag {} and length {}", tag, length);
+        try {
+            if (length == INDEFINITE_LENGTH) {
+                if (!tag.isConstructed()) {
+                    throw new ASN1ParseException("The indefinite length form cannot be used for the primitive %s", tag);
+                }
+                readUntilEndOfContents(null);
+            } else if (buffer != null) {
+                readValueBuffer(length);
+            } else {
+                skipFully(length);
+            }
+        } catch (IOException e) {
+            throw new ASN1ParseException(e, "Unable to skip the ASN.1 object with %s", tag);
+        }
+    }
+
+    /**
+     * Skip objects, as {@link #skipObject()} does, up to the next object with the tag class and number of the tag, in
+     * either encoding. That object is read by the next {@link #readObject()}.
+     *
+     * @param tag The tag to look for
+     * @return Whether an object with the tag was found, if not all remaining objects have been skipped.
+     */
+    public boolean skipToTag(ASN1Tag<?> tag) {
+        while (hasNextObject()) {
+            ASN1Tag<?> next = peekTag();
+            if (next.getAsn1TagClass() == tag.getAsn1TagClass() && next.getTag() == tag.getTag()) {
+                return true;
+            }
+            skipObject();
+        }
+        return false;
+    }
+
+    private ByteBuffer readValueBuffer(int length) {
+        if (length > buffer.remaining()) {
+            throw new ASN1ParseException("Cannot read an ASN.1 value of %s bytes, only %s bytes remaining", length, buffer.remaining());
+        }
+        ByteBuffer value = buffer.slice();
+        value.limit(length);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Read the value of an object.
+     *
+     * If the length is {@link ASN1Decoder#INDEFINITE_LENGTH}, the encoded objects up to the end-of-contents octets are
+     * returned, and the end-of-contents octets are skipped.
+     *
+     * @param length The length of the value
+     * @return The value
+     */
     public byte[] readValue(int length) {
-        return decoder.readValue(length, this);
+        if (length != INDEFINITE_LENGTH) {
+            return decoder.readValue(length, this);
+        }
+        ByteBuffer value = readIndefiniteValue();
+        byte[] bytes = new byte[value.remaining()];
+        value.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read the remaining contents of the object in the indefinite length form this stream reads, as used by
+     * {@link ASN1Parser#parse(ASN1Tag, ASN1InputStream)}.
+     *
+     * @return The encoded objects up to the end-of-contents octets, as view on the buffer if reading from a buffer.
+     */
+    ByteBuffer readRemainingContents() {
+        checkState(untilEndOfContents, "Only the contents of an object in the indefinite length form can be read");
+        if (endOfContents) {
+            return ByteBuffer.allocate(0);
+        }
+        ByteBuffer contents = readIndefiniteValue();
+        endOfContents = true;
+        return contents;
+    }
+
+    private ByteBuffer readIndefiniteValue() {
+        if (buffer != null) {
+            int start = buffer.position();
+            int end = readUntilEndOfContents(null);
+            ByteBuffer value = buffer.duplicate();
+            value.limit(end).position(start);
+            return value.slice();
+        }
+        ScratchOutputStream copy = new ScratchOutputStream();
+        try {
+            int end = readUntilEndOfContents(copy);
+            return ByteBuffer.wrap(copy.toByteArray(), 0, end);
+        } finally {
+            copy.release();
+        }
+    }
+
+    /**
+     * Read up to and including the end-of-contents octets that close the contents being read. Nested objects in the
+     * indefinite length form are read up to their own end-of-contents octets, only their headers are decoded.
+     *
+     * @param copy If not <code>null</code>, every byte read is copied to it
+     * @return The offset in the buffer, or in the copy, where the closing end-of-contents octets start.
+     */
+    private int readUntilEndOfContents(ByteArrayOutputStream copy) {
+        checkState(peekedTag == null, "Cannot read the contents up to the end-of-contents octets after reading tag %s", peekedTag);
+        InputStream source = copy != null ? new CopyingInputStream(this, copy) : this;
+        try {
+            int depth = 1;
+            int end;
+            do {
+                end = copy != null ? copy.size() : buffer != null ? buffer.position() : -1;
+                ASN1Tag<?> tag = decoder.readTag(source);
+                int length = decoder.readLength(source);
+                if (tag == ASN1Tag.END_OF_CONTENTS) {
+                    checkEndOfContentsLength(length);
+                    depth--;
+                } else if (length == INDEFINITE_LENGTH) {
+                    depth++;
+                } else if (copy != null) {
+                    copy.write(decoder.readValue(length, this));
+                } else if (buffer != null) {
+                    readValueBuffer(length);
+                } else {
+                    skipFully(length);
+                }
+            } while (depth > 0);
+            return end;
+        } catch (IOException e) {
+            throw new ASN1ParseException(e, "Unable to read up to the end-of-contents octets");
+        }
+    }
+
+    private void skipFully(int length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = skip(remaining);
+            if (skipped <= 0) {
+                if (read() < 0) {
+                    throw new ASN1ParseException("EOF found while skipping %s bytes of an ASN.1 value", length);
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void checkEndOfContentsLength(int length) {
+        if (length != 0) {
+            throw new ASN1ParseException("The end-of-contents octets should have length 0, not %s", length);
+        }
+    }
+
+    /**
+     * Whether there is another object to read. When reading the contents of an object in the indefinite length form,
+     * this reads ahead to find out whether the end-of-contents octets are next.
+     */
+    private boolean hasNextObject() {
+        if (peekedTag != null) {
+            return true;
+        }
+        if (!untilEndOfContents) {
+            try {
+                return available() > 0;
+            } catch (IOException e) {
+                // Or throw an exception?
+                return false;
+            }
+        }
+        if (!endOfContents && peekTag() == ASN1Tag.END_OF_CONTENTS) {
+            peekedTag = null;
+            checkEndOfContentsLength(decoder.readLength(this));
+            endOfContents = true;
+        }
+        return peekedTag != null;
+    }
+
+    /**
+     * Read the tag of the next object ahead, the next {@link #readTag()} returns it.
+     */
+    private ASN1Tag<?> peekTag() {
+        if (peekedTag == null) {
+            int start = buffer != null ? buffer.position() : -1;
+            peekedTag = decoder.readTag(this);
+            peekedTagStart = start;
+        }
+        return peekedTag;
     }
 
     public Iterator<ASN1Object> iterator() {
         return new Iterator<ASN1Object>() {
             @Override
             public boolean hasNext() {
-                try {
-                    return available() > 0;
-                } catch (IOException e) {
-                    // Or throw an exception?
-                    return false;
-                }
+                return hasNextObject();
             }
 
             @Override
@@ -94,10 +359,48 @@ public class ASN1InputStream extends FilterInputStream implements Iterable<ASN1O
     }
 
     public ASN1Tag readTag() {
+        if (peekedTag != null) {
+            ASN1Tag tag = peekedTag;
+            peekedTag = null;
+            return tag;
+        }
+        if (endOfContents) {
+            throw new ASN1ParseException("Cannot read beyond the end-of-contents octets");
+        }
         return decoder.readTag(this);
     }
 
     public int readLength() {
         return decoder.readLength(this);
     }
+
+    /**
+     * Copies every byte read from the wrapped stream to an output stream.
+     */
+    private static class CopyingInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        CopyingInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                copy.write(read);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                copy.write(b, off, read);
+            }
+            return read;
+        }
+    }
 }
@@ -18,9 +18,11 @@ package com.hierynomus.asn1;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
 import com.hierynomus.asn1.types.ASN1Object;
 import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.util.ScratchBuffers;
 
 public class ASN1OutputStream extends FilterOutputStream {
 
@@ -43,15 +45,34 @@ public class ASN1OutputStream extends FilterOutputStream {
     public void writeObject(ASN1Object asn1Object) throws IOException {
         ASN1Tag tag = asn1Object.getTag();
         writeTag(tag);
-        ASN1Serializer asn1Serializer = asn1Object.getTag().newSerializer(encoder);
+        ASN1Serializer asn1Serializer = ASN1CodecCache.serializer(encoder, tag);
         writeLength(asn1Serializer.serializedLength(asn1Object));
 
         //noinspection unchecked
         asn1Serializer.serialize(asn1Object, this);
     }
 
-    private void writeLength(final int length) throws IOException {
-        if (length < 0x7f) {
+    /**
+     * Calculate the length of the complete encoding of an object, its tag, length and value, without encoding it.
+     *
+     * @param encoder The encoder the object will be written with
+     * @param asn1Object The object
+     * @return The number of bytes {@link #writeObject(ASN1Object)} writes for the object
+     * @throws IOException If the length of the value could not be calculated
+     */
+    public static int encodedLength(final ASN1Encoder encoder, final ASN1Object asn1Object) throws IOException {
+        ASN1Tag tag = asn1Object.getTag();
+        //noinspection unchecked
+        int length = ASN1CodecCache.serializer(encoder, tag).serializedLength(asn1Object);
+        return tag.getIdentifierLength() + lengthLength(length) + length;
+    }
+
+    static int lengthLength(final int length) {
+        return length <= 0x7f ? 1 : 1 + lengthBytes(length);
+    }
+
+    void writeLength(final int length) throws IOException {
+        if (length <= 0x7f) {
             write(length);
         } else {
             int nrBytes = lengthBytes(length);
@@ -62,7 +83,7 @@ public class ASN1OutputStream extends FilterOutputStream {
         }
     }
 
-    private int lengthBytes(final int length) {
+    private static int lengthBytes(final int length) {
         int l = length;
         int nrBytes = 1;
         while (l > 255) {
@@ -73,12 +94,35 @@ public class ASN1OutputStream extends FilterOutputStream {
     }
 
     private void writeTag(final ASN1Tag tag) throws IOException {
-        byte tagByte = (byte) (tag.getAsn1TagClass().getValue() | tag.getAsn1Encoding().getValue() | tag.getTag());
-        write(tagByte);
+        tag.writeIdentifier(this);
     }
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
         out.write(b, off, len);
     }
+
+    /**
+     * Write the remaining bytes of the buffer, without changing its position.
+     *
+     * @param buffer The bytes to write
+     * @throws IOException If the bytes could not be written
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            ByteBuffer toWrite = buffer.duplicate();
+            byte[] chunk = ScratchBuffers.acquire(Math.min(toWrite.remaining(), 8192));
+            try {
+                while (toWrite.hasRemaining()) {
+                    int length = Math.min(chunk.length, toWrite.remaining());
+                    toWrite.get(chunk, 0, length);
+                    write(chunk, 0, length);
+                }
+            } finally {
+                ScratchBuffers.release(chunk);
+            }
+        }
+    }
 }
@@ -15,16 +15,66 @@
  */
 package com.hierynomus.asn1;
 
+import java.nio.ByteBuffer;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.types.ASN1Object;
 import com.hierynomus.asn1.types.ASN1Tag;
 
 public abstract class ASN1Parser<T extends ASN1Object> {
-    protected ASN1Decoder decoder;
+    protected final ASN1Decoder decoder;
 
     public ASN1Parser(ASN1Decoder decoder) {
         this.decoder = decoder;
     }
 
     public abstract T parse(ASN1Tag<T> asn1Tag, byte[] value);
+
+    /**
+     * Parse the value from a view on the encoded bytes.
+     *
+     * By default the value is copied and passed to {@link #parse(ASN1Tag, byte[])}. Parsers of constructed types
+     * override this to parse their contents directly from the view, so that each byte is only copied once.
+     *
+     * @param asn1Tag The tag of the value
+     * @param value The value, from its position up to its limit
+     * @return The parsed ASN.1 object
+     */
+    public T parse(ASN1Tag<T> asn1Tag, ByteBuffer value) {
+        byte[] bytes = new byte[value.remaining()];
+        value.duplicate().get(bytes);
+        return parse(asn1Tag, bytes);
+    }
+
+    /**
+     * Parse a constructed value encoded in the indefinite length form, from a stream that ends at its end-of-contents
+     * octets.
+     *
+     * By default the contents are read up to the end-of-contents octets and passed to
+     * {@link #parse(ASN1Tag, ByteBuffer)}. Parsers of types containing other objects override this to read those
+     * objects one by one from the stream, so that the contents do not need to be buffered first.
+     *
+     * @param asn1Tag The tag of the value
+     * @param contents The contents of the value, iterating over it stops at the end-of-contents octets
+     * @return The parsed ASN.1 object
+     */
+    public T parse(ASN1Tag<T> asn1Tag, ASN1InputStream contents) {
+        return parse(asn1Tag, contents.readRemainingContents());
+    }
+
+    /**
+     * Record on an object this parser decoded from a buffer where its encoding can be found, see
+     * {@link ASN1Object#getEncoded()}. Called by the decoders before they return the object.
+     *
+     * By default nothing is recorded, so the object is encoded again when its encoding is asked for. The parsers of
+     * this library record it with {@link ASN1Object#decodedFrom(ByteBuffer, int, int)}.
+     *
+     * @param object The object this parser decoded
+     * @param source The decoded bytes
+     * @param offset The index in the source where the encoding of the object starts
+     * @param length The length of the encoding
+     * @return The object the decoder returns, which differs from the parsed one if that is shared between decodings
+     */
+    protected T decodedFrom(T object, ByteBuffer source, int offset, int length) {
+        return object;
+    }
 }
@@ -0,0 +1,265 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import com.hierynomus.asn1.encodingrules.ASN1Encoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.util.DEROrder;
+import com.hierynomus.asn1.util.ScratchBuffers;
+
+import static com.hierynomus.asn1.util.Checks.checkArgument;
+import static com.hierynomus.asn1.util.Checks.checkState;
+
+/**
+ * Writes ASN.1 objects back to front, from the end of a buffer towards its start.
+ *
+ * The value of an object is written before its length and tag, so the length of every constructed value is known as
+ * soon as its contents are written, without calculating it beforehand. The buffer is kept when the writer is
+ * {@link #reset()}, so a writer that is reused does not allocate once its buffer is large enough.
+ *
+ * Objects are written in reverse order as well: to write a SEQUENCE of A and B, first B is written and then A. A
+ * writer is not thread-safe.
+ */
+public class ASN1ReverseWriter {
+    private final ASN1Encoder encoder;
+    private byte[] buffer;
+    // The written bytes run from position up to the end of the buffer
+    private int position;
+
+    public ASN1ReverseWriter(ASN1Encoder encoder, int initialCapacity) {
+        checkArgument(initialCapacity > 0, "The initial capacity should be positive, not %s", initialCapacity);
+        this.encoder = encoder;
+        this.buffer = new byte[initialCapacity];
+        this.position = initialCapacity;
+    }
+
+    /**
+     * Write an object in front of the bytes written so far.
+     *
+     * @param asn1Object The object to write
+     * @throws IOException If the object could not be serialized
+     */
+    public void writeObject(ASN1Object asn1Object) throws IOException {
+        ASN1Tag tag = asn1Object.getTag();
+        int end = size();
+        //noinspection unchecked
+        ASN1CodecCache.serializer(encoder, tag).serialize(asn1Object, this);
+        writeHeader(tag, size() - end);
+    }
+
+    /**
+     * Write the identifier and length octets of an object in front of its value, which has been written already.
+     *
+     * @param tag The tag of the object
+     * @param length The length of the value
+     */
+    public void writeHeader(ASN1Tag<?> tag, int length) {
+        writeLength(length);
+        tag.writeIdentifier(this);
+    }
+
+    private void writeLength(int length) {
+        if (length <= 0x7f) {
+            write(length);
+        } else {
+            int nrBytes = 0;
+            for (int l = length; l > 0; l >>>= 8) {
+                write(l);
+                nrBytes++;
+            }
+            write(0x80 | nrBytes);
+        }
+    }
+
+    /**
+     * Sort the objects written since the writer had the given size on their encodings, as DER requires for the objects of
+     * a SET OF. The objects should have been written in the definite length form.
+     *
+     * @param end The size of the writer before the objects were written
+     */
+    public void sortObjects(int end) {
+        int stop = buffer.length - end;
+        int[] offsets = new int[8];
+        int count = 0;
+        for (int p = position; p < stop; p = nextObject(p, stop)) {
+            if (count == offsets.length - 1) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = p;
+        }
+        if (count < 2) {
+            return;
+        }
+        offsets[count] = stop;
+        int[] order = DEROrder.sortedOrder(buffer, Arrays.copyOf(offsets, count + 1));
+        int length = stop - position;
+        byte[] sorted = ScratchBuffers.acquire(length);
+        try {
+            int offset = 0;
+            for (int i : order) {
+                int objectLength = offsets[i + 1] - offsets[i];
+                System.arraycopy(buffer, offsets[i], sorted, offset, objectLength);
+                offset += objectLength;
+            }
+            System.arraycopy(sorted, 0, buffer, position, length);
+        } finally {
+            ScratchBuffers.release(sorted);
+        }
+    }
+
+    /**
+     * @return Where the object written at the offset ends.
+     */
+    private int nextObject(int offset, int stop) {
+        int p = offset;
+        if ((buffer[p++] & 0x1f) == 0x1f) {
+            while (p < stop && (buffer[p] & 0x80) != 0) {
+                p++;
+            }
+            p++;
+        }
+        checkState(p < stop, "The objects written end within a header");
+        int first = buffer[p++] & 0xff;
+        int length = first;
+        if (first > 0x80) {
+            length = 0;
+            for (int i = 0; i < (first & 0x7f); i++) {
+                checkState(p < stop, "The objects written end within a header");
+                length = (length << 8) | (buffer[p++] & 0xff);
+            }
+        } else {
+            checkState(first != 0x80, "Cannot sort objects written in the indefinite length form");
+        }
+        checkState(length >= 0 && length <= stop - p, "The objects written end within an object");
+        return p + length;
+    }
+
+    /**
+     * Write a byte in front of the bytes written so far.
+     *
+     * @param b The byte to write, only the lowest 8 bits are written
+     */
+    public void write(int b) {
+        ensureCapacity(1);
+        buffer[--position] = (byte) b;
+    }
+
+    /**
+     * Write bytes in front of the bytes written so far.
+     *
+     * @param b The bytes to write
+     */
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    /**
+     * Write bytes in front of the bytes written so far.
+     *
+     * @param b The array holding the bytes to write
+     * @param off The offset of the bytes in the array
+     * @param len The number of bytes
+     */
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        position -= len;
+        System.arraycopy(b, off, buffer, position, len);
+    }
+
+    /**
+     * Write the remaining bytes of the buffer in front of the bytes written so far, without changing its position.
+     *
+     * @param bytes The bytes to write
+     */
+    public void write(ByteBuffer bytes) {
+        if (bytes.hasArray()) {
+            write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else {
+            int len = bytes.remaining();
+            ensureCapacity(len);
+            position -= len;
+            bytes.duplicate().get(buffer, position, len);
+        }
+    }
+
+    /**
+     * Reserve a region in front of the bytes written so far, to be written front to back.
+     *
+     * @param length The length of the region
+     * @return A view on the region, from its position up to its limit
+     */
+    public ByteBuffer reserve(int length) {
+        ensureCapacity(length);
+        position -= length;
+        return ByteBuffer.wrap(buffer, position, length);
+    }
+
+    private void ensureCapacity(int length) {
+        if (length > position) {
+            int size = size();
+            int capacity = Math.max(buffer.length * 2, size + length);
+            byte[] grown = new byte[capacity];
+            System.arraycopy(buffer, position, grown, capacity - size, size);
+            buffer = grown;
+            position = capacity - size;
+        }
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    public int size() {
+        return buffer.length - position;
+    }
+
+    /**
+     * Discard the bytes written, keeping the buffer for the next objects.
+     */
+    public void reset() {
+        position = buffer.length;
+    }
+
+    /**
+     * @return A copy of the bytes written.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(buffer, position, buffer.length);
+    }
+
+    /**
+     * Copy the bytes written to the buffer, advancing its position.
+     *
+     * @param target The buffer to copy to
+     */
+    public void writeTo(ByteBuffer target) {
+        target.put(buffer, position, size());
+    }
+
+    /**
+     * Copy the bytes written to the stream.
+     *
+     * @param out The stream to copy to
+     * @throws IOException If the stream could not be written to
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, position, size());
+    }
+}
@@ -16,8 +16,13 @@
 package com.hierynomus.asn1;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
 import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.util.ByteBufferOutputStream;
+
+import static com.hierynomus.asn1.util.Checks.checkState;
 
 public abstract class ASN1Serializer<T extends ASN1Object> {
     protected final ASN1Encoder encoder;
@@ -29,4 +34,42 @@ public abstract class ASN1Serializer<T extends ASN1Object> {
     public abstract int serializedLength(T asn1Object) throws IOException;
 
     public abstract void serialize(T asn1Object, ASN1OutputStream stream) throws IOException;
+
+    /**
+     * Serialize the value back to front, in front of what the writer has written so far.
+     *
+     * By default the value is serialized front to back, into a region of {@link #serializedLength(ASN1Object)} bytes
+     * reserved in the writer. Serializers override this to write their value directly, constructed types write their
+     * contents in reverse order so that their length does not need to be calculated beforehand.
+     *
+     * @param asn1Object The object to serialize
+     * @param writer The writer to write the value to
+     * @throws IOException If the object could not be serialized
+     */
+    public void serialize(T asn1Object, ASN1ReverseWriter writer) throws IOException {
+        ByteBuffer region = writer.reserve(serializedLength(asn1Object));
+        serialize(asn1Object, new ASN1OutputStream(encoder, new ByteBufferOutputStream(region)));
+        checkState(!region.hasRemaining(), "Serialized %s in fewer bytes than its calculated length", asn1Object);
+    }
+
+    /**
+     * Calculate the length of the complete encoding of another object, such as a child of the serialized object.
+     *
+     * @param asn1Object The object
+     * @return The length of its tag, length and value
+     * @throws IOException If the length of the value could not be calculated
+     */
+    protected int encodedLength(ASN1Object asn1Object) throws IOException {
+        return ASN1OutputStream.encodedLength(encoder, asn1Object);
+    }
+
+    /**
+     * Get the serializer of the encoder for objects with the tag, such as the children of the serialized object.
+     *
+     * @param tag The tag of the objects
+     * @return The serializer
+     */
+    protected <S extends ASN1Object> ASN1Serializer<S> serializer(ASN1Tag<S> tag) {
+        return ASN1CodecCache.serializer(encoder, tag);
+    }
 }
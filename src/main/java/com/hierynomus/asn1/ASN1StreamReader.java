@@ -0,0 +1,578 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import com.hierynomus.asn1.encodingrules.ASN1Decoder;
+import com.hierynomus.asn1.encodingrules.AbstractASN1Decoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.util.ByteBufferInputStream;
+import com.hierynomus.asn1.util.MappedFile;
+
+import static com.hierynomus.asn1.util.Checks.checkState;
+
+/**
+ * A pull parser reading ASN.1 encoded data as a stream of events, without building {@link ASN1Object} trees.
+ *
+ * Every constructed object results in a {@link Event#START_CONSTRUCTED} event, followed by the events of its contents
+ * and an {@link Event#END_CONSTRUCTED} event. Every primitive object results in a single {@link Event#PRIMITIVE} event.
+ * The memory used only depends on the nesting depth of the data, not on its size. Constructed objects in the indefinite
+ * length form are read the same way, their end-of-contents octets result in the {@link Event#END_CONSTRUCTED} event.
+ * Offsets and lengths are tracked as <code>long</code>, so that data larger than 2GB, such as a {@link MappedFile}, can
+ * be read.
+ *
+ * <pre>
+ * ASN1StreamReader reader = new ASN1StreamReader(new BERDecoder(), inputStream);
+ * while (reader.hasNext()) {
+ *     if (reader.next() == Event.PRIMITIVE &amp;&amp; reader.getTag() == ASN1Tag.OBJECT_IDENTIFIER) {
+ *         ASN1ObjectIdentifier oid = reader.readObject();
+ *     }
+ * }
+ * </pre>
+ */
+public class ASN1StreamReader {
+    private static final long INDEFINITE_END = -1;
+
+    public enum Event {
+        START_CONSTRUCTED,
+        PRIMITIVE,
+        END_CONSTRUCTED
+    }
+
+    private final ASN1Decoder decoder;
+    private final CountingInputStream in;
+    private final ByteBuffer buffer;
+    private final MappedFile file;
+
+    private ASN1Tag<?>[] tags = new ASN1Tag<?>[8];
+    // The offset where the contents of each entered object end, or INDEFINITE_END if they end at end-of-contents octets
+    private long[] ends = new long[8];
+    private int depth = 0;
+
+    private Event event;
+    private ASN1Tag<?> tag;
+    private long length;
+    private long headerStart;
+    private long valueStart;
+    private long valueEnd;
+    private ValueInputStream valueStream;
+
+    public ASN1StreamReader(ASN1Decoder decoder, InputStream is) {
+        this.decoder = decoder;
+        this.in = new CountingInputStream(is);
+        this.buffer = null;
+        this.file = null;
+    }
+
+    /**
+     * Create a reader reading from the remaining bytes of the buffer. The values of primitive objects are returned as
+     * views on the buffer. The position of the passed buffer is not changed.
+     *
+     * @param decoder The decoder to use
+     * @param buffer The buffer to read from
+     */
+    public ASN1StreamReader(ASN1Decoder decoder, ByteBuffer buffer) {
+        this.decoder = decoder;
+        this.buffer = buffer.slice();
+        this.file = null;
+        this.in = new CountingInputStream(new ByteBufferInputStream(this.buffer));
+    }
+
+    /**
+     * Create a reader reading a memory-mapped file. Nothing is read until the reader is moved, skipping a value only
+     * moves the position in the file. The values of primitive objects and the decoded objects are views on the mapped
+     * file, so that a decoded constructed object decodes its contents from the file as they are accessed.
+     *
+     * Only objects of which the encoding fits into an <code>int</code> can be decoded, the reader can move into larger
+     * constructed objects to decode their contents.
+     *
+     * @param decoder The decoder to use
+     * @param file The file to read
+     */
+    public ASN1StreamReader(ASN1Decoder decoder, MappedFile file) {
+        this.decoder = decoder;
+        this.buffer = null;
+        this.file = file;
+        this.in = new CountingInputStream(file.newInputStream(0));
+    }
+
+    /**
+     * Whether there are more events to read.
+     *
+     * @return <code>true</code> if {@link #next()} will return another event.
+     */
+    public boolean hasNext() {
+        if (depth > 0) {
+            return true;
+        }
+        try {
+            long unreadValue = event == Event.PRIMITIVE ? valueEnd - in.count : 0;
+            long available = file != null ? file.size() - in.count : in.available();
+            return available > unreadValue;
+        } catch (IOException e) {
+            throw new ASN1ParseException(e, "Unable to read the ASN.1 stream");
+        }
+    }
+
+    /**
+     * Move to the next event. If the value of the current primitive object has not been read, it is skipped.
+     *
+     * @return the next event.
+     */
+    public Event next() {
+        closeValueStream();
+        return nextEvent();
+    }
+
+    /**
+     * The decoders of this library read lengths that do not fit into an <code>int</code>, with other decoders objects
+     * are limited to 2GB.
+     */
+    private long readLength() {
+        if (decoder instanceof AbstractASN1Decoder) {
+            return ((AbstractASN1Decoder) decoder).readLongLength(in);
+        }
+        return decoder.readLength(in);
+    }
+
+    private Event nextEvent() {
+        try {
+            skipToValueEnd();
+            if (depth > 0 && ends[depth - 1] != INDEFINITE_END && in.count >= ends[depth - 1]) {
+                checkState(in.count == ends[depth - 1], "The contents of %s exceed its length", tags[depth - 1]);
+                return pop();
+            }
+            headerStart = in.count;
+            tag = decoder.readTag(in);
+            length = readLength();
+            valueStart = in.count;
+            if (tag == ASN1Tag.END_OF_CONTENTS) {
+                if (depth == 0 || ends[depth - 1] != INDEFINITE_END || length != 0) {
+                    throw new ASN1ParseException("Unexpected end-of-contents octets found");
+                }
+                pop();
+                if (depth > 0 && ends[depth - 1] != INDEFINITE_END && in.count > ends[depth - 1]) {
+                    throw new ASN1ParseException("The contents of %s exceed the contents of %s", tag, tags[depth - 1]);
+                }
+                return event;
+            }
+            if (length == ASN1Decoder.INDEFINITE_LENGTH) {
+                if (!tag.isConstructed()) {
+                    throw new ASN1ParseException("The indefinite length form cannot be used for the primitive %s", tag);
+                }
+                valueEnd = INDEFINITE_END;
+            } else {
+                valueEnd = valueStart + length;
+                if (depth > 0 && ends[depth - 1] != INDEFINITE_END && valueEnd > ends[depth - 1]) {
+                    throw new ASN1ParseException("The length %s of %s exceeds the contents of %s", length, tag, tags[depth - 1]);
+                }
+            }
+            if (tag.isConstructed()) {
+                push(tag, valueEnd);
+                event = Event.START_CONSTRUCTED;
+            } else {
+                event = Event.PRIMITIVE;
+            }
+            return event;
+        } catch (IOException e) {
+            throw new ASN1ParseException(e, "Unable to read the ASN.1 stream");
+        }
+    }
+
+    private void closeValueStream() {
+        if (valueStream != null) {
+            try {
+                valueStream.close();
+            } catch (IOException e) {
+                throw new ASN1ParseException(e, "Unable to skip the value of %s", tag);
+            }
+        }
+    }
+
+    private Event pop() {
+        depth--;
+        tag = tags[depth];
+        tags[depth] = null;
+        length = 0;
+        event = Event.END_CONSTRUCTED;
+        return event;
+    }
+
+    private void push(ASN1Tag<?> tag, long end) {
+        if (depth == ends.length) {
+            ends = Arrays.copyOf(ends, depth * 2);
+            tags = Arrays.copyOf(tags, depth * 2);
+        }
+        tags[depth] = tag;
+        ends[depth] = end;
+        depth++;
+    }
+
+    private void skipToValueEnd() throws IOException {
+        if (event == Event.PRIMITIVE && in.count < valueEnd) {
+            skipFully(valueEnd - in.count);
+        }
+    }
+
+    private void skipFully(long n) throws IOException {
+        long remaining = n;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new ASN1ParseException("EOF found while skipping %s bytes of an ASN.1 value", n);
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * @return the current event.
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * @return the tag of the object the current event belongs to.
+     */
+    public ASN1Tag<?> getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the length of the value of the current object, {@link ASN1Decoder#INDEFINITE_LENGTH} for a constructed
+     * object in the indefinite length form, or 0 for {@link Event#END_CONSTRUCTED}.
+     * @throws IllegalStateException If the length does not fit into an <code>int</code>, see {@link #getLongLength()}
+     */
+    public int getLength() {
+        checkState(length <= Integer.MAX_VALUE, "The length %s of %s does not fit into an int", length, tag);
+        return (int) length;
+    }
+
+    /**
+     * @return the length of the value of the current object, as {@link #getLength()}.
+     */
+    public long getLongLength() {
+        return length;
+    }
+
+    /**
+     * @return the offset of the tag of the current object, from the start of the data read.
+     */
+    public long getOffset() {
+        return headerStart;
+    }
+
+    /**
+     * @return the number of constructed objects the reader currently is in.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Read the value of the current primitive object.
+     *
+     * If the reader reads from a buffer, a read-only view on the buffer is returned. Otherwise the value is read from
+     * the stream. The value can only be read once.
+     *
+     * @return the value, from its position up to its limit.
+     */
+    public ByteBuffer getValue() {
+        checkState(event == Event.PRIMITIVE, "Can only read the value of a primitive ASN.1 object, current event is %s", event);
+        checkState(in.count == valueStart && valueStream == null, "The value of %s has already been read", tag);
+        try {
+            return readValue().asReadOnlyBuffer();
+        } catch (IOException e) {
+            throw new ASN1ParseException(e, "Unable to read the value of %s", tag);
+        }
+    }
+
+    /**
+     * Read the value of the current string object as a stream, without holding the value in memory. This makes it
+     * possible to read values that are too large to read with {@link #getValue()}, such as the content of a CMS message.
+     *
+     * The current object is either a primitive object, or a constructed object the reader just entered. BER allows
+     * strings to be encoded as a constructed object of which the contents are segments of the string, the stream then
+     * reads the values of the segments one after the other, moving the reader through them as it is read. For a BIT
+     * STRING, the unused bits octet that starts the value of each segment is left out. The stream ends at the end of
+     * the value, use {@link java.nio.channels.Channels#newChannel(InputStream)} to read it as a channel.
+     *
+     * Moving the reader closes the stream, which skips the rest of the value. After streaming a constructed object,
+     * the reader continues after it, there will be no {@link Event#END_CONSTRUCTED} event for it.
+     *
+     * @return a stream reading the value.
+     */
+    public InputStream getValueStream() {
+        checkState(event == Event.PRIMITIVE || event == Event.START_CONSTRUCTED, "Can only stream the value of a string, current event is %s", event);
+        checkState(in.count == valueStart && valueStream == null, "The value of %s has already been read", tag);
+        try {
+            valueStream = new ValueInputStream(event == Event.START_CONSTRUCTED ? depth - 1 : -1);
+            return valueStream;
+        } catch (IOException e) {
+            throw new ASN1ParseException(e, "Unable to read the value of %s", tag);
+        }
+    }
+
+    private ByteBuffer readValue() throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new ASN1ParseException("The value of %s of %s bytes is too long to read", tag, length);
+        }
+        ByteBuffer value;
+        if (buffer != null) {
+            value = buffer.slice();
+            value.limit((int) length);
+        } else if (file != null) {
+            value = file.slice(in.count, (int) length);
+        } else {
+            return ByteBuffer.wrap(decoder.readValue((int) length, in));
+        }
+        skipFully(length);
+        return value;
+    }
+
+    /**
+     * Decode the current object, which is either a primitive object or a constructed object the reader just entered.
+     *
+     * After decoding a constructed object, the reader continues after it, there will be no
+     * {@link Event#END_CONSTRUCTED} event for it.
+     *
+     * @return the decoded object.
+     */
+    public <T extends ASN1Object> T readObject() {
+        checkState(valueStream == null, "The value of %s is being streamed", tag);
+        if (event == Event.START_CONSTRUCTED) {
+            checkState(in.count == valueStart, "The contents of %s have already been read", tag);
+            depth--;
+            tags[depth] = null;
+        } else {
+            checkState(event == Event.PRIMITIVE && in.count == valueStart, "Can only decode an ASN.1 object before reading its contents");
+        }
+        try {
+            ASN1Parser parser = ASN1CodecCache.parser(decoder, (ASN1Tag) tag);
+            ASN1Object object;
+            if (length == ASN1Decoder.INDEFINITE_LENGTH) {
+                object = new ASN1InputStream(decoder, in).readIndefiniteObject(tag);
+            } else {
+                //noinspection unchecked
+                object = parser.parse(tag, readValue());
+            }
+            if (buffer != null) {
+                //noinspection unchecked
+                object = parser.decodedFrom(object, buffer, (int) headerStart, (int) (in.count - headerStart));
+            } else if (file != null && in.count - headerStart <= Integer.MAX_VALUE) {
+                int encodedLength = (int) (in.count - headerStart);
+                //noinspection unchecked
+                object = parser.decodedFrom(object, file.slice(headerStart, encodedLength), 0, encodedLength);
+            }
+            event = null;
+            //noinspection unchecked
+            return (T) object;
+        } catch (IOException e) {
+            throw new ASN1ParseException(e, "Unable to read the value of %s", tag);
+        }
+    }
+
+    /**
+     * Skip the current object, which is either a primitive object or a constructed object the reader just entered.
+     *
+     * After skipping a constructed object, the reader continues after it, there will be no
+     * {@link Event#END_CONSTRUCTED} event for it.
+     */
+    public void skip() {
+        closeValueStream();
+        try {
+            if (event == Event.START_CONSTRUCTED) {
+                checkState(in.count == valueStart, "The contents of %s have already been read", tag);
+                if (length == ASN1Decoder.INDEFINITE_LENGTH) {
+                    // Only the headers of the contents tell where the contents end
+                    int enclosingDepth = depth - 1;
+                    while (depth > enclosingDepth) {
+                        next();
+                    }
+                } else {
+                    depth--;
+                    tags[depth] = null;
+                    skipFully(length);
+                }
+            } else {
+                skipToValueEnd();
+            }
+            event = null;
+        } catch (IOException e) {
+            throw new ASN1ParseException(e, "Unable to skip %s", tag);
+        }
+    }
+
+    /**
+     * Reads the values of the segments of a string from the reader. A primitive string is read as a single segment.
+     */
+    private class ValueInputStream extends InputStream {
+        // The depth of the reader after the end of a constructed string, or -1 for a primitive string
+        private final int enclosingDepth;
+        private long segmentEnd;
+        private boolean lastSegment;
+        private boolean closed;
+
+        ValueInputStream(int enclosingDepth) throws IOException {
+            this.enclosingDepth = enclosingDepth;
+            if (enclosingDepth < 0) {
+                startSegment();
+                lastSegment = true;
+            } else {
+                segmentEnd = in.count;
+            }
+        }
+
+        private void startSegment() throws IOException {
+            segmentEnd = valueEnd;
+            if (tag == ASN1Tag.BIT_STRING) {
+                if (length == 0 || in.read() < 0) {
+                    throw new ASN1ParseException("The value of a BIT STRING should start with the number of unused bits");
+                }
+            }
+        }
+
+        /**
+         * Moves to the next segment holding data, the reader moves through the contents of the constructed string.
+         */
+        private boolean hasRemaining() throws IOException {
+            while (in.count >= segmentEnd) {
+                if (lastSegment) {
+                    return false;
+                }
+                if (nextEvent() == Event.PRIMITIVE) {
+                    startSegment();
+                } else if (event == Event.END_CONSTRUCTED && depth == enclosingDepth) {
+                    event = null;
+                    lastSegment = true;
+                }
+            }
+            return true;
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("The value stream of the ASN.1 reader is closed");
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            ensureOpen();
+            if (!hasRemaining()) {
+                return -1;
+            }
+            int read = in.read();
+            if (read < 0) {
+                throw new ASN1ParseException("EOF found inside the value of %s", tag);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            if (len == 0) {
+                return 0;
+            }
+            if (!hasRemaining()) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, segmentEnd - in.count));
+            if (read < 0) {
+                throw new ASN1ParseException("EOF found inside the value of %s", tag);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            ensureOpen();
+            if (n <= 0 || !hasRemaining()) {
+                return 0;
+            }
+            return in.skip(Math.min(n, segmentEnd - in.count));
+        }
+
+        @Override
+        public int available() throws IOException {
+            ensureOpen();
+            return (int) Math.min(segmentEnd - in.count, in.available());
+        }
+
+        /**
+         * Skips the rest of the value, so that the reader continues after it.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            valueStream = null;
+            closed = true;
+            while (hasRemaining()) {
+                skipFully(segmentEnd - in.count);
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
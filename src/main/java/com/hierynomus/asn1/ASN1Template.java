@@ -0,0 +1,323 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import com.hierynomus.asn1.encodingrules.ASN1Encoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.util.ByteBufferOutputStream;
+
+import static com.hierynomus.asn1.util.Checks.checkArgument;
+
+/**
+ * A message that is encoded over and over again, of which only a few objects change.
+ *
+ * A prototype of the message is encoded once, recording where the objects registered as named slots are. Encoding the
+ * template copies the encoded prototype, writing the objects passed for the slots in place of the prototype objects.
+ * Only the length octets of the objects that enclose a slot are written anew, no objects are created for the rest of
+ * the message.
+ *
+ * A slot must be an object its enclosing object writes with {@link ASN1OutputStream#writeObject(ASN1Object)}. The
+ * object in an implicitly tagged object cannot be a slot, use the tagged object instead. The objects in a SET of more
+ * than one object cannot be slots either, as their order depends on their encodings. A template is immutable and can
+ * be shared between threads.
+ *
+ * <pre>
+ * ASN1Template template = ASN1Template.builder(new DEREncoder(), negTokenResp)
+ *     .slot("responseToken", responseToken)
+ *     .build();
+ * byte[] encoded = template.encode(Collections.singletonMap("responseToken", new ASN1TaggedObject(tag, token)));
+ * </pre>
+ */
+public class ASN1Template {
+    private final ASN1Encoder encoder;
+    private final byte[] prototype;
+    private final List<String> slotNames;
+    private final ASN1Tag[] slotTags;
+    // The slots and the objects enclosing them, in the order in which they are encoded
+    private final int[] nodeStart;
+    private final int[] nodeLengthStart;
+    private final int[] nodeValueStart;
+    private final int[] nodeEnd;
+    private final int[] nodeParent;
+    private final int[] nodeSlot;
+
+    private ASN1Template(ASN1Encoder encoder, byte[] prototype, List<String> slotNames, ASN1Tag[] slotTags, List<int[]> nodes) {
+        this.encoder = encoder;
+        this.prototype = prototype;
+        this.slotNames = Collections.unmodifiableList(new ArrayList<>(slotNames));
+        this.slotTags = slotTags;
+        int count = nodes.size();
+        this.nodeStart = new int[count];
+        this.nodeLengthStart = new int[count];
+        this.nodeValueStart = new int[count];
+        this.nodeEnd = new int[count];
+        this.nodeParent = new int[count];
+        this.nodeSlot = new int[count];
+        for (int i = 0; i < count; i++) {
+            int[] node = nodes.get(i);
+            nodeStart[i] = node[Recorder.START];
+            nodeLengthStart[i] = node[Recorder.LENGTH_START];
+            nodeValueStart[i] = valueStart(prototype, node[Recorder.LENGTH_START]);
+            nodeEnd[i] = node[Recorder.END];
+            nodeParent[i] = node[Recorder.PARENT];
+            nodeSlot[i] = node[Recorder.SLOT];
+        }
+    }
+
+    /**
+     * @param encoder The encoder to encode the prototype and the objects passed for the slots with
+     * @param prototype The message, holding the prototype objects of the slots
+     * @return A builder to register the slots with.
+     */
+    public static Builder builder(ASN1Encoder encoder, ASN1Object prototype) {
+        return new Builder(encoder, prototype);
+    }
+
+    /**
+     * @return The names of the slots, in the order in which they were registered.
+     */
+    public List<String> getSlotNames() {
+        return slotNames;
+    }
+
+    /**
+     * Encode the message into an array of exactly its encoded length.
+     *
+     * @param values The objects to write in place of the prototype objects, by slot name. Slots that are not passed
+     *               keep their prototype object.
+     * @return The encoded message
+     * @throws IOException If an object could not be encoded
+     * @throws IllegalArgumentException If a slot does not exist, or an object does not have the tag of the prototype
+     */
+    public byte[] encode(Map<String, ? extends ASN1Object> values) throws IOException {
+        ASN1Object[] filled = filled(values);
+        int[] valueLengths = new int[nodeStart.length];
+        byte[] encoded = new byte[prototype.length + calculateLengths(filled, valueLengths)];
+        write(filled, valueLengths, ByteBuffer.wrap(encoded));
+        return encoded;
+    }
+
+    /**
+     * Encode the message into the buffer, starting at its position. The position is advanced past the message.
+     *
+     * @param values The objects to write in place of the prototype objects, by slot name. Slots that are not passed
+     *               keep their prototype object.
+     * @param buffer The buffer to write to
+     * @throws IOException If an object could not be encoded
+     * @throws IllegalArgumentException If a slot does not exist, an object does not have the tag of the prototype, or
+     *                                  the message does not fit into the buffer
+     */
+    public void encode(Map<String, ? extends ASN1Object> values, ByteBuffer buffer) throws IOException {
+        ASN1Object[] filled = filled(values);
+        int[] valueLengths = new int[nodeStart.length];
+        int length = prototype.length + calculateLengths(filled, valueLengths);
+        checkArgument(length <= buffer.remaining(), "Encoding the template takes %s bytes, only %s bytes remaining", length, buffer.remaining());
+        write(filled, valueLengths, buffer);
+    }
+
+    private ASN1Object[] filled(Map<String, ? extends ASN1Object> values) {
+        ASN1Object[] filled = new ASN1Object[slotTags.length];
+        int found = 0;
+        for (int i = 0; i < filled.length; i++) {
+            String name = slotNames.get(i);
+            if (values.containsKey(name)) {
+                found++;
+                filled[i] = values.get(name);
+                checkArgument(filled[i] == null || filled[i].getTag().equals(slotTags[i]), "The object for slot %s should have %s, not %s", name, slotTags[i], filled[i] != null ? filled[i].getTag() : null);
+            }
+        }
+        checkArgument(found == values.size(), "Not all of %s are slots, the slots are %s", values.keySet(), slotNames);
+        return filled;
+    }
+
+    /**
+     * Calculate the new length of the values of the objects enclosing the slots, innermost objects first.
+     *
+     * @return How much longer the encoded message is than the encoded prototype.
+     */
+    private int calculateLengths(ASN1Object[] filled, int[] valueLengths) throws IOException {
+        int[] childDeltas = new int[nodeStart.length];
+        int delta = 0;
+        for (int i = nodeStart.length - 1; i >= 0; i--) {
+            int nodeDelta;
+            if (nodeSlot[i] >= 0) {
+                ASN1Object value = filled[nodeSlot[i]];
+                nodeDelta = value != null ? ASN1OutputStream.encodedLength(encoder, value) - (nodeEnd[i] - nodeStart[i]) : 0;
+            } else {
+                valueLengths[i] = nodeEnd[i] - nodeValueStart[i] + childDeltas[i];
+                nodeDelta = childDeltas[i] + ASN1OutputStream.lengthLength(valueLengths[i]) - (nodeValueStart[i] - nodeLengthStart[i]);
+            }
+            if (nodeParent[i] >= 0) {
+                childDeltas[nodeParent[i]] += nodeDelta;
+            } else {
+                delta += nodeDelta;
+            }
+        }
+        return delta;
+    }
+
+    private void write(ASN1Object[] filled, int[] valueLengths, ByteBuffer buffer) throws IOException {
+        ASN1OutputStream stream = new ASN1OutputStream(encoder, new ByteBufferOutputStream(buffer));
+        int position = 0;
+        for (int i = 0; i < nodeStart.length; i++) {
+            if (nodeSlot[i] < 0) {
+                stream.write(prototype, position, nodeLengthStart[i] - position);
+                stream.writeLength(valueLengths[i]);
+                position = nodeValueStart[i];
+            } else if (filled[nodeSlot[i]] != null) {
+                stream.write(prototype, position, nodeStart[i] - position);
+                stream.writeObject(filled[nodeSlot[i]]);
+                position = nodeEnd[i];
+            }
+        }
+        stream.write(prototype, position, prototype.length - position);
+    }
+
+    private static int valueStart(byte[] encoded, int lengthStart) {
+        int first = encoded[lengthStart] & 0xff;
+        return lengthStart + 1 + ((first & 0x80) != 0 ? first & 0x7f : 0);
+    }
+
+    public static class Builder {
+        private final ASN1Encoder encoder;
+        private final ASN1Object prototype;
+        private final List<String> slotNames = new ArrayList<>();
+        private final Map<ASN1Object, Integer> slots = new IdentityHashMap<>();
+
+        private Builder(ASN1Encoder encoder, ASN1Object prototype) {
+            this.encoder = encoder;
+            this.prototype = prototype;
+        }
+
+        /**
+         * Register a slot. The object is identified by its instance, so it should occur once in the prototype.
+         *
+         * @param name The name of the slot
+         * @param object The prototype object of the slot, which the prototype contains
+         * @return This builder.
+         */
+        public Builder slot(String name, ASN1Object object) {
+            checkArgument(!slotNames.contains(name), "There already is a slot named %s", name);
+            if (slots.containsKey(object)) {
+                throw new IllegalArgumentException(String.format("%s already is the object of slot %s", object, slotNames.get(slots.get(object))));
+            }
+            slots.put(object, slotNames.size());
+            slotNames.add(name);
+            return this;
+        }
+
+        /**
+         * Encode the prototype, recording where the slots are.
+         *
+         * @return The template
+         * @throws IOException If the prototype could not be encoded
+         * @throws IllegalArgumentException If an object of a slot does not occur exactly once in the prototype, or is
+         *                                  not written on its own
+         */
+        public ASN1Template build() throws IOException {
+            byte[] encoded = new byte[ASN1OutputStream.encodedLength(encoder, prototype)];
+            Recorder recorder = new Recorder(encoder, ByteBuffer.wrap(encoded), slots);
+            recorder.writeObject(prototype);
+            ASN1Tag[] slotTags = new ASN1Tag[slotNames.size()];
+            for (int i = 0; i < slotTags.length; i++) {
+                int node = recorder.slotNodes[i];
+                checkArgument(node >= 0, "The object of slot %s is not written on its own, it might be in a SET or implicitly tagged", slotNames.get(i));
+                slotTags[i] = recorder.tags.get(node);
+            }
+            return new ASN1Template(encoder, encoded, slotNames, slotTags, recorder.slotsAndEnclosingNodes());
+        }
+    }
+
+    /**
+     * Records the position of every object that is written.
+     */
+    private static class Recorder extends ASN1OutputStream {
+        static final int START = 0;
+        static final int LENGTH_START = 1;
+        static final int END = 2;
+        static final int PARENT = 3;
+        static final int SLOT = 4;
+
+        private final ByteBuffer buffer;
+        private final Map<ASN1Object, Integer> slots;
+        private final List<int[]> nodes = new ArrayList<>();
+        private final List<ASN1Tag> tags = new ArrayList<>();
+        private final int[] slotNodes;
+        private int current = -1;
+
+        Recorder(ASN1Encoder encoder, ByteBuffer buffer, Map<ASN1Object, Integer> slots) {
+            super(encoder, new ByteBufferOutputStream(buffer));
+            this.buffer = buffer;
+            this.slots = slots;
+            this.slotNodes = new int[slots.size()];
+            Arrays.fill(slotNodes, -1);
+        }
+
+        @Override
+        public void writeObject(ASN1Object asn1Object) throws IOException {
+            Integer slot = slots.get(asn1Object);
+            int index = nodes.size();
+            if (slot != null) {
+                checkArgument(slotNodes[slot] < 0, "The object of a slot occurs more than once in the prototype: %s", asn1Object);
+                for (int parent = current; parent >= 0; parent = nodes.get(parent)[PARENT]) {
+                    checkArgument(nodes.get(parent)[SLOT] < 0, "A slot cannot be inside another slot: %s", asn1Object);
+                }
+                slotNodes[slot] = index;
+            }
+            int start = buffer.position();
+            int[] node = {start, start + asn1Object.getTag().getIdentifierLength(), 0, current, slot != null ? slot : -1};
+            nodes.add(node);
+            tags.add(asn1Object.getTag());
+            int parent = current;
+            current = index;
+            super.writeObject(asn1Object);
+            current = parent;
+            node[END] = buffer.position();
+        }
+
+        /**
+         * Keep only the slots and the objects enclosing them, in the order in which they were written.
+         */
+        List<int[]> slotsAndEnclosingNodes() {
+            boolean[] keep = new boolean[nodes.size()];
+            for (int slotNode : slotNodes) {
+                for (int i = slotNode; i >= 0 && !keep[i]; i = nodes.get(i)[PARENT]) {
+                    keep[i] = true;
+                }
+            }
+            int[] newIndex = new int[nodes.size()];
+            List<int[]> kept = new ArrayList<>();
+            for (int i = 0; i < keep.length; i++) {
+                if (keep[i]) {
+                    int[] node = nodes.get(i);
+                    newIndex[i] = kept.size();
+                    node[PARENT] = node[PARENT] >= 0 ? newIndex[node[PARENT]] : -1;
+                    kept.add(node);
+                }
+            }
+            return kept;
+        }
+    }
+}
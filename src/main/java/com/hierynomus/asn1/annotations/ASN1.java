@@ -19,13 +19,162 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import com.hierynomus.asn1.types.ASN1TagClass;
 
+/**
+ * Annotations mapping Java classes onto ASN.1 types.
+ *
+ * A class annotated with {@link ASN1Sequence} or {@link ASN1Choice} is a SEQUENCE or CHOICE, of which the annotated
+ * fields are the components, in the order in which they are declared or in the order given by {@link Order}. The
+ * annotation processor
+ * {@link com.hierynomus.asn1.codegen.ASN1Processor} generates a codec for it, named after the class with the suffix
+ * <code>Codec</code>.
+ *
+ * <pre>
+ * &#64;ASN1.ASN1Sequence
+ * public class NegTokenResp {
+ *     &#64;ASN1.Tagged(0) &#64;ASN1.ASN1Enumerated(optional = true) Integer negState;
+ *     &#64;ASN1.Tagged(1) &#64;ASN1.ASN1ObjectIdentifier(optional = true) String supportedMech;
+ *     &#64;ASN1.Tagged(2) &#64;ASN1.ASN1OctetString(optional = true) byte[] responseToken;
+ * }
+ * </pre>
+ *
+ * Components that are OPTIONAL are left out when their field is <code>null</code>. Components with a DEFAULT value are
+ * left out when their field holds the default value, and are set to it when they are absent.
+ */
 public interface ASN1 {
+    /**
+     * An INTEGER, mapped onto an <code>int</code>, <code>long</code>, their boxed types or a {@link java.math.BigInteger}.
+     */
     @Target({ElementType.FIELD, ElementType.METHOD})
     @Retention(RetentionPolicy.RUNTIME)
     @ParsedBy(parser = com.hierynomus.asn1.types.primitive.ASN1Integer.Parser.class)
     @interface ASN1Integer {
-        String defaultValue() default "0";
+        /**
+         * @return the DEFAULT value, or an empty string if the component has no DEFAULT value.
+         */
+        String defaultValue() default "";
+
+        boolean optional() default false;
+    }
+
+    /**
+     * A BOOLEAN, mapped onto a <code>boolean</code> or {@link java.lang.Boolean}.
+     */
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @ParsedBy(parser = com.hierynomus.asn1.types.primitive.ASN1Boolean.Parser.class)
+    @interface ASN1Boolean {
+        /**
+         * @return the DEFAULT value, <code>true</code> or <code>false</code>, or an empty string if the component has
+         * no DEFAULT value.
+         */
+        String defaultValue() default "";
+
+        boolean optional() default false;
+    }
+
+    /**
+     * An ENUMERATED, mapped onto an <code>int</code>, an {@link java.lang.Integer} or a Java enum. The value of an
+     * enum constant is its ordinal.
+     */
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @ParsedBy(parser = com.hierynomus.asn1.types.primitive.ASN1Enumerated.Parser.class)
+    @interface ASN1Enumerated {
+        /**
+         * @return the DEFAULT value, a number or the name of an enum constant, or an empty string if the component has
+         * no DEFAULT value.
+         */
+        String defaultValue() default "";
+
+        boolean optional() default false;
+    }
+
+    /**
+     * An OCTET STRING, mapped onto a <code>byte[]</code>.
+     */
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @ParsedBy(parser = com.hierynomus.asn1.types.string.ASN1OctetString.Parser.class)
+    @interface ASN1OctetString {
+        boolean optional() default false;
+    }
+
+    /**
+     * An OBJECT IDENTIFIER, mapped onto a {@link java.lang.String} in dotted notation.
+     */
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @ParsedBy(parser = com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier.Parser.class)
+    @interface ASN1ObjectIdentifier {
+        boolean optional() default false;
     }
 
+    /**
+     * A SEQUENCE. On a class, it makes the class a SEQUENCE of its annotated fields. On a field, the type of the field
+     * is a class annotated as SEQUENCE.
+     */
+    @Target({ElementType.TYPE, ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @ParsedBy(parser = com.hierynomus.asn1.types.constructed.ASN1Sequence.Parser.class)
+    @interface ASN1Sequence {
+        boolean optional() default false;
+    }
+
+    /**
+     * A CHOICE. On a class, it makes the class a CHOICE between its annotated fields, exactly one of which is not
+     * <code>null</code>. On a field, the type of the field is a class annotated as CHOICE.
+     */
+    @Target({ElementType.TYPE, ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface ASN1Choice {
+        boolean optional() default false;
+    }
+
+    /**
+     * A SEQUENCE OF, mapped onto a {@link java.util.List} of classes annotated as SEQUENCE or CHOICE, or of
+     * {@link com.hierynomus.asn1.types.ASN1Object}s.
+     */
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface ASN1SequenceOf {
+        boolean optional() default false;
+    }
+
+    /**
+     * Any ASN.1 type, mapped onto an {@link com.hierynomus.asn1.types.ASN1Object} which is decoded and encoded as is.
+     */
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface ASN1Any {
+        boolean optional() default false;
+    }
+
+    /**
+     * The position of a component in its SEQUENCE, together with the annotation of its type. Either all or none of the
+     * components of a SEQUENCE have a position. Without positions, the components are in the order in which their
+     * fields are declared. As that order is not known at runtime, the {@link com.hierynomus.asn1.binding.ASN1Mapper}
+     * then needs every component to be tagged, with the tags increasing in the order of the fields.
+     */
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Order {
+        int value();
+    }
+
+    /**
+     * Tags a component, together with the annotation of its type. An explicit tag is encoded around the encoding of
+     * the component, an implicit tag replaces the tag of the component. CHOICE and ANY components can only be tagged
+     * explicitly.
+     */
+    @Target({ElementType.FIELD, ElementType.METHOD})
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Tagged {
+        int value();
+
+        ASN1TagClass tagClass() default ASN1TagClass.CONTEXT_SPECIFIC;
+
+        boolean explicit() default true;
+    }
 }
@@ -0,0 +1,234 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.binding;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import com.hierynomus.asn1.ASN1ParseException;
+import com.hierynomus.asn1.ASN1ReverseWriter;
+import com.hierynomus.asn1.ASN1StreamReader;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.types.ASN1TagClass;
+import com.hierynomus.asn1.types.primitive.ASN1Null;
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier;
+import com.hierynomus.asn1.types.string.ASN1BitString;
+
+import static com.hierynomus.asn1.util.Checks.checkArgument;
+
+/**
+ * Reads and writes the values of SEQUENCE and CHOICE components straight from an {@link ASN1StreamReader} and to an
+ * {@link ASN1ReverseWriter}, without creating {@link com.hierynomus.asn1.types.ASN1Object}s. Used by the codecs
+ * generated from classes annotated with {@link com.hierynomus.asn1.annotations.ASN1}.
+ *
+ * The read methods read the value of the primitive object the reader is at. The write methods write a whole object,
+ * with the given tag, in front of what the writer has written so far.
+ */
+public class ASN1Fields {
+    private static final ASN1ObjectIdentifier.Parser OBJECT_IDENTIFIER_PARSER = new ASN1ObjectIdentifier.Parser(null);
+    private static final ASN1ObjectIdentifier.Serializer OBJECT_IDENTIFIER_SERIALIZER = new ASN1ObjectIdentifier.Serializer(null);
+    private static final ASN1BitString.Parser BIT_STRING_PARSER = new ASN1BitString.Parser(null);
+    private static final ASN1BitString.Serializer BIT_STRING_SERIALIZER = new ASN1BitString.Serializer(null);
+
+    private ASN1Fields() {
+        // Do not instantiate
+    }
+
+    /**
+     * Whether the reader is at an object with the tag, and not at the end of the enclosing constructed object.
+     *
+     * @param reader The reader
+     * @param tagClass The class of the tag
+     * @param tag The tag number
+     * @return <code>true</code> if the object the reader is at has the tag.
+     */
+    public static boolean isTag(ASN1StreamReader reader, ASN1TagClass tagClass, int tag) {
+        if (reader.getEvent() == ASN1StreamReader.Event.END_CONSTRUCTED) {
+            return false;
+        }
+        ASN1Tag<?> current = reader.getTag();
+        return current.getTag() == tag && current.getAsn1TagClass() == tagClass;
+    }
+
+    /**
+     * Check that the reader is at the end of the constructed object the component belongs to.
+     *
+     * @param reader The reader
+     * @param component The name of the SEQUENCE or component, used in the exception
+     */
+    public static void expectEnd(ASN1StreamReader reader, String component) {
+        if (reader.getEvent() != ASN1StreamReader.Event.END_CONSTRUCTED) {
+            throw new ASN1ParseException("Expected the end of %s, found %s", component, reader.getTag());
+        }
+    }
+
+    /**
+     * @param reader The reader
+     * @param component The name of the component that was expected
+     * @return the exception to throw when the object the reader is at is not the expected component.
+     */
+    public static ASN1ParseException unexpected(ASN1StreamReader reader, String component) {
+        if (reader.getEvent() == ASN1StreamReader.Event.END_CONSTRUCTED) {
+            return new ASN1ParseException("Expected %s, found the end of %s", component, reader.getTag());
+        }
+        return new ASN1ParseException("Expected %s, found %s", component, reader.getTag());
+    }
+
+    /**
+     * Check that the value of a component that is not OPTIONAL is set before it is encoded.
+     *
+     * @param value The value
+     * @param component The name of the component, used in the exception
+     * @return the value.
+     */
+    public static <T> T checkPresent(T value, String component) {
+        checkArgument(value != null, "The component %s is not OPTIONAL, but it is not set", component);
+        return value;
+    }
+
+    private static ByteBuffer primitiveValue(ASN1StreamReader reader) {
+        if (reader.getEvent() != ASN1StreamReader.Event.PRIMITIVE) {
+            throw new ASN1ParseException("Expected a primitive value, found the constructed %s", reader.getTag());
+        }
+        return reader.getValue();
+    }
+
+    public static boolean readBoolean(ASN1StreamReader reader) {
+        ByteBuffer value = primitiveValue(reader);
+        if (value.remaining() != 1) {
+            throw new ASN1ParseException("The value of a BOOLEAN should have length 1, but was %s", value.remaining());
+        }
+        return value.get() != 0;
+    }
+
+    public static int readInt(ASN1StreamReader reader) {
+        long value = readLong(reader, 4);
+        return (int) value;
+    }
+
+    public static long readLong(ASN1StreamReader reader) {
+        return readLong(reader, 8);
+    }
+
+    /**
+     * Read a two's complement value of at most <code>maxBytes</code> bytes.
+     */
+    private static long readLong(ASN1StreamReader reader, int maxBytes) {
+        ByteBuffer value = primitiveValue(reader);
+        int length = value.remaining();
+        if (length == 0 || length > maxBytes) {
+            throw new ASN1ParseException("Cannot read an INTEGER of %s bytes into a %s byte value", length, maxBytes);
+        }
+        long result = value.get();
+        for (int i = 1; i < length; i++) {
+            result = (result << 8) | (value.get() & 0xff);
+        }
+        return result;
+    }
+
+    public static BigInteger readBigInteger(ASN1StreamReader reader) {
+        byte[] value = readBytes(reader);
+        if (value.length == 0) {
+            throw new ASN1ParseException("The value of an INTEGER should have at least one byte");
+        }
+        return new BigInteger(value);
+    }
+
+    /**
+     * Read an ENUMERATED of which the value is the ordinal of a constant.
+     *
+     * @param reader The reader
+     * @param values The constants, indexed by their value
+     * @return the constant.
+     */
+    public static <E> E readEnum(ASN1StreamReader reader, E[] values) {
+        int value = readInt(reader);
+        if (value < 0 || value >= values.length) {
+            throw new ASN1ParseException("Unknown ENUMERATED value %s, expected 0 up to %s", value, values.length);
+        }
+        return values[value];
+    }
+
+    public static byte[] readBytes(ASN1StreamReader reader) {
+        ByteBuffer value = primitiveValue(reader);
+        byte[] bytes = new byte[value.remaining()];
+        value.get(bytes);
+        return bytes;
+    }
+
+    public static String readObjectIdentifier(ASN1StreamReader reader) {
+        return OBJECT_IDENTIFIER_PARSER.parse(ASN1Tag.OBJECT_IDENTIFIER, primitiveValue(reader)).getValue();
+    }
+
+    public static ASN1BitString readBitString(ASN1StreamReader reader) {
+        return BIT_STRING_PARSER.parse(ASN1Tag.BIT_STRING, readBytes(reader));
+    }
+
+    public static ASN1Null readNull(ASN1StreamReader reader) {
+        if (primitiveValue(reader).hasRemaining()) {
+            throw new ASN1ParseException("The value of a NULL should be empty");
+        }
+        return new ASN1Null();
+    }
+
+    public static void writeBoolean(ASN1ReverseWriter writer, ASN1Tag<?> tag, boolean value) {
+        writer.write(value ? 0x01 : 0x00);
+        writer.writeHeader(tag, 1);
+    }
+
+    /**
+     * Write an INTEGER or ENUMERATED in the least number of bytes.
+     */
+    public static void writeLong(ASN1ReverseWriter writer, ASN1Tag<?> tag, long value) {
+        int end = writer.size();
+        long remaining = value;
+        int b;
+        do {
+            b = (int) remaining & 0xff;
+            writer.write(b);
+            remaining >>= 8;
+        } while (!(remaining == 0 && (b & 0x80) == 0) && !(remaining == -1 && (b & 0x80) != 0));
+        writer.writeHeader(tag, writer.size() - end);
+    }
+
+    public static void writeBigInteger(ASN1ReverseWriter writer, ASN1Tag<?> tag, BigInteger value) {
+        writeBytes(writer, tag, value.toByteArray());
+    }
+
+    public static void writeEnum(ASN1ReverseWriter writer, ASN1Tag<?> tag, Enum<?> value) {
+        writeLong(writer, tag, value.ordinal());
+    }
+
+    public static void writeBytes(ASN1ReverseWriter writer, ASN1Tag<?> tag, byte[] value) {
+        writer.write(value);
+        writer.writeHeader(tag, value.length);
+    }
+
+    public static void writeObjectIdentifier(ASN1ReverseWriter writer, ASN1Tag<?> tag, String value) {
+        int end = writer.size();
+        OBJECT_IDENTIFIER_SERIALIZER.serialize(new ASN1ObjectIdentifier(value), writer);
+        writer.writeHeader(tag, writer.size() - end);
+    }
+
+    public static void writeBitString(ASN1ReverseWriter writer, ASN1Tag<?> tag, ASN1BitString value) {
+        int end = writer.size();
+        BIT_STRING_SERIALIZER.serialize(value, writer);
+        writer.writeHeader(tag, writer.size() - end);
+    }
+
+    public static void writeNull(ASN1ReverseWriter writer, ASN1Tag<?> tag) {
+        writer.writeHeader(tag, 0);
+    }
+}
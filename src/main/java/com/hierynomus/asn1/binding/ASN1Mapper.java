@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.binding;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import com.hierynomus.asn1.ASN1ReverseWriter;
+import com.hierynomus.asn1.ASN1StreamReader;
+import com.hierynomus.asn1.encodingrules.ASN1Decoder;
+import com.hierynomus.asn1.encodingrules.ASN1Encoder;
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder;
+import com.hierynomus.asn1.encodingrules.der.DEREncoder;
+import com.hierynomus.asn1.types.ASN1Tag;
+
+/**
+ * Maps classes annotated with {@link com.hierynomus.asn1.annotations.ASN1} to and from their encoding at runtime, for
+ * classes that are not known when compiling, such as classes of plugins. It follows the same rules as the codecs
+ * generated by {@link com.hierynomus.asn1.codegen.ASN1Processor}, and produces the same encodings.
+ *
+ * A class is analyzed once, when it is first mapped, after which its fields are accessed through method handles and
+ * the alternatives of a CHOICE are found in a table indexed by their tag. Like a generated codec, the mapper reads
+ * straight from an {@link ASN1StreamReader} and writes to an {@link ASN1ReverseWriter}, without creating an
+ * {@link com.hierynomus.asn1.types.ASN1Object} for every component.
+ *
+ * A mapper can be shared between threads.
+ */
+public class ASN1Mapper {
+    private final ASN1Decoder decoder;
+    private final ASN1Encoder encoder;
+
+    /**
+     * Create a mapper decoding BER and encoding DER.
+     */
+    public ASN1Mapper() {
+        this(new BERDecoder(), new DEREncoder());
+    }
+
+    public ASN1Mapper(ASN1Decoder decoder, ASN1Encoder encoder) {
+        this.decoder = decoder;
+        this.encoder = encoder;
+    }
+
+    public <T> T decode(Class<T> type, byte[] encoded) {
+        return decode(type, new ASN1StreamReader(decoder, ByteBuffer.wrap(encoded)));
+    }
+
+    public <T> T decode(Class<T> type, ByteBuffer encoded) {
+        return decode(type, new ASN1StreamReader(decoder, encoded));
+    }
+
+    /**
+     * Decode the next object the reader reads.
+     *
+     * @param type The annotated class to map the object onto
+     * @param reader The reader
+     * @return the mapped object.
+     * @throws IllegalArgumentException If the class cannot be mapped
+     */
+    public <T> T decode(Class<T> type, ASN1StreamReader reader) {
+        TypeBinding binding = TypeBinding.of(type);
+        reader.next();
+        if (!binding.isChoice() && !ASN1Fields.isTag(reader, ASN1Tag.SEQUENCE.getAsn1TagClass(), ASN1Tag.SEQUENCE.getTag())) {
+            throw ASN1Fields.unexpected(reader, binding.getName());
+        }
+        return type.cast(binding.read(reader));
+    }
+
+    /**
+     * Encode an object of an annotated class.
+     *
+     * @param value The object
+     * @return the encoding.
+     * @throws IOException If the object could not be encoded
+     * @throws IllegalArgumentException If the class cannot be mapped, or a component that is not OPTIONAL is not set
+     */
+    public byte[] encode(Object value) throws IOException {
+        ASN1ReverseWriter writer = new ASN1ReverseWriter(encoder, 256);
+        encode(value, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Encode an object of an annotated class in front of what the writer has written so far.
+     *
+     * @param value The object
+     * @param writer The writer
+     * @throws IOException If the object could not be encoded
+     */
+    public void encode(Object value, ASN1ReverseWriter writer) throws IOException {
+        TypeBinding binding = TypeBinding.of(value.getClass());
+        if (binding.isChoice()) {
+            binding.write(value, writer);
+        } else {
+            int end = writer.size();
+            binding.write(value, writer);
+            writer.writeHeader(ASN1Tag.SEQUENCE, writer.size() - end);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.binding;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import com.hierynomus.asn1.ASN1ReverseWriter;
+import com.hierynomus.asn1.ASN1StreamReader;
+import com.hierynomus.asn1.codegen.ComponentDefinition;
+import com.hierynomus.asn1.codegen.ComponentDefinition.JavaType;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+
+/**
+ * How a field is mapped onto a component of a SEQUENCE or an alternative of a CHOICE.
+ *
+ * The fields of the primitive types <code>int</code>, <code>long</code> and <code>boolean</code> are accessed through
+ * method handles of their own type, so that their values are not boxed.
+ */
+final class ComponentBinding {
+    private static final MethodType GET = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SET = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final String name;
+    private final ComponentDefinition.Type type;
+    private final JavaType javaType;
+    private final boolean optional;
+    private final Object defaultValue;
+    // The tag of the encoding, null for an untagged CHOICE or ANY
+    private final ASN1Tag<?> tag;
+    // The component without its explicit tag, or null if it is not tagged explicitly
+    private final ComponentBinding explicitlyTagged;
+    // The class of a SEQUENCE or CHOICE
+    private final Class<?> mappedType;
+    // The enum constants, indexed by their ordinal
+    private final Object[] enumValues;
+    private final ComponentBinding element;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    ComponentBinding(String name, ComponentDefinition component, Field field, MethodHandle[] accessors) {
+        this(name, component, field.getType(), elementType(field), accessors);
+    }
+
+    private ComponentBinding(String name, ComponentDefinition component, Class<?> fieldType, Class<?> elementType, MethodHandle[] accessors) {
+        this.name = name;
+        this.type = component.getType();
+        this.javaType = component.getJavaType();
+        this.optional = component.isOptional();
+        this.defaultValue = component.getDefaultValue() != null ? TypeBinding.newDefault(component, fieldType) : null;
+        this.mappedType = javaType == JavaType.CLASS ? fieldType : null;
+        this.enumValues = javaType == JavaType.ENUM ? fieldType.getEnumConstants() : null;
+        if (component.isTagged()) {
+            ASN1Tag<?> tagged = ASN1Tag.forTag(component.getTagClass(), component.getTag());
+            this.tag = component.isExplicit() || type.isConstructed() ? tagged.constructed() : tagged;
+        } else {
+            this.tag = universalTag(type);
+        }
+        if (component.isTagged() && component.isExplicit()) {
+            ComponentDefinition untagged = new ComponentDefinition(component.getName(), type, javaType, null);
+            this.explicitlyTagged = new ComponentBinding(name, untagged.element(component.getElement()), fieldType, elementType, null);
+        } else {
+            this.explicitlyTagged = null;
+        }
+        if (type == ComponentDefinition.Type.SEQUENCE_OF) {
+            ComponentDefinition elementDefinition = component.getElement();
+            ComponentDefinition untaggedElement = new ComponentDefinition(elementDefinition.getName(), elementDefinition.getType(), elementDefinition.getJavaType(), null);
+            this.element = new ComponentBinding("an element of " + name, untaggedElement, elementType, null, null);
+        } else {
+            this.element = null;
+        }
+        if (accessors != null) {
+            Class<?> accessType = javaType.isPrimitive() ? fieldType : Object.class;
+            this.getter = accessors[0].asType(MethodType.methodType(accessType, Object.class));
+            this.setter = accessors[1].asType(MethodType.methodType(void.class, Object.class, accessType));
+        } else {
+            this.getter = null;
+            this.setter = null;
+        }
+    }
+
+    private static Class<?> elementType(Field field) {
+        if (field.getType() != List.class) {
+            return null;
+        }
+        return (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+    }
+
+    private static ASN1Tag<?> universalTag(ComponentDefinition.Type type) {
+        switch (type) {
+            case BOOLEAN:
+                return ASN1Tag.BOOLEAN;
+            case INTEGER:
+                return ASN1Tag.INTEGER;
+            case ENUMERATED:
+                return ASN1Tag.ENUMERATED;
+            case OCTET_STRING:
+                return ASN1Tag.OCTET_STRING;
+            case OBJECT_IDENTIFIER:
+                return ASN1Tag.OBJECT_IDENTIFIER;
+            case SEQUENCE:
+            case SEQUENCE_OF:
+                return ASN1Tag.SEQUENCE;
+            default:
+                return null;
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return the tag the component is recognized by, or <code>null</code> for an untagged CHOICE or ANY.
+     */
+    ASN1Tag<?> getMatchTag() {
+        return tag;
+    }
+
+    /**
+     * @return whether the reader is at this component.
+     */
+    boolean matches(ASN1StreamReader reader) {
+        if (tag != null) {
+            return ASN1Fields.isTag(reader, tag.getAsn1TagClass(), tag.getTag());
+        } else if (type == ComponentDefinition.Type.CHOICE) {
+            return TypeBinding.of(mappedType).matches(reader);
+        }
+        return reader.getEvent() != ASN1StreamReader.Event.END_CONSTRUCTED;
+    }
+
+    /**
+     * Read the component the reader is at into the field, leaving the reader at its last event.
+     */
+    void read(Object target, ASN1StreamReader reader) {
+        ComponentBinding value = this;
+        if (explicitlyTagged != null) {
+            reader.next();
+            if (!explicitlyTagged.matches(reader)) {
+                throw ASN1Fields.unexpected(reader, name);
+            }
+            value = explicitlyTagged;
+        }
+        try {
+            switch (javaType) {
+                case INT:
+                    setter.invokeExact(target, ASN1Fields.readInt(reader));
+                    break;
+                case LONG:
+                    setter.invokeExact(target, ASN1Fields.readLong(reader));
+                    break;
+                case BOOLEAN:
+                    setter.invokeExact(target, ASN1Fields.readBoolean(reader));
+                    break;
+                default:
+                    setter.invokeExact(target, value.readValue(reader));
+                    break;
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(String.format("Cannot set %s", name), t);
+        }
+        if (explicitlyTagged != null) {
+            reader.next();
+            ASN1Fields.expectEnd(reader, name);
+        }
+    }
+
+    private Object readValue(ASN1StreamReader reader) {
+        switch (type) {
+            case BOOLEAN:
+                return ASN1Fields.readBoolean(reader);
+            case INTEGER:
+            case ENUMERATED:
+                switch (javaType) {
+                    case LONG_OBJECT:
+                        return ASN1Fields.readLong(reader);
+                    case BIG_INTEGER:
+                        return ASN1Fields.readBigInteger(reader);
+                    case ENUM:
+                        return ASN1Fields.readEnum(reader, enumValues);
+                    default:
+                        return ASN1Fields.readInt(reader);
+                }
+            case OCTET_STRING:
+                return ASN1Fields.readBytes(reader);
+            case OBJECT_IDENTIFIER:
+                return ASN1Fields.readObjectIdentifier(reader);
+            case SEQUENCE:
+            case CHOICE:
+                return TypeBinding.of(mappedType).read(reader);
+            case SEQUENCE_OF:
+                List<Object> list = new ArrayList<>();
+                reader.next();
+                while (reader.getEvent() != ASN1StreamReader.Event.END_CONSTRUCTED) {
+                    if (!element.matches(reader)) {
+                        throw ASN1Fields.unexpected(reader, element.name);
+                    }
+                    list.add(element.readValue(reader));
+                    reader.next();
+                }
+                return list;
+            default:
+                return reader.readObject();
+        }
+    }
+
+    /**
+     * Set the field of an absent component to its DEFAULT value.
+     *
+     * @return <code>false</code> if the component cannot be absent.
+     */
+    boolean setAbsent(Object target) {
+        if (defaultValue != null) {
+            try {
+                switch (javaType) {
+                    case INT:
+                        setter.invokeExact(target, (int) (Integer) defaultValue);
+                        break;
+                    case LONG:
+                        setter.invokeExact(target, (long) (Long) defaultValue);
+                        break;
+                    case BOOLEAN:
+                        setter.invokeExact(target, (boolean) (Boolean) defaultValue);
+                        break;
+                    default:
+                        setter.invokeExact(target, defaultValue);
+                        break;
+                }
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(String.format("Cannot set %s", name), t);
+            }
+            return true;
+        }
+        return optional;
+    }
+
+    /**
+     * @return whether the field of a CHOICE alternative is set.
+     */
+    boolean isSet(Object source) {
+        return get(source) != null;
+    }
+
+    private Object get(Object source) {
+        try {
+            return (Object) getter.invokeExact(source);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(String.format("Cannot get %s", name), t);
+        }
+    }
+
+    /**
+     * Write the component in front of what the writer has written so far, unless it is absent.
+     */
+    void write(Object source, ASN1ReverseWriter writer) throws IOException {
+        ComponentBinding value = explicitlyTagged != null ? explicitlyTagged : this;
+        int end = writer.size();
+        try {
+            switch (javaType) {
+                case INT: {
+                    int v = (int) getter.invokeExact(source);
+                    if (defaultValue != null && v == (Integer) defaultValue) {
+                        return;
+                    }
+                    ASN1Fields.writeLong(writer, value.tag, v);
+                    break;
+                }
+                case LONG: {
+                    long v = (long) getter.invokeExact(source);
+                    if (defaultValue != null && v == (Long) defaultValue) {
+                        return;
+                    }
+                    ASN1Fields.writeLong(writer, value.tag, v);
+                    break;
+                }
+                case BOOLEAN: {
+                    boolean v = (boolean) getter.invokeExact(source);
+                    if (defaultValue != null && v == (Boolean) defaultValue) {
+                        return;
+                    }
+                    ASN1Fields.writeBoolean(writer, value.tag, v);
+                    break;
+                }
+                default: {
+                    Object v = (Object) getter.invokeExact(source);
+                    if (v == null) {
+                        if (optional || defaultValue != null) {
+                            return;
+                        }
+                        ASN1Fields.checkPresent(v, name);
+                    }
+                    if (v.equals(defaultValue)) {
+                        return;
+                    }
+                    value.writeValue(v, writer);
+                    break;
+                }
+            }
+        } catch (RuntimeException | Error | IOException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(String.format("Cannot get %s", name), t);
+        }
+        if (explicitlyTagged != null) {
+            writer.writeHeader(tag, writer.size() - end);
+        }
+    }
+
+    private void writeValue(Object v, ASN1ReverseWriter writer) throws IOException {
+        switch (type) {
+            case BOOLEAN:
+                ASN1Fields.writeBoolean(writer, tag, (Boolean) v);
+                break;
+            case INTEGER:
+            case ENUMERATED:
+                if (javaType == JavaType.BIG_INTEGER) {
+                    ASN1Fields.writeBigInteger(writer, tag, (BigInteger) v);
+                } else if (javaType == JavaType.ENUM) {
+                    ASN1Fields.writeEnum(writer, tag, (Enum<?>) v);
+                } else {
+                    ASN1Fields.writeLong(writer, tag, ((Number) v).longValue());
+                }
+                break;
+            case OCTET_STRING:
+                ASN1Fields.writeBytes(writer, tag, (byte[]) v);
+                break;
+            case OBJECT_IDENTIFIER:
+                ASN1Fields.writeObjectIdentifier(writer, tag, (String) v);
+                break;
+            case SEQUENCE: {
+                int end = writer.size();
+                TypeBinding.of(mappedType).write(v, writer);
+                writer.writeHeader(tag, writer.size() - end);
+                break;
+            }
+            case SEQUENCE_OF: {
+                int end = writer.size();
+                List<?> list = (List<?>) v;
+                ListIterator<?> elements = list.listIterator(list.size());
+                while (elements.hasPrevious()) {
+                    element.writeValue(elements.previous(), writer);
+                }
+                writer.writeHeader(tag, writer.size() - end);
+                break;
+            }
+            case CHOICE:
+                TypeBinding.of(mappedType).write(v, writer);
+                break;
+            default:
+                writer.writeObject((ASN1Object) v);
+                break;
+        }
+    }
+}
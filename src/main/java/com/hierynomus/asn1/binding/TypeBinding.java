@@ -0,0 +1,403 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.binding;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.hierynomus.asn1.ASN1ReverseWriter;
+import com.hierynomus.asn1.ASN1StreamReader;
+import com.hierynomus.asn1.annotations.ASN1;
+import com.hierynomus.asn1.codegen.CodecGenerator;
+import com.hierynomus.asn1.codegen.ComponentDefinition;
+import com.hierynomus.asn1.codegen.ComponentDefinition.JavaType;
+import com.hierynomus.asn1.codegen.TypeDefinition;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+
+/**
+ * How a class annotated with {@link ASN1.ASN1Sequence} or {@link ASN1.ASN1Choice} is mapped, analyzed once per class.
+ */
+final class TypeBinding {
+    // Tag numbers below this are looked up in the CHOICE dispatch table
+    private static final int LOW_TAG_NUMBERS = 0x1f;
+
+    private static final ClassValue<TypeBinding> BINDINGS = new ClassValue<TypeBinding>() {
+        @Override
+        protected TypeBinding computeValue(Class<?> type) {
+            return new TypeBinding(type);
+        }
+    };
+
+    private final String name;
+    private final TypeDefinition.Kind kind;
+    private final MethodHandle constructor;
+    private final ComponentBinding[] components;
+    // The alternatives of a CHOICE by the class and number of their tag
+    private final ComponentBinding[][] alternatives;
+    private final Map<Long, ComponentBinding> highTagAlternatives = new HashMap<>();
+    private final List<ComponentBinding> untaggedChoiceAlternatives = new ArrayList<>();
+
+    /**
+     * @param type The class
+     * @return the binding of the class, which is analyzed when it is first mapped.
+     * @throws IllegalArgumentException If the class cannot be mapped
+     */
+    static TypeBinding of(Class<?> type) {
+        return BINDINGS.get(type);
+    }
+
+    private TypeBinding(Class<?> type) {
+        this.name = type.getSimpleName();
+        if (type.isAnnotationPresent(ASN1.ASN1Sequence.class)) {
+            kind = TypeDefinition.Kind.SEQUENCE;
+        } else if (type.isAnnotationPresent(ASN1.ASN1Choice.class)) {
+            kind = TypeDefinition.Kind.CHOICE;
+        } else {
+            throw new IllegalArgumentException(String.format("Cannot map %s, it is not annotated as SEQUENCE or CHOICE", type.getName()));
+        }
+        if (Modifier.isAbstract(type.getModifiers())) {
+            throw new IllegalArgumentException(String.format("Cannot map the abstract class %s", type.getName()));
+        }
+        try {
+            Constructor<?> noArgs = type.getDeclaredConstructor();
+            noArgs.setAccessible(true);
+            constructor = MethodHandles.lookup().unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(String.format("Cannot map %s, it needs a constructor without parameters", type.getName()), e);
+        }
+
+        TypeDefinition definition = new TypeDefinition(kind, "", name);
+        Map<ComponentDefinition, Field> fields = new HashMap<>();
+        for (Field field : type.getDeclaredFields()) {
+            ComponentDefinition component = define(type, field);
+            if (component != null) {
+                definition.addComponent(component);
+                fields.put(component, field);
+            }
+        }
+        try {
+            // The same rules as for generated codecs, the fields are not returned in the order of their declaration
+            definition.orderComponents(false);
+            new CodecGenerator().check(definition);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Cannot map %s: %s", type.getName(), e.getMessage()), e);
+        }
+        List<ComponentBinding> bindings = new ArrayList<>();
+        for (ComponentDefinition component : definition.getComponents()) {
+            Field field = fields.get(component);
+            bindings.add(new ComponentBinding(name + "." + field.getName(), component, field, accessors(type, field)));
+        }
+        components = bindings.toArray(new ComponentBinding[bindings.size()]);
+
+        alternatives = kind == TypeDefinition.Kind.CHOICE ? new ComponentBinding[4][LOW_TAG_NUMBERS] : null;
+        if (kind == TypeDefinition.Kind.CHOICE) {
+            for (ComponentBinding alternative : components) {
+                ASN1Tag<?> tag = alternative.getMatchTag();
+                if (tag == null) {
+                    untaggedChoiceAlternatives.add(alternative);
+                } else if (tag.getTag() < LOW_TAG_NUMBERS) {
+                    alternatives[tag.getAsn1TagClass().ordinal()][tag.getTag()] = alternative;
+                } else {
+                    highTagAlternatives.put(tagKey(tag), alternative);
+                }
+            }
+        }
+    }
+
+    private static Long tagKey(ASN1Tag<?> tag) {
+        return ((long) tag.getAsn1TagClass().ordinal() << 32) | (tag.getTag() & 0xffffffffL);
+    }
+
+    /**
+     * @return the component the field is mapped onto, or <code>null</code> if the field has no type annotation.
+     */
+    private static ComponentDefinition define(Class<?> type, Field field) {
+        ASN1.ASN1Integer integer = field.getAnnotation(ASN1.ASN1Integer.class);
+        ASN1.ASN1Boolean bool = field.getAnnotation(ASN1.ASN1Boolean.class);
+        ASN1.ASN1Enumerated enumerated = field.getAnnotation(ASN1.ASN1Enumerated.class);
+        ASN1.ASN1OctetString octetString = field.getAnnotation(ASN1.ASN1OctetString.class);
+        ASN1.ASN1ObjectIdentifier objectIdentifier = field.getAnnotation(ASN1.ASN1ObjectIdentifier.class);
+        ASN1.ASN1Sequence sequence = field.getAnnotation(ASN1.ASN1Sequence.class);
+        ASN1.ASN1Choice choice = field.getAnnotation(ASN1.ASN1Choice.class);
+        ASN1.ASN1SequenceOf sequenceOf = field.getAnnotation(ASN1.ASN1SequenceOf.class);
+        ASN1.ASN1Any any = field.getAnnotation(ASN1.ASN1Any.class);
+        int annotations = count(integer, bool, enumerated, octetString, objectIdentifier, sequence, choice, sequenceOf, any);
+        if (annotations == 0) {
+            return null;
+        }
+        String name = type.getName() + "." + field.getName();
+        if (annotations > 1) {
+            throw new IllegalArgumentException(String.format("Cannot map %s, it has more than one ASN.1 type annotation", name));
+        }
+        if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+            throw new IllegalArgumentException(String.format("Cannot map %s, a static or final field cannot be mapped onto a component", name));
+        }
+        Class<?> fieldType = field.getType();
+        ComponentDefinition component;
+        boolean optional;
+        String defaultValue = "";
+        if (integer != null) {
+            component = primitive(field, ComponentDefinition.Type.INTEGER, JavaType.INT, JavaType.INTEGER_OBJECT, JavaType.LONG, JavaType.LONG_OBJECT, JavaType.BIG_INTEGER);
+            optional = integer.optional();
+            defaultValue = integer.defaultValue();
+        } else if (bool != null) {
+            component = primitive(field, ComponentDefinition.Type.BOOLEAN, JavaType.BOOLEAN, JavaType.BOOLEAN_OBJECT);
+            optional = bool.optional();
+            defaultValue = bool.defaultValue();
+        } else if (enumerated != null) {
+            if (fieldType.isEnum()) {
+                component = new ComponentDefinition(field.getName(), ComponentDefinition.Type.ENUMERATED, JavaType.ENUM, fieldType.getCanonicalName());
+            } else {
+                component = primitive(field, ComponentDefinition.Type.ENUMERATED, JavaType.INT, JavaType.INTEGER_OBJECT);
+            }
+            optional = enumerated.optional();
+            defaultValue = enumerated.defaultValue();
+        } else if (octetString != null) {
+            component = primitive(field, ComponentDefinition.Type.OCTET_STRING, JavaType.BYTES);
+            optional = octetString.optional();
+        } else if (objectIdentifier != null) {
+            component = primitive(field, ComponentDefinition.Type.OBJECT_IDENTIFIER, JavaType.STRING);
+            optional = objectIdentifier.optional();
+        } else if (sequence != null) {
+            component = mapped(field, fieldType, ComponentDefinition.Type.SEQUENCE);
+            optional = sequence.optional();
+        } else if (choice != null) {
+            component = mapped(field, fieldType, ComponentDefinition.Type.CHOICE);
+            optional = choice.optional();
+        } else if (sequenceOf != null) {
+            component = sequenceOf(field);
+            optional = sequenceOf.optional();
+        } else {
+            if (!ASN1Object.class.isAssignableFrom(fieldType)) {
+                throw new IllegalArgumentException(String.format("Cannot map %s, an ANY component should be mapped onto an ASN1Object", name));
+            }
+            component = new ComponentDefinition(field.getName(), ComponentDefinition.Type.ANY, JavaType.ASN1_OBJECT, fieldType.getCanonicalName());
+            optional = any.optional();
+        }
+        if (optional) {
+            component.optional();
+        }
+        if (!defaultValue.isEmpty()) {
+            component.defaultValue(defaultValue);
+        }
+        ASN1.Tagged tagged = field.getAnnotation(ASN1.Tagged.class);
+        if (tagged != null) {
+            component.tagged(tagged.tagClass(), tagged.value(), tagged.explicit());
+        }
+        ASN1.Order order = field.getAnnotation(ASN1.Order.class);
+        if (order != null) {
+            component.order(order.value());
+        }
+        return component;
+    }
+
+    private static int count(Object... annotations) {
+        int count = 0;
+        for (Object annotation : annotations) {
+            if (annotation != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static ComponentDefinition primitive(Field field, ComponentDefinition.Type type, JavaType... allowed) {
+        for (JavaType javaType : allowed) {
+            if (javaType.getName().equals(field.getType().getCanonicalName())) {
+                return new ComponentDefinition(field.getName(), type, javaType, null);
+            }
+        }
+        throw new IllegalArgumentException(String.format("Cannot map %s.%s, an %s cannot be mapped onto a field of type %s", field.getDeclaringClass().getName(), field.getName(), type, field.getType().getName()));
+    }
+
+    private static ComponentDefinition mapped(Field field, Class<?> type, ComponentDefinition.Type asn1Type) {
+        boolean annotated = asn1Type == ComponentDefinition.Type.SEQUENCE ? type.isAnnotationPresent(ASN1.ASN1Sequence.class) : type.isAnnotationPresent(ASN1.ASN1Choice.class);
+        if (!annotated) {
+            throw new IllegalArgumentException(String.format("Cannot map %s.%s, a %s component should be mapped onto a class annotated as %s, not onto %s", field.getDeclaringClass().getName(), field.getName(), asn1Type, asn1Type, type.getName()));
+        }
+        return new ComponentDefinition(field.getName(), asn1Type, JavaType.CLASS, type.getName());
+    }
+
+    private static ComponentDefinition sequenceOf(Field field) {
+        Type genericType = field.getGenericType();
+        if (field.getType() != List.class || !(genericType instanceof ParameterizedType) || !(((ParameterizedType) genericType).getActualTypeArguments()[0] instanceof Class)) {
+            throw new IllegalArgumentException(String.format("Cannot map %s.%s, a SEQUENCE OF should be mapped onto a java.util.List, not onto %s", field.getDeclaringClass().getName(), field.getName(), genericType));
+        }
+        Class<?> elementType = (Class<?>) ((ParameterizedType) genericType).getActualTypeArguments()[0];
+        ComponentDefinition element;
+        if (ASN1Object.class.isAssignableFrom(elementType)) {
+            element = new ComponentDefinition(field.getName(), ComponentDefinition.Type.ANY, JavaType.ASN1_OBJECT, elementType.getName());
+        } else if (elementType.isAnnotationPresent(ASN1.ASN1Choice.class)) {
+            element = mapped(field, elementType, ComponentDefinition.Type.CHOICE);
+        } else {
+            element = mapped(field, elementType, ComponentDefinition.Type.SEQUENCE);
+        }
+        return new ComponentDefinition(field.getName(), ComponentDefinition.Type.SEQUENCE_OF, JavaType.LIST, null).element(element);
+    }
+
+    /**
+     * The getter and setter of the field, through the methods of a private field if it has them, otherwise through the
+     * field itself.
+     */
+    private static MethodHandle[] accessors(Class<?> type, Field field) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            if (Modifier.isPrivate(field.getModifiers())) {
+                String capitalized = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+                Method getter = method(type, (field.getType() == boolean.class ? "is" : "get") + capitalized);
+                Method setter = method(type, "set" + capitalized, field.getType());
+                if (getter != null && setter != null) {
+                    return new MethodHandle[]{lookup.unreflect(getter), lookup.unreflect(setter)};
+                }
+            }
+            field.setAccessible(true);
+            return new MethodHandle[]{lookup.unreflectGetter(field), lookup.unreflectSetter(field)};
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException(String.format("Cannot access %s.%s", type.getName(), field.getName()), e);
+        }
+    }
+
+    private static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    static Object newDefault(ComponentDefinition component, Class<?> fieldType) {
+        String value = component.getDefaultValue();
+        switch (component.getJavaType()) {
+            case BOOLEAN:
+            case BOOLEAN_OBJECT:
+                return Boolean.valueOf(value);
+            case INT:
+            case INTEGER_OBJECT:
+                return Integer.valueOf(value);
+            case LONG:
+            case LONG_OBJECT:
+                return Long.valueOf(value);
+            case BIG_INTEGER:
+                return new BigInteger(value);
+            case ENUM:
+                //noinspection unchecked
+                return Enum.valueOf((Class<Enum>) fieldType, value);
+            default:
+                throw new IllegalArgumentException(String.format("The component %s cannot have a DEFAULT value", component.getName()));
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isChoice() {
+        return kind == TypeDefinition.Kind.CHOICE;
+    }
+
+    private Object newInstance() {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(String.format("Cannot create a new %s", name), t);
+        }
+    }
+
+    /**
+     * Read a SEQUENCE the reader just entered, up to its end, or the CHOICE alternative the reader is at.
+     */
+    Object read(ASN1StreamReader reader) {
+        Object value = newInstance();
+        if (kind == TypeDefinition.Kind.CHOICE) {
+            ComponentBinding alternative = alternative(reader);
+            if (alternative == null) {
+                throw ASN1Fields.unexpected(reader, name);
+            }
+            alternative.read(value, reader);
+            return value;
+        }
+        reader.next();
+        for (ComponentBinding component : components) {
+            if (component.matches(reader)) {
+                component.read(value, reader);
+                reader.next();
+            } else if (!component.setAbsent(value)) {
+                throw ASN1Fields.unexpected(reader, component.getName());
+            }
+        }
+        ASN1Fields.expectEnd(reader, name);
+        return value;
+    }
+
+    /**
+     * @return whether the reader is at one of the alternatives of a CHOICE.
+     */
+    boolean matches(ASN1StreamReader reader) {
+        return alternative(reader) != null;
+    }
+
+    private ComponentBinding alternative(ASN1StreamReader reader) {
+        if (reader.getEvent() == ASN1StreamReader.Event.END_CONSTRUCTED) {
+            return null;
+        }
+        ASN1Tag<?> tag = reader.getTag();
+        ComponentBinding alternative = tag.getTag() < LOW_TAG_NUMBERS ? alternatives[tag.getAsn1TagClass().ordinal()][tag.getTag()] : highTagAlternatives.get(tagKey(tag));
+        if (alternative != null) {
+            return alternative;
+        }
+        for (ComponentBinding choice : untaggedChoiceAlternatives) {
+            if (choice.matches(reader)) {
+                return choice;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write the contents of a SEQUENCE, without its tag and length, or the chosen alternative of a CHOICE.
+     */
+    void write(Object value, ASN1ReverseWriter writer) throws IOException {
+        if (kind == TypeDefinition.Kind.CHOICE) {
+            for (ComponentBinding alternative : components) {
+                if (alternative.isSet(value)) {
+                    alternative.write(value, writer);
+                    return;
+                }
+            }
+            throw new IllegalArgumentException(String.format("None of the alternatives of CHOICE %s is set", name));
+        }
+        for (int i = components.length - 1; i >= 0; i--) {
+            components[i].write(value, writer);
+        }
+    }
+}
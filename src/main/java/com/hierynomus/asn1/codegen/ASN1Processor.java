@@ -0,0 +1,349 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import com.hierynomus.asn1.annotations.ASN1;
+import com.hierynomus.asn1.codegen.ComponentDefinition.JavaType;
+import com.hierynomus.asn1.codegen.ComponentDefinition.Type;
+import com.hierynomus.asn1.types.ASN1Object;
+
+/**
+ * Generates a codec for every class annotated with {@link ASN1.ASN1Sequence} or {@link ASN1.ASN1Choice}, see
+ * {@link CodecGenerator}. The codec is placed in the package of the class and named after it with the suffix
+ * <code>Codec</code>.
+ *
+ * The components are the fields annotated with one of the type annotations of {@link ASN1}, in the order in which they
+ * are declared. The codec accesses a field directly if it is not private, otherwise it uses its getter and setter. The
+ * class needs a constructor without parameters that is not private.
+ */
+@SupportedAnnotationTypes({"com.hierynomus.asn1.annotations.ASN1.ASN1Sequence", "com.hierynomus.asn1.annotations.ASN1.ASN1Choice"})
+public class ASN1Processor extends AbstractProcessor {
+    private final CodecGenerator generator = new CodecGenerator();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(ASN1.ASN1Sequence.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                generate((TypeElement) element, TypeDefinition.Kind.SEQUENCE);
+            }
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(ASN1.ASN1Choice.class)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                generate((TypeElement) element, TypeDefinition.Kind.CHOICE);
+            }
+        }
+        // Other processors may handle the annotations as well
+        return false;
+    }
+
+    private void generate(TypeElement element, TypeDefinition.Kind kind) {
+        try {
+            TypeDefinition type = define(element, kind);
+            String source = generator.generate(type);
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(type.getQualifiedCodecName(), element);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source);
+            }
+        } catch (MappingException e) {
+            error(e.getMessage(), e.element);
+        } catch (IllegalArgumentException e) {
+            error(e.getMessage(), element);
+        } catch (IOException e) {
+            error("Unable to write the codec: " + e.getMessage(), element);
+        }
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private TypeDefinition define(TypeElement element, TypeDefinition.Kind kind) {
+        if (element.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new MappingException(element, "An ASN.1 %s cannot be mapped onto an abstract class", kind);
+        }
+        if (element.getNestingKind() != NestingKind.TOP_LEVEL && !element.getModifiers().contains(Modifier.STATIC)) {
+            throw new MappingException(element, "An ASN.1 %s can only be mapped onto a top level or static nested class", kind);
+        }
+        if (!hasConstructor(element)) {
+            throw new MappingException(element, "An ASN.1 %s needs a constructor without parameters that is not private", kind);
+        }
+        TypeDefinition type = new TypeDefinition(kind, packageOf(element), typeNameOf(element));
+        for (VariableElement field : ElementFilter.fieldsIn(element.getEnclosedElements())) {
+            ComponentDefinition component = define(element, field);
+            if (component != null) {
+                type.addComponent(component);
+            }
+        }
+        type.orderComponents(true);
+        return type;
+    }
+
+    private static boolean hasConstructor(TypeElement element) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String packageOf(TypeElement element) {
+        return processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+    }
+
+    private String typeNameOf(TypeElement element) {
+        String packageName = packageOf(element);
+        String qualifiedName = element.getQualifiedName().toString();
+        return packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+    }
+
+    /**
+     * @return the component the field is mapped onto, or <code>null</code> if the field has no type annotation.
+     */
+    private ComponentDefinition define(TypeElement type, VariableElement field) {
+        ASN1.ASN1Integer integer = field.getAnnotation(ASN1.ASN1Integer.class);
+        ASN1.ASN1Boolean bool = field.getAnnotation(ASN1.ASN1Boolean.class);
+        ASN1.ASN1Enumerated enumerated = field.getAnnotation(ASN1.ASN1Enumerated.class);
+        ASN1.ASN1OctetString octetString = field.getAnnotation(ASN1.ASN1OctetString.class);
+        ASN1.ASN1ObjectIdentifier objectIdentifier = field.getAnnotation(ASN1.ASN1ObjectIdentifier.class);
+        ASN1.ASN1Sequence sequence = field.getAnnotation(ASN1.ASN1Sequence.class);
+        ASN1.ASN1Choice choice = field.getAnnotation(ASN1.ASN1Choice.class);
+        ASN1.ASN1SequenceOf sequenceOf = field.getAnnotation(ASN1.ASN1SequenceOf.class);
+        ASN1.ASN1Any any = field.getAnnotation(ASN1.ASN1Any.class);
+        int annotations = count(integer, bool, enumerated, octetString, objectIdentifier, sequence, choice, sequenceOf, any);
+        if (annotations == 0) {
+            if (field.getAnnotation(ASN1.Tagged.class) != null) {
+                throw new MappingException(field, "A tagged field should have an ASN.1 type annotation as well");
+            }
+            return null;
+        }
+        if (annotations > 1) {
+            throw new MappingException(field, "A field can only have one ASN.1 type annotation");
+        }
+        if (field.getModifiers().contains(Modifier.STATIC)) {
+            throw new MappingException(field, "A static field cannot be mapped onto a component");
+        }
+        String name = field.getSimpleName().toString();
+        TypeMirror fieldType = field.asType();
+        ComponentDefinition component;
+        boolean optional;
+        String defaultValue = "";
+        if (integer != null) {
+            component = primitive(field, Type.INTEGER, JavaType.INT, JavaType.INTEGER_OBJECT, JavaType.LONG, JavaType.LONG_OBJECT, JavaType.BIG_INTEGER);
+            optional = integer.optional();
+            defaultValue = integer.defaultValue();
+        } else if (bool != null) {
+            component = primitive(field, Type.BOOLEAN, JavaType.BOOLEAN, JavaType.BOOLEAN_OBJECT);
+            optional = bool.optional();
+            defaultValue = bool.defaultValue();
+        } else if (enumerated != null) {
+            if (isEnum(fieldType)) {
+                component = new ComponentDefinition(name, Type.ENUMERATED, JavaType.ENUM, qualifiedName(fieldType));
+            } else {
+                component = primitive(field, Type.ENUMERATED, JavaType.INT, JavaType.INTEGER_OBJECT);
+            }
+            optional = enumerated.optional();
+            defaultValue = enumerated.defaultValue();
+        } else if (octetString != null) {
+            component = primitive(field, Type.OCTET_STRING, JavaType.BYTES);
+            optional = octetString.optional();
+        } else if (objectIdentifier != null) {
+            component = primitive(field, Type.OBJECT_IDENTIFIER, JavaType.STRING);
+            optional = objectIdentifier.optional();
+        } else if (sequence != null) {
+            component = mapped(field, fieldType, Type.SEQUENCE);
+            optional = sequence.optional();
+        } else if (choice != null) {
+            component = mapped(field, fieldType, Type.CHOICE);
+            optional = choice.optional();
+        } else if (sequenceOf != null) {
+            component = sequenceOf(field, fieldType);
+            optional = sequenceOf.optional();
+        } else {
+            if (!isASN1Object(fieldType)) {
+                throw new MappingException(field, "An ANY component should be mapped onto an ASN1Object");
+            }
+            component = new ComponentDefinition(name, Type.ANY, JavaType.ASN1_OBJECT, qualifiedName(fieldType));
+            optional = any.optional();
+        }
+        if (optional) {
+            component.optional();
+        }
+        if (!defaultValue.isEmpty()) {
+            component.defaultValue(defaultValue);
+        }
+        ASN1.Tagged tagged = field.getAnnotation(ASN1.Tagged.class);
+        if (tagged != null) {
+            component.tagged(tagged.tagClass(), tagged.value(), tagged.explicit());
+        }
+        ASN1.Order order = field.getAnnotation(ASN1.Order.class);
+        if (order != null) {
+            component.order(order.value());
+        }
+        accessors(type, field, component);
+        return component;
+    }
+
+    private static int count(Object... annotations) {
+        int count = 0;
+        for (Object annotation : annotations) {
+            if (annotation != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private ComponentDefinition primitive(VariableElement field, Type type, JavaType... allowed) {
+        TypeMirror fieldType = field.asType();
+        for (JavaType javaType : allowed) {
+            if (javaType.getName().equals(javaTypeName(fieldType))) {
+                return new ComponentDefinition(field.getSimpleName().toString(), type, javaType, null);
+            }
+        }
+        throw new MappingException(field, "An %s cannot be mapped onto a field of type %s", type, fieldType);
+    }
+
+    private ComponentDefinition mapped(Element field, TypeMirror fieldType, Type type) {
+        TypeElement element = fieldType.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) fieldType).asElement() : null;
+        boolean annotated = element != null && (type == Type.SEQUENCE ? element.getAnnotation(ASN1.ASN1Sequence.class) : element.getAnnotation(ASN1.ASN1Choice.class)) != null;
+        if (!annotated) {
+            throw new MappingException(field, "A %s component should be mapped onto a class annotated as %s, not onto %s", type, type, fieldType);
+        }
+        String codec = packageOf(element);
+        codec = (codec.isEmpty() ? "" : codec + ".") + TypeDefinition.codecName(typeNameOf(element));
+        return new ComponentDefinition(field.getSimpleName().toString(), type, JavaType.CLASS, element.getQualifiedName().toString()).codec(codec);
+    }
+
+    private ComponentDefinition sequenceOf(VariableElement field, TypeMirror fieldType) {
+        if (fieldType.getKind() != TypeKind.DECLARED || !"java.util.List".equals(qualifiedName(fieldType)) || ((DeclaredType) fieldType).getTypeArguments().size() != 1) {
+            throw new MappingException(field, "A SEQUENCE OF should be mapped onto a java.util.List, not onto %s", fieldType);
+        }
+        TypeMirror elementType = ((DeclaredType) fieldType).getTypeArguments().get(0);
+        String name = field.getSimpleName().toString();
+        ComponentDefinition element;
+        if (isASN1Object(elementType)) {
+            element = new ComponentDefinition(name, Type.ANY, JavaType.ASN1_OBJECT, qualifiedName(elementType));
+        } else if (elementType.getKind() == TypeKind.DECLARED && ((DeclaredType) elementType).asElement().getAnnotation(ASN1.ASN1Choice.class) != null) {
+            element = mapped(field, elementType, Type.CHOICE);
+        } else {
+            element = mapped(field, elementType, Type.SEQUENCE);
+        }
+        return new ComponentDefinition(name, Type.SEQUENCE_OF, JavaType.LIST, null).element(element);
+    }
+
+    private static String javaTypeName(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "boolean";
+            case INT:
+                return "int";
+            case LONG:
+                return "long";
+            case ARRAY:
+                return ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE ? "byte[]" : null;
+            case DECLARED:
+                return qualifiedName(type);
+            default:
+                return null;
+        }
+    }
+
+    private static String qualifiedName(TypeMirror type) {
+        return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+    }
+
+    private static boolean isEnum(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
+    }
+
+    private boolean isASN1Object(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        TypeElement asn1Object = processingEnv.getElementUtils().getTypeElement(ASN1Object.class.getName());
+        return processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type), processingEnv.getTypeUtils().erasure(asn1Object.asType()));
+    }
+
+    /**
+     * Use the getter and setter of a private field.
+     */
+    private void accessors(TypeElement type, VariableElement field, ComponentDefinition component) {
+        if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+            if (field.getModifiers().contains(Modifier.FINAL)) {
+                throw new MappingException(field, "A final field cannot be mapped onto a component");
+            }
+            return;
+        }
+        String name = field.getSimpleName().toString();
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        String getter = null;
+        String setter = null;
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String methodName = method.getSimpleName().toString();
+            if (method.getParameters().isEmpty() && (methodName.equals("get" + capitalized) || methodName.equals("is" + capitalized))) {
+                getter = methodName;
+            } else if (method.getParameters().size() == 1 && methodName.equals("set" + capitalized)) {
+                setter = methodName;
+            }
+        }
+        if (getter == null || setter == null) {
+            throw new MappingException(field, "The private field %s should have a getter and a setter that are not private", name);
+        }
+        component.accessors(getter, setter);
+    }
+
+    /**
+     * Thrown when an element cannot be mapped, reported as an error on the element.
+     */
+    private static class MappingException extends RuntimeException {
+        private final Element element;
+
+        MappingException(Element element, String messageFormat, Object... args) {
+            super(String.format(messageFormat, args));
+            this.element = element;
+        }
+    }
+}
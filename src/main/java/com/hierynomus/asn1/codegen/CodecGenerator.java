@@ -0,0 +1,706 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.codegen;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import com.hierynomus.asn1.codegen.ComponentDefinition.JavaType;
+import com.hierynomus.asn1.codegen.ComponentDefinition.Type;
+
+/**
+ * Generates the Java source of the codec of a {@link TypeDefinition}.
+ *
+ * The generated codec decodes from an {@link com.hierynomus.asn1.ASN1StreamReader} and encodes to an
+ * {@link com.hierynomus.asn1.ASN1ReverseWriter}. The components are read and written one after the other in
+ * straight-line code, no {@link com.hierynomus.asn1.types.ASN1Object}s are created for them, except for ANY components.
+ * Its public methods are:
+ * <ul>
+ * <li><code>decode(ASN1Decoder, byte[])</code>, <code>decode(ASN1Decoder, ByteBuffer)</code> and
+ * <code>decode(ASN1StreamReader)</code>, which decode the next object.</li>
+ * <li><code>encode(T)</code>, encoding in DER, and <code>encode(T, ASN1ReverseWriter)</code>.</li>
+ * <li><code>read(ASN1StreamReader)</code> and <code>write(T, ASN1ReverseWriter)</code>, used by the codecs of the types
+ * the type is a component of. For a SEQUENCE they read and write its contents, for a CHOICE the chosen alternative.</li>
+ * <li>For a CHOICE, <code>matches(ASN1StreamReader)</code>, which tells whether the reader is at one of the
+ * alternatives.</li>
+ * </ul>
+ */
+public class CodecGenerator {
+
+    /**
+     * Check that the codec of the type can be generated.
+     *
+     * @param type The type
+     * @throws IllegalArgumentException If the type cannot be mapped
+     */
+    public void check(TypeDefinition type) {
+        if (type.isTagged() && !type.isExplicit() && type.getKind() == TypeDefinition.Kind.CHOICE) {
+            throw new IllegalArgumentException(String.format("The %s can only be tagged explicitly", type));
+        }
+        if (type.isExtensible() && type.getKind() == TypeDefinition.Kind.CHOICE) {
+            throw new IllegalArgumentException(String.format("The %s cannot be extensible", type));
+        }
+        Set<String> tags = new HashSet<>();
+        List<ComponentDefinition> components = type.getComponents();
+        for (int i = 0; i < components.size(); i++) {
+            ComponentDefinition component = components.get(i);
+            checkComponent(type, component);
+            if (type.getKind() == TypeDefinition.Kind.CHOICE) {
+                if (component.getJavaType().isPrimitive() || component.isOptional() || component.getDefaultValue() != null) {
+                    throw new IllegalArgumentException(String.format("The alternative %s of %s should be a reference type that is not OPTIONAL and has no DEFAULT value", component.getName(), type));
+                }
+                if (component.getType() == Type.ANY && !component.isTagged()) {
+                    throw new IllegalArgumentException(String.format("The ANY alternative %s of %s should be tagged", component.getName(), type));
+                }
+                String tag = tagOf(component);
+                if (tag != null && !tags.add(tag)) {
+                    throw new IllegalArgumentException(String.format("The alternative %s of %s has the same tag as another alternative", component.getName(), type));
+                }
+            } else if (component.isOptional() || component.getDefaultValue() != null) {
+                // An absent component is recognized by the tag of the next one
+                String tag = tagOf(component);
+                for (int j = i + 1; tag != null && j < components.size(); j++) {
+                    ComponentDefinition next = components.get(j);
+                    if (tag.equals(tagOf(next))) {
+                        throw new IllegalArgumentException(String.format("The components %s and %s of %s cannot be told apart, as they have the same tag", component.getName(), next.getName(), type));
+                    }
+                    if (!next.isOptional() && next.getDefaultValue() == null) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void checkComponent(TypeDefinition type, ComponentDefinition component) {
+        if (component.isTagged() && !component.isExplicit() && (component.getType() == Type.CHOICE || component.getType() == Type.ANY)) {
+            throw new IllegalArgumentException(String.format("The %s component %s of %s can only be tagged explicitly", component.getType(), component.getName(), type));
+        }
+        if (component.isOptional() && component.getJavaType().isPrimitive()) {
+            throw new IllegalArgumentException(String.format("The OPTIONAL component %s of %s should have a reference type", component.getName(), type));
+        }
+        if (component.getDefaultValue() != null) {
+            defaultLiteral(component);
+        }
+        if (component.getType().isList()) {
+            ComponentDefinition element = component.getElement();
+            if (element.getType().isList() || element.isTagged() || element.getJavaType().isPrimitive()) {
+                throw new IllegalArgumentException(String.format("The elements of %s of %s should have a reference type, and cannot be tagged or a SEQUENCE OF or SET OF", component.getName(), type));
+            }
+        }
+        if (component.isConstrained()) {
+            JavaType javaType = component.getJavaType();
+            boolean number = component.getType() == Type.INTEGER && javaType != JavaType.ENUM;
+            if (!number && component.getType() != Type.OCTET_STRING && !component.getType().isList()) {
+                throw new IllegalArgumentException(String.format("Only an INTEGER, OCTET STRING, SEQUENCE OF or SET OF can be constrained, not %s of %s", component.getName(), type));
+            }
+        }
+        if (component.isValued() && component.getJavaType() != JavaType.ENUM) {
+            throw new IllegalArgumentException(String.format("Only an enum can be mapped by value, not %s of %s", component.getName(), type));
+        }
+    }
+
+    /**
+     * @return the tag of the component as a string, or <code>null</code> if it is an untagged CHOICE or ANY.
+     */
+    private static String tagOf(ComponentDefinition component) {
+        if (component.isTagged()) {
+            return component.getTagClass() + " " + component.getTag();
+        }
+        if (component.getType().getTagConstant() == null) {
+            return null;
+        }
+        return "UNIVERSAL " + component.getType().getUniversalTag();
+    }
+
+    /**
+     * Generate the source of the codec of the type.
+     *
+     * @param type The type, which has been checked
+     * @return the source of the codec.
+     */
+    public String generate(TypeDefinition type) {
+        check(type);
+        SourceBuilder source = new SourceBuilder();
+        if (!type.getPackageName().isEmpty()) {
+            source.line("package %s;", type.getPackageName()).line();
+        }
+        source.line("import java.io.IOException;");
+        source.line("import java.nio.ByteBuffer;");
+        source.line("import com.hierynomus.asn1.ASN1ParseException;");
+        source.line("import com.hierynomus.asn1.ASN1ReverseWriter;");
+        source.line("import com.hierynomus.asn1.ASN1StreamReader;");
+        source.line("import com.hierynomus.asn1.binding.ASN1Fields;");
+        source.line("import com.hierynomus.asn1.encodingrules.ASN1Decoder;");
+        source.line("import com.hierynomus.asn1.encodingrules.der.DEREncoder;");
+        source.line("import com.hierynomus.asn1.types.ASN1Tag;");
+        source.line("import com.hierynomus.asn1.types.ASN1TagClass;");
+        source.line();
+        source.line("/**");
+        source.line(" * Decodes and encodes {@link %s} as ASN.1 %s, generated by {@link %s}.", type.getQualifiedTypeName(), type.getKind(), CodecGenerator.class.getName());
+        source.line(" */");
+        source.open("public final class %s {", type.getCodecName());
+        String t = type.getQualifiedTypeName();
+        generateConstants(source, type);
+        source.open("private %s() {", type.getCodecName()).line("// Do not instantiate").close().line();
+
+        source.open("public static %s decode(ASN1Decoder decoder, byte[] encoded) {", t);
+        source.line("return decode(new ASN1StreamReader(decoder, ByteBuffer.wrap(encoded)));").close().line();
+        source.open("public static %s decode(ASN1Decoder decoder, ByteBuffer encoded) {", t);
+        source.line("return decode(new ASN1StreamReader(decoder, encoded));").close().line();
+        source.line("/**");
+        source.line(" * Decode the next object the reader reads.");
+        source.line(" */");
+        source.open("public static %s decode(ASN1StreamReader reader) {", t);
+        source.line("reader.next();");
+        if (type.isTagged()) {
+            source.open("if (!ASN1Fields.isTag(reader, ASN1TagClass.%s, %s)) {", type.getTagClass(), type.getTag());
+            source.line("throw ASN1Fields.unexpected(reader, \"%s\");", type.getTypeName()).close();
+        }
+        if (type.isTagged() && type.isExplicit()) {
+            source.line("reader.next();");
+        }
+        if (type.getKind() == TypeDefinition.Kind.SEQUENCE && (!type.isTagged() || type.isExplicit())) {
+            source.open("if (!ASN1Fields.isTag(reader, ASN1TagClass.UNIVERSAL, 0x10)) {");
+            source.line("throw ASN1Fields.unexpected(reader, \"%s\");", type.getTypeName()).close();
+        } else if (type.getKind() == TypeDefinition.Kind.CHOICE && type.isTagged()) {
+            source.open("if (!matches(reader)) {");
+            source.line("throw ASN1Fields.unexpected(reader, \"%s\");", type.getTypeName()).close();
+        }
+        if (type.isTagged() && type.isExplicit()) {
+            source.line("%s value = read(reader);", t);
+            source.line("reader.next();");
+            source.line("ASN1Fields.expectEnd(reader, \"%s\");", type.getTypeName());
+            source.line("return value;").close().line();
+        } else {
+            source.line("return read(reader);").close().line();
+        }
+
+        source.line("/**");
+        source.line(" * Encode in DER.");
+        source.line(" */");
+        source.open("public static byte[] encode(%s value) throws IOException {", t);
+        source.line("ASN1ReverseWriter writer = new ASN1ReverseWriter(new DEREncoder(), 256);");
+        source.line("encode(value, writer);");
+        source.line("return writer.toByteArray();").close().line();
+        source.open("public static void encode(%s value, ASN1ReverseWriter writer) throws IOException {", t);
+        source.line("int end = writer.size();");
+        source.line("write(value, writer);");
+        if (type.getKind() == TypeDefinition.Kind.SEQUENCE) {
+            source.line("writer.writeHeader(%s, writer.size() - end);", type.isTagged() && !type.isExplicit() ? "TAG" : "ASN1Tag.SEQUENCE");
+        }
+        if (type.isTagged() && type.isExplicit()) {
+            source.line("writer.writeHeader(TAG, writer.size() - end);");
+        }
+        source.close().line();
+
+        if (type.getKind() == TypeDefinition.Kind.SEQUENCE) {
+            generateSequence(source, type);
+        } else {
+            generateChoice(source, type);
+        }
+        source.close();
+        return source.toString();
+    }
+
+    private void generateConstants(SourceBuilder source, TypeDefinition type) {
+        if (type.isTagged()) {
+            source.line("private static final ASN1Tag<?> TAG = ASN1Tag.forTag(ASN1TagClass.%s, %s).constructed();", type.getTagClass(), type.getTag());
+        }
+        for (ComponentDefinition component : type.getComponents()) {
+            if (component.isTagged()) {
+                String tag = String.format("ASN1Tag.forTag(ASN1TagClass.%s, %s)", component.getTagClass(), component.getTag());
+                if (component.isExplicit() || component.getType().isConstructed()) {
+                    tag += ".constructed()";
+                }
+                source.line("private static final ASN1Tag<?> %s = %s;", constant(component, "TAG"), tag);
+            }
+            ComponentDefinition enumerated = component.getType().isList() ? component.getElement() : component;
+            if (enumerated.getJavaType() == JavaType.ENUM && !enumerated.isValued()) {
+                String enumType = enumerated.getJavaTypeName();
+                source.line("private static final %s[] %s = %s.values();", enumType, constant(enumerated, "VALUES"), enumType);
+            }
+            String boundType = component.getJavaType() == JavaType.BIG_INTEGER ? "java.math.BigInteger" : "long";
+            if (checksMinimum(component)) {
+                source.line("private static final %s %s = %s;", boundType, constant(component, "MIN"), bound(component, component.getMinimum()));
+            }
+            if (checksMaximum(component)) {
+                source.line("private static final %s %s = %s;", boundType, constant(component, "MAX"), bound(component, component.getMaximum()));
+            }
+            if (component.getDefaultValue() != null) {
+                source.line("private static final %s %s = %s;", component.getJavaTypeName(), constant(component, "DEFAULT"), defaultLiteral(component));
+            }
+        }
+        source.line();
+    }
+
+    private static String constant(ComponentDefinition component, String suffix) {
+        StringBuilder name = new StringBuilder();
+        for (char c : component.getName().toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                name.append('_');
+            }
+            name.append(Character.toUpperCase(c));
+        }
+        return name.append('_').append(suffix).toString();
+    }
+
+    /**
+     * @return whether the lower bound of the constraint of the component is not already met by its Java type.
+     */
+    private static boolean checksMinimum(ComponentDefinition component) {
+        Long minimum = component.getMinimum();
+        if (minimum == null) {
+            return false;
+        }
+        switch (component.getJavaType()) {
+            case INT:
+            case INTEGER_OBJECT:
+                return minimum > Integer.MIN_VALUE;
+            case LONG:
+            case LONG_OBJECT:
+                return minimum > Long.MIN_VALUE;
+            case BIG_INTEGER:
+                return true;
+            default:
+                // A size
+                return minimum > 0;
+        }
+    }
+
+    private static boolean checksMaximum(ComponentDefinition component) {
+        Long maximum = component.getMaximum();
+        if (maximum == null) {
+            return false;
+        }
+        switch (component.getJavaType()) {
+            case INT:
+            case INTEGER_OBJECT:
+                return maximum < Integer.MAX_VALUE;
+            case LONG:
+            case LONG_OBJECT:
+                return maximum < Long.MAX_VALUE;
+            case BIG_INTEGER:
+                return true;
+            default:
+                return maximum < Integer.MAX_VALUE;
+        }
+    }
+
+    private static String bound(ComponentDefinition component, long bound) {
+        if (component.getJavaType() == JavaType.BIG_INTEGER) {
+            return "java.math.BigInteger.valueOf(" + bound + "L)";
+        }
+        return bound + "L";
+    }
+
+    /**
+     * Generate the statements checking the constraint of the component, of which the value is known to be set.
+     *
+     * @param decoding Whether the value was decoded, or is about to be encoded
+     */
+    private void generateConstraint(SourceBuilder source, ComponentDefinition component, String v, String name, boolean decoding) {
+        if (!checksMinimum(component) && !checksMaximum(component)) {
+            return;
+        }
+        String value = v;
+        if (component.getType() == Type.OCTET_STRING) {
+            value = v + ".length";
+        } else if (component.getType().isList()) {
+            value = v + ".size()";
+        }
+        StringBuilder condition = new StringBuilder();
+        if (checksMinimum(component)) {
+            condition.append(compare(component, value, "<", constant(component, "MIN")));
+        }
+        if (checksMaximum(component)) {
+            if (condition.length() > 0) {
+                condition.append(" || ");
+            }
+            condition.append(compare(component, value, ">", constant(component, "MAX")));
+        }
+        String range = (component.getMinimum() != null ? component.getMinimum().toString() : "MIN") + ".."
+            + (component.getMaximum() != null ? component.getMaximum().toString() : "MAX");
+        String what = component.getType() == Type.INTEGER ? "value" : "size";
+        source.open("if (%s) {", condition);
+        if (decoding) {
+            source.line("throw new ASN1ParseException(\"The %s of %s is not within %s\");", what, name, range).close();
+        } else {
+            source.line("throw new IllegalArgumentException(\"The %s of %s is not within %s\");", what, name, range).close();
+        }
+    }
+
+    private static String compare(ComponentDefinition component, String value, String operator, String bound) {
+        if (component.getJavaType() == JavaType.BIG_INTEGER) {
+            return value + ".compareTo(" + bound + ") " + operator + " 0";
+        }
+        return value + " " + operator + " " + bound;
+    }
+
+    private static String defaultLiteral(ComponentDefinition component) {
+        String value = component.getDefaultValue();
+        try {
+            switch (component.getJavaType()) {
+                case BOOLEAN:
+                case BOOLEAN_OBJECT:
+                    if (!value.equals("true") && !value.equals("false")) {
+                        throw new IllegalArgumentException(String.format("The DEFAULT value of %s should be true or false, not %s", component.getName(), value));
+                    }
+                    return value;
+                case INT:
+                case INTEGER_OBJECT:
+                    return String.valueOf(Integer.parseInt(value));
+                case LONG:
+                case LONG_OBJECT:
+                    return Long.parseLong(value) + "L";
+                case BIG_INTEGER:
+                    return "new java.math.BigInteger(\"" + new BigInteger(value) + "\")";
+                case ENUM:
+                    return component.getJavaTypeName() + "." + value;
+                default:
+                    throw new IllegalArgumentException(String.format("The component %s cannot have a DEFAULT value", component.getName()));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("The DEFAULT value of %s should be a number, not %s", component.getName(), value));
+        }
+    }
+
+    private void generateSequence(SourceBuilder source, TypeDefinition type) {
+        String t = type.getQualifiedTypeName();
+        source.line("/**");
+        source.line(" * Read the contents of the SEQUENCE the reader just entered, up to its end.");
+        source.line(" */");
+        source.open("public static %s read(ASN1StreamReader reader) {", t);
+        source.line("%s value = new %s();", t, t);
+        source.line("reader.next();");
+        for (ComponentDefinition component : type.getComponents()) {
+            String name = type.getTypeName() + "." + component.getName();
+            boolean mayBeAbsent = component.isOptional() || component.getDefaultValue() != null;
+            if (mayBeAbsent) {
+                source.open("if (%s) {", matches(component));
+            } else {
+                source.open("if (!%s) {", matches(component));
+                source.line("throw ASN1Fields.unexpected(reader, \"%s\");", name).close();
+            }
+            generateRead(source, component, name);
+            generateConstraint(source, component, get(component), name, true);
+            source.line("reader.next();");
+            if (component.getDefaultValue() != null) {
+                source.reopen("} else {");
+                source.line(assign(component, constant(component, "DEFAULT")));
+            }
+            if (mayBeAbsent) {
+                source.close();
+            }
+        }
+        if (type.isExtensible()) {
+            source.open("while (reader.getEvent() != ASN1StreamReader.Event.END_CONSTRUCTED) {");
+            source.line("reader.skip();");
+            source.line("reader.next();").close();
+        } else {
+            source.line("ASN1Fields.expectEnd(reader, \"%s\");", type.getTypeName());
+        }
+        source.line("return value;").close().line();
+
+        source.line("/**");
+        source.line(" * Write the contents of the SEQUENCE, without its tag and length.");
+        source.line(" */");
+        source.open("public static void write(%s value, ASN1ReverseWriter writer) throws IOException {", t);
+        List<ComponentDefinition> components = type.getComponents();
+        for (int i = components.size() - 1; i >= 0; i--) {
+            ComponentDefinition component = components.get(i);
+            String name = type.getTypeName() + "." + component.getName();
+            String v = get(component);
+            if (component.getDefaultValue() != null) {
+                if (component.getJavaType().isPrimitive()) {
+                    source.open("if (%s != %s) {", v, constant(component, "DEFAULT"));
+                } else {
+                    source.open("if (%s != null && !%s.equals(%s)) {", v, v, constant(component, "DEFAULT"));
+                }
+                generateConstraint(source, component, v, name, false);
+                generateWrite(source, component, v);
+                source.close();
+            } else if (component.isOptional()) {
+                source.open("if (%s != null) {", v);
+                generateConstraint(source, component, v, name, false);
+                generateWrite(source, component, v);
+                source.close();
+            } else {
+                if (!component.getJavaType().isPrimitive()) {
+                    source.line("ASN1Fields.checkPresent(%s, \"%s\");", v, name);
+                }
+                generateConstraint(source, component, v, name, false);
+                generateWrite(source, component, v);
+            }
+        }
+        source.close();
+    }
+
+    private void generateChoice(SourceBuilder source, TypeDefinition type) {
+        String t = type.getQualifiedTypeName();
+        source.line("/**");
+        source.line(" * @return whether the reader is at one of the alternatives of the CHOICE.");
+        source.line(" */");
+        source.open("public static boolean matches(ASN1StreamReader reader) {");
+        StringBuilder matches = new StringBuilder();
+        for (ComponentDefinition component : type.getComponents()) {
+            if (matches.length() > 0) {
+                matches.append(" || ");
+            }
+            matches.append(matches(component));
+        }
+        source.line("return %s;", matches.length() > 0 ? matches : "false").close().line();
+
+        source.line("/**");
+        source.line(" * Read the alternative the reader is at.");
+        source.line(" */");
+        source.open("public static %s read(ASN1StreamReader reader) {", t);
+        source.line("%s value = new %s();", t, t);
+        String keyword = "if";
+        for (ComponentDefinition component : type.getComponents()) {
+            if (keyword.equals("if")) {
+                source.open("if (%s) {", matches(component));
+            } else {
+                source.reopen("} else if (%s) {", matches(component));
+            }
+            keyword = "else if";
+            String name = type.getTypeName() + "." + component.getName();
+            generateRead(source, component, name);
+            generateConstraint(source, component, get(component), name, true);
+        }
+        if (keyword.equals("if")) {
+            source.line("throw ASN1Fields.unexpected(reader, \"%s\");", type.getTypeName());
+        } else {
+            source.reopen("} else {");
+            source.line("throw ASN1Fields.unexpected(reader, \"%s\");", type.getTypeName()).close();
+        }
+        source.line("return value;").close().line();
+
+        source.line("/**");
+        source.line(" * Write the chosen alternative.");
+        source.line(" */");
+        source.open("public static void write(%s value, ASN1ReverseWriter writer) throws IOException {", t);
+        boolean first = true;
+        for (ComponentDefinition component : type.getComponents()) {
+            String v = get(component);
+            if (first) {
+                source.open("if (%s != null) {", v);
+            } else {
+                source.reopen("} else if (%s != null) {", v);
+            }
+            first = false;
+            generateConstraint(source, component, v, type.getTypeName() + "." + component.getName(), false);
+            generateWrite(source, component, v);
+        }
+        if (!first) {
+            source.reopen("} else {");
+        }
+        source.line("throw new IllegalArgumentException(\"None of the alternatives of CHOICE %s is set\");", type.getTypeName());
+        if (!first) {
+            source.close();
+        }
+        source.close();
+    }
+
+    /**
+     * @return the condition telling whether the reader is at the component.
+     */
+    private static String matches(ComponentDefinition component) {
+        if (component.isTagged()) {
+            return String.format("ASN1Fields.isTag(reader, ASN1TagClass.%s, %s)", component.getTagClass(), component.getTag());
+        }
+        switch (component.getType()) {
+            case CHOICE:
+                return component.getCodecName() + ".matches(reader)";
+            case ANY:
+                return "(reader.getEvent() != ASN1StreamReader.Event.END_CONSTRUCTED)";
+            default:
+                return String.format("ASN1Fields.isTag(reader, ASN1TagClass.UNIVERSAL, 0x%02X)", component.getType().getUniversalTag());
+        }
+    }
+
+    /**
+     * Generate the statements reading the component the reader is at, which is known to have the expected tag. They
+     * leave the reader at the last event of the component.
+     */
+    private void generateRead(SourceBuilder source, ComponentDefinition component, String name) {
+        if (component.isTagged() && component.isExplicit()) {
+            source.line("reader.next();");
+            ComponentDefinition inner = untagged(component);
+            source.open("if (!%s) {", matches(inner));
+            source.line("throw ASN1Fields.unexpected(reader, \"%s\");", name).close();
+            generateRead(source, inner, name);
+            source.line("reader.next();");
+            source.line("ASN1Fields.expectEnd(reader, \"%s\");", name);
+            return;
+        }
+        if (component.getType().isList()) {
+            String list = source.variable("list");
+            ComponentDefinition element = component.getElement();
+            source.line("%s %s = new java.util.ArrayList<>();", component.getJavaTypeName(), list);
+            source.line("reader.next();");
+            source.open("while (reader.getEvent() != ASN1StreamReader.Event.END_CONSTRUCTED) {");
+            source.open("if (!%s) {", matches(element));
+            source.line("throw ASN1Fields.unexpected(reader, \"an element of %s\");", name).close();
+            source.line("%s.add(%s);", list, readExpression(element));
+            source.line("reader.next();").close();
+            source.line(assign(component, list));
+        } else {
+            source.line(assign(component, readExpression(component)));
+        }
+    }
+
+    private static String readExpression(ComponentDefinition component) {
+        switch (component.getType()) {
+            case BOOLEAN:
+                return "ASN1Fields.readBoolean(reader)";
+            case INTEGER:
+            case ENUMERATED:
+                switch (component.getJavaType()) {
+                    case LONG:
+                    case LONG_OBJECT:
+                        return "ASN1Fields.readLong(reader)";
+                    case BIG_INTEGER:
+                        return "ASN1Fields.readBigInteger(reader)";
+                    case ENUM:
+                        if (component.isValued()) {
+                            return component.getJavaTypeName() + ".forValue(ASN1Fields.readInt(reader))";
+                        }
+                        return "ASN1Fields.readEnum(reader, " + constant(component, "VALUES") + ")";
+                    default:
+                        return "ASN1Fields.readInt(reader)";
+                }
+            case BIT_STRING:
+                return "ASN1Fields.readBitString(reader)";
+            case OCTET_STRING:
+                return "ASN1Fields.readBytes(reader)";
+            case NULL:
+                return "ASN1Fields.readNull(reader)";
+            case OBJECT_IDENTIFIER:
+                return "ASN1Fields.readObjectIdentifier(reader)";
+            case SEQUENCE:
+            case CHOICE:
+                return component.getCodecName() + ".read(reader)";
+            case ANY:
+                return "reader.<" + component.getJavaTypeName() + ">readObject()";
+            default:
+                throw new IllegalArgumentException("Cannot read " + component);
+        }
+    }
+
+    /**
+     * Generate the statements writing the component, of which the value is known to be set.
+     */
+    private void generateWrite(SourceBuilder source, ComponentDefinition component, String v) {
+        if (component.isTagged() && component.isExplicit()) {
+            String end = source.variable("end");
+            source.line("int %s = writer.size();", end);
+            generateWrite(source, untagged(component), v);
+            source.line("writer.writeHeader(%s, writer.size() - %s);", constant(component, "TAG"), end);
+            return;
+        }
+        String tag = component.isTagged() ? constant(component, "TAG") : "ASN1Tag." + component.getType().getTagConstant();
+        switch (component.getType()) {
+            case BOOLEAN:
+                source.line("ASN1Fields.writeBoolean(writer, %s, %s);", tag, v);
+                break;
+            case INTEGER:
+            case ENUMERATED:
+                if (component.getJavaType() == JavaType.BIG_INTEGER) {
+                    source.line("ASN1Fields.writeBigInteger(writer, %s, %s);", tag, v);
+                } else if (component.getJavaType() == JavaType.ENUM && component.isValued()) {
+                    source.line("ASN1Fields.writeLong(writer, %s, %s.getValue());", tag, v);
+                } else if (component.getJavaType() == JavaType.ENUM) {
+                    source.line("ASN1Fields.writeEnum(writer, %s, %s);", tag, v);
+                } else {
+                    source.line("ASN1Fields.writeLong(writer, %s, %s);", tag, v);
+                }
+                break;
+            case BIT_STRING:
+                source.line("ASN1Fields.writeBitString(writer, %s, %s);", tag, v);
+                break;
+            case OCTET_STRING:
+                source.line("ASN1Fields.writeBytes(writer, %s, %s);", tag, v);
+                break;
+            case NULL:
+                source.line("ASN1Fields.writeNull(writer, %s);", tag);
+                break;
+            case OBJECT_IDENTIFIER:
+                source.line("ASN1Fields.writeObjectIdentifier(writer, %s, %s);", tag, v);
+                break;
+            case SEQUENCE: {
+                String end = source.variable("end");
+                source.line("int %s = writer.size();", end);
+                source.line("%s.write(%s, writer);", component.getCodecName(), v);
+                source.line("writer.writeHeader(%s, writer.size() - %s);", tag, end);
+                break;
+            }
+            case SEQUENCE_OF:
+            case SET_OF: {
+                String end = source.variable("end");
+                String elements = source.variable("elements");
+                ComponentDefinition element = component.getElement();
+                source.line("int %s = writer.size();", end);
+                source.line("java.util.ListIterator<%s> %s = %s.listIterator(%s.size());", element.getJavaTypeName(), elements, v, v);
+                source.open("while (%s.hasPrevious()) {", elements);
+                generateWrite(source, element, elements + ".previous()");
+                source.close();
+                if (component.getType() == Type.SET_OF) {
+                    source.line("writer.sortObjects(%s);", end);
+                }
+                source.line("writer.writeHeader(%s, writer.size() - %s);", tag, end);
+                break;
+            }
+            case CHOICE:
+                source.line("%s.write(%s, writer);", component.getCodecName(), v);
+                break;
+            case ANY:
+                source.line("writer.writeObject(%s);", v);
+                break;
+            default:
+                throw new IllegalArgumentException("Cannot write " + component);
+        }
+    }
+
+    /**
+     * @return the component without its explicit tag.
+     */
+    private static ComponentDefinition untagged(ComponentDefinition component) {
+        ComponentDefinition untagged = new ComponentDefinition(component.getName(), component.getType(), component.getJavaType(), component.getJavaType() == JavaType.LIST ? null : component.getJavaTypeName());
+        if (component.getElement() != null) {
+            untagged.element(component.getElement());
+        }
+        if (component.isValued()) {
+            untagged.valued();
+        }
+        return untagged.codec(component.getCodecName()).accessors(component.getGetter(), component.getSetter());
+    }
+
+    private static String get(ComponentDefinition component) {
+        if (component.getGetter() != null) {
+            return "value." + component.getGetter() + "()";
+        }
+        return "value." + component.getName();
+    }
+
+    private static String assign(ComponentDefinition component, String expression) {
+        if (component.getSetter() != null) {
+            return "value." + component.getSetter() + "(" + expression + ");";
+        }
+        return "value." + component.getName() + " = " + expression + ";";
+    }
+}
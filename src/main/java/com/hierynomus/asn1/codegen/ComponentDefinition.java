@@ -0,0 +1,330 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.codegen;
+
+import com.hierynomus.asn1.types.ASN1TagClass;
+
+/**
+ * A component of a SEQUENCE or an alternative of a CHOICE, mapped onto a field of a Java class.
+ */
+public class ComponentDefinition {
+    /**
+     * The ASN.1 type of a component.
+     */
+    public enum Type {
+        BOOLEAN("BOOLEAN", 0x01),
+        INTEGER("INTEGER", 0x02),
+        BIT_STRING("BIT_STRING", 0x03),
+        OCTET_STRING("OCTET_STRING", 0x04),
+        NULL("NULL", 0x05),
+        OBJECT_IDENTIFIER("OBJECT_IDENTIFIER", 0x06),
+        ENUMERATED("ENUMERATED", 0x0A),
+        SEQUENCE("SEQUENCE", 0x10),
+        SEQUENCE_OF("SEQUENCE", 0x10),
+        SET_OF("SET", 0x11),
+        CHOICE(null, -1),
+        ANY(null, -1);
+
+        private final String tagConstant;
+        private final int universalTag;
+
+        Type(String tagConstant, int universalTag) {
+            this.tagConstant = tagConstant;
+            this.universalTag = universalTag;
+        }
+
+        /**
+         * @return the name of the {@link com.hierynomus.asn1.types.ASN1Tag} constant of the UNIVERSAL tag, or
+         * <code>null</code> if the type has no tag of its own.
+         */
+        public String getTagConstant() {
+            return tagConstant;
+        }
+
+        public int getUniversalTag() {
+            return universalTag;
+        }
+
+        public boolean isConstructed() {
+            return this == SEQUENCE || isList();
+        }
+
+        /**
+         * @return whether the type is a SEQUENCE OF or SET OF, which is mapped onto a {@link java.util.List}.
+         */
+        public boolean isList() {
+            return this == SEQUENCE_OF || this == SET_OF;
+        }
+    }
+
+    /**
+     * The Java type of the field a component is mapped onto.
+     */
+    public enum JavaType {
+        BOOLEAN("boolean", true),
+        BOOLEAN_OBJECT("java.lang.Boolean", false),
+        INT("int", true),
+        INTEGER_OBJECT("java.lang.Integer", false),
+        LONG("long", true),
+        LONG_OBJECT("java.lang.Long", false),
+        BIG_INTEGER("java.math.BigInteger", false),
+        BYTES("byte[]", false),
+        STRING("java.lang.String", false),
+        // The types of which the name is given by the component
+        ENUM(null, false),
+        CLASS(null, false),
+        ASN1_OBJECT(null, false),
+        LIST(null, false);
+
+        private final String name;
+        private final boolean primitive;
+
+        JavaType(String name, boolean primitive) {
+            this.name = name;
+            this.primitive = primitive;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isPrimitive() {
+            return primitive;
+        }
+    }
+
+    private final String name;
+    private final Type type;
+    private final JavaType javaType;
+    private final String javaTypeName;
+    private ComponentDefinition element;
+    private boolean tagged;
+    private ASN1TagClass tagClass;
+    private int tag;
+    private boolean explicit;
+    private boolean optional;
+    private String defaultValue;
+    private Long minimum;
+    private Long maximum;
+    private boolean valued;
+    private String getter;
+    private String setter;
+    private String codecName;
+    private int order = -1;
+
+    /**
+     * @param name The name of the field
+     * @param type The ASN.1 type
+     * @param javaType The Java type of the field
+     * @param javaTypeName The canonical name of the enum, class or {@link com.hierynomus.asn1.types.ASN1Object} type
+     *                     of the field, or <code>null</code> if it follows from the Java type
+     */
+    public ComponentDefinition(String name, Type type, JavaType javaType, String javaTypeName) {
+        this.name = name;
+        this.type = type;
+        this.javaType = javaType;
+        this.javaTypeName = javaTypeName != null ? javaTypeName : javaType.getName();
+    }
+
+    /**
+     * Tag the component.
+     *
+     * @param tagClass The class of the tag
+     * @param tag The tag number
+     * @param explicit Whether the tag is encoded around the component, or replaces its tag
+     * @return this component.
+     */
+    public ComponentDefinition tagged(ASN1TagClass tagClass, int tag, boolean explicit) {
+        this.tagged = true;
+        this.tagClass = tagClass;
+        this.tag = tag;
+        this.explicit = explicit;
+        return this;
+    }
+
+    public ComponentDefinition optional() {
+        this.optional = true;
+        return this;
+    }
+
+    /**
+     * @param defaultValue The DEFAULT value, as a number, <code>true</code>, <code>false</code> or the name of an enum
+     *                     constant
+     * @return this component.
+     */
+    public ComponentDefinition defaultValue(String defaultValue) {
+        this.defaultValue = defaultValue;
+        return this;
+    }
+
+    /**
+     * Constrain the value of an INTEGER, or the size of an OCTET STRING, SEQUENCE OF or SET OF. The constraint is checked
+     * when the component is decoded and when it is encoded.
+     *
+     * @param minimum The lower bound, or <code>null</code> if there is none
+     * @param maximum The upper bound, or <code>null</code> if there is none
+     * @return this component.
+     */
+    public ComponentDefinition constraint(Long minimum, Long maximum) {
+        this.minimum = minimum;
+        this.maximum = maximum;
+        return this;
+    }
+
+    /**
+     * Map an ENUMERATED onto the enum by the values of its constants instead of by their ordinals. The enum should
+     * have a method <code>int getValue()</code> and a static method <code>forValue(int)</code>.
+     *
+     * @return this component.
+     */
+    public ComponentDefinition valued() {
+        this.valued = true;
+        return this;
+    }
+
+    /**
+     * Access the field through a getter and setter, instead of directly.
+     *
+     * @param getter The name of the getter
+     * @param setter The name of the setter
+     * @return this component.
+     */
+    public ComponentDefinition accessors(String getter, String setter) {
+        this.getter = getter;
+        this.setter = setter;
+        return this;
+    }
+
+    /**
+     * @param element The type of the elements of a SEQUENCE OF or SET OF
+     * @return this component.
+     */
+    public ComponentDefinition element(ComponentDefinition element) {
+        this.element = element;
+        return this;
+    }
+
+    /**
+     * @param codecName The qualified name of the codec of a SEQUENCE or CHOICE component
+     * @return this component.
+     */
+    public ComponentDefinition codec(String codecName) {
+        this.codecName = codecName;
+        return this;
+    }
+
+    /**
+     * @param order The position of the component in its SEQUENCE
+     * @return this component.
+     */
+    public ComponentDefinition order(int order) {
+        this.order = order;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the position of the component in its SEQUENCE, or -1 if it has none.
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public JavaType getJavaType() {
+        return javaType;
+    }
+
+    /**
+     * @return the Java type of the field, as it is written in source code.
+     */
+    public String getJavaTypeName() {
+        if (javaType == JavaType.LIST) {
+            return "java.util.List<" + element.getJavaTypeName() + ">";
+        }
+        return javaTypeName;
+    }
+
+    public ComponentDefinition getElement() {
+        return element;
+    }
+
+    public boolean isTagged() {
+        return tagged;
+    }
+
+    public ASN1TagClass getTagClass() {
+        return tagClass;
+    }
+
+    public int getTag() {
+        return tag;
+    }
+
+    public boolean isExplicit() {
+        return explicit;
+    }
+
+    public boolean isOptional() {
+        return optional;
+    }
+
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    public boolean isConstrained() {
+        return minimum != null || maximum != null;
+    }
+
+    public Long getMinimum() {
+        return minimum;
+    }
+
+    public Long getMaximum() {
+        return maximum;
+    }
+
+    public boolean isValued() {
+        return valued;
+    }
+
+    public String getGetter() {
+        return getter;
+    }
+
+    public String getSetter() {
+        return setter;
+    }
+
+    /**
+     * @return the qualified name of the codec of a SEQUENCE or CHOICE component.
+     */
+    public String getCodecName() {
+        return codecName;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + type;
+    }
+}
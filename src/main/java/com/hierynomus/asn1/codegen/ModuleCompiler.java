@@ -0,0 +1,725 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.codegen;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.hierynomus.asn1.codegen.ComponentDefinition.JavaType;
+import com.hierynomus.asn1.codegen.ComponentDefinition.Type;
+import com.hierynomus.asn1.codegen.ModuleParser.Component;
+import com.hierynomus.asn1.codegen.ModuleParser.Kind;
+import com.hierynomus.asn1.codegen.ModuleParser.NamedNumber;
+import com.hierynomus.asn1.codegen.ModuleParser.Node;
+import com.hierynomus.asn1.codegen.ModuleParser.Tag;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1TagClass;
+import com.hierynomus.asn1.types.primitive.ASN1Null;
+import com.hierynomus.asn1.types.string.ASN1BitString;
+
+/**
+ * Compiles ASN.1 modules into Java classes and their codecs, see {@link CodecGenerator}.
+ *
+ * Every SEQUENCE and CHOICE type becomes a class with a public field per component, and a codec named after it with
+ * the suffix <code>Codec</code>. Every ENUMERATED type becomes an enum, of which the constants have the value they have
+ * in the module. A type that is defined as another SEQUENCE or CHOICE type becomes a subclass of its class, with a
+ * codec of its own. Other types are mapped onto the fields they are used for:
+ * <ul>
+ * <li>BOOLEAN onto <code>boolean</code>.</li>
+ * <li>INTEGER onto <code>int</code> or <code>long</code> if it is constrained to their range, otherwise onto
+ * {@link java.math.BigInteger}.</li>
+ * <li>OCTET STRING onto <code>byte[]</code>, OBJECT IDENTIFIER onto {@link String}.</li>
+ * <li>BIT STRING, NULL and ANY onto {@link ASN1BitString}, {@link ASN1Null} and {@link ASN1Object}.</li>
+ * <li>SEQUENCE OF and SET OF onto {@link java.util.List}. The elements of a SET OF are encoded sorted on their
+ * encodings, as DER requires, and decoded in the order in which they were received.</li>
+ * </ul>
+ * Value constraints on INTEGERs and size constraints on OCTET STRINGs, SEQUENCE OFs and SET OFs are checked when
+ * decoding and encoding. A SEQUENCE with an extension marker skips unknown components when decoding. Types nested in a
+ * SEQUENCE or CHOICE are named after the component.
+ *
+ * The character string and time types are not supported, as the library cannot decode their tags.
+ */
+public class ModuleCompiler {
+    private static final Set<String> JAVA_KEYWORDS = new HashSet<>(Arrays.asList(
+        "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+        "default", "do", "double", "else", "enum", "extends", "false", "final", "finally", "float", "for", "goto", "if",
+        "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "null", "package",
+        "private", "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized",
+        "this", "throw", "throws", "transient", "true", "try", "void", "volatile", "while"));
+
+    private final String packageName;
+    private final CodecGenerator generator = new CodecGenerator();
+    private final Map<String, Node> types = new LinkedHashMap<>();
+    private final Map<String, String> values = new HashMap<>();
+
+    // The Java names of the ASN.1 types that are mapped onto a class or enum
+    private final Map<String, String> classNames = new HashMap<>();
+    private final Map<Node, String> nestedNames = new IdentityHashMap<>();
+    private final Map<Node, String> nestedOrigins = new IdentityHashMap<>();
+    private final Set<String> usedNames = new HashSet<>();
+    private final Deque<Node> nestedTypes = new ArrayDeque<>();
+    private final Map<String, String> sources = new LinkedHashMap<>();
+
+    /**
+     * @param packageName The package of the generated classes, empty for the unnamed package
+     */
+    public ModuleCompiler(String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * Add the ASN.1 modules in the text. Types in one module can refer to the types in all modules added.
+     *
+     * @param text The text of one or more modules
+     * @return this compiler.
+     * @throws IllegalArgumentException If the text cannot be parsed
+     */
+    public ModuleCompiler addModules(String text) {
+        for (ModuleParser.Module module : new ModuleParser(text).parse()) {
+            for (Map.Entry<String, Node> type : module.types.entrySet()) {
+                if (types.put(type.getKey(), type.getValue()) != null) {
+                    throw new IllegalArgumentException(String.format("Type %s of module %s is defined in another module as well", type.getKey(), module.name));
+                }
+            }
+            values.putAll(module.values);
+        }
+        return this;
+    }
+
+    /**
+     * Compile the modules added.
+     *
+     * @return the source of every generated class, by its qualified name.
+     * @throws IllegalArgumentException If a type cannot be compiled
+     */
+    public Map<String, String> compile() {
+        classNames.clear();
+        nestedNames.clear();
+        nestedOrigins.clear();
+        usedNames.clear();
+        sources.clear();
+        List<String> aliases = new ArrayList<>();
+        for (Map.Entry<String, Node> type : types.entrySet()) {
+            Node definition = definition(type.getKey());
+            Kind kind = definition != null ? definition.kind : null;
+            if (kind == Kind.SEQUENCE || kind == Kind.CHOICE || kind == Kind.ENUMERATED) {
+                classNames.put(type.getKey(), unique(javaTypeName(type.getKey())));
+                if (untag(type.getValue()).kind == Kind.REFERENCE) {
+                    aliases.add(type.getKey());
+                }
+            }
+        }
+        // Compile the types that are defined as another type last, so their nested types are named after the latter
+        for (String name : types.keySet()) {
+            if (classNames.containsKey(name) && !aliases.contains(name)) {
+                compileType(name);
+            }
+        }
+        for (String name : aliases) {
+            compileType(name);
+        }
+        while (!nestedTypes.isEmpty()) {
+            Node nested = nestedTypes.removeFirst();
+            String javaName = nestedNames.get(nested);
+            String origin = nestedOrigins.get(nested);
+            if (nested.kind == Kind.ENUMERATED) {
+                sources.put(qualified(javaName), enumSource(javaName, nested, origin));
+            } else {
+                TypeDefinition definition = typeDefinition(origin, javaName, nested);
+                sources.put(qualified(javaName), classSource(javaName, null, definition, origin));
+                sources.put(definition.getQualifiedCodecName(), generate(definition, origin));
+            }
+        }
+        return new LinkedHashMap<>(sources);
+    }
+
+    /**
+     * Compile the modules added, and write the generated sources to the directory.
+     *
+     * @param directory The root directory of the generated sources, the packages are created in it
+     * @throws IOException If a source cannot be written
+     */
+    public void compile(File directory) throws IOException {
+        for (Map.Entry<String, String> source : compile().entrySet()) {
+            File file = new File(directory, source.getKey().replace('.', File.separatorChar) + ".java");
+            if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                throw new IOException("Unable to create directory " + file.getParentFile());
+            }
+            Files.write(file.toPath(), source.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void compileType(String name) {
+        String javaName = classNames.get(name);
+        List<Tag> tags = new ArrayList<>();
+        String superName = null;
+        Node node = types.get(name);
+        while (node.kind == Kind.TAGGED || node.kind == Kind.REFERENCE) {
+            if (node.kind == Kind.TAGGED) {
+                tags.add(node.tag);
+                node = node.inner;
+            } else {
+                if (superName == null) {
+                    superName = classNames.get(node.reference);
+                }
+                node = lookup(node.reference, name);
+            }
+        }
+        if (node.kind == Kind.ENUMERATED) {
+            // An enum cannot be extended, the enum of the type it is defined as is used for it
+            if (superName != null) {
+                classNames.put(name, superName);
+                usedNames.remove(javaName);
+            } else {
+                sources.put(qualified(javaName), enumSource(javaName, node, name));
+            }
+            return;
+        }
+        TypeDefinition definition = typeDefinition(name, javaName, node);
+        Tag tag = collapse(tags, node, name);
+        if (tag != null) {
+            definition.tagged(tag.tagClass, tag.number, tag.explicit);
+        }
+        sources.put(qualified(javaName), classSource(javaName, superName, definition, name));
+        sources.put(definition.getQualifiedCodecName(), generate(definition, name));
+    }
+
+    private String generate(TypeDefinition definition, String name) {
+        try {
+            return generator.generate(definition);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Cannot compile %s: %s", name, e.getMessage()), e);
+        }
+    }
+
+    private TypeDefinition typeDefinition(String name, String javaName, Node node) {
+        if (node.kind == Kind.SET) {
+            throw new IllegalArgumentException(String.format("Cannot compile %s: SET is not supported", name));
+        }
+        TypeDefinition definition = new TypeDefinition(node.kind == Kind.CHOICE ? TypeDefinition.Kind.CHOICE : TypeDefinition.Kind.SEQUENCE, packageName, javaName);
+        if (node.kind == Kind.SEQUENCE && node.extensible) {
+            definition.extensible();
+        }
+        Set<String> fields = new HashSet<>();
+        for (Component component : components(node, name)) {
+            String field = fieldName(component.name);
+            if (!fields.add(field)) {
+                throw new IllegalArgumentException(String.format("Cannot compile %s: component %s is defined more than once", name, component.name));
+            }
+            boolean mayBeAbsent = node.kind == Kind.SEQUENCE && (component.optional || component.extensionAddition);
+            ComponentDefinition definitionOfComponent = component(name + "." + component.name, field, component.type,
+                javaName + capitalize(field), node.kind == Kind.CHOICE || mayBeAbsent, component.defaultValue);
+            if (mayBeAbsent && component.defaultValue == null) {
+                definitionOfComponent.optional();
+            }
+            definition.addComponent(definitionOfComponent);
+        }
+        return definition;
+    }
+
+    /**
+     * @return the components of the SEQUENCE or CHOICE, with those of a COMPONENTS OF included.
+     */
+    private List<Component> components(Node node, String name) {
+        List<Component> components = new ArrayList<>();
+        for (Component component : node.components) {
+            if (component.componentsOf) {
+                Node included = component.type;
+                while (included.kind == Kind.REFERENCE) {
+                    included = lookup(included.reference, name);
+                }
+                if (included.kind != Kind.SEQUENCE) {
+                    throw new IllegalArgumentException(String.format("Cannot compile %s: COMPONENTS OF should refer to a SEQUENCE", name));
+                }
+                components.addAll(components(included, name));
+            } else {
+                components.add(component);
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Map a type onto a field.
+     *
+     * @param name The name of the component in the module, used in exceptions
+     * @param field The name of the field
+     * @param type The type of the component
+     * @param nestedName The name for a SEQUENCE, CHOICE or ENUMERATED type nested in the component
+     * @param reference Whether the field should have a reference type
+     * @param defaultValue The DEFAULT value in the module, or <code>null</code>
+     */
+    private ComponentDefinition component(String name, String field, Node type, String nestedName, boolean reference, String defaultValue) {
+        List<Tag> tags = new ArrayList<>();
+        Range values = new Range();
+        Range sizes = new Range();
+        String className = null;
+        String nested = nestedName;
+        Node node = type;
+        while (true) {
+            values.intersect(node.valueConstrained, node.valueMinimum, node.valueMaximum, name);
+            sizes.intersect(node.sizeConstrained, node.sizeMinimum, node.sizeMaximum, name);
+            if (node.kind == Kind.TAGGED) {
+                tags.add(node.tag);
+                node = node.inner;
+            } else if (node.kind == Kind.REFERENCE && classNames.containsKey(node.reference)) {
+                className = classNames.get(node.reference);
+                String referred = node.reference;
+                node = types.get(referred);
+                while (node.kind == Kind.TAGGED || node.kind == Kind.REFERENCE) {
+                    if (node.kind == Kind.TAGGED) {
+                        tags.add(node.tag);
+                        node = node.inner;
+                    } else {
+                        node = lookup(node.reference, referred);
+                    }
+                }
+                break;
+            } else if (node.kind == Kind.REFERENCE) {
+                // Types nested in the referred type are named after it
+                nested = javaTypeName(node.reference);
+                node = lookup(node.reference, name);
+            } else {
+                if (node.kind == Kind.SEQUENCE || node.kind == Kind.CHOICE || node.kind == Kind.ENUMERATED) {
+                    className = nestedClass(node, nested, name);
+                }
+                break;
+            }
+        }
+
+        ComponentDefinition component;
+        switch (node.kind) {
+            case BOOLEAN:
+                component = new ComponentDefinition(field, Type.BOOLEAN, reference ? JavaType.BOOLEAN_OBJECT : JavaType.BOOLEAN, null);
+                break;
+            case INTEGER:
+                component = integer(field, values, reference);
+                break;
+            case ENUMERATED:
+                component = new ComponentDefinition(field, Type.ENUMERATED, JavaType.ENUM, qualified(className)).valued();
+                break;
+            case BIT_STRING:
+                component = new ComponentDefinition(field, Type.BIT_STRING, JavaType.ASN1_OBJECT, ASN1BitString.class.getName());
+                break;
+            case OCTET_STRING:
+                component = new ComponentDefinition(field, Type.OCTET_STRING, JavaType.BYTES, null);
+                sizes.constrain(component);
+                break;
+            case NULL:
+                component = new ComponentDefinition(field, Type.NULL, JavaType.ASN1_OBJECT, ASN1Null.class.getName());
+                break;
+            case OBJECT_IDENTIFIER:
+                component = new ComponentDefinition(field, Type.OBJECT_IDENTIFIER, JavaType.STRING, null);
+                break;
+            case ANY:
+                component = new ComponentDefinition(field, Type.ANY, JavaType.ASN1_OBJECT, ASN1Object.class.getName());
+                break;
+            case SEQUENCE:
+            case CHOICE:
+                component = new ComponentDefinition(field, node.kind == Kind.CHOICE ? Type.CHOICE : Type.SEQUENCE, JavaType.CLASS, qualified(className))
+                    .codec(qualified(TypeDefinition.codecName(className)));
+                break;
+            case SEQUENCE_OF:
+            case SET_OF: {
+                ComponentDefinition element = component(name, field, node.element, nested + "Element", true, null);
+                if (element.isTagged()) {
+                    throw new IllegalArgumentException(String.format("Cannot compile %s: tagged elements are not supported", name));
+                }
+                component = new ComponentDefinition(field, node.kind == Kind.SET_OF ? Type.SET_OF : Type.SEQUENCE_OF, JavaType.LIST, null).element(element);
+                sizes.constrain(component);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(String.format("Cannot compile %s: %s is not supported", name, node.kind.toString().replace('_', ' ')));
+        }
+        Tag tag = collapse(tags, node, name);
+        if (tag != null) {
+            component.tagged(tag.tagClass, tag.number, tag.explicit);
+        }
+        if (defaultValue != null) {
+            component.defaultValue(defaultLiteral(name, component, node, defaultValue));
+        }
+        return component;
+    }
+
+    private static ComponentDefinition integer(String field, Range values, boolean reference) {
+        Long minimum = values.minimum;
+        Long maximum = values.maximum;
+        ComponentDefinition component;
+        if (minimum != null && maximum != null && minimum >= Integer.MIN_VALUE && maximum <= Integer.MAX_VALUE) {
+            component = new ComponentDefinition(field, Type.INTEGER, reference ? JavaType.INTEGER_OBJECT : JavaType.INT, null);
+        } else if (minimum != null && maximum != null) {
+            component = new ComponentDefinition(field, Type.INTEGER, reference ? JavaType.LONG_OBJECT : JavaType.LONG, null);
+        } else {
+            component = new ComponentDefinition(field, Type.INTEGER, JavaType.BIG_INTEGER, null);
+        }
+        if (minimum != null || maximum != null) {
+            component.constraint(minimum, maximum);
+        }
+        return component;
+    }
+
+    private String defaultLiteral(String name, ComponentDefinition component, Node node, String value) {
+        switch (component.getJavaType()) {
+            case BOOLEAN:
+            case BOOLEAN_OBJECT:
+                if (value.equals("TRUE") || value.equals("FALSE")) {
+                    return value.toLowerCase();
+                }
+                break;
+            case INT:
+            case INTEGER_OBJECT:
+            case LONG:
+            case LONG_OBJECT:
+            case BIG_INTEGER:
+                for (NamedNumber number : node.namedNumbers) {
+                    if (number.name.equals(value)) {
+                        return String.valueOf(number.value);
+                    }
+                }
+                return String.valueOf(number(value, name));
+            case ENUM:
+                for (NamedNumber number : node.namedNumbers) {
+                    if (number.name.equals(value)) {
+                        return constantName(value);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Cannot compile %s: DEFAULT values of its type are not supported", name));
+        }
+        throw new IllegalArgumentException(String.format("Cannot compile %s: invalid DEFAULT value %s", name, value));
+    }
+
+    /**
+     * Collapse the tags of a type into a single tag. An implicit tag replaces the tag of the type it tags, an explicit
+     * tag is encoded around it.
+     *
+     * @param tags The tags, outermost first
+     * @param base The type that is tagged
+     * @return the tag, or <code>null</code> if the type is not tagged.
+     */
+    private static Tag collapse(List<Tag> tags, Node base, String name) {
+        boolean untagged = base.kind == Kind.CHOICE || base.kind == Kind.ANY;
+        List<Tag> layers = new ArrayList<>();
+        Tag replacing = null;
+        for (int i = tags.size() - 1; i >= 0; i--) {
+            Tag tag = tags.get(i);
+            boolean taggingUntagged = layers.isEmpty() && replacing == null && untagged;
+            if (tag.explicit == Boolean.FALSE && taggingUntagged) {
+                throw new IllegalArgumentException(String.format("Cannot compile %s: a %s can only be tagged explicitly", name, base.kind));
+            }
+            if (tag.explicit == Boolean.TRUE || taggingUntagged) {
+                layers.add(tag);
+            } else if (layers.isEmpty()) {
+                replacing = tag;
+            } else {
+                layers.set(layers.size() - 1, tag);
+            }
+        }
+        if (layers.isEmpty()) {
+            return replacing == null ? null : new Tag(replacing.tagClass, replacing.number, false);
+        }
+        if (layers.size() > 1 || replacing != null) {
+            throw new IllegalArgumentException(String.format("Cannot compile %s: it has more than one tag, which is not supported", name));
+        }
+        return new Tag(layers.get(0).tagClass, layers.get(0).number, true);
+    }
+
+    private String nestedClass(Node node, String javaName, String origin) {
+        String nestedName = nestedNames.get(node);
+        if (nestedName == null) {
+            nestedName = unique(javaName);
+            nestedNames.put(node, nestedName);
+            nestedOrigins.put(node, origin);
+            nestedTypes.add(node);
+        }
+        return nestedName;
+    }
+
+    /**
+     * @return the type the named type is defined as, without its tags and references, or <code>null</code> if it
+     * refers to a type that is not defined.
+     */
+    private Node definition(String name) {
+        Node node = types.get(name);
+        while (node != null && (node.kind == Kind.TAGGED || node.kind == Kind.REFERENCE)) {
+            node = node.kind == Kind.TAGGED ? node.inner : types.get(node.reference);
+        }
+        return node;
+    }
+
+    private Node lookup(String reference, String from) {
+        Node node = types.get(reference);
+        if (node == null) {
+            throw new IllegalArgumentException(String.format("Cannot compile %s: type %s is not defined or not supported", from, reference));
+        }
+        return node;
+    }
+
+    private static Node untag(Node node) {
+        Node untagged = node;
+        while (untagged.kind == Kind.TAGGED) {
+            untagged = untagged.inner;
+        }
+        return untagged;
+    }
+
+    private long number(String value, String name) {
+        String number = value;
+        Set<String> seen = new HashSet<>();
+        while (values.containsKey(number) && seen.add(number)) {
+            number = values.get(number);
+        }
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Cannot compile %s: %s is not a number that fits in a long", name, value));
+        }
+    }
+
+    private String classSource(String javaName, String superName, TypeDefinition definition, String name) {
+        SourceBuilder source = new SourceBuilder();
+        if (!packageName.isEmpty()) {
+            source.line("package %s;", packageName).line();
+        }
+        source.line("/**");
+        source.line(" * ASN.1 %s <code>%s</code>, decoded and encoded by {@link %s}.", definition.getKind(), name, definition.getCodecName());
+        source.line(" */");
+        if (superName != null) {
+            source.open("public class %s extends %s {", javaName, superName);
+            return source.close().toString();
+        }
+        source.open("public class %s {", javaName);
+        List<ComponentDefinition> components = definition.getComponents();
+        StringBuilder fields = new StringBuilder();
+        StringBuilder otherFields = new StringBuilder();
+        for (ComponentDefinition component : components) {
+            source.line("public %s %s;", component.getJavaTypeName(), component.getName());
+            fields.append(fields.length() > 0 ? ", " : "").append(compared(component, ""));
+            otherFields.append(otherFields.length() > 0 ? ", " : "").append(compared(component, "other."));
+        }
+        source.line();
+        source.line("@Override");
+        source.open("public boolean equals(Object o) {");
+        source.open("if (this == o) {").line("return true;").close();
+        source.open("if (o == null || getClass() != o.getClass()) {").line("return false;").close();
+        source.line("%s other = (%s) o;", javaName, javaName);
+        source.line("return java.util.Arrays.deepEquals(new Object[] {%s}, new Object[] {%s});", fields, otherFields).close().line();
+        source.line("@Override");
+        source.open("public int hashCode() {");
+        source.line("return java.util.Arrays.deepHashCode(new Object[] {%s});", fields).close().line();
+        source.line("@Override");
+        source.open("public String toString() {");
+        StringBuilder toString = new StringBuilder("\"").append(javaName).append("{");
+        for (int i = 0; i < components.size(); i++) {
+            String field = components.get(i).getName();
+            toString.append(i > 0 ? ", " : "").append(field).append("=\" + ");
+            ComponentDefinition component = components.get(i);
+            if (component.getJavaType() == JavaType.BYTES) {
+                toString.append("java.util.Arrays.toString(").append(field).append(")");
+            } else if (component.getJavaType() == JavaType.LIST && component.getElement().getJavaType() == JavaType.BYTES) {
+                toString.append("java.util.Arrays.deepToString(").append(compared(component, "")).append(")");
+            } else {
+                toString.append(field);
+            }
+            toString.append(" + \"");
+        }
+        source.line("return %s}\";", toString).close();
+        return source.close().toString();
+    }
+
+    /**
+     * @return the expression of a field as it is compared by <code>equals</code>. A list of arrays is compared as an
+     * array, as the arrays in a list are not compared by their contents.
+     */
+    private static String compared(ComponentDefinition component, String prefix) {
+        String field = prefix + component.getName();
+        if (component.getJavaType() == JavaType.LIST && component.getElement().getJavaType() == JavaType.BYTES) {
+            return "(" + field + " != null ? " + field + ".toArray() : null)";
+        }
+        return field;
+    }
+
+    private String enumSource(String javaName, Node node, String name) {
+        SourceBuilder source = new SourceBuilder();
+        if (!packageName.isEmpty()) {
+            source.line("package %s;", packageName).line();
+        }
+        source.line("/**");
+        source.line(" * ASN.1 ENUMERATED <code>%s</code>.", name);
+        source.line(" */");
+        source.open("public enum %s {", javaName);
+        List<NamedNumber> numbers = node.namedNumbers;
+        for (int i = 0; i < numbers.size(); i++) {
+            NamedNumber number = numbers.get(i);
+            if (number.value < Integer.MIN_VALUE || number.value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format("Cannot compile %s: the value of %s does not fit in an int", name, number.name));
+            }
+            source.line("%s(%s)%s", constantName(number.name), number.value, i < numbers.size() - 1 ? "," : ";");
+        }
+        source.line();
+        source.line("private static final %s[] VALUES = values();", javaName);
+        source.line("private final int value;");
+        source.line();
+        source.open("%s(int value) {", javaName).line("this.value = value;").close().line();
+        source.open("public int getValue() {").line("return value;").close().line();
+        source.line("/**");
+        source.line(" * @throws com.hierynomus.asn1.ASN1ParseException If none of the constants has the value");
+        source.line(" */");
+        source.open("public static %s forValue(int value) {", javaName);
+        source.open("for (%s constant : VALUES) {", javaName);
+        source.open("if (constant.value == value) {").line("return constant;").close().close();
+        source.line("throw new com.hierynomus.asn1.ASN1ParseException(\"Unknown value %%s of ENUMERATED %s\", value);", name).close();
+        return source.close().toString();
+    }
+
+    private String qualified(String javaName) {
+        return packageName.isEmpty() ? javaName : packageName + "." + javaName;
+    }
+
+    private String unique(String javaName) {
+        String unique = javaName;
+        for (int i = 2; !usedNames.add(unique); i++) {
+            unique = javaName + i;
+        }
+        return unique;
+    }
+
+    /**
+     * @return the name of a type, with the hyphens removed and the parts capitalized. Parts in capitals are written
+     * in lower case after their first letter, <code>KDC-REQ</code> becomes <code>KdcReq</code>.
+     */
+    static String javaTypeName(String name) {
+        StringBuilder javaName = new StringBuilder();
+        for (String part : name.split("-")) {
+            if (part.length() > 1 && part.equals(part.toUpperCase())) {
+                part = part.charAt(0) + part.substring(1).toLowerCase();
+            }
+            javaName.append(capitalize(part));
+        }
+        return javaName.toString();
+    }
+
+    /**
+     * @return the name of a component, with the hyphens removed and the following letters capitalized.
+     */
+    static String fieldName(String name) {
+        String[] parts = name.split("-");
+        StringBuilder field = new StringBuilder(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            field.append(capitalize(parts[i]));
+        }
+        return JAVA_KEYWORDS.contains(field.toString()) ? field + "_" : field.toString();
+    }
+
+    /**
+     * @return the name of an enumeration constant in capitals, with words separated by underscores.
+     */
+    static String constantName(String name) {
+        StringBuilder constant = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '-') {
+                constant.append('_');
+            } else {
+                if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(name.charAt(i - 1)) && name.charAt(i - 1) != '-') {
+                    constant.append('_');
+                }
+                constant.append(Character.toUpperCase(c));
+            }
+        }
+        return constant.toString();
+    }
+
+    private static String capitalize(String part) {
+        return part.isEmpty() ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1);
+    }
+
+    /**
+     * The intersection of the value or size constraints of a type and the types it refers to.
+     */
+    private class Range {
+        private boolean constrained;
+        private Long minimum;
+        private Long maximum;
+
+        void intersect(boolean constrainedBy, String lower, String upper, String name) {
+            if (!constrainedBy) {
+                return;
+            }
+            Long min = lower != null ? number(lower, name) : null;
+            Long max = upper != null ? number(upper, name) : null;
+            if (!constrained) {
+                minimum = min;
+                maximum = max;
+                constrained = true;
+                return;
+            }
+            if (min != null && (minimum == null || min > minimum)) {
+                minimum = min;
+            }
+            if (max != null && (maximum == null || max < maximum)) {
+                maximum = max;
+            }
+        }
+
+        void constrain(ComponentDefinition component) {
+            if (constrained) {
+                component.constraint(minimum, maximum);
+            }
+        }
+    }
+
+    /**
+     * Compile ASN.1 modules from the command line.
+     *
+     * @param args The package of the generated classes, the directory to write them to and the files with the modules
+     * @throws IOException If a module cannot be read, or a class cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ModuleCompiler <package> <output directory> <module file>...");
+            System.exit(2);
+        }
+        ModuleCompiler compiler = new ModuleCompiler(args[0]);
+        try {
+            for (int i = 2; i < args.length; i++) {
+                try {
+                    compiler.addModules(new String(Files.readAllBytes(new File(args[i]).toPath()), StandardCharsets.UTF_8));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(args[i] + ": " + e.getMessage(), e);
+                }
+            }
+            compiler.compile(new File(args[1]));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
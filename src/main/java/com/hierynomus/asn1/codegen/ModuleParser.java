@@ -0,0 +1,688 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.codegen;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.hierynomus.asn1.types.ASN1TagClass;
+
+/**
+ * Parses ASN.1 modules, as far as their type assignments are concerned.
+ *
+ * The supported types are BOOLEAN, INTEGER, ENUMERATED, BIT STRING, OCTET STRING, NULL, OBJECT IDENTIFIER, ANY,
+ * SEQUENCE, SEQUENCE OF, SET OF, CHOICE, tagged types and references to other types. Value and size constraints are
+ * kept if they are a single range, other constraints are skipped. Value assignments are skipped, except those of
+ * numbers, which can be used in constraints. The IMPORTS and EXPORTS are skipped, references are resolved against all
+ * modules that are compiled together.
+ */
+class ModuleParser {
+    enum TagDefault {
+        EXPLICIT,
+        IMPLICIT,
+        AUTOMATIC
+    }
+
+    enum Kind {
+        BOOLEAN,
+        INTEGER,
+        ENUMERATED,
+        BIT_STRING,
+        OCTET_STRING,
+        NULL,
+        OBJECT_IDENTIFIER,
+        ANY,
+        SEQUENCE,
+        SEQUENCE_OF,
+        SET,
+        SET_OF,
+        CHOICE,
+        TAGGED,
+        REFERENCE
+    }
+
+    static class Module {
+        final String name;
+        final Map<String, Node> types = new LinkedHashMap<>();
+        final Map<String, String> values = new LinkedHashMap<>();
+
+        Module(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * A type, as it is written in the module.
+     */
+    static class Node {
+        final Kind kind;
+        final int line;
+        // TAGGED
+        Tag tag;
+        Node inner;
+        // REFERENCE
+        String reference;
+        // SEQUENCE, SET and CHOICE
+        final List<Component> components = new ArrayList<>();
+        boolean extensible;
+        // SEQUENCE OF and SET OF
+        Node element;
+        String elementName;
+        // INTEGER, ENUMERATED and BIT STRING
+        final List<NamedNumber> namedNumbers = new ArrayList<>();
+        // The bounds of a value or size constraint, numbers or value references, null if unbounded
+        boolean valueConstrained;
+        String valueMinimum;
+        String valueMaximum;
+        boolean sizeConstrained;
+        String sizeMinimum;
+        String sizeMaximum;
+
+        Node(Kind kind, int line) {
+            this.kind = kind;
+            this.line = line;
+        }
+    }
+
+    static class Tag {
+        final ASN1TagClass tagClass;
+        final int number;
+        // null if the tag is implicit, unless it tags a CHOICE or ANY
+        final Boolean explicit;
+
+        Tag(ASN1TagClass tagClass, int number, Boolean explicit) {
+            this.tagClass = tagClass;
+            this.number = number;
+            this.explicit = explicit;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + (tagClass == ASN1TagClass.CONTEXT_SPECIFIC ? "" : tagClass + " ") + number + "]";
+        }
+    }
+
+    static class Component {
+        final String name;
+        final Node type;
+        final int line;
+        boolean optional;
+        String defaultValue;
+        // Set for COMPONENTS OF, of which the type is the SEQUENCE to include the components of
+        boolean componentsOf;
+        boolean extensionAddition;
+
+        Component(String name, Node type, int line) {
+            this.name = name;
+            this.type = type;
+            this.line = line;
+        }
+    }
+
+    static class NamedNumber {
+        final String name;
+        final long value;
+
+        NamedNumber(String name, long value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    private final String text;
+    private int position = 0;
+    private int line = 1;
+    private String token;
+    private int tokenLine;
+    private TagDefault tagDefault;
+    private boolean extensibilityImplied;
+
+    ModuleParser(String text) {
+        this.text = text;
+        nextToken();
+    }
+
+    /**
+     * Parse all modules in the text.
+     *
+     * @return the modules.
+     * @throws IllegalArgumentException If the text cannot be parsed
+     */
+    List<Module> parse() {
+        List<Module> modules = new ArrayList<>();
+        while (token != null) {
+            modules.add(parseModule());
+        }
+        return modules;
+    }
+
+    private Module parseModule() {
+        Module module = new Module(identifier());
+        if (peek("{")) {
+            skipBalanced();
+        }
+        expect("DEFINITIONS");
+        tagDefault = TagDefault.EXPLICIT;
+        if (peek("EXPLICIT") || peek("IMPLICIT") || peek("AUTOMATIC")) {
+            tagDefault = TagDefault.valueOf(nextToken());
+            expect("TAGS");
+        }
+        extensibilityImplied = accept("EXTENSIBILITY");
+        if (extensibilityImplied) {
+            expect("IMPLIED");
+        }
+        expect("::=");
+        expect("BEGIN");
+        if (accept("EXPORTS") || accept("IMPORTS")) {
+            skipTo(";");
+        }
+        if (accept("IMPORTS")) {
+            skipTo(";");
+        }
+        while (!accept("END")) {
+            int assignmentLine = tokenLine;
+            String name = identifier();
+            if (isTypeReference(name)) {
+                if (peek("{")) {
+                    throw error("Parameterized type %s is not supported", name);
+                }
+                expect("::=");
+                Node type = parseType();
+                if (module.types.put(name, type) != null) {
+                    throw new IllegalArgumentException(String.format("Line %s: type %s is defined more than once", assignmentLine, name));
+                }
+            } else {
+                Node type = parseType();
+                expect("::=");
+                String value = parseValue();
+                if (type.kind == Kind.INTEGER || type.kind == Kind.REFERENCE) {
+                    module.values.put(name, value);
+                }
+            }
+        }
+        return module;
+    }
+
+    private Node parseType() {
+        Node type;
+        int typeLine = tokenLine;
+        if (accept("[")) {
+            ASN1TagClass tagClass = ASN1TagClass.CONTEXT_SPECIFIC;
+            if (accept("UNIVERSAL")) {
+                tagClass = ASN1TagClass.UNIVERSAL;
+            } else if (accept("APPLICATION")) {
+                tagClass = ASN1TagClass.APPLICATION;
+            } else if (accept("PRIVATE")) {
+                tagClass = ASN1TagClass.PRIVATE;
+            }
+            int number = (int) number(nextToken());
+            expect("]");
+            Boolean explicit = tagDefault == TagDefault.EXPLICIT ? Boolean.TRUE : null;
+            if (accept("IMPLICIT")) {
+                explicit = Boolean.FALSE;
+            } else if (accept("EXPLICIT")) {
+                explicit = Boolean.TRUE;
+            }
+            type = new Node(Kind.TAGGED, typeLine);
+            type.tag = new Tag(tagClass, number, explicit);
+            type.inner = parseType();
+            return type;
+        }
+        String keyword = nextToken();
+        switch (keyword) {
+            case "BOOLEAN":
+                type = new Node(Kind.BOOLEAN, typeLine);
+                break;
+            case "NULL":
+                type = new Node(Kind.NULL, typeLine);
+                break;
+            case "INTEGER":
+                type = new Node(Kind.INTEGER, typeLine);
+                if (peek("{")) {
+                    parseNamedNumbers(type, false);
+                }
+                break;
+            case "ENUMERATED":
+                type = new Node(Kind.ENUMERATED, typeLine);
+                parseNamedNumbers(type, true);
+                break;
+            case "BIT":
+                expect("STRING");
+                type = new Node(Kind.BIT_STRING, typeLine);
+                if (peek("{")) {
+                    parseNamedNumbers(type, false);
+                }
+                break;
+            case "OCTET":
+                expect("STRING");
+                type = new Node(Kind.OCTET_STRING, typeLine);
+                break;
+            case "OBJECT":
+                expect("IDENTIFIER");
+                type = new Node(Kind.OBJECT_IDENTIFIER, typeLine);
+                break;
+            case "ANY":
+                type = new Node(Kind.ANY, typeLine);
+                if (accept("DEFINED")) {
+                    expect("BY");
+                    identifier();
+                }
+                break;
+            case "SEQUENCE":
+            case "SET":
+                type = parseConstructed(keyword, typeLine);
+                break;
+            case "CHOICE":
+                type = new Node(Kind.CHOICE, typeLine);
+                parseComponents(type);
+                break;
+            default:
+                if (!Character.isUpperCase(keyword.charAt(0)) || !isIdentifier(keyword)) {
+                    throw error("Expected a type, found '%s'", keyword);
+                }
+                type = new Node(Kind.REFERENCE, typeLine);
+                type.reference = keyword;
+                break;
+        }
+        while (peek("(")) {
+            parseConstraint(type);
+        }
+        return type;
+    }
+
+    private Node parseConstructed(String keyword, int typeLine) {
+        if (peek("{")) {
+            Node type = new Node(keyword.equals("SET") ? Kind.SET : Kind.SEQUENCE, typeLine);
+            parseComponents(type);
+            return type;
+        }
+        Node type = new Node(keyword.equals("SET") ? Kind.SET_OF : Kind.SEQUENCE_OF, typeLine);
+        if (peek("SIZE")) {
+            // SEQUENCE SIZE (1..MAX) OF
+            parseSizeConstraint(type);
+        } else if (peek("(")) {
+            parseConstraint(type);
+        }
+        expect("OF");
+        if (token != null && isIdentifier(token) && Character.isLowerCase(token.charAt(0))) {
+            type.elementName = nextToken();
+        }
+        type.element = parseType();
+        return type;
+    }
+
+    private void parseComponents(Node type) {
+        expect("{");
+        type.extensible = extensibilityImplied;
+        int extensionMarkers = 0;
+        while (!accept("}")) {
+            if (accept("[[")) {
+                // An extension addition group, its components are treated as separate extension additions
+                if (token != null && Character.isDigit(token.charAt(0))) {
+                    nextToken();
+                    expect(":");
+                }
+                continue;
+            }
+            if (accept("]]")) {
+                accept(",");
+                continue;
+            }
+            int componentLine = tokenLine;
+            if (accept("...")) {
+                type.extensible = true;
+                extensionMarkers++;
+                if (accept("!")) {
+                    parseValue();
+                }
+            } else if (accept("COMPONENTS")) {
+                expect("OF");
+                Component component = new Component(null, parseType(), componentLine);
+                component.componentsOf = true;
+                type.components.add(component);
+            } else {
+                String name = identifier();
+                if (!Character.isLowerCase(name.charAt(0))) {
+                    throw new IllegalArgumentException(String.format("Line %s: expected the identifier of a component, found '%s'", componentLine, name));
+                }
+                Component component = new Component(name, parseType(), componentLine);
+                component.extensionAddition = extensionMarkers == 1;
+                if (accept("OPTIONAL")) {
+                    component.optional = true;
+                } else if (accept("DEFAULT")) {
+                    component.defaultValue = parseValue();
+                }
+                type.components.add(component);
+            }
+            if (!accept(",") && !peek("]]")) {
+                expect("}");
+                break;
+            }
+        }
+        if (tagDefault == TagDefault.AUTOMATIC) {
+            applyAutomaticTags(type);
+        }
+    }
+
+    /**
+     * Tag the components of a SEQUENCE, SET or CHOICE with context specific tags numbered from 0, unless any of them is
+     * tagged already.
+     */
+    private static void applyAutomaticTags(Node type) {
+        for (Component component : type.components) {
+            if (component.componentsOf || component.type.kind == Kind.TAGGED) {
+                return;
+            }
+        }
+        List<Component> tagged = new ArrayList<>();
+        for (Component component : type.components) {
+            Node node = new Node(Kind.TAGGED, component.line);
+            node.tag = new Tag(ASN1TagClass.CONTEXT_SPECIFIC, tagged.size(), null);
+            node.inner = component.type;
+            Component copy = new Component(component.name, node, component.line);
+            copy.optional = component.optional;
+            copy.defaultValue = component.defaultValue;
+            copy.extensionAddition = component.extensionAddition;
+            tagged.add(copy);
+        }
+        type.components.clear();
+        type.components.addAll(tagged);
+    }
+
+    /**
+     * Parse the named numbers of an INTEGER or BIT STRING, or the enumeration of an ENUMERATED. The constants of an
+     * enumeration without a number are numbered from the lowest number that is not used yet.
+     */
+    private void parseNamedNumbers(Node type, boolean enumeration) {
+        expect("{");
+        List<String> unnumbered = new ArrayList<>();
+        while (!accept("}")) {
+            if (accept("...")) {
+                if (accept("!")) {
+                    parseValue();
+                }
+            } else {
+                String name = identifier();
+                if (accept("(")) {
+                    type.namedNumbers.add(new NamedNumber(name, number(nextToken())));
+                    expect(")");
+                } else if (enumeration) {
+                    unnumbered.add(name);
+                    type.namedNumbers.add(null);
+                } else {
+                    throw error("Expected the number of %s", name);
+                }
+            }
+            if (!accept(",")) {
+                expect("}");
+                break;
+            }
+        }
+        long next = 0;
+        for (int i = 0, j = 0; i < type.namedNumbers.size(); i++) {
+            if (type.namedNumbers.get(i) == null) {
+                while (isUsed(type.namedNumbers, next)) {
+                    next++;
+                }
+                type.namedNumbers.set(i, new NamedNumber(unnumbered.get(j++), next));
+            }
+        }
+    }
+
+    private static boolean isUsed(List<NamedNumber> numbers, long value) {
+        for (NamedNumber number : numbers) {
+            if (number != null && number.value == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a constraint. Only a single range of values, or a single range of sizes is kept, any other constraint is
+     * skipped. An extensible constraint is skipped as well, as values outside of it are valid.
+     */
+    private void parseConstraint(Node type) {
+        expect("(");
+        if (peek("SIZE")) {
+            Node size = new Node(type.kind, tokenLine);
+            parseSizeConstraint(size);
+            if (accept(")")) {
+                type.sizeConstrained = size.sizeConstrained;
+                type.sizeMinimum = size.sizeMinimum;
+                type.sizeMaximum = size.sizeMaximum;
+                return;
+            }
+        } else if (isBound(token)) {
+            String minimum = nextToken();
+            String maximum = minimum;
+            if (accept("..")) {
+                maximum = isBound(token) ? nextToken() : null;
+            }
+            if (maximum != null && accept(")")) {
+                type.valueConstrained = true;
+                type.valueMinimum = minimum.equals("MIN") ? null : minimum;
+                type.valueMaximum = maximum.equals("MAX") ? null : maximum;
+                return;
+            }
+        }
+        skipTo(")");
+    }
+
+    /**
+     * Parse <code>SIZE (lower..upper)</code> or <code>SIZE (size)</code>, other size constraints are skipped.
+     */
+    private void parseSizeConstraint(Node type) {
+        expect("SIZE");
+        expect("(");
+        if (isBound(token)) {
+            String minimum = nextToken();
+            String maximum = minimum;
+            if (accept("..")) {
+                maximum = isBound(token) ? nextToken() : null;
+            }
+            if (maximum != null && accept(")")) {
+                type.sizeConstrained = true;
+                type.sizeMinimum = minimum.equals("MIN") ? null : minimum;
+                type.sizeMaximum = maximum.equals("MAX") ? null : maximum;
+                return;
+            }
+        }
+        skipTo(")");
+    }
+
+    private static boolean isBound(String token) {
+        return token != null && (token.equals("MIN") || token.equals("MAX") || isNumber(token)
+            || isIdentifier(token) && Character.isLowerCase(token.charAt(0)));
+    }
+
+    /**
+     * Parse a value, of which only numbers, <code>TRUE</code>, <code>FALSE</code> and identifiers are used. A value
+     * between brackets is skipped.
+     */
+    private String parseValue() {
+        if (peek("{")) {
+            skipBalanced();
+            return "{...}";
+        }
+        if (token == null) {
+            throw error("Expected a value");
+        }
+        return nextToken();
+    }
+
+    private boolean peek(String expected) {
+        return expected.equals(token);
+    }
+
+    private boolean accept(String expected) {
+        if (expected.equals(token)) {
+            nextToken();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String expected) {
+        if (!accept(expected)) {
+            throw error("Expected '%s', found %s", expected, token == null ? "the end of the text" : "'" + token + "'");
+        }
+    }
+
+    private String identifier() {
+        if (token == null || !isIdentifier(token)) {
+            throw error("Expected an identifier, found %s", token == null ? "the end of the text" : "'" + token + "'");
+        }
+        return nextToken();
+    }
+
+    private long number(String number) {
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            throw error("Expected a number, found '%s'", number);
+        }
+    }
+
+    /**
+     * Skip tokens up to and including the token, skipping nested brackets.
+     */
+    private void skipTo(String end) {
+        int depth = 0;
+        while (token != null) {
+            if (depth == 0 && token.equals(end)) {
+                nextToken();
+                return;
+            }
+            if (token.equals("(") || token.equals("{")) {
+                depth++;
+            } else if (token.equals(")") || token.equals("}")) {
+                depth--;
+            }
+            nextToken();
+        }
+        throw error("Expected '%s', found the end of the text", end);
+    }
+
+    /**
+     * Skip the brackets at the current token, including what is between them.
+     */
+    private void skipBalanced() {
+        String open = token;
+        nextToken();
+        skipTo(open.equals("{") ? "}" : ")");
+    }
+
+    private IllegalArgumentException error(String format, Object... args) {
+        return new IllegalArgumentException(String.format("Line %s: %s", tokenLine, String.format(format, args)));
+    }
+
+    static boolean isTypeReference(String name) {
+        return Character.isUpperCase(name.charAt(0));
+    }
+
+    private static boolean isIdentifier(String token) {
+        return Character.isLetter(token.charAt(0));
+    }
+
+    private static boolean isNumber(String token) {
+        return Character.isDigit(token.charAt(0)) || token.length() > 1 && token.charAt(0) == '-' && Character.isDigit(token.charAt(1));
+    }
+
+    /**
+     * Move to the next token, skipping white space and comments.
+     *
+     * @return the current token, before moving.
+     */
+    private String nextToken() {
+        String current = token;
+        skipWhitespaceAndComments();
+        tokenLine = line;
+        if (position >= text.length()) {
+            token = null;
+            return current;
+        }
+        int start = position;
+        char c = text.charAt(position);
+        if (Character.isLetter(c)) {
+            position++;
+            while (position < text.length()) {
+                char next = text.charAt(position);
+                boolean hyphen = next == '-' && position + 1 < text.length() && Character.isLetterOrDigit(text.charAt(position + 1));
+                if (!Character.isLetterOrDigit(next) && next != '_' && !hyphen) {
+                    break;
+                }
+                position++;
+            }
+        } else if (Character.isDigit(c) || c == '-' && position + 1 < text.length() && Character.isDigit(text.charAt(position + 1))) {
+            position++;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+        } else if (c == '"' || c == '\'') {
+            int end = text.indexOf(c, position + 1);
+            if (end < 0) {
+                throw new IllegalArgumentException(String.format("Line %s: unterminated string", line));
+            }
+            position = end + 1;
+            while (position < text.length() && Character.isLetter(text.charAt(position))) {
+                // The B or H of a binary or hexadecimal string
+                position++;
+            }
+        } else if (text.startsWith("::=", position) || text.startsWith("...", position)) {
+            position += 3;
+        } else if (text.startsWith("..", position) || text.startsWith("[[", position) || text.startsWith("]]", position)) {
+            position += 2;
+        } else {
+            position++;
+        }
+        token = text.substring(start, position);
+        return current;
+    }
+
+    private void skipWhitespaceAndComments() {
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            if (c == '\n') {
+                line++;
+                position++;
+            } else if (Character.isWhitespace(c)) {
+                position++;
+            } else if (text.startsWith("--", position)) {
+                // Up to the end of the line, or up to the next "--"
+                position += 2;
+                while (position < text.length() && text.charAt(position) != '\n' && !text.startsWith("--", position)) {
+                    position++;
+                }
+                if (text.startsWith("--", position)) {
+                    position += 2;
+                }
+            } else if (text.startsWith("/*", position)) {
+                int end = text.indexOf("*/", position + 2);
+                end = end < 0 ? text.length() : end + 2;
+                for (int i = position; i < end; i++) {
+                    if (text.charAt(i) == '\n') {
+                        line++;
+                    }
+                }
+                position = end;
+            } else {
+                return;
+            }
+        }
+    }
+}
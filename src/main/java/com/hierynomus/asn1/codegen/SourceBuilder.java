@@ -0,0 +1,66 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.codegen;
+
+/**
+ * Builds indented source code, four spaces per level.
+ */
+class SourceBuilder {
+    private final StringBuilder source = new StringBuilder();
+    private int indent = 0;
+    private int variables = 0;
+
+    /**
+     * @return a name for a local variable that is unique within the source.
+     */
+    String variable(String prefix) {
+        return prefix + variables++;
+    }
+
+    SourceBuilder line() {
+        source.append('\n');
+        return this;
+    }
+
+    SourceBuilder line(String format, Object... args) {
+        for (int i = 0; i < indent; i++) {
+            source.append("    ");
+        }
+        source.append(args.length == 0 ? format : String.format(format, args)).append('\n');
+        return this;
+    }
+
+    SourceBuilder open(String format, Object... args) {
+        line(format, args);
+        indent++;
+        return this;
+    }
+
+    SourceBuilder reopen(String format, Object... args) {
+        indent--;
+        return open(format, args);
+    }
+
+    SourceBuilder close() {
+        indent--;
+        return line("}");
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.codegen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import com.hierynomus.asn1.types.ASN1TagClass;
+
+/**
+ * A SEQUENCE or CHOICE type to generate a codec for, mapped onto a Java class.
+ */
+public class TypeDefinition {
+    public enum Kind {
+        SEQUENCE,
+        CHOICE
+    }
+
+    private final Kind kind;
+    private final String packageName;
+    private final String typeName;
+    private final List<ComponentDefinition> components = new ArrayList<>();
+    private boolean tagged;
+    private ASN1TagClass tagClass;
+    private int tag;
+    private boolean explicit;
+    private boolean extensible;
+
+    /**
+     * @param kind Whether the type is a SEQUENCE or a CHOICE
+     * @param packageName The package of the Java class, empty for the unnamed package
+     * @param typeName The name of the Java class within its package, nested classes are separated by a dot
+     */
+    public TypeDefinition(Kind kind, String packageName, String typeName) {
+        this.kind = kind;
+        this.packageName = packageName;
+        this.typeName = typeName;
+    }
+
+    /**
+     * The name of the codec of a Java class, nested classes are separated by an underscore.
+     *
+     * @param typeName The name of the Java class within its package
+     * @return the simple name of the codec, in the package of the Java class.
+     */
+    public static String codecName(String typeName) {
+        return typeName.replace('.', '_') + "Codec";
+    }
+
+    public void addComponent(ComponentDefinition component) {
+        components.add(component);
+    }
+
+    /**
+     * Put the components of a SEQUENCE in order. If the components have a position, they are sorted on it. Otherwise,
+     * if every component is tagged, they are sorted on their tags. As the tags should then increase in the order of
+     * the fields, components added in the order of their fields should already be sorted. Otherwise, components added
+     * in the order of their fields are kept in that order.
+     *
+     * @param declarationOrder Whether the components have been added in the order in which their fields are declared
+     * @throws IllegalArgumentException If the order of the components cannot be determined
+     */
+    public void orderComponents(boolean declarationOrder) {
+        if (kind != Kind.SEQUENCE || components.size() < 2) {
+            return;
+        }
+        int ordered = 0;
+        boolean allTagged = true;
+        for (ComponentDefinition component : components) {
+            if (component.getOrder() >= 0) {
+                ordered++;
+            }
+            allTagged &= component.isTagged();
+        }
+        Comparator<ComponentDefinition> comparator;
+        if (ordered == components.size()) {
+            comparator = BY_ORDER;
+        } else if (ordered > 0) {
+            throw new IllegalArgumentException(String.format("Either all or none of the components of %s should have an order", typeName));
+        } else if (allTagged) {
+            comparator = BY_TAG;
+        } else if (declarationOrder) {
+            return;
+        } else {
+            throw new IllegalArgumentException(String.format("The order of the components of %s is not known at runtime, tag them in increasing order or give them an order", typeName));
+        }
+        List<ComponentDefinition> sorted = new ArrayList<>(components);
+        Collections.sort(sorted, comparator);
+        for (int i = 1; i < sorted.size(); i++) {
+            if (comparator.compare(sorted.get(i - 1), sorted.get(i)) == 0) {
+                throw new IllegalArgumentException(String.format("The components %s and %s of %s cannot have the same %s", sorted.get(i - 1).getName(), sorted.get(i).getName(), typeName, comparator == BY_ORDER ? "order" : "tag"));
+            }
+        }
+        if (declarationOrder && comparator == BY_TAG && !sorted.equals(components)) {
+            throw new IllegalArgumentException(String.format("The tags of the components of %s should increase in the order of their fields, or the components should have an order", typeName));
+        }
+        components.clear();
+        components.addAll(sorted);
+    }
+
+    private static final Comparator<ComponentDefinition> BY_ORDER = new Comparator<ComponentDefinition>() {
+        @Override
+        public int compare(ComponentDefinition a, ComponentDefinition b) {
+            return Integer.compare(a.getOrder(), b.getOrder());
+        }
+    };
+
+    private static final Comparator<ComponentDefinition> BY_TAG = new Comparator<ComponentDefinition>() {
+        @Override
+        public int compare(ComponentDefinition a, ComponentDefinition b) {
+            int byClass = a.getTagClass().compareTo(b.getTagClass());
+            return byClass != 0 ? byClass : Integer.compare(a.getTag(), b.getTag());
+        }
+    };
+
+    /**
+     * Tag the type. The tag is only read and written when the type is decoded or encoded by itself, where the type is a
+     * component of another type the tag should be given to the component.
+     *
+     * @param tagClass The class of the tag
+     * @param tag The tag number
+     * @param explicit Whether the tag is encoded around the type, or replaces its tag
+     * @return this type.
+     */
+    public TypeDefinition tagged(ASN1TagClass tagClass, int tag, boolean explicit) {
+        this.tagged = true;
+        this.tagClass = tagClass;
+        this.tag = tag;
+        this.explicit = explicit;
+        return this;
+    }
+
+    /**
+     * Make a SEQUENCE extensible, unknown components following the known ones are skipped when it is decoded.
+     *
+     * @return this type.
+     */
+    public TypeDefinition extensible() {
+        this.extensible = true;
+        return this;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public String getQualifiedTypeName() {
+        return packageName.isEmpty() ? typeName : packageName + "." + typeName;
+    }
+
+    public String getCodecName() {
+        return codecName(typeName);
+    }
+
+    public String getQualifiedCodecName() {
+        return packageName.isEmpty() ? getCodecName() : packageName + "." + getCodecName();
+    }
+
+    public boolean isTagged() {
+        return tagged;
+    }
+
+    public ASN1TagClass getTagClass() {
+        return tagClass;
+    }
+
+    public int getTag() {
+        return tag;
+    }
+
+    public boolean isExplicit() {
+        return explicit;
+    }
+
+    public boolean isExtensible() {
+        return extensible;
+    }
+
+    public List<ComponentDefinition> getComponents() {
+        return Collections.unmodifiableList(components);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + getQualifiedTypeName();
+    }
+}
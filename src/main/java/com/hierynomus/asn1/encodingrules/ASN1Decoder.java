@@ -21,9 +21,21 @@ import com.hierynomus.asn1.types.ASN1Tag;
 import java.io.InputStream;
 
 public interface ASN1Decoder {
+    /**
+     * The length returned by {@link #readLength(InputStream)} for an object encoded in the indefinite length form. The
+     * contents of such an object end at the end-of-contents octets, see {@link ASN1Tag#END_OF_CONTENTS}.
+     */
+    int INDEFINITE_LENGTH = -1;
 
     ASN1Tag<? extends ASN1Object> readTag(InputStream is);
 
+    /**
+     * Read the length octets of an object.
+     *
+     * @param is The stream to read from
+     * @return The length of the contents, or {@link #INDEFINITE_LENGTH} if the object is encoded in the indefinite
+     * length form.
+     */
     int readLength(InputStream is);
 
     byte[] readValue(int length, InputStream is);
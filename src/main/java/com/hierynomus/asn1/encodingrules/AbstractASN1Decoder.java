@@ -0,0 +1,53 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.encodingrules;
+
+import java.io.InputStream;
+import com.hierynomus.asn1.ASN1CodecCache;
+import com.hierynomus.asn1.ASN1Parser;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+
+/**
+ * The base of the decoders of this library, which share their parsers and read lengths that do not fit into an
+ * <code>int</code>. Other implementations of {@link ASN1Decoder} can be used as well, they get a new parser for every
+ * object and cannot read objects larger than 2GB.
+ */
+public abstract class AbstractASN1Decoder implements ASN1Decoder {
+    private final ASN1CodecCache<ASN1Parser<?>> parsers = ASN1CodecCache.parsers(this);
+
+    /**
+     * Read the length octets of an object whose length may not fit into an <code>int</code>, such as an object in a
+     * file larger than 2GB.
+     *
+     * @param is The stream to read from
+     * @return The length of the contents, or {@link #INDEFINITE_LENGTH} if the object is encoded in the indefinite
+     * length form.
+     */
+    public abstract long readLongLength(InputStream is);
+
+    /**
+     * Get the parser of this decoder for objects with the tag. Parsers are thread-safe, so a decoder can hand out a
+     * shared instance.
+     *
+     * @param tag The tag of the objects
+     * @return The parser
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ASN1Object> ASN1Parser<T> getParser(ASN1Tag<T> tag) {
+        return (ASN1Parser<T>) parsers.get(tag);
+    }
+}
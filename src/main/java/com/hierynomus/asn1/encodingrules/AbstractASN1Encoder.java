@@ -0,0 +1,62 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.encodingrules;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import com.hierynomus.asn1.ASN1CodecCache;
+import com.hierynomus.asn1.ASN1Serializer;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+
+/**
+ * The base of the encoders of this library, which share their serializers and encode objects in one call. Other
+ * implementations of {@link ASN1Encoder} can be used with an {@link com.hierynomus.asn1.ASN1OutputStream} as well,
+ * they get a new serializer for every object.
+ */
+public abstract class AbstractASN1Encoder implements ASN1Encoder {
+    private final ASN1CodecCache<ASN1Serializer<?>> serializers = ASN1CodecCache.serializers(this);
+
+    /**
+     * Encode an object into an array of exactly its encoded length.
+     *
+     * @param asn1Object The object to encode
+     * @return The encoded object
+     * @throws IOException If the object could not be encoded
+     */
+    public abstract byte[] encode(ASN1Object asn1Object) throws IOException;
+
+    /**
+     * Encode an object into the buffer, starting at its position. The position is advanced past the encoded object.
+     *
+     * @param asn1Object The object to encode
+     * @param buffer The buffer to write to
+     * @throws IOException If the object could not be encoded
+     */
+    public abstract void encode(ASN1Object asn1Object, ByteBuffer buffer) throws IOException;
+
+    /**
+     * Get the serializer of this encoder for objects with the tag. Serializers are thread-safe, so an encoder can hand
+     * out a shared instance.
+     *
+     * @param tag The tag of the objects
+     * @return The serializer
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ASN1Object> ASN1Serializer<T> getSerializer(ASN1Tag<T> tag) {
+        return (ASN1Serializer<T>) serializers.get(tag);
+    }
+}
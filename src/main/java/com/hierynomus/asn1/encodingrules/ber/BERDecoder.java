@@ -16,7 +16,7 @@
 package com.hierynomus.asn1.encodingrules.ber;
 
 import com.hierynomus.asn1.ASN1ParseException;
-import com.hierynomus.asn1.encodingrules.ASN1Decoder;
+import com.hierynomus.asn1.encodingrules.AbstractASN1Decoder;
 import com.hierynomus.asn1.types.ASN1Encoding;
 import com.hierynomus.asn1.types.ASN1Object;
 import com.hierynomus.asn1.types.ASN1Tag;
@@ -25,12 +25,15 @@ import com.hierynomus.asn1.types.ASN1TagClass;
 import java.io.IOException;
 import java.io.InputStream;
 
-public class BERDecoder implements ASN1Decoder {
+public class BERDecoder extends AbstractASN1Decoder {
 
     @Override
     public ASN1Tag<? extends ASN1Object> readTag(InputStream is) {
         try {
             int tagByte = is.read();
+            if (tagByte < 0) {
+                throw new ASN1ParseException("EOF found while reading the ASN.1 tag.");
+            }
             ASN1TagClass asn1TagClass = ASN1TagClass.parseClass((byte) tagByte);
             ASN1Encoding asn1Encoding = ASN1Encoding.parseEncoding((byte) tagByte);
             int tag = tagByte & 0x1f;
@@ -65,20 +68,37 @@ public class BERDecoder implements ASN1Decoder {
 
     @Override
     public int readLength(InputStream is) {
+        long length = readLongLength(is);
+        if (length > Integer.MAX_VALUE) {
+            throw new ASN1ParseException("The length of the ASN.1 object does not fit in an int");
+        }
+        return (int) length;
+    }
+
+    @Override
+    public long readLongLength(InputStream is) {
         try {
             int firstByte = is.read();
+            if (firstByte < 0) {
+                throw new ASN1ParseException("EOF found while reading the length of the ASN.1 object.");
+            }
             if (firstByte <= 0x7f) {
                 return firstByte;
             }
             int nrBytes = firstByte & 0x7f;
-            int longLength = 0;
-            for (int i = 0; i < nrBytes; i++) {
-                longLength = longLength << 8;
-                longLength += is.read();
+            if (nrBytes == 0) {
+                return INDEFINITE_LENGTH;
             }
-
-            if (longLength == 0) {
-                throw new ASN1ParseException("The indefinite length form is not (yet) supported!");
+            long longLength = 0;
+            for (int i = 0; i < nrBytes; i++) {
+                int read = is.read();
+                if (read < 0) {
+                    throw new ASN1ParseException("EOF found inside the length of the ASN.1 object.");
+                }
+                if (longLength > (Long.MAX_VALUE >> 8)) {
+                    throw new ASN1ParseException("The length of the ASN.1 object does not fit in a long");
+                }
+                longLength = (longLength << 8) + read;
             }
 
             return longLength;
@@ -15,7 +15,21 @@
  */
 package com.hierynomus.asn1.encodingrules.der;
 
+import java.io.InputStream;
+import com.hierynomus.asn1.ASN1ParseException;
 import com.hierynomus.asn1.encodingrules.ber.BERDecoder;
 
 public class DERDecoder extends BERDecoder {
+
+    /**
+     * DER only allows the definite length form.
+     */
+    @Override
+    public long readLongLength(InputStream is) {
+        long length = super.readLongLength(is);
+        if (length == INDEFINITE_LENGTH) {
+            throw new ASN1ParseException("The indefinite length form is not allowed in DER");
+        }
+        return length;
+    }
 }
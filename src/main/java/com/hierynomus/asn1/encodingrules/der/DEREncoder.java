@@ -15,7 +15,40 @@
  */
 package com.hierynomus.asn1.encodingrules.der;
 
-import com.hierynomus.asn1.encodingrules.ASN1Encoder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import com.hierynomus.asn1.ASN1OutputStream;
+import com.hierynomus.asn1.encodingrules.AbstractASN1Encoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.util.ByteBufferOutputStream;
 
-public class DEREncoder implements ASN1Encoder {
+import static com.hierynomus.asn1.util.Checks.checkArgument;
+import static com.hierynomus.asn1.util.Checks.checkState;
+
+public class DEREncoder extends AbstractASN1Encoder {
+
+    /**
+     * All lengths are calculated before the object is written, so that it is written in a single pass without
+     * intermediate buffers.
+     */
+    @Override
+    public byte[] encode(ASN1Object asn1Object) throws IOException {
+        int length = ASN1OutputStream.encodedLength(this, asn1Object);
+        byte[] encoded = new byte[length];
+        write(asn1Object, ByteBuffer.wrap(encoded), length);
+        return encoded;
+    }
+
+    @Override
+    public void encode(ASN1Object asn1Object, ByteBuffer buffer) throws IOException {
+        int length = ASN1OutputStream.encodedLength(this, asn1Object);
+        checkArgument(length <= buffer.remaining(), "Encoding %s takes %s bytes, only %s bytes remaining", asn1Object, length, buffer.remaining());
+        write(asn1Object, buffer, length);
+    }
+
+    private void write(ASN1Object asn1Object, ByteBuffer buffer, int length) throws IOException {
+        int start = buffer.position();
+        new ASN1OutputStream(this, new ByteBufferOutputStream(buffer)).writeObject(asn1Object);
+        checkState(buffer.position() - start == length, "Encoded %s in %s bytes, but calculated %s bytes", asn1Object, buffer.position() - start, length);
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.encodingrules.der;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import com.hierynomus.asn1.ASN1ReverseWriter;
+import com.hierynomus.asn1.encodingrules.AbstractASN1Encoder;
+import com.hierynomus.asn1.types.ASN1Object;
+
+import static com.hierynomus.asn1.util.Checks.checkArgument;
+
+/**
+ * A DER encoder writing objects back to front into a buffer it reuses, see {@link ASN1ReverseWriter}.
+ *
+ * No lengths are calculated before writing and no intermediate buffers are used. Once the buffer has grown to the size
+ * of the largest encoded object, {@link #encode(ASN1Object, ByteBuffer)} does not allocate. As the buffer is reused,
+ * an encoder must not be shared between threads.
+ *
+ * It can be used with an {@link com.hierynomus.asn1.ASN1OutputStream} as well, which writes front to back.
+ */
+public class ReverseDEREncoder extends AbstractASN1Encoder {
+    private final ASN1ReverseWriter writer;
+
+    public ReverseDEREncoder() {
+        this(1024);
+    }
+
+    public ReverseDEREncoder(int initialCapacity) {
+        this.writer = new ASN1ReverseWriter(this, initialCapacity);
+    }
+
+    @Override
+    public byte[] encode(ASN1Object asn1Object) throws IOException {
+        write(asn1Object);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public void encode(ASN1Object asn1Object, ByteBuffer buffer) throws IOException {
+        write(asn1Object);
+        checkArgument(writer.size() <= buffer.remaining(), "Encoding %s takes %s bytes, only %s bytes remaining", asn1Object, writer.size(), buffer.remaining());
+        writer.writeTo(buffer);
+    }
+
+    private void write(ASN1Object asn1Object) throws IOException {
+        writer.reset();
+        writer.writeObject(asn1Object);
+    }
+}
@@ -15,9 +15,32 @@
  */
 package com.hierynomus.asn1.types;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import com.hierynomus.asn1.encodingrules.der.DEREncoder;
+
+import static com.hierynomus.asn1.util.Checks.checkState;
+
+/**
+ * The base of the ASN.1 objects.
+ *
+ * Objects are immutable once they are constructed or returned by a decoder. What is derived on first use, such as the
+ * children of a decoded SEQUENCE, the dotted string of an OBJECT IDENTIFIER or the encoded length of a constructed
+ * object, is cached in a way that is safe when threads race to derive it. A tree of objects can therefore be cached
+ * and shared between threads, which may read and encode it concurrently without copying or locking. This holds as long
+ * as the arrays, lists and buffers the objects were created or decoded from are not modified afterwards.
+ *
+ * The encoding a decoded object was read from, see {@link #getEncoded()}, is recorded by the decoder before it returns
+ * the object. It is kept in a holder with final fields which is published through a volatile field, so any thread the
+ * object is handed to after it was returned sees it.
+ *
+ * Encoders and decoders can be shared as well, except for the
+ * {@link com.hierynomus.asn1.encodingrules.der.ReverseDEREncoder} which reuses its buffer.
+ */
 public abstract class ASN1Object<T> {
 
-    protected ASN1Tag tag;
+    protected final ASN1Tag tag;
+    private volatile Encoding encoding;
 
     protected ASN1Object(ASN1Tag tag) {
         this.tag = tag;
@@ -54,4 +77,98 @@ public abstract class ASN1Object<T> {
     public ASN1Tag getTag() {
         return tag;
     }
+
+    /**
+     * Returns the encoding of this object, its tag, length and value.
+     *
+     * An object decoded from a buffer returns exactly the bytes it was decoded from, as a read-only view on them, so
+     * that for instance a signature can be checked over them without encoding the object again. The children of a
+     * decoded constructed object are always decoded from a buffer. Other objects are encoded with DER. Values that are
+     * shared between decodings, such as small INTEGERs and OBJECT IDENTIFIERs, are only shared when they were decoded
+     * from their DER encoding.
+     *
+     * @return The encoding, from its position up to its limit.
+     */
+    public ByteBuffer getEncoded() {
+        Encoding decoded = encoding;
+        if (decoded != null) {
+            ByteBuffer encoded = decoded.source.asReadOnlyBuffer();
+            encoded.limit(decoded.offset + decoded.length).position(decoded.offset);
+            return encoded.slice();
+        }
+        try {
+            return ByteBuffer.wrap(new DEREncoder().encode(this)).asReadOnlyBuffer();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode " + this, e);
+        }
+    }
+
+    /**
+     * Whether this instance can be returned by more than one decoding, such as the INTEGERs of small values. A shared
+     * instance is only returned if it was decoded from its DER encoding, otherwise {@link #unshared()} is. The parsers
+     * only return a shared instance for a value in its DER form, so only its header can be in another form.
+     *
+     * @return <code>false</code>, subclasses that share instances override it
+     */
+    protected boolean isShared() {
+        return false;
+    }
+
+    /**
+     * @return An equal instance that is not shared, to record a received encoding that is not DER on
+     */
+    protected ASN1Object<T> unshared() {
+        return this;
+    }
+
+    /**
+     * Record where the encoding this object was decoded from can be found, only the offsets are recorded until
+     * {@link #getEncoded()} is called. Called by the parser of this object, see
+     * {@link com.hierynomus.asn1.ASN1Parser#decodedFrom(ASN1Object, ByteBuffer, int, int)}, the encoding can only be
+     * recorded once.
+     *
+     * @param source The decoded bytes
+     * @param offset The index in the source where the encoding of this object starts
+     * @param length The length of the encoding
+     * @return This object, or for a shared instance that was not decoded from its DER encoding an equal instance that
+     * records the encoding
+     */
+    protected final ASN1Object<T> decodedFrom(ByteBuffer source, int offset, int length) {
+        ASN1Object<T> object = this;
+        if (isShared()) {
+            if (hasDERHeader(source, offset, length)) {
+                return this;
+            }
+            object = unshared();
+        }
+        checkState(object.encoding == null, "The encoding of %s has already been recorded", object);
+        object.encoding = new Encoding(source, offset, length);
+        return object;
+    }
+
+    private boolean hasDERHeader(ByteBuffer source, int offset, int length) {
+        if (!tag.isEncodedAt(source, offset)) {
+            return false;
+        }
+        int lengthStart = offset + tag.getIdentifierLength();
+        int first = source.get(lengthStart) & 0xff;
+        if (first < 0x80) {
+            return true;
+        }
+        // The long form is only DER for lengths of 128 and more, without leading zero octets
+        int valueLength = length - (lengthStart - offset) - 1 - (first & 0x7f);
+        return first != 0x80 && valueLength >= 0x80 && source.get(lengthStart + 1) != 0;
+    }
+
+    private static final class Encoding {
+        private final ByteBuffer source;
+        private final int offset;
+        private final int length;
+
+        Encoding(ByteBuffer source, int offset, int length) {
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
 }
@@ -27,14 +27,55 @@ import com.hierynomus.asn1.types.primitive.*;
 import com.hierynomus.asn1.types.string.ASN1BitString;
 import com.hierynomus.asn1.types.string.ASN1OctetString;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.hierynomus.asn1.ASN1ReverseWriter;
 
 import static com.hierynomus.asn1.types.ASN1TagClass.UNIVERSAL;
 import static java.lang.String.format;
 import static java.util.EnumSet.of;
 
+/**
+ * The tag of an ASN.1 type.
+ *
+ * The tags returned by {@link #forTag(ASN1TagClass, int)}, {@link #application(int)}, {@link #contextSpecific(int)} and
+ * {@link #asEncoded(ASN1Encoding)} are canonical instances, so looking up a tag does not allocate. Tag numbers of up to
+ * 30 are kept in tables, higher tag numbers are interned when first seen.
+ */
 public abstract class ASN1Tag<T extends ASN1Object> {
-    private static Map<Integer, ASN1Tag<?>> tags = new HashMap<>();
+    // Tag numbers below this are encoded in the first identifier octet
+    private static final int LOW_TAG_NUMBERS = 0x1f;
+    // Bounds the number of interned tags with a high tag number, as these are created from decoded data
+    private static final int MAX_INTERNED_HIGH_TAGS = 1024;
+
+    private static final ASN1Tag<?>[] universalTags = new ASN1Tag<?>[LOW_TAG_NUMBERS];
+    private static final ASN1Tag<?>[][] lowTags = new ASN1Tag<?>[ASN1TagClass.values().length][LOW_TAG_NUMBERS];
+    private static final ConcurrentMap<Long, ASN1Tag<?>> highTags = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger nextCodecId = new AtomicInteger();
+    // All tagged object tags share their parser and serializer
+    private static final int TAGGED_OBJECT_CODEC_ID = nextCodecId.getAndIncrement();
+
+    /**
+     * The tag of the end-of-contents octets, which close the contents of an object encoded in the indefinite length
+     * form. It is not the tag of an object, so it cannot be parsed or serialized.
+     */
+    public static final ASN1Tag<?> END_OF_CONTENTS = new ASN1Tag(UNIVERSAL, 0x00, ASN1Encoding.PRIMITIVE) {
+        @Override
+        public ASN1Parser<?> newParser(ASN1Decoder decoder) {
+            throw new ASN1ParseException("Unexpected end-of-contents octets found");
+        }
+
+        @Override
+        public ASN1Serializer newSerializer(ASN1Encoder encoder) {
+            throw new IllegalStateException("The end-of-contents octets cannot be serialized as an object");
+        }
+    };
 
     public static final ASN1Tag<ASN1Boolean> BOOLEAN = new ASN1Tag<ASN1Boolean>(UNIVERSAL, 0x01, ASN1Encoding.PRIMITIVE) {
         @Override
@@ -135,21 +176,26 @@ public abstract class ASN1Tag<T extends ASN1Object> {
         }    };
 
     static {
-        tags.put(BOOLEAN.getTag(), BOOLEAN);
-        tags.put(INTEGER.getTag(), INTEGER);
-        tags.put(BIT_STRING.getTag(), BIT_STRING);
-        tags.put(OCTET_STRING.getTag(), OCTET_STRING);
-        tags.put(NULL.getTag(), NULL);
-        tags.put(OBJECT_IDENTIFIER.getTag(), OBJECT_IDENTIFIER);
-        tags.put(ENUMERATED.getTag(), ENUMERATED);
-        tags.put(SET.getTag(), SET);
-        tags.put(SEQUENCE.getTag(), SEQUENCE);
+        for (ASN1Tag<?> universal : Arrays.asList(END_OF_CONTENTS, BOOLEAN, INTEGER, BIT_STRING, OCTET_STRING, NULL, OBJECT_IDENTIFIER, ENUMERATED, SET, SEQUENCE)) {
+            universalTags[universal.getTag()] = universal;
+        }
+        for (ASN1TagClass asn1TagClass : ASN1TagClass.values()) {
+            if (asn1TagClass != UNIVERSAL) {
+                for (int tag = 0; tag < LOW_TAG_NUMBERS; tag++) {
+                    lowTags[asn1TagClass.ordinal()][tag] = taggedObjectTag(asn1TagClass, tag);
+                }
+            }
+        }
     }
 
     private final ASN1TagClass asn1TagClass;
     private final int tag;
     private final Set<ASN1Encoding> supportedEncodings;
     private final ASN1Encoding asn1Encoding;
+    private final byte[] identifier;
+    private final int hashCode;
+    private final int codecId;
+    private volatile ASN1Tag<T> otherEncoding;
 
     public ASN1Tag(ASN1TagClass asn1TagClass, int tag, Set<ASN1Encoding> supportedEncodings) {
         this(asn1TagClass, tag, supportedEncodings.contains(ASN1Encoding.PRIMITIVE) ? ASN1Encoding.PRIMITIVE : ASN1Encoding.CONSTRUCTED, supportedEncodings);
@@ -160,10 +206,40 @@ public abstract class ASN1Tag<T extends ASN1Object> {
     }
 
     private ASN1Tag(ASN1TagClass asn1TagClass, int tag, ASN1Encoding asn1Encoding, Set<ASN1Encoding> supportedEncodings) {
+        this(asn1TagClass, tag, asn1Encoding, supportedEncodings, nextCodecId.getAndIncrement());
+    }
+
+    private ASN1Tag(ASN1TagClass asn1TagClass, int tag, ASN1Encoding asn1Encoding, Set<ASN1Encoding> supportedEncodings, int codecId) {
+        this.codecId = codecId;
         this.asn1TagClass = asn1TagClass;
         this.tag = tag;
         this.supportedEncodings = supportedEncodings;
         this.asn1Encoding = asn1Encoding;
+        this.identifier = identifierOctets(asn1TagClass, asn1Encoding, tag);
+        this.hashCode = Objects.hash(asn1TagClass, tag, asn1Encoding);
+    }
+
+    /**
+     * The identifier octets of a tag, a tag number of 31 or higher is encoded base 128 in the octets following the
+     * first octet.
+     */
+    private static byte[] identifierOctets(ASN1TagClass asn1TagClass, ASN1Encoding asn1Encoding, int tag) {
+        int first = asn1TagClass.getValue() | asn1Encoding.getValue();
+        if (tag < LOW_TAG_NUMBERS) {
+            return new byte[]{(byte) (first | tag)};
+        }
+        int nrBytes = 1;
+        for (int t = tag >>> 7; t > 0; t >>>= 7) {
+            nrBytes++;
+        }
+        byte[] octets = new byte[nrBytes + 1];
+        octets[0] = (byte) (first | LOW_TAG_NUMBERS);
+        int t = tag;
+        for (int i = nrBytes; i > 0; i--) {
+            octets[i] = (byte) ((t & 0x7f) | (i == nrBytes ? 0 : 0x80));
+            t >>>= 7;
+        }
+        return octets;
     }
 
     public ASN1Tag<T> constructed() {
@@ -181,7 +257,22 @@ public abstract class ASN1Tag<T extends ASN1Object> {
         if (!supportedEncodings.contains(asn1Encoding)) {
             throw new IllegalArgumentException(format("The ASN.1 tag %s does not support encoding as %s", this, asn1Encoding));
         }
-        return new ASN1Tag<T>(this.asn1TagClass, this.tag, asn1Encoding, this.supportedEncodings) {
+        ASN1Tag<T> other = otherEncoding;
+        if (other == null) {
+            synchronized (this) {
+                other = otherEncoding;
+                if (other == null) {
+                    other = newEncoding(asn1Encoding);
+                    other.otherEncoding = this;
+                    otherEncoding = other;
+                }
+            }
+        }
+        return other;
+    }
+
+    private ASN1Tag<T> newEncoding(final ASN1Encoding asn1Encoding) {
+        return new ASN1Tag<T>(this.asn1TagClass, this.tag, asn1Encoding, this.supportedEncodings, this.codecId) {
             @Override
             public ASN1Parser<T> newParser(ASN1Decoder decoder) {
                 return ASN1Tag.this.newParser(decoder);
@@ -203,32 +294,42 @@ public abstract class ASN1Tag<T extends ASN1Object> {
     }
 
     public static ASN1Tag forTag(ASN1TagClass asn1TagClass, int tag) {
-        switch (asn1TagClass) {
-            case UNIVERSAL:
-                for (ASN1Tag asn1Tag : tags.values()) {
-                    if (asn1Tag.tag == tag && asn1TagClass == asn1Tag.asn1TagClass) {
-                        return asn1Tag;
-                    }
+        boolean lowTagNumber = tag >= 0 && tag < LOW_TAG_NUMBERS;
+        if (asn1TagClass != UNIVERSAL) {
+            return lowTagNumber ? lowTags[asn1TagClass.ordinal()][tag] : highTag(asn1TagClass, tag);
+        } else if (lowTagNumber && universalTags[tag] != null) {
+            return universalTags[tag];
+        }
+        throw new ASN1ParseException(format("Unknown ASN.1 tag '%s:%s' found", asn1TagClass, tag));
+    }
+
+    private static ASN1Tag<?> highTag(ASN1TagClass asn1TagClass, int tag) {
+        Long key = ((long) asn1TagClass.ordinal() << 32) | (tag & 0xffffffffL);
+        ASN1Tag<?> interned = highTags.get(key);
+        if (interned == null) {
+            interned = taggedObjectTag(asn1TagClass, tag);
+            if (highTags.size() < MAX_INTERNED_HIGH_TAGS) {
+                ASN1Tag<?> existing = highTags.putIfAbsent(key, interned);
+                if (existing != null) {
+                    interned = existing;
                 }
-                break;
-            case APPLICATION:
-            case CONTEXT_SPECIFIC:
-            case PRIVATE:
-                return new ASN1Tag(asn1TagClass, tag, of(ASN1Encoding.PRIMITIVE, ASN1Encoding.CONSTRUCTED)) {
-                    @Override
-                    public ASN1Parser<?> newParser(ASN1Decoder decoder) {
-                        return new ASN1TaggedObject.Parser(decoder);
-                    }
-
-                    @Override
-                    public ASN1Serializer newSerializer(ASN1Encoder encoder) {
-                        return new ASN1TaggedObject.Serializer(encoder);
-                    }
-                };
-            default:
-                break;
+            }
         }
-        throw new ASN1ParseException(format("Unknown ASN.1 tag '%s:%s' found (%s)", asn1TagClass, tag, ASN1Tag.tags));
+        return interned;
+    }
+
+    private static ASN1Tag<?> taggedObjectTag(ASN1TagClass asn1TagClass, int tag) {
+        return new ASN1Tag(asn1TagClass, tag, ASN1Encoding.PRIMITIVE, of(ASN1Encoding.PRIMITIVE, ASN1Encoding.CONSTRUCTED), TAGGED_OBJECT_CODEC_ID) {
+            @Override
+            public ASN1Parser<?> newParser(ASN1Decoder decoder) {
+                return new ASN1TaggedObject.Parser(decoder);
+            }
+
+            @Override
+            public ASN1Serializer newSerializer(ASN1Encoder encoder) {
+                return new ASN1TaggedObject.Serializer(encoder);
+            }
+        };
     }
 
     public int getTag() {
@@ -247,10 +348,60 @@ public abstract class ASN1Tag<T extends ASN1Object> {
         return asn1Encoding;
     }
 
+    /**
+     * Identifies the parser and serializer of the tag, tags sharing a codec id have the same parser and serializer.
+     *
+     * @return a small number, used to cache parsers and serializers.
+     */
+    public int getCodecId() {
+        return codecId;
+    }
+
     public boolean isConstructed() {
         return asn1Encoding == ASN1Encoding.CONSTRUCTED;
     }
 
+    /**
+     * @return the number of identifier octets this tag is encoded in.
+     */
+    public int getIdentifierLength() {
+        return identifier.length;
+    }
+
+    /**
+     * @return Whether the identifier octets of this tag are found at the offset in the source
+     */
+    boolean isEncodedAt(ByteBuffer source, int offset) {
+        if (source.limit() - offset < identifier.length) {
+            return false;
+        }
+        for (int i = 0; i < identifier.length; i++) {
+            if (source.get(offset + i) != identifier[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the identifier octets of this tag.
+     *
+     * @param out The stream to write to
+     * @throws IOException If the stream could not be written to
+     */
+    public void writeIdentifier(OutputStream out) throws IOException {
+        out.write(identifier);
+    }
+
+    /**
+     * Write the identifier octets of this tag in front of what the writer has written so far.
+     *
+     * @param writer The writer to write to
+     */
+    public void writeIdentifier(ASN1ReverseWriter writer) {
+        writer.write(identifier);
+    }
+
     public abstract ASN1Parser<T> newParser(ASN1Decoder decoder);
 
     public abstract ASN1Serializer<T> newSerializer(ASN1Encoder encoder);
@@ -267,7 +418,7 @@ public abstract class ASN1Tag<T extends ASN1Object> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(asn1TagClass, getTag(), asn1Encoding);
+        return hashCode;
     }
 
     @Override
@@ -21,20 +21,17 @@ public enum ASN1TagClass {
     CONTEXT_SPECIFIC(0x80),
     PRIVATE(0xc0);
 
-    private int value;
+    private static final ASN1TagClass[] byClassBits = values();
+
+    private final int value;
 
     ASN1TagClass(int value) {
         this.value = value;
     }
 
     public static ASN1TagClass parseClass(byte tagByte) {
-        int classValue = (tagByte & 0xc0);
-        for (ASN1TagClass asn1TagClass : values()) {
-            if (asn1TagClass.value == classValue) {
-                return asn1TagClass;
-            }
-        }
-        throw new IllegalStateException("Could not parse ASN.1 Tag Class (should be impossible)");
+        // The constants are declared in the order of their class bits
+        return byClassBits[(tagByte & 0xc0) >> 6];
     }
 
     public int getValue() {
@@ -16,11 +16,13 @@
 package com.hierynomus.asn1.types.constructed;
 
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import com.hierynomus.asn1.*;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
@@ -30,17 +32,17 @@ import com.hierynomus.asn1.types.ASN1Tag;
 
 public class ASN1Sequence extends ASN1Object<List<ASN1Object>> implements ASN1Constructed {
     private final List<ASN1Object> objects;
-    private byte[] bytes;
+    private final ByteBuffer bytes;
+    private int serializedLength = -1;
 
-    private ASN1Sequence(List<ASN1Object> objects, byte[] bytes) {
+    private ASN1Sequence(List<ASN1Object> objects, ByteBuffer bytes) {
         super(ASN1Tag.SEQUENCE);
         this.objects = objects;
         this.bytes = bytes;
     }
 
     public ASN1Sequence(List<ASN1Object> objects) {
-        super(ASN1Tag.SEQUENCE);
-        this.objects = objects;
+        this(new ArrayList<>(objects), null);
     }
 
     @Override
@@ -48,9 +50,15 @@ public class ASN1Sequence extends ASN1Object<List<ASN1Object>> implements ASN1Co
         return new ArrayList<>(objects);
     }
 
+    /**
+     * Iterates over the objects in this SEQUENCE. Objects of a decoded SEQUENCE are decoded as the iterator reaches
+     * them.
+     *
+     * @return a read-only iterator.
+     */
     @Override
     public Iterator<ASN1Object> iterator() {
-        return new ArrayList<>(objects).iterator();
+        return Collections.unmodifiableList(objects).iterator();
     }
 
     public int size() {
@@ -69,15 +77,36 @@ public class ASN1Sequence extends ASN1Object<List<ASN1Object>> implements ASN1Co
 
         @Override
         public ASN1Sequence parse(ASN1Tag<ASN1Sequence> asn1Tag, byte[] value) throws ASN1ParseException {
-            List<ASN1Object> list = new ArrayList<>();
-            try (ASN1InputStream stream = new ASN1InputStream(decoder, value)) {
-                for (ASN1Object asn1Object : stream) {
-                    list.add(asn1Object);
-                }
-            } catch (IOException e) {
+            return parse(asn1Tag, ByteBuffer.wrap(value));
+        }
+
+        /**
+         * Only records where the objects in the SEQUENCE are, each of them is decoded when it is first accessed.
+         */
+        @Override
+        public ASN1Sequence parse(ASN1Tag<ASN1Sequence> asn1Tag, ByteBuffer value) throws ASN1ParseException {
+            try {
+                return new ASN1Sequence(new LazyObjectList(decoder, value), value);
+            } catch (ASN1ParseException e) {
                 throw new ASN1ParseException(e, "Unable to parse the ASN.1 SEQUENCE contents.");
             }
-            return new ASN1Sequence(list, value);
+        }
+
+        /**
+         * Reads the objects in the SEQUENCE one by one, up to the end-of-contents octets.
+         */
+        @Override
+        public ASN1Sequence parse(ASN1Tag<ASN1Sequence> asn1Tag, ASN1InputStream contents) throws ASN1ParseException {
+            List<ASN1Object> objects = new ArrayList<>();
+            for (ASN1Object object : contents) {
+                objects.add(object);
+            }
+            return new ASN1Sequence(objects, null);
+        }
+
+        @Override
+        protected ASN1Sequence decodedFrom(ASN1Sequence object, ByteBuffer source, int offset, int length) {
+            return (ASN1Sequence) object.decodedFrom(source, offset, length);
         }
     }
 
@@ -86,21 +115,24 @@ public class ASN1Sequence extends ASN1Object<List<ASN1Object>> implements ASN1Co
             super(encoder);
         }
 
+        /**
+         * Sums the encoded lengths of the objects, the result is cached in the SEQUENCE. Threads that race to compute it all
+         * compute the same length, so the cache needs no synchronization.
+         */
         @Override
         public int serializedLength(final ASN1Sequence asn1Object) throws IOException {
-            if (null == asn1Object.bytes) {
-                calculateBytes(asn1Object);
+            if (asn1Object.bytes != null) {
+                return asn1Object.bytes.remaining();
             }
-            return asn1Object.bytes.length;
-        }
-
-        private void calculateBytes(final ASN1Sequence asn1Object) throws IOException {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            ASN1OutputStream asn1OutputStream = new ASN1OutputStream(encoder, out);
-            for (ASN1Object object : asn1Object) {
-                asn1OutputStream.writeObject(object);
+            int length = asn1Object.serializedLength;
+            if (length < 0) {
+                length = 0;
+                for (ASN1Object object : asn1Object.objects) {
+                    length += encodedLength(object);
+                }
+                asn1Object.serializedLength = length;
             }
-            asn1Object.bytes = out.toByteArray();
+            return length;
         }
 
         @Override
@@ -113,6 +145,21 @@ public class ASN1Sequence extends ASN1Object<List<ASN1Object>> implements ASN1Co
                 }
             }
         }
+
+        /**
+         * Writes the objects in the SEQUENCE last to first.
+         */
+        @Override
+        public void serialize(final ASN1Sequence asn1Object, final ASN1ReverseWriter writer) throws IOException {
+            if (asn1Object.bytes != null) {
+                writer.write(asn1Object.bytes);
+            } else {
+                ListIterator<ASN1Object> objects = asn1Object.objects.listIterator(asn1Object.objects.size());
+                while (objects.hasPrevious()) {
+                    writer.writeObject(objects.previous());
+                }
+            }
+        }
     }
 
 }
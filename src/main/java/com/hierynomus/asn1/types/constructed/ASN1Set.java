@@ -15,10 +15,11 @@
  */
 package com.hierynomus.asn1.types.constructed;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import com.hierynomus.asn1.*;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
@@ -26,29 +27,53 @@ import com.hierynomus.asn1.encodingrules.ASN1Encoder;
 import com.hierynomus.asn1.types.ASN1Constructed;
 import com.hierynomus.asn1.types.ASN1Object;
 import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.util.ByteBufferOutputStream;
+import com.hierynomus.asn1.util.DEROrder;
+import com.hierynomus.asn1.util.ScratchBuffers;
 
-public class ASN1Set extends ASN1Object<Set<ASN1Object>> implements ASN1Constructed {
-    private final Set<ASN1Object> objects;
-    private byte[] bytes;
+/**
+ * An ASN.1 SET or SET OF.
+ *
+ * The objects are kept in the order in which they were passed or decoded, duplicates included as a SET OF allows. When
+ * encoding a SET that was not decoded, the objects are written in the DER order: sorted on their encodings.
+ */
+public class ASN1Set extends ASN1Object<List<ASN1Object>> implements ASN1Constructed {
+    private final List<ASN1Object> objects;
+    private final ByteBuffer bytes;
+    private int serializedLength = -1;
 
-    private ASN1Set(Set<ASN1Object> objects, byte[] bytes) {
+    private ASN1Set(List<ASN1Object> objects, ByteBuffer bytes) {
         super(ASN1Tag.SET);
         this.objects = objects;
         this.bytes = bytes;
     }
 
     public ASN1Set(Set<ASN1Object> objects) {
-        super(ASN1Tag.SET);
-        this.objects = new HashSet<>(objects);
+        this(new ArrayList<>(objects), null);
+    }
+
+    public ASN1Set(List<ASN1Object> objects) {
+        this(new ArrayList<>(objects), null);
     }
 
     @Override
-    public Set<ASN1Object> getValue() {
-        return new HashSet<>(objects);
+    public List<ASN1Object> getValue() {
+        return new ArrayList<>(objects);
     }
 
+    /**
+     * Iterates over a copy of the objects in this SET, in the order in which they were passed or decoded.
+     */
     public Iterator<ASN1Object> iterator() {
-        return new HashSet<>(objects).iterator();
+        return new ArrayList<>(objects).iterator();
+    }
+
+    public int size() {
+        return objects.size();
+    }
+
+    public ASN1Object get(int i) {
+        return objects.get(i);
     }
 
     public static class Parser extends ASN1Parser<ASN1Set> {
@@ -58,16 +83,37 @@ public class ASN1Set extends ASN1Object<Set<ASN1Object>> implements ASN1Construc
 
         @Override
         public ASN1Set parse(ASN1Tag<ASN1Set> asn1Tag, byte[] value) throws ASN1ParseException {
-            HashSet<ASN1Object> asn1Objects = new HashSet<>();
-            try (ASN1InputStream stream = new ASN1InputStream(decoder, value)) {
-                for (ASN1Object asn1Object : stream) {
-                    asn1Objects.add(asn1Object);
-                }
-            } catch (IOException e) {
+            return parse(asn1Tag, ByteBuffer.wrap(value));
+        }
+
+        /**
+         * Only records where the objects in the SET are, they are decoded when the contents of the SET are first
+         * accessed.
+         */
+        @Override
+        public ASN1Set parse(ASN1Tag<ASN1Set> asn1Tag, ByteBuffer value) throws ASN1ParseException {
+            try {
+                return new ASN1Set(new LazyObjectList(decoder, value), value);
+            } catch (ASN1ParseException e) {
                 throw new ASN1ParseException(e, "Could not parse ASN.1 SET contents.");
             }
+        }
 
-            return new ASN1Set(asn1Objects, value);
+        /**
+         * Reads the objects in the SET one by one, up to the end-of-contents octets.
+         */
+        @Override
+        public ASN1Set parse(ASN1Tag<ASN1Set> asn1Tag, ASN1InputStream contents) throws ASN1ParseException {
+            List<ASN1Object> objects = new ArrayList<>();
+            for (ASN1Object object : contents) {
+                objects.add(object);
+            }
+            return new ASN1Set(objects, null);
+        }
+
+        @Override
+        protected ASN1Set decodedFrom(ASN1Set object, ByteBuffer source, int offset, int length) {
+            return (ASN1Set) object.decodedFrom(source, offset, length);
         }
     }
 
@@ -76,33 +122,84 @@ public class ASN1Set extends ASN1Object<Set<ASN1Object>> implements ASN1Construc
             super(encoder);
         }
 
+        /**
+         * Sums the encoded lengths of the objects, the result is cached in the SET. Threads that race to compute it all
+         * compute the same length, so the cache needs no synchronization.
+         */
         @Override
         public int serializedLength(final ASN1Set asn1Object) throws IOException {
-            if (null == asn1Object.bytes) {
-                calculateBytes(asn1Object);
+            if (asn1Object.bytes != null) {
+                return asn1Object.bytes.remaining();
             }
-            return asn1Object.bytes.length;
-        }
-
-        private void calculateBytes(final ASN1Set asn1Object) throws IOException {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            ASN1OutputStream asn1OutputStream = new ASN1OutputStream(encoder, out);
-            for (ASN1Object object : asn1Object) {
-                asn1OutputStream.writeObject(object);
+            int length = asn1Object.serializedLength;
+            if (length < 0) {
+                length = 0;
+                for (ASN1Object object : asn1Object.objects) {
+                    length += encodedLength(object);
+                }
+                asn1Object.serializedLength = length;
             }
-            asn1Object.bytes = out.toByteArray();
+            return length;
         }
 
         @Override
         public void serialize(final ASN1Set asn1Object, final ASN1OutputStream stream) throws IOException {
             if (asn1Object.bytes != null) {
                 stream.write(asn1Object.bytes);
+            } else if (asn1Object.objects.size() == 1) {
+                stream.writeObject(asn1Object.objects.get(0));
+            } else {
+                byte[] encodings = ScratchBuffers.acquire(serializedLength(asn1Object));
+                try {
+                    int[] offsets = encodeAll(asn1Object, encodings);
+                    for (int i : DEROrder.sortedOrder(encodings, offsets)) {
+                        stream.write(encodings, offsets[i], offsets[i + 1] - offsets[i]);
+                    }
+                } finally {
+                    ScratchBuffers.release(encodings);
+                }
+            }
+        }
+
+        /**
+         * Writes the sorted encodings of the objects last to first.
+         */
+        @Override
+        public void serialize(final ASN1Set asn1Object, final ASN1ReverseWriter writer) throws IOException {
+            if (asn1Object.bytes != null) {
+                writer.write(asn1Object.bytes);
+            } else if (asn1Object.objects.size() == 1) {
+                writer.writeObject(asn1Object.objects.get(0));
             } else {
-                for (ASN1Object object : asn1Object) {
-                    stream.writeObject(object);
+                byte[] encodings = ScratchBuffers.acquire(serializedLength(asn1Object));
+                try {
+                    int[] offsets = encodeAll(asn1Object, encodings);
+                    int[] order = DEROrder.sortedOrder(encodings, offsets);
+                    for (int i = order.length - 1; i >= 0; i--) {
+                        writer.write(encodings, offsets[order[i]], offsets[order[i] + 1] - offsets[order[i]]);
+                    }
+                } finally {
+                    ScratchBuffers.release(encodings);
                 }
             }
         }
+
+        /**
+         * Encode every object once, one after the other into the array.
+         *
+         * @return Where the encoding of each object starts, with the end of the last one as last offset.
+         */
+        private int[] encodeAll(ASN1Set asn1Object, byte[] encodings) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(encodings);
+            ASN1OutputStream out = new ASN1OutputStream(encoder, new ByteBufferOutputStream(buffer));
+            int[] offsets = new int[asn1Object.objects.size() + 1];
+            for (int i = 0; i < asn1Object.objects.size(); i++) {
+                offsets[i] = buffer.position();
+                out.writeObject(asn1Object.objects.get(i));
+            }
+            offsets[offsets.length - 1] = buffer.position();
+            return offsets;
+        }
     }
 
 }
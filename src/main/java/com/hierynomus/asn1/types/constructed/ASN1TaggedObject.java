@@ -15,9 +15,13 @@
  */
 package com.hierynomus.asn1.types.constructed;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import com.hierynomus.asn1.*;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
@@ -26,10 +30,20 @@ import com.hierynomus.asn1.types.ASN1Object;
 import com.hierynomus.asn1.types.ASN1Tag;
 
 public class ASN1TaggedObject extends ASN1Object<ASN1Object> implements ASN1Constructed {
+    private static final AtomicReferenceFieldUpdater<ASN1TaggedObject, ASN1Object> EXPLICIT_OBJECT =
+        AtomicReferenceFieldUpdater.newUpdater(ASN1TaggedObject.class, ASN1Object.class, "explicitObject");
+    private static final AtomicReferenceFieldUpdater<ASN1TaggedObject, ASN1Object> IMPLICIT_OBJECT =
+        AtomicReferenceFieldUpdater.newUpdater(ASN1TaggedObject.class, ASN1Object.class, "implicitObject");
+
     private final ASN1Object object;
-    private byte[] bytes;
-    private ASN1Decoder decoder;
-    private boolean explicit = true;
+    private final ByteBuffer bytes;
+    // The objects read from contents in the indefinite length form
+    private final List<ASN1Object> contents;
+    private final ASN1Decoder decoder;
+    private final boolean explicit;
+    private int serializedLength = -1;
+    private volatile ASN1Object explicitObject;
+    private volatile ASN1Object implicitObject;
 
     public ASN1TaggedObject(ASN1Tag tag, ASN1Object object, boolean explicit) {
         // If this is an explicitly tagged object, it should be constructed form
@@ -38,17 +52,21 @@ public class ASN1TaggedObject extends ASN1Object<ASN1Object> implements ASN1Cons
         this.object = object;
         this.explicit = explicit;
         this.bytes = null;
+        this.contents = null;
+        this.decoder = null;
     }
 
     public ASN1TaggedObject(ASN1Tag tag, ASN1Object object) {
         this(tag, object, true);
     }
 
-    private ASN1TaggedObject(ASN1Tag tag, byte[] bytes, ASN1Decoder decoder) {
+    private ASN1TaggedObject(ASN1Tag tag, ByteBuffer bytes, List<ASN1Object> contents, ASN1Decoder decoder) {
         super(tag);
         this.bytes = bytes;
+        this.contents = contents;
         this.decoder = decoder;
-        object = null;
+        this.explicit = true;
+        this.object = null;
     }
 
     public boolean isExplicit() {
@@ -81,7 +99,30 @@ public class ASN1TaggedObject extends ASN1Object<ASN1Object> implements ASN1Cons
 
         @Override
         public ASN1TaggedObject parse(ASN1Tag<ASN1TaggedObject> asn1Tag, byte[] value) {
-            return new ASN1TaggedObject(asn1Tag, value, decoder);
+            return parse(asn1Tag, ByteBuffer.wrap(value));
+        }
+
+        @Override
+        public ASN1TaggedObject parse(ASN1Tag<ASN1TaggedObject> asn1Tag, ByteBuffer value) {
+            return new ASN1TaggedObject(asn1Tag, value, null, decoder);
+        }
+
+        /**
+         * Reads the objects in the contents one by one, up to the end-of-contents octets. If the contents are requested
+         * as an implicitly tagged object, they are encoded again to decode them as that type.
+         */
+        @Override
+        public ASN1TaggedObject parse(ASN1Tag<ASN1TaggedObject> asn1Tag, ASN1InputStream contents) {
+            List<ASN1Object> objects = new ArrayList<>();
+            for (ASN1Object object : contents) {
+                objects.add(object);
+            }
+            return new ASN1TaggedObject(asn1Tag, null, objects, decoder);
+        }
+
+        @Override
+        protected ASN1TaggedObject decodedFrom(ASN1TaggedObject object, ByteBuffer source, int offset, int length) {
+            return (ASN1TaggedObject) object.decodedFrom(source, offset, length);
         }
     }
 
@@ -93,56 +134,139 @@ public class ASN1TaggedObject extends ASN1Object<ASN1Object> implements ASN1Cons
 
         @Override
         public int serializedLength(final ASN1TaggedObject asn1Object) throws IOException {
-            if (asn1Object.bytes == null) {
-                calculateBytes(asn1Object);
+            if (asn1Object.bytes != null) {
+                return asn1Object.bytes.remaining();
+            }
+            int length = asn1Object.serializedLength;
+            if (length < 0) {
+                ASN1Object object = asn1Object.object;
+                if (asn1Object.contents != null) {
+                    length = 0;
+                    for (ASN1Object content : asn1Object.contents) {
+                        length += encodedLength(content);
+                    }
+                } else if (asn1Object.explicit) {
+                    length = encodedLength(object);
+                } else {
+                    length = serializer(object.getTag()).serializedLength(object);
+                }
+                asn1Object.serializedLength = length;
             }
-            return asn1Object.bytes.length;
+            return length;
         }
 
-        private void calculateBytes(final ASN1TaggedObject asn1Object) throws IOException {
+        @Override
+        public void serialize(final ASN1TaggedObject asn1Object, final ASN1OutputStream stream) throws IOException {
             ASN1Object object = asn1Object.object;
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (ASN1OutputStream asn1OutputStream = new ASN1OutputStream(encoder, baos)) {
-                if (asn1Object.explicit) {
-                    asn1OutputStream.writeObject(object);
-                } else {
-                    object.getTag().newSerializer(encoder).serialize(object, asn1OutputStream);
+            if (asn1Object.bytes != null) {
+                stream.write(asn1Object.bytes);
+            } else if (asn1Object.contents != null) {
+                for (ASN1Object content : asn1Object.contents) {
+                    stream.writeObject(content);
                 }
-                asn1Object.bytes = baos.toByteArray();
+            } else if (asn1Object.explicit) {
+                stream.writeObject(object);
+            } else {
+                serializer(object.getTag()).serialize(object, stream);
             }
         }
 
         @Override
-        public void serialize(final ASN1TaggedObject asn1Object, final ASN1OutputStream stream) throws IOException {
-            if (asn1Object.bytes == null) {
-                calculateBytes(asn1Object);
+        public void serialize(final ASN1TaggedObject asn1Object, final ASN1ReverseWriter writer) throws IOException {
+            ASN1Object object = asn1Object.object;
+            if (asn1Object.bytes != null) {
+                writer.write(asn1Object.bytes);
+            } else if (asn1Object.contents != null) {
+                ListIterator<ASN1Object> contents = asn1Object.contents.listIterator(asn1Object.contents.size());
+                while (contents.hasPrevious()) {
+                    writer.writeObject(contents.previous());
+                }
+            } else if (asn1Object.explicit) {
+                writer.writeObject(object);
+            } else {
+                serializer(object.getTag()).serialize(object, writer);
             }
-            stream.write(asn1Object.bytes);
         }
     }
 
+    /**
+     * Returns the explicitly tagged object. The object of a decoded Tagged Object is decoded on the first call, after
+     * which it is cached. Concurrent first calls may both decode the object, but all callers get the same instance.
+     *
+     * @return the tagged object.
+     */
     public ASN1Object getObject() {
         if (object != null) {
             return object;
         }
-        try (ASN1InputStream inputStream = new ASN1InputStream(decoder, bytes)) {
-            return inputStream.readObject();
-        } catch (ASN1ParseException e) {
-            throw new ASN1ParseException(e, "Unable to parse the explicit Tagged Object with %s, it might be implicit", tag);
-        } catch (IOException e) {
-            throw new ASN1ParseException(e, "Could not parse the inputstream");
+        if (contents != null) {
+            if (contents.size() != 1) {
+                throw new ASN1ParseException("Unable to parse the explicit Tagged Object with %s, it contains %s objects, it might be implicit", tag, contents.size());
+            }
+            return contents.get(0);
         }
+        ASN1Object parsed = explicitObject;
+        if (parsed == null) {
+            try (ASN1InputStream inputStream = new ASN1InputStream(decoder, bytes)) {
+                parsed = inputStream.readObject();
+            } catch (ASN1ParseException e) {
+                throw new ASN1ParseException(e, "Unable to parse the explicit Tagged Object with %s, it might be implicit", tag);
+            } catch (IOException e) {
+                throw new ASN1ParseException(e, "Could not parse the inputstream");
+            }
+            if (!EXPLICIT_OBJECT.compareAndSet(this, null, parsed)) {
+                parsed = explicitObject;
+            }
+        }
+        return parsed;
     }
 
+    /**
+     * Returns the implicitly tagged object, decoding the contents as the type of the passed tag. The object of a
+     * decoded Tagged Object is cached, as long as it is requested with the same tag.
+     *
+     * @param tag the tag of the implicitly tagged type.
+     * @return the tagged object.
+     */
     public <T extends ASN1Object> T getObject(ASN1Tag<T> tag) {
         if (object != null && object.getTag().equals(tag)) {
             return (T) object;
-        } else  if (object == null && bytes != null) {
-            return tag.newParser(decoder).parse(tag, bytes);
+        } else  if (object == null && (bytes != null || contents != null)) {
+            ASN1Object cached = implicitObject;
+            if (cached != null && cached.getTag().equals(tag)) {
+                return (T) cached;
+            }
+            ASN1Object parsed = ASN1CodecCache.parser(decoder, tag).parse(tag, contentBytes());
+            if (!IMPLICIT_OBJECT.compareAndSet(this, cached, parsed)) {
+                cached = implicitObject;
+                if (cached != null && cached.getTag().equals(tag)) {
+                    parsed = cached;
+                }
+            }
+            return (T) parsed;
         }
         throw new ASN1ParseException("Unable to parse the implicit Tagged Object with %s, it is explicit", tag);
     }
 
+    private ByteBuffer contentBytes() {
+        if (bytes != null) {
+            return bytes.duplicate();
+        }
+        List<ByteBuffer> encodings = new ArrayList<>(contents.size());
+        int length = 0;
+        for (ASN1Object content : contents) {
+            ByteBuffer encoding = content.getEncoded();
+            encodings.add(encoding);
+            length += encoding.remaining();
+        }
+        ByteBuffer joined = ByteBuffer.allocate(length);
+        for (ByteBuffer encoding : encodings) {
+            joined.put(encoding);
+        }
+        joined.flip();
+        return joined;
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
@@ -0,0 +1,113 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.types.constructed;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import com.hierynomus.asn1.ASN1InputStream;
+import com.hierynomus.asn1.ASN1ParseException;
+import com.hierynomus.asn1.encodingrules.ASN1Decoder;
+import com.hierynomus.asn1.types.ASN1Object;
+import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.util.ByteBufferInputStream;
+
+/**
+ * The children of a decoded constructed object.
+ *
+ * On creation only the boundaries of the children are recorded. A child is decoded when it is first accessed, after
+ * which the decoded child is cached. Concurrent first accesses may both decode the child, but all callers get the
+ * same cached instance.
+ */
+class LazyObjectList extends AbstractList<ASN1Object> {
+    private final ASN1Decoder decoder;
+    private final ByteBuffer contents;
+    private final int[] offsets;
+    private final AtomicReferenceArray<ASN1Object> objects;
+
+    LazyObjectList(ASN1Decoder decoder, ByteBuffer contents) {
+        this.decoder = decoder;
+        this.contents = contents.slice();
+        this.offsets = scanOffsets(decoder, this.contents.duplicate());
+        this.objects = new AtomicReferenceArray<>(offsets.length - 1);
+    }
+
+    /**
+     * Record where each of the children starts, with the end of the contents as last offset.
+     */
+    private static int[] scanOffsets(ASN1Decoder decoder, ByteBuffer scan) {
+        InputStream is = new ByteBufferInputStream(scan);
+        int[] offsets = new int[8];
+        int count = 0;
+        while (scan.hasRemaining()) {
+            if (count == offsets.length - 1) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[count++] = scan.position();
+            decoder.readTag(is);
+            int length = decoder.readLength(is);
+            if (length == ASN1Decoder.INDEFINITE_LENGTH) {
+                skipIndefiniteContents(decoder, is, scan);
+                continue;
+            }
+            if (length > scan.remaining()) {
+                throw new ASN1ParseException("Cannot read an ASN.1 value of %s bytes, only %s bytes remaining", length, scan.remaining());
+            }
+            scan.position(scan.position() + length);
+        }
+        offsets[count] = scan.position();
+        return Arrays.copyOf(offsets, count + 1);
+    }
+
+    /**
+     * Skip over the contents of a child in the indefinite length form, up to and including its end-of-contents octets.
+     */
+    private static void skipIndefiniteContents(ASN1Decoder decoder, InputStream is, ByteBuffer scan) {
+        int depth = 1;
+        while (depth > 0) {
+            ASN1Tag<?> tag = decoder.readTag(is);
+            int length = decoder.readLength(is);
+            if (tag == ASN1Tag.END_OF_CONTENTS) {
+                depth--;
+            } else if (length == ASN1Decoder.INDEFINITE_LENGTH) {
+                depth++;
+            } else if (length > scan.remaining()) {
+                throw new ASN1ParseException("Cannot read an ASN.1 value of %s bytes, only %s bytes remaining", length, scan.remaining());
+            } else {
+                scan.position(scan.position() + length);
+            }
+        }
+    }
+
+    @Override
+    public ASN1Object get(int index) {
+        ASN1Object object = objects.get(index);
+        if (object == null) {
+            ByteBuffer encoded = contents.duplicate();
+            encoded.limit(offsets[index + 1]).position(offsets[index]);
+            objects.compareAndSet(index, null, new ASN1InputStream(decoder, encoded).readObject());
+            object = objects.get(index);
+        }
+        return object;
+    }
+
+    @Override
+    public int size() {
+        return objects.length();
+    }
+}
@@ -16,8 +16,10 @@
 package com.hierynomus.asn1.types.primitive;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import com.hierynomus.asn1.ASN1OutputStream;
 import com.hierynomus.asn1.ASN1Parser;
+import com.hierynomus.asn1.ASN1ReverseWriter;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.ASN1Serializer;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
@@ -26,7 +28,7 @@ import com.hierynomus.asn1.util.Checks;
 
 public class ASN1Boolean extends ASN1PrimitiveValue<Boolean> {
 
-    private boolean value;
+    private final boolean value;
 
     public ASN1Boolean(boolean value) {
         super(ASN1Tag.BOOLEAN);
@@ -58,6 +60,11 @@ public class ASN1Boolean extends ASN1PrimitiveValue<Boolean> {
             Checks.checkState(value.length == 1, "Value of ASN1Boolean should have length 1, but was %s", value.length);
             return new ASN1Boolean(value, value[0] != 0x0);
         }
+
+        @Override
+        protected ASN1Boolean decodedFrom(ASN1Boolean object, ByteBuffer source, int offset, int length) {
+            return (ASN1Boolean) object.decodedFrom(source, offset, length);
+        }
     }
 
     public static class Serializer extends ASN1Serializer<ASN1Boolean> {
@@ -74,6 +81,11 @@ public class ASN1Boolean extends ASN1PrimitiveValue<Boolean> {
         public void serialize(final ASN1Boolean asn1Object, final ASN1OutputStream stream) throws IOException {
             stream.write(asn1Object.value ? 0x01 : 0x00);
         }
+
+        @Override
+        public void serialize(final ASN1Boolean asn1Object, final ASN1ReverseWriter writer) {
+            writer.write(asn1Object.value ? 0x01 : 0x00);
+        }
     }
 
 }
@@ -17,34 +17,132 @@ package com.hierynomus.asn1.types.primitive;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import com.hierynomus.asn1.ASN1OutputStream;
 import com.hierynomus.asn1.ASN1ParseException;
 import com.hierynomus.asn1.ASN1Parser;
+import com.hierynomus.asn1.ASN1ReverseWriter;
 import com.hierynomus.asn1.ASN1Serializer;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
 import com.hierynomus.asn1.types.ASN1Tag;
 
+import static com.hierynomus.asn1.util.Checks.checkState;
+
+/**
+ * An ASN.1 ENUMERATED.
+ *
+ * Like an {@link ASN1Integer}, a value that fits into a <code>long</code> is kept as a <code>long</code>.
+ */
 public class ASN1Enumerated extends ASN1PrimitiveValue<BigInteger> {
-    private final BigInteger value;
+    private static final ASN1Enumerated[] CACHE = new ASN1Enumerated[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new ASN1Enumerated(i - 128);
+        }
+    }
+
+    private final boolean isLong;
+    private final long longValue;
+    private BigInteger value;
 
     public ASN1Enumerated(int value) {
-        this(BigInteger.valueOf(value));
+        this((long) value);
     }
 
-    public ASN1Enumerated(BigInteger value) {
+    public ASN1Enumerated(long value) {
         super(ASN1Tag.ENUMERATED);
+        this.isLong = true;
+        this.longValue = value;
+    }
+
+    public ASN1Enumerated(BigInteger value) {
+        super(ASN1Tag.ENUMERATED, value.bitLength() < 64 ? null : value.toByteArray());
         this.value = value;
+        this.isLong = value.bitLength() < 64;
+        this.longValue = value.longValue();
     }
 
     private ASN1Enumerated(BigInteger value, byte[] valueBytes) {
         super(ASN1Tag.ENUMERATED, valueBytes);
         this.value = value;
+        this.isLong = false;
+        this.longValue = value.longValue();
+    }
+
+    /**
+     * Returns an ENUMERATED with the value. The ENUMERATEDs of single byte values, from -128 up to 127, are shared.
+     *
+     * @param value The value
+     * @return The ENUMERATED
+     */
+    public static ASN1Enumerated valueOf(long value) {
+        if (value >= -128 && value < 128) {
+            return CACHE[(int) value + 128];
+        }
+        return new ASN1Enumerated(value);
     }
 
     @Override
     public BigInteger getValue() {
-        return value;
+        BigInteger bigInteger = value;
+        if (bigInteger == null) {
+            bigInteger = isLong ? BigInteger.valueOf(longValue) : new BigInteger(valueBytes);
+            value = bigInteger;
+        }
+        return bigInteger;
+    }
+
+    /**
+     * @return Whether the value fits into a <code>long</code>
+     */
+    public boolean isLong() {
+        return isLong;
+    }
+
+    /**
+     * @return The value
+     * @throws IllegalStateException If the value does not fit into a <code>long</code>
+     */
+    public long getLongValue() {
+        checkState(isLong, "The value of %s does not fit into a long", this);
+        return longValue;
+    }
+
+    @Override
+    protected boolean isShared() {
+        return isLong && longValue >= -128 && longValue < 128 && CACHE[(int) longValue + 128] == this;
+    }
+
+    @Override
+    protected ASN1Enumerated unshared() {
+        return isShared() ? new ASN1Enumerated(longValue) : this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ASN1Enumerated that = (ASN1Enumerated) o;
+        if (tag != that.tag || isLong != that.isLong) return false;
+        return isLong ? longValue == that.longValue : getValue().equals(that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    protected int valueHash() {
+        return isLong ? (int) (longValue ^ (longValue >>> 32)) : getValue().hashCode();
+    }
+
+    @Override
+    protected String valueString() {
+        return isLong ? Long.toString(longValue) : getValue().toString();
     }
 
     public static class Parser extends ASN1Parser<ASN1Enumerated> {
@@ -54,8 +152,41 @@ public class ASN1Enumerated extends ASN1PrimitiveValue<BigInteger> {
 
         @Override
         public ASN1Enumerated parse(ASN1Tag<ASN1Enumerated> asn1Tag, byte[] value) throws ASN1ParseException {
-            BigInteger enumValue = new BigInteger(value);
-            return new ASN1Enumerated(enumValue, value);
+            return parse(asn1Tag, ByteBuffer.wrap(value));
+        }
+
+        /**
+         * Values of up to 8 bytes are read into a <code>long</code> straight from the buffer.
+         */
+        @Override
+        public ASN1Enumerated parse(ASN1Tag<ASN1Enumerated> asn1Tag, ByteBuffer value) throws ASN1ParseException {
+            int length = value.remaining();
+            if (length == 0) {
+                throw new ASN1ParseException("The value of an ASN.1 ENUMERATED should have at least one byte");
+            }
+            if (length <= TwosComplement.MAX_LENGTH) {
+                return decoded(TwosComplement.read(value), length);
+            }
+            byte[] bytes = new byte[length];
+            value.duplicate().get(bytes);
+            BigInteger enumValue = new BigInteger(bytes);
+            if (enumValue.bitLength() < 64) {
+                return decoded(enumValue.longValue(), length);
+            }
+            return new ASN1Enumerated(enumValue, bytes);
+        }
+
+        /**
+         * Only a value encoded in its fewest bytes, as DER requires, is shared, so that the object records the bytes
+         * it was decoded from.
+         */
+        private static ASN1Enumerated decoded(long value, int length) {
+            return length == TwosComplement.length(value) ? valueOf(value) : new ASN1Enumerated(value);
+        }
+
+        @Override
+        protected ASN1Enumerated decodedFrom(ASN1Enumerated object, ByteBuffer source, int offset, int length) {
+            return (ASN1Enumerated) object.decodedFrom(source, offset, length);
         }
     }
 
@@ -66,22 +197,28 @@ public class ASN1Enumerated extends ASN1PrimitiveValue<BigInteger> {
 
         @Override
         public int serializedLength(final ASN1Enumerated asn1Object) {
-            if (asn1Object.valueBytes == null) {
-                calculateBytes(asn1Object);
+            if (asn1Object.isLong) {
+                return TwosComplement.length(asn1Object.longValue);
             }
             return asn1Object.valueBytes.length;
         }
 
         @Override
         public void serialize(final ASN1Enumerated asn1Object, final ASN1OutputStream stream) throws IOException {
-            if (asn1Object.valueBytes == null) {
-                calculateBytes(asn1Object);
+            if (asn1Object.isLong) {
+                TwosComplement.write(asn1Object.longValue, stream);
+                return;
             }
             stream.write(asn1Object.valueBytes);
         }
 
-        private void calculateBytes(final ASN1Enumerated asn1Object) {
-            asn1Object.valueBytes = asn1Object.value.toByteArray();
+        @Override
+        public void serialize(final ASN1Enumerated asn1Object, final ASN1ReverseWriter writer) {
+            if (asn1Object.isLong) {
+                TwosComplement.write(asn1Object.longValue, writer);
+                return;
+            }
+            writer.write(asn1Object.valueBytes);
         }
     }
 
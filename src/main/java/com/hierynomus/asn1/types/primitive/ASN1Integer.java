@@ -17,39 +17,130 @@ package com.hierynomus.asn1.types.primitive;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import com.hierynomus.asn1.ASN1OutputStream;
+import com.hierynomus.asn1.ASN1ParseException;
 import com.hierynomus.asn1.ASN1Parser;
+import com.hierynomus.asn1.ASN1ReverseWriter;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.ASN1Serializer;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
 import com.hierynomus.asn1.types.ASN1Tag;
 
+import static com.hierynomus.asn1.util.Checks.checkState;
+
+/**
+ * An ASN.1 INTEGER.
+ *
+ * Values that fit into a <code>long</code> are kept as a <code>long</code>, the {@link BigInteger} returned by
+ * {@link #getValue()} is only created when it is asked for. Use {@link #isLong()} and {@link #getLongValue()} to read
+ * them without creating it.
+ */
 public class ASN1Integer extends ASN1PrimitiveValue<BigInteger> {
+    private static final ASN1Integer[] CACHE = new ASN1Integer[256];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new ASN1Integer(i - 128);
+        }
+    }
+
+    private final boolean isLong;
+    private final long longValue;
     private BigInteger value;
 
     public ASN1Integer(long value) {
-        this(BigInteger.valueOf(value));
+        super(ASN1Tag.INTEGER);
+        this.isLong = true;
+        this.longValue = value;
     }
 
     public ASN1Integer(BigInteger value) {
-        super(ASN1Tag.INTEGER);
+        super(ASN1Tag.INTEGER, value.bitLength() < 64 ? null : value.toByteArray());
         this.value = value;
-        this.valueBytes = value.toByteArray();
+        this.isLong = value.bitLength() < 64;
+        this.longValue = value.longValue();
     }
 
     private ASN1Integer(byte[] valueBytes, BigInteger value) {
         super(ASN1Tag.INTEGER, valueBytes);
         this.value = value;
+        this.isLong = false;
+        this.longValue = value.longValue();
+    }
+
+    /**
+     * Returns an INTEGER with the value. The INTEGERs of single byte values, from -128 up to 127, are shared.
+     *
+     * @param value The value
+     * @return The INTEGER
+     */
+    public static ASN1Integer valueOf(long value) {
+        if (value >= -128 && value < 128) {
+            return CACHE[(int) value + 128];
+        }
+        return new ASN1Integer(value);
     }
 
     @Override
     public BigInteger getValue() {
-        return value;
+        BigInteger bigInteger = value;
+        if (bigInteger == null) {
+            bigInteger = isLong ? BigInteger.valueOf(longValue) : new BigInteger(valueBytes);
+            value = bigInteger;
+        }
+        return bigInteger;
+    }
+
+    /**
+     * @return Whether the value fits into a <code>long</code>
+     */
+    public boolean isLong() {
+        return isLong;
+    }
+
+    /**
+     * @return The value
+     * @throws IllegalStateException If the value does not fit into a <code>long</code>
+     */
+    public long getLongValue() {
+        checkState(isLong, "The value of %s does not fit into a long", this);
+        return longValue;
+    }
+
+    @Override
+    protected boolean isShared() {
+        return isLong && longValue >= -128 && longValue < 128 && CACHE[(int) longValue + 128] == this;
+    }
+
+    @Override
+    protected ASN1Integer unshared() {
+        return isShared() ? new ASN1Integer(longValue) : this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ASN1Integer that = (ASN1Integer) o;
+        if (tag != that.tag || isLong != that.isLong) return false;
+        return isLong ? longValue == that.longValue : getValue().equals(that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
     }
 
     @Override
     protected int valueHash() {
-        return value.hashCode();
+        return isLong ? (int) (longValue ^ (longValue >>> 32)) : getValue().hashCode();
+    }
+
+    @Override
+    protected String valueString() {
+        return isLong ? Long.toString(longValue) : getValue().toString();
     }
 
     public static class Parser extends ASN1Parser<ASN1Integer> {
@@ -59,7 +150,41 @@ public class ASN1Integer extends ASN1PrimitiveValue<BigInteger> {
 
         @Override
         public ASN1Integer parse(ASN1Tag<ASN1Integer> asn1Tag, byte[] value) {
-            return new ASN1Integer(value, new BigInteger(value));
+            return parse(asn1Tag, ByteBuffer.wrap(value));
+        }
+
+        /**
+         * Values of up to 8 bytes are read into a <code>long</code> straight from the buffer.
+         */
+        @Override
+        public ASN1Integer parse(ASN1Tag<ASN1Integer> asn1Tag, ByteBuffer value) {
+            int length = value.remaining();
+            if (length == 0) {
+                throw new ASN1ParseException("The value of an ASN.1 INTEGER should have at least one byte");
+            }
+            if (length <= TwosComplement.MAX_LENGTH) {
+                return decoded(TwosComplement.read(value), length);
+            }
+            byte[] bytes = new byte[length];
+            value.duplicate().get(bytes);
+            BigInteger bigInteger = new BigInteger(bytes);
+            if (bigInteger.bitLength() < 64) {
+                return decoded(bigInteger.longValue(), length);
+            }
+            return new ASN1Integer(bytes, bigInteger);
+        }
+
+        /**
+         * Only a value encoded in its fewest bytes, as DER requires, is shared, so that the object records the bytes
+         * it was decoded from.
+         */
+        private static ASN1Integer decoded(long value, int length) {
+            return length == TwosComplement.length(value) ? valueOf(value) : new ASN1Integer(value);
+        }
+
+        @Override
+        protected ASN1Integer decodedFrom(ASN1Integer object, ByteBuffer source, int offset, int length) {
+            return (ASN1Integer) object.decodedFrom(source, offset, length);
         }
     }
 
@@ -70,12 +195,28 @@ public class ASN1Integer extends ASN1PrimitiveValue<BigInteger> {
 
         @Override
         public int serializedLength(final ASN1Integer asn1Object) {
+            if (asn1Object.isLong) {
+                return TwosComplement.length(asn1Object.longValue);
+            }
             return asn1Object.valueBytes.length;
         }
 
         @Override
         public void serialize(final ASN1Integer asn1Object, final ASN1OutputStream stream) throws IOException {
-            stream.write(asn1Object.valueBytes);
+            if (asn1Object.isLong) {
+                TwosComplement.write(asn1Object.longValue, stream);
+            } else {
+                stream.write(asn1Object.valueBytes);
+            }
+        }
+
+        @Override
+        public void serialize(final ASN1Integer asn1Object, final ASN1ReverseWriter writer) {
+            if (asn1Object.isLong) {
+                TwosComplement.write(asn1Object.longValue, writer);
+            } else {
+                writer.write(asn1Object.valueBytes);
+            }
         }
     }
 
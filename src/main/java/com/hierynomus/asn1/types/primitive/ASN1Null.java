@@ -16,8 +16,10 @@
 package com.hierynomus.asn1.types.primitive;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import com.hierynomus.asn1.ASN1OutputStream;
 import com.hierynomus.asn1.ASN1Parser;
+import com.hierynomus.asn1.ASN1ReverseWriter;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.ASN1Serializer;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
@@ -52,6 +54,11 @@ public class ASN1Null extends ASN1PrimitiveValue<Void> {
             Checks.checkState(value.length == 0, "ASN.1 NULL can not have a value");
             return new ASN1Null();
         }
+
+        @Override
+        protected ASN1Null decodedFrom(ASN1Null object, ByteBuffer source, int offset, int length) {
+            return (ASN1Null) object.decodedFrom(source, offset, length);
+        }
     }
 
     public static class Serializer extends ASN1Serializer<ASN1Null> {
@@ -68,6 +75,11 @@ public class ASN1Null extends ASN1PrimitiveValue<Void> {
         public void serialize(final ASN1Null asn1Object, final ASN1OutputStream stream) throws IOException {
             // No-op, no data
         }
+
+        @Override
+        public void serialize(final ASN1Null asn1Object, final ASN1ReverseWriter writer) {
+            // No-op, no data
+        }
     }
 
 }
@@ -15,42 +15,267 @@
  */
 package com.hierynomus.asn1.types.primitive;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.StringTokenizer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import com.hierynomus.asn1.ASN1OutputStream;
+import com.hierynomus.asn1.ASN1ParseException;
 import com.hierynomus.asn1.ASN1Parser;
+import com.hierynomus.asn1.ASN1ReverseWriter;
 import com.hierynomus.asn1.ASN1Serializer;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
 import com.hierynomus.asn1.types.ASN1Tag;
 
 import static com.hierynomus.asn1.util.Checks.checkArgument;
+import static com.hierynomus.asn1.util.Checks.checkState;
 
+/**
+ * An ASN.1 OBJECT IDENTIFIER.
+ *
+ * The OBJECT IDENTIFIER is kept as its encoded value, which is what equality and hashing work on. The arcs are decoded
+ * from it by {@link #getArcs()}, the dotted string returned by {@link #getValue()} is only built when it is first
+ * asked for.
+ *
+ * Decoded OBJECT IDENTIFIERs are interned in the {@link OidRegistry#getDefault() default} {@link OidRegistry}, so
+ * repeated occurrences share one instance and its dotted string.
+ */
 public class ASN1ObjectIdentifier extends ASN1PrimitiveValue<String> {
+    /**
+     * Arcs of up to 9 encoded bytes, 63 bits, fit into a <code>long</code>.
+     */
+    private static final int MAX_LONG_ARC_LENGTH = 9;
 
     private String oid;
 
     public ASN1ObjectIdentifier(String oid) {
-        super(ASN1Tag.OBJECT_IDENTIFIER);
+        super(ASN1Tag.OBJECT_IDENTIFIER, encode(oid));
         this.oid = oid;
     }
 
-    private ASN1ObjectIdentifier(byte[] valueBytes, String oid) {
+    public ASN1ObjectIdentifier(long... arcs) {
+        super(ASN1Tag.OBJECT_IDENTIFIER, encode(arcs));
+    }
+
+    ASN1ObjectIdentifier(byte[] valueBytes) {
         super(ASN1Tag.OBJECT_IDENTIFIER, valueBytes);
-        this.oid = oid;
     }
 
     @Override
     public String getValue() {
-        return oid;
+        String dotted = oid;
+        if (dotted == null) {
+            dotted = toDottedString(valueBytes);
+            oid = dotted;
+        }
+        return dotted;
+    }
+
+    /**
+     * Decode the arcs of this OBJECT IDENTIFIER.
+     *
+     * @return The arcs, for instance <code>{1, 2, 840, 113549}</code> for <code>1.2.840.113549</code>
+     * @throws IllegalStateException If an arc does not fit into a <code>long</code>
+     */
+    public long[] getArcs() {
+        int count = 1;
+        for (byte b : valueBytes) {
+            if ((b & 0x80) == 0) {
+                count++;
+            }
+        }
+        long[] arcs = new long[count];
+        int arc = 1;
+        long value = 0;
+        int length = 0;
+        for (byte b : valueBytes) {
+            value = (value << 7) | (b & 0x7f);
+            length++;
+            if ((b & 0x80) == 0) {
+                checkState(length <= MAX_LONG_ARC_LENGTH && value >= 0, "An arc of OBJECT IDENTIFIER %s does not fit into a long", getValue());
+                if (arc == 1) {
+                    arcs[0] = Math.min(value / 40, 2);
+                    arcs[1] = value - arcs[0] * 40;
+                } else {
+                    arcs[arc] = value;
+                }
+                arc++;
+                value = 0;
+                length = 0;
+            }
+        }
+        return arcs;
     }
 
+    /**
+     * @param prefix The OBJECT IDENTIFIER that could be a prefix
+     * @return Whether this OBJECT IDENTIFIER is equal to or under the prefix, for instance whether it is under
+     * <code>1.3.6.1.4.1.311</code>
+     */
+    public boolean startsWith(ASN1ObjectIdentifier prefix) {
+        byte[] prefixBytes = prefix.valueBytes;
+        if (prefixBytes.length > valueBytes.length) {
+            return false;
+        }
+        // The prefix ends with the last byte of an arc, so matching bytes means matching arcs
+        for (int i = 0; i < prefixBytes.length; i++) {
+            if (prefixBytes[i] != valueBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decoded OBJECT IDENTIFIERs are interned in the {@link OidRegistry}.
+     */
     @Override
-    protected int valueHash() {
-        return oid.hashCode();
+    protected boolean isShared() {
+        return true;
+    }
+
+    @Override
+    protected ASN1ObjectIdentifier unshared() {
+        return new ASN1ObjectIdentifier(valueBytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ASN1ObjectIdentifier that = (ASN1ObjectIdentifier) o;
+        return tag == that.tag && Arrays.equals(valueBytes, that.valueBytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + valueHash();
+    }
+
+    private static byte[] encode(String oid) {
+        checkArgument(oid != null && !oid.isEmpty(), "An OBJECT IDENTIFIER should have at least two arcs");
+        // An arc of n digits never takes more than n bytes, the first two arcs share their bytes
+        byte[] bytes = new byte[oid.length()];
+        int length = 0;
+        int arc = 0;
+        long first = 0;
+        int start = 0;
+        while (start <= oid.length()) {
+            int end = oid.indexOf('.', start);
+            if (end < 0) {
+                end = oid.length();
+            }
+            checkArgument(end > start, "Arc %s of OBJECT IDENTIFIER '%s' is empty", arc + 1, oid);
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                char c = oid.charAt(i);
+                checkArgument(c >= '0' && c <= '9', "Arc %s of OBJECT IDENTIFIER '%s' is not a number", arc + 1, oid);
+                value = value * 10 + (c - '0');
+            }
+            // Up to 18 digits always fit into a long
+            if (end - start <= 18) {
+                if (arc == 0) {
+                    checkFirstArc(value, oid);
+                    first = value;
+                } else if (arc == 1) {
+                    checkSecondArc(first, value, oid);
+                    length = writeArc(bytes, length, first * 40 + value);
+                } else {
+                    length = writeArc(bytes, length, value);
+                }
+            } else {
+                BigInteger bigValue = new BigInteger(oid.substring(start, end));
+                checkArgument(arc > 0, "The first arc of OBJECT IDENTIFIER '%s' should be 0, 1 or 2", oid);
+                if (arc == 1) {
+                    checkArgument(first == 2, "The second arc of OBJECT IDENTIFIER '%s' should be less than 40", oid);
+                    bigValue = bigValue.add(BigInteger.valueOf(80));
+                }
+                length = writeArc(bytes, length, bigValue);
+            }
+            arc++;
+            start = end + 1;
+        }
+        checkArgument(arc >= 2, "OBJECT IDENTIFIER '%s' should have at least two arcs", oid);
+        return Arrays.copyOf(bytes, length);
+    }
+
+    private static byte[] encode(long... arcs) {
+        checkArgument(arcs.length >= 2, "An OBJECT IDENTIFIER should have at least two arcs, not %s", arcs.length);
+        checkFirstArc(arcs[0], Arrays.toString(arcs));
+        checkSecondArc(arcs[0], arcs[1], Arrays.toString(arcs));
+        byte[] bytes = new byte[arcs.length * MAX_LONG_ARC_LENGTH];
+        int length = writeArc(bytes, 0, arcs[0] * 40 + arcs[1]);
+        for (int i = 2; i < arcs.length; i++) {
+            checkArgument(arcs[i] >= 0, "Arc %s of OBJECT IDENTIFIER %s is negative", i + 1, Arrays.toString(arcs));
+            length = writeArc(bytes, length, arcs[i]);
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    private static void checkFirstArc(long first, String oid) {
+        checkArgument(first >= 0 && first <= 2, "The first arc of OBJECT IDENTIFIER '%s' should be 0, 1 or 2", oid);
+    }
+
+    private static void checkSecondArc(long first, long second, String oid) {
+        checkArgument(second >= 0 && (first == 2 ? second <= Long.MAX_VALUE - 80 : second < 40), "The second arc of OBJECT IDENTIFIER '%s' should be less than 40", oid);
+    }
+
+    /**
+     * Write the arc in base 128, with the high bit set on every byte but the last.
+     */
+    private static int writeArc(byte[] bytes, int offset, long value) {
+        int groups = 1;
+        for (long v = value >>> 7; v != 0; v >>>= 7) {
+            groups++;
+        }
+        for (int i = groups - 1; i >= 0; i--) {
+            bytes[offset++] = (byte) ((value >>> (i * 7)) & 0x7f | (i > 0 ? 0x80 : 0));
+        }
+        return offset;
+    }
+
+    private static int writeArc(byte[] bytes, int offset, BigInteger value) {
+        int groups = (value.bitLength() + 6) / 7;
+        for (int i = groups - 1; i >= 0; i--) {
+            bytes[offset++] = (byte) (value.shiftRight(i * 7).intValue() & 0x7f | (i > 0 ? 0x80 : 0));
+        }
+        return offset;
+    }
+
+    private static String toDottedString(byte[] value) {
+        StringBuilder b = new StringBuilder(value.length * 3);
+        int start = 0;
+        for (int i = 0; i < value.length; i++) {
+            if ((value[i] & 0x80) != 0) {
+                continue;
+            }
+            if (i - start < MAX_LONG_ARC_LENGTH) {
+                long arc = 0;
+                for (int j = start; j <= i; j++) {
+                    arc = (arc << 7) | (value[j] & 0x7f);
+                }
+                if (start == 0) {
+                    long first = Math.min(arc / 40, 2);
+                    b.append(first).append('.').append(arc - first * 40);
+                } else {
+                    b.append('.').append(arc);
+                }
+            } else {
+                BigInteger arc = BigInteger.ZERO;
+                for (int j = start; j <= i; j++) {
+                    arc = arc.shiftLeft(7).or(BigInteger.valueOf(value[j] & 0x7f));
+                }
+                if (start == 0) {
+                    b.append("2.").append(arc.subtract(BigInteger.valueOf(80)));
+                } else {
+                    b.append('.').append(arc);
+                }
+            }
+            start = i + 1;
+        }
+        return b.toString();
     }
 
     public static class Parser extends ASN1Parser<ASN1ObjectIdentifier> {
@@ -60,26 +285,40 @@ public class ASN1ObjectIdentifier extends ASN1PrimitiveValue<String> {
 
         @Override
         public ASN1ObjectIdentifier parse(ASN1Tag<ASN1ObjectIdentifier> asn1Tag, byte[] value) {
-            checkArgument(value.length > 0, "An ASN.1 OBJECT IDENTIFIER should have at least a one byte value");
-            ByteArrayInputStream is = new ByteArrayInputStream(value);
-            StringBuilder b = new StringBuilder();
-            int firstTwo = is.read();
-            b.append(firstTwo / 40);
-            b.append('.').append(firstTwo % 40);
-            while (is.available() > 0) {
-                int x = is.read();
-                if (x < 127) {
-                    b.append('.').append(x);
-                } else {
-                    BigInteger v = BigInteger.valueOf(x & 0x7f);
-                    do {
-                        x = is.read();
-                        v = v.shiftLeft(7).add(BigInteger.valueOf(x & 0x7f));
-                    } while (x > 127);
-                    b.append('.').append(v);
+            checkValue(ByteBuffer.wrap(value));
+            return OidRegistry.getDefault().intern(new ASN1ObjectIdentifier(value));
+        }
+
+        /**
+         * Only checks that the value consists of complete arcs, the value is only copied if the OBJECT IDENTIFIER is
+         * not yet interned.
+         */
+        @Override
+        public ASN1ObjectIdentifier parse(ASN1Tag<ASN1ObjectIdentifier> asn1Tag, ByteBuffer value) {
+            checkValue(value);
+            return OidRegistry.getDefault().intern(value);
+        }
+
+        private static void checkValue(ByteBuffer value) {
+            if (!value.hasRemaining()) {
+                throw new ASN1ParseException("An ASN.1 OBJECT IDENTIFIER should have at least a one byte value");
+            }
+            boolean arcStart = true;
+            for (int i = value.position(); i < value.limit(); i++) {
+                byte b = value.get(i);
+                if (arcStart && (b & 0xff) == 0x80) {
+                    throw new ASN1ParseException("An arc of an ASN.1 OBJECT IDENTIFIER should not start with a 0x80 byte");
                 }
+                arcStart = (b & 0x80) == 0;
+            }
+            if (!arcStart) {
+                throw new ASN1ParseException("The last arc of an ASN.1 OBJECT IDENTIFIER is incomplete");
             }
-            return new ASN1ObjectIdentifier(value, b.toString());
+        }
+
+        @Override
+        protected ASN1ObjectIdentifier decodedFrom(ASN1ObjectIdentifier object, ByteBuffer source, int offset, int length) {
+            return (ASN1ObjectIdentifier) object.decodedFrom(source, offset, length);
         }
     }
 
@@ -90,45 +329,18 @@ public class ASN1ObjectIdentifier extends ASN1PrimitiveValue<String> {
 
         @Override
         public int serializedLength(final ASN1ObjectIdentifier asn1Object) {
-            if (asn1Object.valueBytes == null) {
-                calculateBytes(asn1Object);
-            }
             return asn1Object.valueBytes.length;
         }
 
-        private void calculateBytes(final ASN1ObjectIdentifier asn1Object) {
-            String oid = asn1Object.oid;
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            StringTokenizer tokenizer = new StringTokenizer(oid, ".");
-            int first = Integer.parseInt(tokenizer.nextToken());
-            int second = Integer.parseInt(tokenizer.nextToken());
-            baos.write(first * 40 + second);
-            while (tokenizer.hasMoreTokens()) {
-                BigInteger token = new BigInteger(tokenizer.nextToken());
-                if (token.intValue() > 0 && token.intValue() < 127) {
-                    baos.write(token.intValue());
-                } else {
-                    int neededBytes = token.bitLength() / 7 + ((token.bitLength() % 7 > 0) ? 1 : 0);
-                    for (int i = neededBytes - 1; i >= 0; i--) {
-                        byte b = token.shiftRight(i * 7).byteValue();
-                        b &= 0x7f;
-                        if (i > 0) {
-                            b |= 0x80;
-                        }
-                        baos.write(b);
-                    }
-                }
-            }
-            asn1Object.valueBytes = baos.toByteArray();
-        }
-
         @Override
         public void serialize(final ASN1ObjectIdentifier asn1Object, final ASN1OutputStream stream) throws IOException {
-            if (asn1Object.valueBytes == null) {
-                calculateBytes(asn1Object);
-            }
             stream.write(asn1Object.valueBytes);
         }
+
+        @Override
+        public void serialize(final ASN1ObjectIdentifier asn1Object, final ASN1ReverseWriter writer) {
+            writer.write(asn1Object.valueBytes);
+        }
     }
 
 }
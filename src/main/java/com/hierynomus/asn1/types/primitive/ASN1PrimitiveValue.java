@@ -23,10 +23,10 @@ import java.util.Arrays;
 
 public abstract class ASN1PrimitiveValue<T> extends ASN1Object<T> implements ASN1Primitive {
 
-    protected byte[] valueBytes;
+    protected final byte[] valueBytes;
 
     public ASN1PrimitiveValue(ASN1Tag tag) {
-        super(tag);
+        this(tag, null);
     }
 
     public ASN1PrimitiveValue(ASN1Tag tag, byte[] valueBytes) {
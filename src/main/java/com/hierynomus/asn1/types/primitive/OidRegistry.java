@@ -0,0 +1,288 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.types.primitive;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.hierynomus.asn1.util.Checks.checkArgument;
+
+/**
+ * Interns OBJECT IDENTIFIERs, so that every occurrence of the same OBJECT IDENTIFIER decodes to one shared
+ * {@link ASN1ObjectIdentifier}.
+ *
+ * Registered OBJECT IDENTIFIERs are kept in a trie on their encoded value, which is looked up straight from the bytes
+ * being decoded and which answers prefix queries such as "is this OBJECT IDENTIFIER under 1.3.6.1.4.1.311". Other
+ * OBJECT IDENTIFIERs are interned in a bounded cache, which is split in stripes on the hash of the encoded value. Each
+ * stripe is locked on its own and evicts its least recently used OBJECT IDENTIFIER.
+ *
+ * The {@link #getDefault() default} registry is used by {@link ASN1ObjectIdentifier.Parser}, it knows the OBJECT
+ * IDENTIFIERs of SPNEGO, NTLM, Kerberos and the common X.509 algorithms, attributes and extensions. The registry can
+ * safely be used from multiple threads, lookups in the trie do not lock and lookups in the cache only lock one stripe.
+ */
+public class OidRegistry {
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final int MIN_STRIPE_SIZE = 64;
+    private static final int MAX_STRIPES = 16;
+
+    private static final String[] WELL_KNOWN = {
+        // SPNEGO, NTLM, NegoEx and Kerberos
+        "1.3.6.1.5.5.2", "1.3.6.1.4.1.311.2.2.10", "1.3.6.1.4.1.311.2.2.30", "1.2.840.113554.1.2.2",
+        "1.2.840.48018.1.2.2", "1.2.840.113554.1.2.2.3",
+        // PKCS #1 and elliptic curve algorithms
+        "1.2.840.113549.1.1.1", "1.2.840.113549.1.1.5", "1.2.840.113549.1.1.10", "1.2.840.113549.1.1.11",
+        "1.2.840.113549.1.1.12", "1.2.840.113549.1.1.13", "1.2.840.10045.2.1", "1.2.840.10045.3.1.7",
+        "1.2.840.10045.4.3.2", "1.2.840.10045.4.3.3", "1.3.132.0.34",
+        // Hash algorithms
+        "1.3.14.3.2.26", "2.16.840.1.101.3.4.2.1", "2.16.840.1.101.3.4.2.2", "2.16.840.1.101.3.4.2.3",
+        // PKCS #7 and PKCS #9
+        "1.2.840.113549.1.7.1", "1.2.840.113549.1.7.2", "1.2.840.113549.1.9.1", "1.2.840.113549.1.9.3",
+        "1.2.840.113549.1.9.4",
+        // X.500 attribute types
+        "2.5.4.3", "2.5.4.5", "2.5.4.6", "2.5.4.7", "2.5.4.8", "2.5.4.10", "2.5.4.11",
+        // X.509 extensions, extended key usages and access methods
+        "2.5.29.14", "2.5.29.15", "2.5.29.17", "2.5.29.19", "2.5.29.31", "2.5.29.32", "2.5.29.35", "2.5.29.37",
+        "1.3.6.1.5.5.7.1.1", "1.3.6.1.5.5.7.3.1", "1.3.6.1.5.5.7.3.2", "1.3.6.1.5.5.7.48.1", "1.3.6.1.5.5.7.48.2"
+    };
+
+    private static final OidRegistry DEFAULT = new OidRegistry(DEFAULT_CACHE_SIZE);
+
+    static {
+        for (String oid : WELL_KNOWN) {
+            DEFAULT.register(oid);
+        }
+    }
+
+    private final Node root = new Node();
+    private final Stripe[] stripes;
+
+    /**
+     * Create an empty registry.
+     *
+     * @param cacheSize The number of unregistered OBJECT IDENTIFIERs to intern, 0 to only intern registered ones
+     */
+    public OidRegistry(final int cacheSize) {
+        checkArgument(cacheSize >= 0, "The cache size should not be negative, but was %s", cacheSize);
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, cacheSize / MIN_STRIPE_SIZE)));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe((cacheSize + count - 1) / count);
+        }
+    }
+
+    /**
+     * @return The registry used when decoding OBJECT IDENTIFIERs
+     */
+    public static OidRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Register an OBJECT IDENTIFIER.
+     *
+     * @param oid The dotted OBJECT IDENTIFIER
+     * @return The shared instance for the OBJECT IDENTIFIER
+     */
+    public ASN1ObjectIdentifier register(String oid) {
+        return register(new ASN1ObjectIdentifier(oid));
+    }
+
+    /**
+     * Register an OBJECT IDENTIFIER. If it is already registered, the instance that was registered first is kept.
+     *
+     * @param oid The OBJECT IDENTIFIER
+     * @return The shared instance for the OBJECT IDENTIFIER
+     */
+    public synchronized ASN1ObjectIdentifier register(ASN1ObjectIdentifier oid) {
+        Node node = root;
+        for (byte b : oid.valueBytes) {
+            Node child = node.child(b);
+            if (child == null) {
+                child = node.addChild(b);
+            }
+            node = child;
+        }
+        if (node.oid == null) {
+            node.oid = oid;
+            ByteBuffer key = ByteBuffer.wrap(oid.valueBytes);
+            Stripe stripe = stripe(key);
+            synchronized (stripe) {
+                stripe.remove(key);
+            }
+        }
+        return node.oid;
+    }
+
+    /**
+     * @param oid The OBJECT IDENTIFIER
+     * @return The registered instance of the OBJECT IDENTIFIER, or <code>null</code> if it is not registered
+     */
+    public ASN1ObjectIdentifier lookup(ASN1ObjectIdentifier oid) {
+        return lookup(ByteBuffer.wrap(oid.valueBytes));
+    }
+
+    /**
+     * Find the registered OBJECT IDENTIFIER with the most arcs that the OBJECT IDENTIFIER is equal to or under.
+     *
+     * @param oid The OBJECT IDENTIFIER
+     * @return The registered prefix, or <code>null</code> if the OBJECT IDENTIFIER is not under any registered one
+     */
+    public ASN1ObjectIdentifier findPrefix(ASN1ObjectIdentifier oid) {
+        ASN1ObjectIdentifier prefix = null;
+        Node node = root;
+        byte[] value = oid.valueBytes;
+        for (int i = 0; i < value.length && node != null; i++) {
+            node = node.child(value[i]);
+            // Only the last byte of an arc has the high bit cleared, so a match ends on an arc boundary
+            if (node != null && node.oid != null) {
+                prefix = node.oid;
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Intern the OBJECT IDENTIFIER. If it is registered, the registered instance is returned, otherwise the instance
+     * in the cache, to which it is added if it is not yet there.
+     *
+     * @param oid The OBJECT IDENTIFIER
+     * @return The shared instance for the OBJECT IDENTIFIER
+     */
+    public ASN1ObjectIdentifier intern(ASN1ObjectIdentifier oid) {
+        ASN1ObjectIdentifier registered = lookup(oid);
+        if (registered != null) {
+            return registered;
+        }
+        return cached(ByteBuffer.wrap(oid.valueBytes), oid);
+    }
+
+    /**
+     * Intern the OBJECT IDENTIFIER with the encoded value. The value is only copied if it is not yet interned.
+     *
+     * @param value The remaining bytes of the buffer are the value, its position is not changed
+     * @return The shared instance for the OBJECT IDENTIFIER
+     */
+    ASN1ObjectIdentifier intern(ByteBuffer value) {
+        ASN1ObjectIdentifier registered = lookup(value);
+        if (registered != null) {
+            return registered;
+        }
+        return cached(value, null);
+    }
+
+    private ASN1ObjectIdentifier lookup(ByteBuffer value) {
+        Node node = root;
+        for (int i = value.position(); i < value.limit() && node != null; i++) {
+            node = node.child(value.get(i));
+        }
+        return node != null ? node.oid : null;
+    }
+
+    /**
+     * @param value The encoded value, which is only used to look up the cache
+     * @param oid The OBJECT IDENTIFIER to add if it is not cached, or <code>null</code> to create it from a copy of
+     *            the value
+     */
+    private ASN1ObjectIdentifier cached(ByteBuffer value, ASN1ObjectIdentifier oid) {
+        Stripe stripe = stripe(value);
+        synchronized (stripe) {
+            ASN1ObjectIdentifier cached = stripe.get(value);
+            if (cached != null) {
+                return cached;
+            }
+            if (oid == null) {
+                byte[] bytes = new byte[value.remaining()];
+                value.duplicate().get(bytes);
+                oid = new ASN1ObjectIdentifier(bytes);
+            }
+            if (stripe.capacity > 0) {
+                stripe.put(ByteBuffer.wrap(oid.valueBytes), oid);
+            }
+            return oid;
+        }
+    }
+
+    /**
+     * A ByteBuffer hashes and compares its remaining bytes, so the stripe can be probed with the buffer being decoded.
+     */
+    private Stripe stripe(ByteBuffer key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * A part of the cache, keyed on the encoded value of the OBJECT IDENTIFIERs. It is only accessed while holding its
+     * lock.
+     */
+    private static class Stripe extends LinkedHashMap<ByteBuffer, ASN1ObjectIdentifier> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, ASN1ObjectIdentifier> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * A node in the trie, with a child for each next byte. The children are replaced as a whole when one is added, so
+     * that they can be read without locking.
+     */
+    private static class Node {
+        private volatile Children children = Children.NONE;
+        private volatile ASN1ObjectIdentifier oid;
+
+        Node child(byte b) {
+            Children current = children;
+            for (int i = 0; i < current.keys.length; i++) {
+                if (current.keys[i] == b) {
+                    return current.nodes[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(byte b) {
+            Children current = children;
+            int size = current.keys.length;
+            byte[] keys = Arrays.copyOf(current.keys, size + 1);
+            Node[] nodes = Arrays.copyOf(current.nodes, size + 1);
+            keys[size] = b;
+            nodes[size] = new Node();
+            children = new Children(keys, nodes);
+            return nodes[size];
+        }
+    }
+
+    private static class Children {
+        static final Children NONE = new Children(new byte[0], new Node[0]);
+
+        final byte[] keys;
+        final Node[] nodes;
+
+        Children(byte[] keys, Node[] nodes) {
+            this.keys = keys;
+            this.nodes = nodes;
+        }
+    }
+}
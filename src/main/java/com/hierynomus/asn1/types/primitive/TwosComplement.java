@@ -0,0 +1,70 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.types.primitive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import com.hierynomus.asn1.ASN1ReverseWriter;
+
+/**
+ * Reads and writes the two's complement values of INTEGERs and ENUMERATEDs that fit into a <code>long</code>, without
+ * going through {@link java.math.BigInteger}.
+ */
+final class TwosComplement {
+    static final int MAX_LENGTH = 8;
+
+    private TwosComplement() {
+        // Do not instantiate
+    }
+
+    /**
+     * The number of bytes of the minimal two's complement encoding of the value.
+     */
+    static int length(long value) {
+        int bits = 65 - Long.numberOfLeadingZeros(value < 0 ? ~value : value);
+        return (bits + 7) / 8;
+    }
+
+    /**
+     * Read the remaining bytes of the buffer, at most {@link #MAX_LENGTH}, as a two's complement value. The position
+     * of the buffer is not changed.
+     */
+    static long read(ByteBuffer value) {
+        int position = value.position();
+        int limit = value.limit();
+        long result = value.get(position);
+        for (int i = position + 1; i < limit; i++) {
+            result = (result << 8) | (value.get(i) & 0xff);
+        }
+        return result;
+    }
+
+    static void write(long value, OutputStream out) throws IOException {
+        for (int shift = (length(value) - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (value >> shift));
+        }
+    }
+
+    static void write(long value, ASN1ReverseWriter writer) {
+        int length = length(value);
+        long remaining = value;
+        for (int i = 0; i < length; i++) {
+            writer.write((int) remaining);
+            remaining >>= 8;
+        }
+    }
+}
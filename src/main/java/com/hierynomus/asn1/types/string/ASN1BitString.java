@@ -15,35 +15,44 @@
  */
 package com.hierynomus.asn1.types.string;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumSet;
 import com.hierynomus.asn1.*;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
+import com.hierynomus.asn1.types.ASN1Encoding;
+import com.hierynomus.asn1.types.ASN1Object;
 import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.types.ASN1TagClass;
 import com.hierynomus.asn1.util.Checks;
+import com.hierynomus.asn1.util.ScratchBuffers.ScratchOutputStream;
 
+/**
+ * An ASN.1 BIT STRING.
+ *
+ * The bits are only kept packed in their encoded bytes, with bit 0 the most significant bit of the first byte. Single
+ * bits, named bits and 64 bit words are read straight from those bytes.
+ */
 public class ASN1BitString extends ASN1String<boolean[]> {
 
-    private int unusedBits;
-    private boolean[] bits;
+    private final int unusedBits;
 
     private ASN1BitString(ASN1Tag<ASN1BitString> tag, byte[] bytes, int unusedBits) {
         super(tag, bytes);
         this.unusedBits = unusedBits;
-        this.bits = constructBits();
     }
 
     public ASN1BitString(byte[] bytes, int unusedBits) {
         this(ASN1Tag.BIT_STRING, bytes, unusedBits);
+        Checks.checkArgument(unusedBits >= 0 && unusedBits <= 7 && (bytes.length > 0 || unusedBits == 0), "A BIT STRING of %s bytes cannot have %s unused bits", bytes.length, unusedBits);
     }
 
     public ASN1BitString(boolean[] bits) {
-        super(ASN1Tag.BIT_STRING, constructBytes(bits));
-        this.bits = bits;
-        this.unusedBits = 8 - (bits.length % 8);
+        this(ASN1Tag.BIT_STRING, constructBytes(bits), (8 - bits.length % 8) % 8);
     }
 
     /**
@@ -56,61 +65,177 @@ public class ASN1BitString extends ASN1String<boolean[]> {
         this(ASN1Tag.BIT_STRING, constructBytes(bitSet), 0);
     }
 
+    /**
+     * Create a BIT STRING from named bits, where the ordinal of a constant is the number of its bit. As DER requires,
+     * the BIT STRING ends with the highest bit that is set.
+     *
+     * @param namedBits The bits to set
+     * @return The BIT STRING
+     */
+    public static ASN1BitString fromNamedBits(Collection<? extends Enum<?>> namedBits) {
+        int length = 0;
+        for (Enum<?> namedBit : namedBits) {
+            length = Math.max(length, namedBit.ordinal() + 1);
+        }
+        byte[] bytes = new byte[(length + 7) / 8];
+        for (Enum<?> namedBit : namedBits) {
+            bytes[namedBit.ordinal() / 8] |= 0x80 >>> (namedBit.ordinal() % 8);
+        }
+        return new ASN1BitString(ASN1Tag.BIT_STRING, bytes, (8 - length % 8) % 8);
+    }
+
     private static byte[] constructBytes(boolean[] bits) {
-        byte[] bytes = new byte[bits.length / 8 + (bits.length % 8 > 0 ? 1 : 0)];
-        for (int i = 0; i < bytes.length; i++) {
-            bytes[i] = 0;
-            for (int j = 0; j < 8; j++) {
-                boolean v = i * 8 + j < bits.length && bits[i * 8 + j];
-                bytes[i] += ((v ? 1 : 0) << (8 - j - 1));
+        byte[] bytes = new byte[(bits.length + 7) / 8];
+        for (int i = 0; i < bits.length; i++) {
+            if (bits[i]) {
+                bytes[i / 8] |= 0x80 >>> (i % 8);
             }
         }
         return bytes;
     }
 
     private static byte[] constructBytes(BitSet bitSet) {
-        byte[] bytes = new byte[bitSet.length() / 8 + 1];
+        // A BitSet stores bit 0 as the least significant bit of the first byte
+        byte[] bytes = bitSet.toByteArray();
         for (int i = 0; i < bytes.length; i++) {
-            bytes[i] = 0;
-            for (int j = 0; j < 8; j++) {
-                bytes[i] += ((bitSet.get(i * 8 + j) ? 1 : 0) << (8 - j - 1));
-            }
+            bytes[i] = (byte) (Integer.reverse(bytes[i]) >>> 24);
         }
         return bytes;
     }
 
-    private boolean[] constructBits() {
+    /**
+     * @return The bits, in a new array.
+     */
+    @Override
+    public boolean[] getValue() {
         boolean[] bits = new boolean[length()];
         for (int i = 0; i < bits.length; i++) {
             bits[i] = isSet(i);
-
         }
         return bits;
     }
 
-    @Override
-    public boolean[] getValue() {
-        return Arrays.copyOf(this.bits, this.bits.length);
-    }
-
     @Override
     protected String valueString() {
-        return Arrays.toString(bits);
+        return Arrays.toString(getValue());
     }
 
     /**
      * Check whether bit 'x' is set in the ASN.1 BIT_STRING
      *
      * @param x The bit to check
-     * @return <code>true</code> if bit 'x' is set, <code>false</code> otherwise.
+     * @return <code>true</code> if bit 'x' is set, <code>false</code> otherwise, also if the BIT STRING is shorter.
      */
     public boolean isSet(int x) {
-        int toCheck = x / 8;
-        byte theByte = valueBytes[toCheck];
-        int index = x % 8;
-        int mask = 1 << (7 - index);
-        int masked = theByte & mask;
-        return masked != 0;
+        if (x >= length()) {
+            return false;
+        }
+        return (valueBytes[x / 8] & (0x80 >>> (x % 8))) != 0;
+    }
+
+    /**
+     * Check whether a named bit is set, where the ordinal of the constant is the number of its bit.
+     *
+     * @param namedBit The bit to check, for instance a KeyUsage or ContextFlags constant
+     * @return <code>true</code> if the bit is set, <code>false</code> otherwise.
+     */
+    public boolean isSet(Enum<?> namedBit) {
+        return isSet(namedBit.ordinal());
+    }
+
+    /**
+     * @param type The enum of which the ordinals are the numbers of the named bits
+     * @return The named bits that are set.
+     */
+    public <E extends Enum<E>> EnumSet<E> getNamedBits(Class<E> type) {
+        EnumSet<E> namedBits = EnumSet.noneOf(type);
+        for (E namedBit : type.getEnumConstants()) {
+            if (isSet(namedBit.ordinal())) {
+                namedBits.add(namedBit);
+            }
+        }
+        return namedBits;
+    }
+
+    /**
+     * @return The number of bits that are set.
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        int words = wordCount();
+        for (int i = 0; i < words; i++) {
+            cardinality += Long.bitCount(getWord(i));
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return The number of 64 bit words that {@link #getWord(int)} returns.
+     */
+    public int wordCount() {
+        return (length() + 63) / 64;
+    }
+
+    /**
+     * Read 64 bits at once, in the order of {@link BitSet#toLongArray()}: bit <code>i * 64 + n</code> of the BIT STRING
+     * is bit <code>n</code> of word <code>i</code>. Bits beyond the length of the BIT STRING are not set.
+     *
+     * @param i The index of the word
+     * @return The word
+     */
+    public long getWord(int i) {
+        int start = i * 8;
+        int end = Math.min(start + 8, valueBytes.length);
+        long word = 0;
+        for (int b = start; b < start + 8; b++) {
+            word = (word << 8) | (b < end ? valueBytes[b] & 0xff : 0);
+        }
+        if (end == valueBytes.length && unusedBits > 0) {
+            // Clear the unused bits, which BER does not require to be 0
+            word &= -1L << ((start + 8 - end) * 8 + unusedBits);
+        }
+        return Long.reverse(word);
+    }
+
+    /**
+     * @return The bits as a BitSet
+     */
+    public BitSet toBitSet() {
+        long[] words = new long[wordCount()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = getWord(i);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * @param other The other BIT STRING
+     * @return Whether any bit set in the other BIT STRING is also set in this one.
+     */
+    public boolean intersects(ASN1BitString other) {
+        int words = Math.min(wordCount(), other.wordCount());
+        for (int i = 0; i < words; i++) {
+            if ((getWord(i) & other.getWord(i)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param other The other BIT STRING
+     * @return Whether all bits set in the other BIT STRING are also set in this one.
+     */
+    public boolean containsAll(ASN1BitString other) {
+        int words = other.wordCount();
+        for (int i = 0; i < words; i++) {
+            long otherWord = other.getWord(i);
+            long word = i < wordCount() ? getWord(i) : 0;
+            if ((word & otherWord) != otherWord) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -118,6 +243,26 @@ public class ASN1BitString extends ASN1String<boolean[]> {
         return (valueBytes.length * 8) - unusedBits;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ASN1BitString that = (ASN1BitString) o;
+        if (tag != that.tag || length() != that.length()) return false;
+        for (int i = 0; i < wordCount(); i++) {
+            if (getWord(i) != that.getWord(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
     public static class Parser extends ASN1Parser<ASN1BitString> {
 
         public Parser(ASN1Decoder decoder) {
@@ -126,31 +271,68 @@ public class ASN1BitString extends ASN1String<boolean[]> {
 
         @Override
         public ASN1BitString parse(ASN1Tag<ASN1BitString> asn1Tag, byte[] value) {
+            return parse(asn1Tag, ByteBuffer.wrap(value));
+        }
+
+        @Override
+        public ASN1BitString parse(ASN1Tag<ASN1BitString> asn1Tag, ByteBuffer value) {
             if (asn1Tag.isConstructed()) {
-                try (ASN1InputStream stream = new ASN1InputStream(decoder, value)) {
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    int unusedBits = 0;
-                    while (stream.available() > 0) {
-                        ASN1Tag subTag = stream.readTag();
-                        Checks.checkState(subTag.getTag() == asn1Tag.getTag(), "Expected an ASN.1 BIT STRING as Constructed object, got: %s", subTag);
-                        int i = stream.readLength();
-                        byte[] subValue = stream.readValue(i);
-                        baos.write(subValue, 1, subValue.length - 1);
-                        if (stream.available() <= 0) {
-                            // Last ASN.1 BitString
-                            unusedBits = subValue[0];
-                        }
-                    }
-                    return new ASN1BitString(asn1Tag, baos.toByteArray(), unusedBits);
-                } catch (IOException e) {
-                    throw new ASN1ParseException(e, "Unable to parse Constructed ASN.1 BIT STRING");
-                }
+                return parseSegments(asn1Tag, new ASN1InputStream(decoder, value));
             } else {
-                byte unusedBits = value[0];
-                byte[] bits = Arrays.copyOfRange(value, 1, value.length);
+                ByteBuffer toRead = value.duplicate();
+                if (!toRead.hasRemaining()) {
+                    throw new ASN1ParseException("An ASN.1 BIT STRING should at least have the number of unused bits");
+                }
+                byte unusedBits = toRead.get();
+                if (unusedBits < 0 || unusedBits > 7 || (!toRead.hasRemaining() && unusedBits != 0)) {
+                    throw new ASN1ParseException("An ASN.1 BIT STRING of %s bytes cannot have %s unused bits", toRead.remaining(), unusedBits);
+                }
+                byte[] bits = new byte[toRead.remaining()];
+                toRead.get(bits);
                 return new ASN1BitString(asn1Tag, bits, unusedBits);
             }
         }
+
+        /**
+         * Reads the segments one by one, up to the end-of-contents octets, only their bits are kept.
+         */
+        @Override
+        public ASN1BitString parse(ASN1Tag<ASN1BitString> asn1Tag, ASN1InputStream contents) {
+            return parseSegments(asn1Tag, contents);
+        }
+
+        /**
+         * The bits of a constructed BIT STRING are those of its segments, which are parsed by this parser as well, so
+         * that nested constructed segments are joined first. Only the last segment can have unused bits. The result is
+         * primitive, so that it is encoded as a single segment.
+         */
+        private ASN1BitString parseSegments(ASN1Tag<ASN1BitString> asn1Tag, ASN1InputStream segments) {
+            ScratchOutputStream joined = new ScratchOutputStream();
+            try {
+                int unusedBits = 0;
+                for (ASN1Object segment : segments) {
+                    ASN1Tag<?> segmentTag = segment.getTag();
+                    if (!(segment instanceof ASN1BitString) || segmentTag.getAsn1TagClass() != ASN1TagClass.UNIVERSAL
+                        || segmentTag.getTag() != ASN1Tag.BIT_STRING.getTag()) {
+                        throw new ASN1ParseException("Expected an ASN.1 BIT STRING as segment of a constructed BIT STRING, got: %s", segmentTag);
+                    }
+                    if (unusedBits != 0) {
+                        throw new ASN1ParseException("Only the last segment of a constructed ASN.1 BIT STRING can have unused bits");
+                    }
+                    ASN1BitString bitString = (ASN1BitString) segment;
+                    joined.write(bitString.valueBytes, 0, bitString.valueBytes.length);
+                    unusedBits = bitString.unusedBits;
+                }
+                return new ASN1BitString(asn1Tag.asEncoded(ASN1Encoding.PRIMITIVE), joined.toByteArray(), unusedBits);
+            } finally {
+                joined.release();
+            }
+        }
+
+        @Override
+        protected ASN1BitString decodedFrom(ASN1BitString object, ByteBuffer source, int offset, int length) {
+            return (ASN1BitString) object.decodedFrom(source, offset, length);
+        }
     }
 
     public static class Serializer extends ASN1Serializer<ASN1BitString> {
@@ -168,6 +350,12 @@ public class ASN1BitString extends ASN1String<boolean[]> {
             stream.write(asn1Object.unusedBits);
             stream.write(asn1Object.valueBytes);
         }
+
+        @Override
+        public void serialize(final ASN1BitString asn1Object, final ASN1ReverseWriter writer) {
+            writer.write(asn1Object.valueBytes);
+            writer.write(asn1Object.unusedBits);
+        }
     }
 
 }
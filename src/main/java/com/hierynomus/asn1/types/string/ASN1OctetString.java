@@ -15,15 +15,24 @@
  */
 package com.hierynomus.asn1.types.string;
 
+import com.hierynomus.asn1.ASN1InputStream;
 import com.hierynomus.asn1.ASN1OutputStream;
 import com.hierynomus.asn1.ASN1ParseException;
 import com.hierynomus.asn1.ASN1Parser;
+import com.hierynomus.asn1.ASN1ReverseWriter;
 import com.hierynomus.asn1.ASN1Serializer;
 import com.hierynomus.asn1.encodingrules.ASN1Decoder;
 import com.hierynomus.asn1.encodingrules.ASN1Encoder;
+import com.hierynomus.asn1.types.ASN1Encoding;
+import com.hierynomus.asn1.types.ASN1Object;
 import com.hierynomus.asn1.types.ASN1Tag;
+import com.hierynomus.asn1.types.ASN1TagClass;
+import com.hierynomus.asn1.util.ScratchBuffers.ScratchOutputStream;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class ASN1OctetString extends ASN1String<byte[]> {
@@ -40,6 +49,16 @@ public class ASN1OctetString extends ASN1String<byte[]> {
         return Arrays.copyOf(valueBytes, valueBytes.length);
     }
 
+    /**
+     * Read the value without copying it, unlike {@link #getValue()}. To stream values that are too large to hold in
+     * memory, see {@link com.hierynomus.asn1.ASN1StreamReader#getValueStream()}.
+     *
+     * @return a stream reading the value.
+     */
+    public InputStream getValueStream() {
+        return new ByteArrayInputStream(valueBytes);
+    }
+
     @Override
     protected String valueString() {
         return Arrays.toString(valueBytes);
@@ -58,8 +77,56 @@ public class ASN1OctetString extends ASN1String<byte[]> {
 
         @Override
         public ASN1OctetString parse(ASN1Tag<ASN1OctetString> asn1Tag, byte[] value) throws ASN1ParseException {
+            if (asn1Tag.isConstructed()) {
+                return parse(asn1Tag, ByteBuffer.wrap(value));
+            }
             return new ASN1OctetString(asn1Tag, value);
         }
+
+        /**
+         * The value of a constructed OCTET STRING is the concatenation of the values of its segments.
+         */
+        @Override
+        public ASN1OctetString parse(ASN1Tag<ASN1OctetString> asn1Tag, ByteBuffer value) throws ASN1ParseException {
+            if (asn1Tag.isConstructed()) {
+                return parseSegments(asn1Tag, new ASN1InputStream(decoder, value));
+            }
+            return super.parse(asn1Tag, value);
+        }
+
+        /**
+         * Reads the segments one by one, up to the end-of-contents octets, only their values are kept.
+         */
+        @Override
+        public ASN1OctetString parse(ASN1Tag<ASN1OctetString> asn1Tag, ASN1InputStream contents) throws ASN1ParseException {
+            return parseSegments(asn1Tag, contents);
+        }
+
+        /**
+         * The result is primitive, so that it is encoded as a single segment.
+         */
+        private ASN1OctetString parseSegments(ASN1Tag<ASN1OctetString> asn1Tag, ASN1InputStream segments) {
+            ScratchOutputStream joined = new ScratchOutputStream();
+            try {
+                for (ASN1Object segment : segments) {
+                    ASN1Tag<?> segmentTag = segment.getTag();
+                    if (!(segment instanceof ASN1OctetString) || segmentTag.getAsn1TagClass() != ASN1TagClass.UNIVERSAL
+                        || segmentTag.getTag() != ASN1Tag.OCTET_STRING.getTag()) {
+                        throw new ASN1ParseException("Expected an ASN.1 OCTET STRING as segment of a constructed OCTET STRING, got: %s", segmentTag);
+                    }
+                    byte[] segmentBytes = ((ASN1OctetString) segment).valueBytes;
+                    joined.write(segmentBytes, 0, segmentBytes.length);
+                }
+                return new ASN1OctetString(asn1Tag.asEncoded(ASN1Encoding.PRIMITIVE), joined.toByteArray());
+            } finally {
+                joined.release();
+            }
+        }
+
+        @Override
+        protected ASN1OctetString decodedFrom(ASN1OctetString object, ByteBuffer source, int offset, int length) {
+            return (ASN1OctetString) object.decodedFrom(source, offset, length);
+        }
     }
 
     public static class Serializer extends ASN1Serializer<ASN1OctetString> {
@@ -77,5 +144,10 @@ public class ASN1OctetString extends ASN1String<byte[]> {
         public void serialize(final ASN1OctetString asn1Object, final ASN1OutputStream stream) throws IOException {
             stream.write(asn1Object.valueBytes);
         }
+
+        @Override
+        public void serialize(final ASN1OctetString asn1Object, final ASN1ReverseWriter writer) {
+            writer.write(asn1Object.valueBytes);
+        }
     }
 }
@@ -25,7 +25,7 @@ import com.hierynomus.asn1.types.*;
  * An ASN.1 STRING type can either be expressed as a Primitive encoded or Constructed encoded sequence.
  */
 public abstract class ASN1String<T> extends ASN1Object<T> implements ASN1Primitive, ASN1Constructed {
-    protected byte[] valueBytes;
+    protected final byte[] valueBytes;
 
     public ASN1String(ASN1Tag<?> tag, byte[] bytes) {
         super(tag);
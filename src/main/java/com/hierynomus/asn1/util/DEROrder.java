@@ -0,0 +1,82 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.util;
+
+/**
+ * The order of the objects of a SET or SET OF in DER: sorted on their encodings, compared as octet strings where the
+ * shorter one is padded with trailing 0 bytes.
+ */
+public class DEROrder {
+
+    private DEROrder() {
+        // Do not instantiate
+    }
+
+    /**
+     * Sort encodings that are stored one after the other in an array. Only the indices of the encodings are moved, the
+     * sort is stable.
+     *
+     * @param encodings The array holding the encodings
+     * @param offsets Where the encoding of each object starts, with the end of the last one as last offset
+     * @return The indices of the encodings, in sorted order.
+     */
+    public static int[] sortedOrder(byte[] encodings, int[] offsets) {
+        int[] order = new int[offsets.length - 1];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[order.length], 0, order.length, encodings, offsets);
+        return order;
+    }
+
+    private static void mergeSort(int[] order, int[] scratch, int from, int to, byte[] encodings, int[] offsets) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, scratch, from, middle, encodings, offsets);
+        mergeSort(order, scratch, middle, to, encodings, offsets);
+        if (compare(encodings, offsets, order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(encodings, offsets, scratch[left], scratch[right]) <= 0)) {
+                order[i] = scratch[left++];
+            } else {
+                order[i] = scratch[right++];
+            }
+        }
+    }
+
+    private static int compare(byte[] encodings, int[] offsets, int a, int b) {
+        int aStart = offsets[a];
+        int aLength = offsets[a + 1] - aStart;
+        int bStart = offsets[b];
+        int bLength = offsets[b + 1] - bStart;
+        int length = Math.max(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            int x = i < aLength ? encodings[aStart + i] & 0xff : 0;
+            int y = i < bLength ? encodings[bStart + i] & 0xff : 0;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.hierynomus.asn1.util.Checks.checkArgument;
+
+/**
+ * A file mapped into memory for reading, addressed with <code>long</code> offsets so that it can be larger than 2GB.
+ *
+ * The file is mapped in chunks of 1GB, each chunk is mapped when it is first accessed. The chunks overlap by 16MB, so
+ * that a region of up to 16MB that starts near the end of a chunk can still be sliced from it. Longer regions that
+ * cross the end of a chunk are mapped separately. Mapping only reserves address space; the pages are read by the
+ * operating system as they are accessed, so neither opening the file nor reading from it takes heap space for its
+ * contents.
+ *
+ * The mappings remain valid after the file is closed, until they are garbage collected. A mapped file can be shared
+ * between threads, the streams it creates cannot.
+ */
+public class MappedFile implements Closeable {
+    private static final int CHUNK_SIZE = 1 << 30;
+    private static final int CHUNK_OVERLAP = 1 << 24;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+    private final int chunkOverlap;
+    private final AtomicReferenceArray<MappedByteBuffer> chunks;
+
+    MappedFile(FileChannel channel, int chunkSize, int chunkOverlap) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+        this.chunkOverlap = chunkOverlap;
+        this.chunks = new AtomicReferenceArray<>((int) ((size + chunkSize - 1) / chunkSize));
+    }
+
+    /**
+     * @param path The file to map
+     * @return The mapped file, nothing is mapped until it is read.
+     * @throws IOException If the file could not be opened
+     */
+    public static MappedFile open(Path path) throws IOException {
+        return open(path, CHUNK_SIZE, CHUNK_OVERLAP);
+    }
+
+    static MappedFile open(Path path, int chunkSize, int chunkOverlap) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedFile(channel, chunkSize, chunkOverlap);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The size of the file when it was opened.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Get a read-only view on a region of the file.
+     *
+     * @param offset The offset of the region in the file
+     * @param length The length of the region
+     * @return The region, from position 0 up to its length.
+     * @throws IOException If the region could not be mapped
+     */
+    public ByteBuffer slice(long offset, int length) throws IOException {
+        checkArgument(offset >= 0 && length >= 0 && offset <= size - length, "The region of %s bytes at offset %s is not within the file of %s bytes", length, offset, size);
+        if (length == 0) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+        int index = (int) (offset / chunkSize);
+        ByteBuffer chunk = chunk(index);
+        int start = (int) (offset - (long) index * chunkSize);
+        if (length > chunk.capacity() - start) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+        ByteBuffer region = chunk.duplicate();
+        region.limit(start + length).position(start);
+        return region.slice();
+    }
+
+    /**
+     * Create a stream reading the file from an offset. Skipping only moves the position of the stream.
+     *
+     * @param offset The offset to start reading at
+     * @return The stream.
+     */
+    public InputStream newInputStream(long offset) {
+        checkArgument(offset >= 0 && offset <= size, "The offset %s is not within the file of %s bytes", offset, size);
+        return new MappedInputStream(offset);
+    }
+
+    private ByteBuffer chunk(int index) throws IOException {
+        MappedByteBuffer chunk = chunks.get(index);
+        if (chunk == null) {
+            long start = (long) index * chunkSize;
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min((long) chunkSize + chunkOverlap, size - start));
+            if (!chunks.compareAndSet(index, null, chunk)) {
+                chunk = chunks.get(index);
+            }
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private class MappedInputStream extends InputStream {
+        private long position;
+
+        MappedInputStream(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            int index = (int) (position / chunkSize);
+            int b = chunk(index).get((int) (position - (long) index * chunkSize)) & 0xff;
+            position++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= size) {
+                return -1;
+            }
+            int index = (int) (position / chunkSize);
+            int start = (int) (position - (long) index * chunkSize);
+            ByteBuffer chunk = chunk(index).duplicate();
+            int toRead = (int) Math.min(len, Math.min(size - position, (long) chunk.capacity() - start));
+            chunk.position(start);
+            chunk.get(b, off, toRead);
+            position += toRead;
+            return toRead;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            long toSkip = Math.min(n, size - position);
+            position += toSkip;
+            return toSkip;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(size - position, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Reusable scratch space for short-lived copies, one array per thread.
+ *
+ * An array is taken with {@link #acquire(int)} and handed back with {@link #release(byte[])} once its contents are no
+ * longer used. While a thread holds its array, another acquire returns a new array, so nested use is safe. Arrays
+ * larger than {@link #MAX_RETAINED_LENGTH} are not kept.
+ */
+public class ScratchBuffers {
+    public static final int MAX_RETAINED_LENGTH = 64 * 1024;
+    private static final int MIN_LENGTH = 256;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
+    private ScratchBuffers() {
+        // Do not instantiate
+    }
+
+    /**
+     * @param minLength The minimum length of the array
+     * @return An array of at least the length, with arbitrary contents
+     */
+    public static byte[] acquire(int minLength) {
+        byte[] buffer = BUFFERS.get();
+        if (buffer != null && buffer.length >= minLength) {
+            BUFFERS.set(null);
+            return buffer;
+        }
+        return new byte[Math.max(minLength, MIN_LENGTH)];
+    }
+
+    /**
+     * Hand back an array, it is kept for the next {@link #acquire(int)} if it is larger than the array the thread keeps.
+     *
+     * @param buffer The array, which should not be used after releasing it
+     */
+    public static void release(byte[] buffer) {
+        if (buffer.length > MAX_RETAINED_LENGTH) {
+            return;
+        }
+        byte[] current = BUFFERS.get();
+        if (current == null || current.length < buffer.length) {
+            BUFFERS.set(buffer);
+        }
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} that starts out with the scratch array of the thread, which it hands back on
+     * {@link #release()}.
+     */
+    public static class ScratchOutputStream extends ByteArrayOutputStream {
+        public ScratchOutputStream() {
+            super(0);
+            buf = acquire(MIN_LENGTH);
+        }
+
+        /**
+         * Hand back the array the bytes were written to. Copies made with {@link #toByteArray()} remain valid.
+         */
+        public void release() {
+            ScratchBuffers.release(buf);
+            buf = new byte[0];
+            count = 0;
+        }
+    }
+}
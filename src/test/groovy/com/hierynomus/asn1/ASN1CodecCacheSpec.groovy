@@ -0,0 +1,120 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1
+
+import com.hierynomus.asn1.encodingrules.ASN1Decoder
+import com.hierynomus.asn1.encodingrules.ASN1Encoder
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.types.ASN1Encoding
+import com.hierynomus.asn1.types.ASN1Object
+import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.ASN1TagClass
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import spock.lang.Specification
+
+class ASN1CodecCacheSpec extends Specification {
+
+  def "should hand out the same parser for a tag"() {
+    given:
+    def decoder = new BERDecoder()
+
+    expect:
+    decoder.getParser(ASN1Tag.SEQUENCE) instanceof ASN1Sequence.Parser
+    decoder.getParser(ASN1Tag.SEQUENCE).is(decoder.getParser(ASN1Tag.SEQUENCE))
+    decoder.getParser(ASN1Tag.OCTET_STRING.constructed()).is(decoder.getParser(ASN1Tag.OCTET_STRING))
+    !decoder.getParser(ASN1Tag.SEQUENCE).is(new BERDecoder().getParser(ASN1Tag.SEQUENCE))
+  }
+
+  def "should share the parser and serializer of all tagged objects"() {
+    given:
+    def decoder = new BERDecoder()
+    def encoder = new DEREncoder()
+
+    expect:
+    decoder.getParser(ASN1Tag.contextSpecific(0)) instanceof ASN1TaggedObject.Parser
+    decoder.getParser(ASN1Tag.contextSpecific(0)).is(decoder.getParser(ASN1Tag.application(5).constructed()))
+    decoder.getParser(ASN1Tag.contextSpecific(0)).is(decoder.getParser(ASN1Tag.forTag(ASN1TagClass.PRIVATE, 5000)))
+    encoder.getSerializer(ASN1Tag.contextSpecific(0)).is(encoder.getSerializer(ASN1Tag.application(1)))
+  }
+
+  def "should cache the codecs of custom tags"() {
+    given:
+    def created = 0
+    def tag = new ASN1Tag(ASN1TagClass.PRIVATE, 5, ASN1Encoding.PRIMITIVE) {
+      @Override
+      ASN1Parser newParser(ASN1Decoder decoder) {
+        created++
+        return new ASN1OctetString.Parser(decoder)
+      }
+
+      @Override
+      ASN1Serializer newSerializer(ASN1Encoder encoder) {
+        created++
+        return new ASN1OctetString.Serializer(encoder)
+      }
+    }
+    def decoder = new BERDecoder()
+    def encoder = new DEREncoder()
+
+    when:
+    decoder.getParser(tag)
+    decoder.getParser(tag)
+    encoder.getSerializer(tag)
+    encoder.getSerializer(tag)
+
+    then:
+    created == 2
+  }
+
+  def "should decode and encode with decoders and encoders that only implement the interfaces"() {
+    given:
+    def ber = new BERDecoder()
+    def decoder = new ASN1Decoder() {
+      @Override
+      ASN1Tag<? extends ASN1Object> readTag(InputStream is) {
+        return ber.readTag(is)
+      }
+
+      @Override
+      int readLength(InputStream is) {
+        return ber.readLength(is)
+      }
+
+      @Override
+      byte[] readValue(int length, InputStream is) {
+        return ber.readValue(length, is)
+      }
+    }
+    def encoder = new ASN1Encoder() {}
+    def sequence = new ASN1Sequence([new ASN1Integer(1000), new ASN1OctetString([1, 2, 3] as byte[])])
+    def encoded = new DEREncoder().encode(sequence)
+    def out = new ByteArrayOutputStream()
+
+    when:
+    new ASN1OutputStream(encoder, out).writeObject(sequence)
+    def reader = new ASN1StreamReader(decoder, new ByteArrayInputStream(encoded))
+    reader.next()
+
+    then:
+    out.toByteArray() == encoded
+    new DEREncoder().encode(new ASN1InputStream(decoder, encoded).readObject()) == encoded
+    new DEREncoder().encode(reader.readObject()) == encoded
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1
+
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.types.ASN1Object
+import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.primitive.ASN1Null
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+class ASN1IncrementalDecoderSpec extends Specification {
+  static def INDEFINITE_NEG_TOKEN_INIT = ASN1InputStreamSpec.INDEFINITE_NEG_TOKEN_INIT
+
+  @Unroll
+  def "should decode objects fed in fragments of #fragmentLength bytes"() {
+    given:
+    def encoder = new DEREncoder()
+    def objects = [
+      new ASN1Integer(5),
+      new ASN1OctetString(new byte[300]),
+      new ASN1Sequence([new ASN1ObjectIdentifier("1.3.6.1.5.5.2"), new ASN1TaggedObject(ASN1Tag.contextSpecific(40), new ASN1Null())] as List<ASN1Object>),
+      new ASN1OctetString(new byte[0])
+    ]
+    def bytes = objects.collect { encoder.encode(it) }.flatten() as byte[]
+    def decoder = new ASN1IncrementalDecoder(new BERDecoder())
+    def decoded = []
+
+    when:
+    for (int i = 0; i < bytes.length; i += fragmentLength) {
+      decoder.feed(ByteBuffer.wrap(bytes, i, Math.min(fragmentLength, bytes.length - i)))
+      ASN1Object object
+      while ((object = decoder.poll()) != null) {
+        decoded << object
+      }
+    }
+
+    then:
+    decoded.collect { encoder.encode(it) } == objects.collect { encoder.encode(it) }
+    !decoder.hasObject()
+    !decoder.hasPartialObject()
+
+    where:
+    fragmentLength << [1, 2, 3, 7, 64, 1000]
+  }
+
+  @Unroll
+  def "should return the encoding of an object in the indefinite length form fed in fragments of #fragmentLength bytes"() {
+    given:
+    def bytes = (INDEFINITE_NEG_TOKEN_INIT as List) + [0x02, 0x01, 0x07] as byte[]
+    def decoder = new ASN1IncrementalDecoder(new BERDecoder())
+
+    when:
+    def encodings = []
+    for (int i = 0; i < bytes.length; i += fragmentLength) {
+      decoder.feed(ByteBuffer.wrap(bytes, i, Math.min(fragmentLength, bytes.length - i)))
+      ByteBuffer encoded
+      while ((encoded = decoder.pollEncoded()) != null) {
+        encodings << ASN1InputStreamSpec.toBytes(encoded)
+      }
+    }
+
+    then:
+    encodings == [INDEFINITE_NEG_TOKEN_INIT, [0x02, 0x01, 0x07] as byte[]]
+
+    where:
+    fragmentLength << [1, 5, 100]
+  }
+
+  def "should report a partly received object"() {
+    given:
+    def decoder = new ASN1IncrementalDecoder(new BERDecoder())
+
+    when:
+    decoder.feed(ByteBuffer.wrap([0x04, 0x03, 0x01] as byte[]))
+
+    then:
+    decoder.hasPartialObject()
+    !decoder.hasObject()
+    decoder.poll() == null
+
+    when:
+    decoder.feed(ByteBuffer.wrap([0x02, 0x03] as byte[]))
+
+    then:
+    !decoder.hasPartialObject()
+    decoder.hasObject()
+    decoder.poll().getValue() == [0x01, 0x02, 0x03] as byte[]
+  }
+
+  def "should consume the whole fragment and copy its bytes"() {
+    given:
+    def decoder = new ASN1IncrementalDecoder(new BERDecoder())
+    def fragment = ByteBuffer.wrap([0x02, 0x01, 0x05, 0x02] as byte[])
+
+    when:
+    decoder.feed(fragment)
+    fragment.clear()
+    fragment.put([0x7f, 0x7f, 0x7f, 0x7f] as byte[])
+
+    then:
+    !fragment.hasRemaining()
+    decoder.poll() == new ASN1Integer(5)
+    decoder.hasPartialObject()
+  }
+
+  def "should not buffer objects longer than the maximum"() {
+    given:
+    def decoder = new ASN1IncrementalDecoder(new BERDecoder(), 100)
+
+    when:
+    decoder.feed(ByteBuffer.wrap(bytes as byte[]))
+
+    then:
+    thrown(ASN1ParseException)
+
+    where:
+    bytes << [[0x04, 0x82, 0x10, 0x00], [0x30, 0x80, 0x04, 0x7f]]
+  }
+
+  def "should not allocate the length a header claims before the bytes arrive"() {
+    given:
+    def decoder = new ASN1IncrementalDecoder(new BERDecoder(), Integer.MAX_VALUE)
+
+    when:
+    decoder.feed(ByteBuffer.wrap([0x04, 0x84, 0x7f, 0xff, 0xff, 0x00, 0x01, 0x02] as byte[]))
+
+    then:
+    decoder.hasPartialObject()
+    decoder.object.length <= 4096
+  }
+
+  def "should limit the length of objects by default"() {
+    given:
+    def decoder = new ASN1IncrementalDecoder(new BERDecoder())
+
+    when:
+    decoder.feed(ByteBuffer.wrap([0x04, 0x84, 0x7f, 0xff, 0xff, 0x00] as byte[]))
+
+    then:
+    thrown(ASN1ParseException)
+  }
+
+  def "should validate the headers with the decoder"() {
+    given:
+    def decoder = new ASN1IncrementalDecoder(new DERDecoder())
+
+    when:
+    decoder.feed(ByteBuffer.wrap([0x30, 0x80] as byte[]))
+
+    then:
+    thrown(ASN1ParseException)
+  }
+
+  def "should not accept end-of-contents octets outside an object"() {
+    given:
+    def decoder = new ASN1IncrementalDecoder(new BERDecoder())
+
+    when:
+    decoder.feed(ByteBuffer.wrap([0x00, 0x00] as byte[]))
+
+    then:
+    thrown(ASN1ParseException)
+  }
+}
@@ -16,21 +16,112 @@
 package com.hierynomus.asn1
 
 import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
 import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.primitive.ASN1Null
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier
+import com.hierynomus.asn1.types.primitive.OidRegistry
+import com.hierynomus.asn1.types.string.ASN1BitString
 import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
 
 class ASN1InputStreamSpec extends Specification {
+  static def INDEFINITE_NEG_TOKEN_INIT = [0x60, 0x80, 0x06, 0x06, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x02, 0xA0, 0x80, 0x30, 0x80, 0xA0, 0x80, 0x30, 0x80, 0x06, 0x0A, 0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x1E, 0x06, 0x0A, 0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x0A, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00] as byte[]
+
+  @Unroll
+  def "should decode a constructed BIT STRING in the indefinite length form from #source"() {
+    given:
+    def is = stream([0x23, 0x80, 0x03, 0x02, 0x00, 0xF0, 0x03, 0x02, 0x02, 0xF4, 0x0, 0x0, 0x05, 0x00] as byte[])
+
+    when:
+    ASN1BitString bitString = is.readObject()
+
+    then:
+    bitString.length() == 14
+    bitString.isSet(0)
+    !bitString.isSet(4)
+    is.readObject() instanceof ASN1Null
+
+    where:
+    source   | stream
+    "bytes"  | { byte[] b -> new ASN1InputStream(new BERDecoder(), b) }
+    "stream" | { byte[] b -> new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(b)) }
+  }
+
+  @Unroll
+  def "should decode nested objects in the indefinite length form from #source"() {
+    given:
+    def is = stream(INDEFINITE_NEG_TOKEN_INIT)
+
+    when:
+    ASN1TaggedObject gssApi = is.readObject()
+    ASN1Sequence contents = gssApi.getObject(ASN1Tag.SEQUENCE)
+    ASN1Sequence negTokenInit = ((ASN1TaggedObject) contents.get(1)).getObject()
+    ASN1Sequence mechTypes = ((ASN1TaggedObject) negTokenInit.get(0)).getObject()
+
+    then:
+    contents.get(0).value == "1.3.6.1.5.5.2"
+    mechTypes.size() == 2
+    mechTypes.get(0).value == "1.3.6.1.4.1.311.2.2.30"
+    mechTypes.get(1).value == "1.3.6.1.4.1.311.2.2.10"
+    is.available() == 0
+
+    where:
+    source   | stream
+    "bytes"  | { byte[] b -> new ASN1InputStream(new BERDecoder(), b) }
+    "stream" | { byte[] b -> new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(b)) }
+  }
 
-  def "does not support indefinite length encoding"() {
+  def "should write a SEQUENCE decoded from the indefinite length form in the definite length form"() {
     given:
-    def is = new ASN1InputStream(new BERDecoder(), [0x23, 0x80, 0x03, 0x02, 0xF0, 0xF0, 0x03, 0x02, 0x02, 0xF4, 0x0, 0x0] as byte[])
+    def is = new ASN1InputStream(new BERDecoder(), [0x30, 0x80, 0x02, 0x01, 0x05, 0x30, 0x80, 0x05, 0x00, 0x00, 0x00, 0x00, 0x00] as byte[])
+    def baos = new ByteArrayOutputStream()
+
+    when:
+    new ASN1OutputStream(new DEREncoder(), baos).writeObject(is.readObject())
+
+    then:
+    baos.toByteArray() == [0x30, 0x07, 0x02, 0x01, 0x05, 0x30, 0x02, 0x05, 0x00] as byte[]
+  }
+
+  def "should not allow the indefinite length form in DER"() {
+    given:
+    def is = new ASN1InputStream(new DERDecoder(), [0x30, 0x80, 0x05, 0x00, 0x00, 0x00] as byte[])
 
     when:
     is.readObject()
 
     then:
     def ex = thrown(ASN1ParseException.class)
-    ex.getMessage() == "The indefinite length form is not (yet) supported!"
+    ex.getMessage() == "The indefinite length form is not allowed in DER"
+  }
+
+  def "should not allow the indefinite length form for primitive objects"() {
+    given:
+    def is = new ASN1InputStream(new BERDecoder(), [0x04, 0x80, 0x01, 0x00, 0x00] as byte[])
+
+    when:
+    is.readObject()
+
+    then:
+    thrown(ASN1ParseException.class)
+  }
+
+  def "should fail when the end-of-contents octets are missing"() {
+    given:
+    def is = new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream([0x30, 0x80, 0x05, 0x00] as byte[]))
+
+    when:
+    is.readObject()
+
+    then:
+    thrown(ASN1ParseException.class)
   }
 
   def "supports largest value in short length form"() {
@@ -54,4 +145,219 @@ class ASN1InputStreamSpec extends Specification {
     tag == ASN1Tag.INTEGER
     length == 127
   }
+
+  static def NEG_TOKEN_INIT = [0x60, 0x28, 0x06, 0x06, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x02, 0xA0, 0x1E, 0x30, 0x1C, 0xA0, 0x1A, 0x30, 0x18, 0x06, 0x0A, 0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x1E, 0x06, 0x0A, 0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x0A] as byte[]
+
+  @Unroll
+  def "should read from a #type ByteBuffer without changing its position"() {
+    given:
+    def buffer = allocate(NEG_TOKEN_INIT.length + 2)
+    buffer.put([0x01, 0x02] as byte[]).put(NEG_TOKEN_INIT).flip()
+    buffer.position(2)
+
+    when:
+    ASN1TaggedObject object = new ASN1InputStream(new BERDecoder(), buffer).readObject()
+    ASN1Sequence seq = object.getObject(ASN1Tag.SEQUENCE)
+
+    then:
+    buffer.position() == 2
+    seq.get(0) == new ASN1ObjectIdentifier("1.3.6.1.5.5.2")
+    ASN1Sequence seq3 = ((seq.get(1) as ASN1TaggedObject).getObject() as ASN1Sequence).get(0).getValue()
+    seq3.get(1) == new ASN1ObjectIdentifier("1.3.6.1.4.1.311.2.2.10")
+
+    where:
+    type       | allocate
+    "heap"     | { int i -> ByteBuffer.allocate(i) }
+    "direct"   | { int i -> ByteBuffer.allocateDirect(i) }
+  }
+
+  @Unroll
+  def "should write an object decoded from a #type ByteBuffer as its original bytes"() {
+    given:
+    def buffer = allocate(NEG_TOKEN_INIT.length)
+    buffer.put(NEG_TOKEN_INIT).flip()
+    def baos = new ByteArrayOutputStream()
+
+    when:
+    new ASN1OutputStream(new DEREncoder(), baos).writeObject(new ASN1InputStream(new BERDecoder(), buffer).readObject())
+
+    then:
+    baos.toByteArray() == NEG_TOKEN_INIT
+
+    where:
+    type       | allocate
+    "heap"     | { int i -> ByteBuffer.allocate(i) }
+    "direct"   | { int i -> ByteBuffer.allocateDirect(i) }
+  }
+
+  def "should fail when the value is longer than the remaining bytes"() {
+    given:
+    def is = new ASN1InputStream(new BERDecoder(), ByteBuffer.wrap([0x04, 0x05, 0x01, 0x02] as byte[]))
+
+    when:
+    is.readObject()
+
+    then:
+    def ex = thrown(ASN1ParseException.class)
+    ex.getMessage() == "Cannot read an ASN.1 value of 5 bytes, only 2 bytes remaining"
+  }
+
+  def "should return the exact encoding an object was decoded from"() {
+    given:
+    // A SEQUENCE with a non-minimal length, containing an OCTET STRING with a non-minimal length and an INTEGER
+    def bytes = [0x30, 0x81, 0x0A, 0x04, 0x82, 0x00, 0x02, 0x01, 0x02, 0x02, 0x02, 0x01, 0x00] as byte[]
+
+    when:
+    ASN1Sequence sequence = new ASN1InputStream(new BERDecoder(), bytes).readObject()
+
+    then:
+    toBytes(sequence.getEncoded()) == bytes
+    sequence.getEncoded().isReadOnly()
+    toBytes(sequence.get(0).getEncoded()) == bytes[3..8] as byte[]
+    toBytes(sequence.get(1).getEncoded()) == bytes[9..12] as byte[]
+    new DEREncoder().encode(sequence) != bytes
+  }
+
+  def "should return the encoding of an object in the indefinite length form including its end-of-contents octets"() {
+    when:
+    def tagged = new ASN1InputStream(new BERDecoder(), ByteBuffer.wrap(INDEFINITE_NEG_TOKEN_INIT)).readObject()
+
+    then:
+    toBytes(tagged.getEncoded()) == INDEFINITE_NEG_TOKEN_INIT
+  }
+
+  def "should encode an object with DER if it was not decoded from a buffer"() {
+    given:
+    def sequence = new ASN1Sequence([new ASN1Integer(1000), new ASN1Null()])
+    def decoded = new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(new DEREncoder().encode(sequence))).readObject()
+
+    expect:
+    toBytes(sequence.getEncoded()) == new DEREncoder().encode(sequence)
+    toBytes(decoded.getEncoded()) == new DEREncoder().encode(sequence)
+    toBytes(new ASN1InputStream(new BERDecoder(), [0x02, 0x01, 0x05] as byte[]).readObject().getEncoded()) == [0x02, 0x01, 0x05] as byte[]
+  }
+
+  @Unroll
+  def "should only return a shared #type decoded from its DER encoding"() {
+    given:
+    def bytes = encoding as byte[]
+
+    when:
+    def decoded = new ASN1InputStream(new BERDecoder(), ByteBuffer.wrap(bytes)).readObject()
+
+    then:
+    decoded == shared
+    decoded.is(shared) == isDER
+    toBytes(decoded.getEncoded()) == bytes
+
+    where:
+    type                | encoding                                            | shared                                                | isDER
+    "INTEGER"           | [0x02, 0x01, 0x05]                                  | ASN1Integer.valueOf(5)                                | true
+    "INTEGER"           | [0x02, 0x02, 0x00, 0x05]                            | ASN1Integer.valueOf(5)                                | false
+    "INTEGER"           | [0x02, 0x09, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF] | ASN1Integer.valueOf(-1)               | false
+    "INTEGER"           | [0x02, 0x81, 0x01, 0x05]                            | ASN1Integer.valueOf(5)                                | false
+    "OBJECT IDENTIFIER" | [0x06, 0x06, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x02]    | OidRegistry.getDefault().register("1.3.6.1.5.5.2")    | true
+    "OBJECT IDENTIFIER" | [0x06, 0x81, 0x06, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x02] | OidRegistry.getDefault().register("1.3.6.1.5.5.2") | false
+  }
+
+  def "should only record the encoding of a decoded object once"() {
+    given:
+    def bytes = [0x02, 0x02, 0x03, 0xE8] as byte[]
+    ASN1Integer integer = new ASN1InputStream(new BERDecoder(), ByteBuffer.wrap(bytes)).readObject()
+
+    when:
+    new ASN1Integer.Parser(new BERDecoder()).decodedFrom(integer, ByteBuffer.wrap([0x02, 0x01, 0x05] as byte[]), 0, 3)
+
+    then:
+    thrown(IllegalStateException)
+    toBytes(integer.getEncoded()) == bytes
+  }
+
+  def "should return the encoding of an object read with an ASN1StreamReader from a buffer"() {
+    given:
+    def bytes = [0x30, 0x08, 0x02, 0x81, 0x02, 0x01, 0x00, 0x30, 0x80, 0x00, 0x00] as byte[]
+    def reader = new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap(bytes))
+
+    when:
+    reader.next()
+    reader.next()
+    def integer = reader.readObject()
+    reader.next()
+    def sequence = reader.readObject()
+
+    then:
+    toBytes(integer.getEncoded()) == bytes[2..6] as byte[]
+    toBytes(sequence.getEncoded()) == bytes[7..10] as byte[]
+  }
+
+  @Unroll
+  def "should skip objects without decoding them from #source"() {
+    given:
+    // An INTEGER with an invalid empty value, an OCTET STRING, a SEQUENCE in the indefinite length form and a NULL
+    def is = stream([0x02, 0x00, 0x04, 0x03, 0x01, 0x02, 0x03, 0x30, 0x80, 0x30, 0x80, 0x05, 0x00, 0x00, 0x00, 0x00, 0x00, 0x05, 0x00] as byte[])
+
+    when:
+    is.skipObject()
+    is.skipObject()
+    is.skipObject()
+
+    then:
+    is.readObject() == new ASN1Null()
+    is.available() == 0
+
+    where:
+    source   | stream
+    "bytes"  | { byte[] b -> new ASN1InputStream(new BERDecoder(), b) }
+    "stream" | { byte[] b -> new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(b)) }
+  }
+
+  @Unroll
+  def "should skip to the next object with a tag from #source"() {
+    given:
+    def is = stream([0x04, 0x02, 0x01, 0x02, 0xA0, 0x80, 0x02, 0x01, 0x05, 0x00, 0x00, 0xA1, 0x03, 0x02, 0x01, 0x07, 0x02, 0x01, 0x09] as byte[])
+
+    expect:
+    is.skipToTag(ASN1Tag.contextSpecific(1))
+    ASN1TaggedObject tagged = is.readObject()
+    tagged.getTagNo() == 1
+    tagged.getObject() == new ASN1Integer(7)
+    is.skipToTag(ASN1Tag.INTEGER)
+    is.readObject() == new ASN1Integer(9)
+    !is.skipToTag(ASN1Tag.INTEGER)
+
+    where:
+    source   | stream
+    "bytes"  | { byte[] b -> new ASN1InputStream(new BERDecoder(), b) }
+    "stream" | { byte[] b -> new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(b)) }
+  }
+
+  def "should record the encoding of an object found by skipping to its tag"() {
+    given:
+    def bytes = [0x05, 0x00, 0x02, 0x01, 0x05] as byte[]
+    def is = new ASN1InputStream(new BERDecoder(), bytes)
+
+    when:
+    is.skipToTag(ASN1Tag.INTEGER)
+    def integer = is.readObject()
+
+    then:
+    toBytes(integer.getEncoded()) == [0x02, 0x01, 0x05] as byte[]
+  }
+
+  def "should fail when skipping beyond the end of the input"() {
+    given:
+    def is = new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream([0x04, 0x05, 0x01, 0x02] as byte[]))
+
+    when:
+    is.skipObject()
+
+    then:
+    thrown(ASN1ParseException)
+  }
+
+  static byte[] toBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()]
+    buffer.duplicate().get(bytes)
+    return bytes
+  }
 }
@@ -0,0 +1,374 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1
+
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.types.ASN1Object
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import com.hierynomus.asn1.util.MappedFile
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+import java.nio.file.Files
+
+import static com.hierynomus.asn1.ASN1StreamReader.Event.END_CONSTRUCTED
+import static com.hierynomus.asn1.ASN1StreamReader.Event.PRIMITIVE
+import static com.hierynomus.asn1.ASN1StreamReader.Event.START_CONSTRUCTED
+
+class ASN1StreamReaderSpec extends Specification {
+  static def NEG_TOKEN_INIT = [0x60, 0x28, 0x06, 0x06, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x02, 0xA0, 0x1E, 0x30, 0x1C, 0xA0, 0x1A, 0x30, 0x18, 0x06, 0x0A, 0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x1E, 0x06, 0x0A, 0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x0A] as byte[]
+
+  // SEQUENCE { [1] { SEQUENCE { NULL } }, INTEGER 5 } with the SEQUENCEs and tagged object in the indefinite length form
+  static def INDEFINITE_SEQUENCE = [0x30, 0x80, 0xA1, 0x80, 0x30, 0x80, 0x05, 0x00, 0x00, 0x00, 0x00, 0x00, 0x02, 0x01, 0x05, 0x00, 0x00] as byte[]
+
+  static def readers() {
+    return [
+      new ASN1StreamReader(new BERDecoder(), new ByteArrayInputStream(NEG_TOKEN_INIT)),
+      new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap(NEG_TOKEN_INIT))
+    ]
+  }
+
+  @Unroll
+  def "should read the events of a NegTokenInit from #reader.class.simpleName"() {
+    given:
+    def events = []
+
+    when:
+    while (reader.hasNext()) {
+      def event = reader.next()
+      events << "${event}:${reader.tag.tag}:${reader.depth}"
+    }
+
+    then:
+    events == [
+      "START_CONSTRUCTED:0:1", "PRIMITIVE:6:1", "START_CONSTRUCTED:0:2", "START_CONSTRUCTED:16:3", "START_CONSTRUCTED:0:4",
+      "START_CONSTRUCTED:16:5", "PRIMITIVE:6:5", "PRIMITIVE:6:5", "END_CONSTRUCTED:16:4", "END_CONSTRUCTED:0:3",
+      "END_CONSTRUCTED:16:2", "END_CONSTRUCTED:0:1", "END_CONSTRUCTED:0:0"
+    ]
+
+    where:
+    reader << readers()
+  }
+
+  @Unroll
+  def "should read the values of primitive objects from #reader.class.simpleName"() {
+    given:
+    def values = []
+
+    when:
+    while (reader.hasNext()) {
+      if (reader.next() == PRIMITIVE) {
+        def value = reader.getValue()
+        def bytes = new byte[value.remaining()]
+        value.get(bytes)
+        values << bytes
+      }
+    }
+
+    then:
+    values == [
+      [0x2B, 0x06, 0x01, 0x05, 0x05, 0x02] as byte[],
+      [0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x1E] as byte[],
+      [0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x0A] as byte[]
+    ]
+
+    where:
+    reader << readers()
+  }
+
+  def "should return a read-only view on the buffer as value"() {
+    given:
+    def reader = new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap(NEG_TOKEN_INIT))
+    reader.next()
+    reader.next()
+
+    expect:
+    reader.getValue().isReadOnly()
+  }
+
+  @Unroll
+  def "should decode and skip objects while reading from #reader.class.simpleName"() {
+    when:
+    reader.next()
+    reader.next()
+    ASN1ObjectIdentifier oid = reader.readObject()
+    reader.next()
+    reader.next()
+    ASN1Sequence seq = reader.readObject()
+    def next = reader.next()
+
+    then:
+    oid == new ASN1ObjectIdentifier("1.3.6.1.5.5.2")
+    seq.size() == 1
+    next == END_CONSTRUCTED
+    reader.depth == 1
+
+    when:
+    reader.next()
+
+    then:
+    reader.event == END_CONSTRUCTED
+    !reader.hasNext()
+
+    where:
+    reader << readers()
+  }
+
+  def "should skip a constructed object without reading its contents"() {
+    given:
+    def reader = new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap(NEG_TOKEN_INIT))
+
+    when:
+    reader.next()
+    reader.skip()
+
+    then:
+    reader.depth == 0
+    !reader.hasNext()
+  }
+
+  @Unroll
+  def "should read objects in the indefinite length form from #reader.class.simpleName"() {
+    given:
+    def events = []
+
+    when:
+    while (reader.hasNext()) {
+      def event = reader.next()
+      events << "${event}:${reader.tag.tag}:${reader.depth}"
+      if (event == START_CONSTRUCTED && reader.tag.tag == 1) {
+        reader.skip()
+      }
+    }
+
+    then:
+    events == ["START_CONSTRUCTED:16:1", "START_CONSTRUCTED:1:2", "PRIMITIVE:2:1", "END_CONSTRUCTED:16:0"]
+
+    where:
+    reader << [
+      new ASN1StreamReader(new BERDecoder(), new ByteArrayInputStream(INDEFINITE_SEQUENCE)),
+      new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap(INDEFINITE_SEQUENCE))
+    ]
+  }
+
+  def "should decode an object in the indefinite length form"() {
+    given:
+    def reader = new ASN1StreamReader(new BERDecoder(), new ByteArrayInputStream(INDEFINITE_SEQUENCE))
+
+    when:
+    reader.next()
+    ASN1Sequence sequence = reader.readObject()
+
+    then:
+    sequence.size() == 2
+    sequence.get(1).value == BigInteger.valueOf(5)
+    !reader.hasNext()
+  }
+
+  def "should fail when an object exceeds its enclosing constructed object"() {
+    given:
+    def reader = new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap([0x30, 0x03, 0x02, 0x02, 0x01, 0x01] as byte[]))
+
+    when:
+    reader.next()
+    reader.next()
+
+    then:
+    thrown(ASN1ParseException.class)
+  }
+
+  def "should not allow reading a value twice"() {
+    given:
+    def reader = new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap([0x02, 0x01, 0x01] as byte[]))
+    reader.next()
+    reader.getValue()
+
+    when:
+    reader.getValue()
+
+    then:
+    thrown(IllegalStateException.class)
+  }
+
+  def "should decode the entries of a SEQUENCE from a mapped file"() {
+    given:
+    def encoder = new DEREncoder()
+    def entries = (0..<50).collect { i -> new ASN1Sequence([new ASN1Integer(i * 100000L), new ASN1OctetString(new byte[i])] as List<ASN1Object>) }
+    def encoded = encoder.encode(new ASN1Sequence(entries as List<ASN1Object>))
+    def path = Files.createTempFile("entries", ".der")
+    Files.write(path, encoded)
+    // Small chunks, so that entries cross the ends of chunks
+    def file = MappedFile.open(path, 64, 16)
+    def reader = new ASN1StreamReader(new DERDecoder(), file)
+    def decoded = []
+    def offsets = []
+
+    when:
+    reader.next()
+    while (reader.next() == START_CONSTRUCTED) {
+      offsets << reader.getOffset()
+      decoded << reader.readObject()
+    }
+
+    then:
+    reader.getEvent() == END_CONSTRUCTED
+    !reader.hasNext()
+    decoded.collect { encoder.encode(it) } == entries.collect { encoder.encode(it) }
+    decoded.collect { ASN1InputStreamSpec.toBytes(it.getEncoded()) } == entries.collect { encoder.encode(it) }
+    offsets.every { file.slice(it, 1).get(0) == 0x30 }
+
+    cleanup:
+    file.close()
+    Files.deleteIfExists(path)
+  }
+
+  def "should read lengths that do not fit into an int"() {
+    given:
+    def reader = new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap([0x30, 0x85, 0x01, 0x00, 0x00, 0x00, 0x00, 0x04, 0x00] as byte[]))
+
+    when:
+    reader.next()
+
+    then:
+    reader.getEvent() == START_CONSTRUCTED
+    reader.getLongLength() == 0x100000000L
+
+    when:
+    reader.getLength()
+
+    then:
+    thrown(IllegalStateException.class)
+  }
+
+  def "should not read a length that does not fit into an int as int"() {
+    when:
+    new BERDecoder().readLength(new ByteArrayInputStream([0x85, 0x01, 0x00, 0x00, 0x00, 0x00] as byte[]))
+
+    then:
+    thrown(ASN1ParseException.class)
+  }
+
+  def "should not allow the indefinite length form for long lengths in DER"() {
+    when:
+    new DERDecoder().readLongLength(new ByteArrayInputStream([0x80] as byte[]))
+
+    then:
+    thrown(ASN1ParseException.class)
+  }
+
+  @Unroll
+  def "should stream a large primitive value from #source"() {
+    given:
+    def content = new byte[1 << 20]
+    new Random(42).nextBytes(content)
+    def baos = new ByteArrayOutputStream()
+    def out = new ASN1OutputStream(new DEREncoder(), baos)
+    out.writeObject(new ASN1OctetString(content))
+    out.writeObject(new ASN1Integer(5))
+    def bytes = baos.toByteArray()
+    def reader = source == "bytes" ? new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap(bytes)) : new ASN1StreamReader(new BERDecoder(), new ByteArrayInputStream(bytes))
+    def streamed = new ByteArrayOutputStream()
+    def chunk = new byte[4096]
+
+    when:
+    reader.next()
+    def valueStream = reader.getValueStream()
+    int read
+    while ((read = valueStream.read(chunk)) >= 0) {
+      streamed.write(chunk, 0, read)
+    }
+
+    then:
+    streamed.toByteArray() == content
+    reader.next() == PRIMITIVE
+    reader.readObject().value == 5
+
+    where:
+    source << ["bytes", "stream"]
+  }
+
+  def "should stream the segments of a constructed OCTET STRING in the indefinite length form"() {
+    given:
+    // OCTET STRING { OCTET STRING 01 02, OCTET STRING {}, OCTET STRING { OCTET STRING 03 }, OCTET STRING 04 } followed by INTEGER 5
+    def bytes = [0x24, 0x80, 0x04, 0x02, 0x01, 0x02, 0x04, 0x00, 0x24, 0x80, 0x04, 0x01, 0x03, 0x00, 0x00, 0x04, 0x01, 0x04, 0x00, 0x00, 0x02, 0x01, 0x05] as byte[]
+    def reader = new ASN1StreamReader(new BERDecoder(), new ByteArrayInputStream(bytes))
+
+    when:
+    reader.next()
+    def value = reader.getValueStream().bytes
+
+    then:
+    value == [0x01, 0x02, 0x03, 0x04] as byte[]
+    reader.getEvent() == null
+    reader.getDepth() == 0
+    reader.next() == PRIMITIVE
+    reader.readObject().value == 5
+    !reader.hasNext()
+  }
+
+  def "should leave out the unused bits octets when streaming a BIT STRING"() {
+    given:
+    def reader = new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap([0x23, 0x08, 0x03, 0x02, 0x00, 0xAA, 0x03, 0x02, 0x04, 0xB0] as byte[]))
+
+    when:
+    reader.next()
+    def value = reader.getValueStream().bytes
+
+    then:
+    value == [0xAA, 0xB0] as byte[]
+    !reader.hasNext()
+  }
+
+  def "should skip the rest of a streamed value when the reader moves"() {
+    given:
+    def bytes = [0x24, 0x80, 0x04, 0x02, 0x01, 0x02, 0x04, 0x01, 0x03, 0x00, 0x00, 0x02, 0x01, 0x05] as byte[]
+    def reader = new ASN1StreamReader(new BERDecoder(), new ByteArrayInputStream(bytes))
+
+    when:
+    reader.next()
+    def valueStream = reader.getValueStream()
+
+    then:
+    valueStream.read() == 0x01
+    reader.next() == PRIMITIVE
+    reader.readObject().value == 5
+
+    when:
+    valueStream.read()
+
+    then:
+    thrown(IOException.class)
+  }
+
+  def "should not stream a value that has already been read"() {
+    given:
+    def reader = new ASN1StreamReader(new BERDecoder(), ByteBuffer.wrap([0x04, 0x02, 0x01, 0x02] as byte[]))
+
+    when:
+    reader.next()
+    reader.getValueStream()
+    reader.getValue()
+
+    then:
+    thrown(IllegalStateException.class)
+  }
+}
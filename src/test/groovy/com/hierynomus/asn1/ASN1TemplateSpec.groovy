@@ -0,0 +1,196 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1
+
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.types.ASN1Object
+import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.constructed.ASN1Set
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1Enumerated
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+class ASN1TemplateSpec extends Specification {
+  def encoder = new DEREncoder()
+
+  @Unroll
+  def "should encode a template with a token of #tokenLength bytes and a MIC of #micLength bytes like the message"() {
+    given:
+    def responseToken = token(2, 4)
+    def mic = token(3, 16)
+    def template = ASN1Template.builder(encoder, negTokenResp(responseToken, mic))
+      .slot("responseToken", responseToken)
+      .slot("mic", mic)
+      .build()
+    def newToken = token(2, tokenLength)
+    def newMic = token(3, micLength)
+
+    expect:
+    template.encode([responseToken: newToken, mic: newMic]) == encoder.encode(negTokenResp(newToken, newMic))
+
+    where:
+    tokenLength | micLength
+    4           | 16
+    0           | 0
+    120         | 16
+    200         | 300
+    70000       | 1
+  }
+
+  def "should keep the prototype objects of slots that are not passed"() {
+    given:
+    def responseToken = token(2, 4)
+    def mic = token(3, 16)
+    def template = ASN1Template.builder(encoder, negTokenResp(responseToken, mic))
+      .slot("responseToken", responseToken)
+      .slot("mic", mic)
+      .build()
+    def newToken = token(2, 500)
+
+    expect:
+    template.encode([:]) == encoder.encode(negTokenResp(responseToken, mic))
+    template.encode([responseToken: newToken]) == encoder.encode(negTokenResp(newToken, mic))
+    template.encode([responseToken: newToken, mic: null]) == encoder.encode(negTokenResp(newToken, mic))
+  }
+
+  def "should allow the whole prototype to be a slot"() {
+    given:
+    def prototype = new ASN1Integer(1)
+    def template = ASN1Template.builder(encoder, prototype).slot("value", prototype).build()
+
+    expect:
+    template.encode([value: new ASN1Integer(1000)]) == encoder.encode(new ASN1Integer(1000))
+  }
+
+  def "should encode a template into a buffer"() {
+    given:
+    def responseToken = token(2, 4)
+    def template = ASN1Template.builder(encoder, negTokenResp(responseToken, token(3, 16))).slot("responseToken", responseToken).build()
+    def newToken = token(2, 150)
+    def expected = encoder.encode(negTokenResp(newToken, token(3, 16)))
+    def buffer = ByteBuffer.allocate(expected.length + 2)
+    buffer.put((byte) 0x7f)
+
+    when:
+    template.encode([responseToken: newToken], buffer)
+
+    then:
+    buffer.position() == expected.length + 1
+    Arrays.copyOfRange(buffer.array(), 1, expected.length + 1) == expected
+  }
+
+  def "should not encode a template into a buffer that is too small"() {
+    given:
+    def responseToken = token(2, 4)
+    def template = ASN1Template.builder(encoder, negTokenResp(responseToken, token(3, 16))).slot("responseToken", responseToken).build()
+
+    when:
+    template.encode([responseToken: token(2, 150)], ByteBuffer.allocate(100))
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def "should not fill a slot that does not exist"() {
+    given:
+    def responseToken = token(2, 4)
+    def template = ASN1Template.builder(encoder, negTokenResp(responseToken, token(3, 16))).slot("responseToken", responseToken).build()
+
+    when:
+    template.encode([mechListMIC: token(3, 16)])
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def "should not fill a slot with an object with another tag"() {
+    given:
+    def responseToken = token(2, 4)
+    def template = ASN1Template.builder(encoder, negTokenResp(responseToken, token(3, 16))).slot("responseToken", responseToken).build()
+
+    when:
+    template.encode([responseToken: token(3, 4)])
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def "should not build a template with a slot in a SET"() {
+    given:
+    def slot = new ASN1Integer(300)
+    def prototype = new ASN1Sequence([new ASN1Set([slot, new ASN1Integer(400)] as List<ASN1Object>)] as List<ASN1Object>)
+
+    when:
+    ASN1Template.builder(encoder, prototype).slot("value", slot).build()
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def "should not build a template with a slot that occurs twice"() {
+    given:
+    def slot = new ASN1Integer(300)
+    def prototype = new ASN1Sequence([slot, slot] as List<ASN1Object>)
+
+    when:
+    ASN1Template.builder(encoder, prototype).slot("value", slot).build()
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def "should not build a template with a slot inside another slot"() {
+    given:
+    def inner = new ASN1Integer(300)
+    def outer = new ASN1Sequence([inner] as List<ASN1Object>)
+
+    when:
+    ASN1Template.builder(encoder, new ASN1Sequence([outer] as List<ASN1Object>)).slot("outer", outer).slot("inner", inner).build()
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def "should not register a slot name twice"() {
+    when:
+    ASN1Template.builder(encoder, new ASN1Integer(1)).slot("value", new ASN1Integer(300)).slot("value", new ASN1Integer(400))
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  private static ASN1TaggedObject token(int tagNo, int length) {
+    def bytes = new byte[length]
+    Arrays.fill(bytes, (byte) (length & 0x7f))
+    new ASN1TaggedObject(ASN1Tag.contextSpecific(tagNo).constructed(), new ASN1OctetString(bytes))
+  }
+
+  private static ASN1TaggedObject negTokenResp(ASN1TaggedObject responseToken, ASN1TaggedObject mic) {
+    new ASN1TaggedObject(ASN1Tag.contextSpecific(1).constructed(), new ASN1Sequence([
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), new ASN1Enumerated(0)),
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(1).constructed(), new ASN1ObjectIdentifier("1.3.6.1.4.1.311.2.2.10")),
+      responseToken,
+      mic
+    ] as List<ASN1Object>))
+  }
+}
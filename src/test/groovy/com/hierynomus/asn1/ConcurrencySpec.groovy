@@ -0,0 +1,169 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1
+
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.types.ASN1Object
+import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.constructed.ASN1Set
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1Enumerated
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier
+import com.hierynomus.asn1.types.string.ASN1BitString
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ConcurrencySpec extends Specification {
+  static final int THREADS = 8
+  static final int ROUNDS = 50
+
+  def encoder = new DEREncoder()
+  def decoder = new BERDecoder()
+
+  def "should decode the children of a shared decoded tree once for all threads"() {
+    given:
+    def encoded = encoder.encode(message(200))
+
+    expect:
+    (1..ROUNDS).every {
+      ASN1Sequence shared = new ASN1InputStream(decoder, encoded).readObject()
+      def results = concurrently { visit(shared) }
+      results.every { it == results[0] } && results[0].identities.size() == 400
+    }
+  }
+
+  def "should encode a shared decoded tree to the bytes it was decoded from on all threads"() {
+    given:
+    def encoded = encoder.encode(message(200))
+
+    expect:
+    (1..ROUNDS).every {
+      ASN1Sequence shared = new ASN1InputStream(decoder, encoded).readObject()
+      concurrently { [encoder.encode(shared), toBytes(shared.getEncoded())] }.every { it[0] == encoded && it[1] == encoded }
+    }
+  }
+
+  def "should encode a shared constructed tree to the same bytes on all threads"() {
+    given:
+    def expected = encoder.encode(message(200))
+
+    expect:
+    (1..ROUNDS).every {
+      def shared = message(200)
+      concurrently { encoder.encode(shared) }.every { it == expected }
+    }
+  }
+
+  def "should give all threads the same implicitly tagged object"() {
+    given:
+    def encoded = encoder.encode(new ASN1TaggedObject(ASN1Tag.contextSpecific(3), message(20), false))
+
+    expect:
+    (1..ROUNDS).every {
+      ASN1TaggedObject shared = new ASN1InputStream(decoder, encoded).readObject()
+      def results = concurrently { shared.getObject(ASN1Tag.SEQUENCE) }
+      results.every { it.is(results[0]) } && results[0].size() == 20
+    }
+  }
+
+  def "should give all threads the encoding a shared tree was decoded from when it is not DER"() {
+    given:
+    // A SEQUENCE in the indefinite length form of INTEGERs and OCTET STRINGs with lengths in the long form
+    def children = (0..<100).collect { i -> i % 2 == 0 ? [0x02, 0x81, 0x01, i] : [0x04, 0x81, 0x02, i, i] }
+    def encoded = ([0x30, 0x80] + children.flatten() + [0x00, 0x00]) as byte[]
+    def expected = children.collect { it as byte[] }
+
+    expect:
+    (1..ROUNDS).every {
+      ASN1Sequence shared = new ASN1InputStream(decoder, java.nio.ByteBuffer.wrap(encoded)).readObject()
+      concurrently {
+        toBytes(shared.getEncoded()) == encoded && shared.getValue().collect { toBytes(it.getEncoded()) } == expected
+      }.every { it }
+    }
+  }
+
+  private static ASN1Sequence message(int entries) {
+    def objects = (0..<entries).collect { i ->
+      new ASN1Sequence([
+        new ASN1Integer(BigInteger.ONE.shiftLeft(64 + i)),
+        new ASN1Integer(i * 1000L),
+        new ASN1Enumerated(i % 4),
+        new ASN1ObjectIdentifier("1.2.840.113549.1.1.${i}"),
+        new ASN1OctetString("entry ${i}".bytes),
+        new ASN1BitString(BitSet.valueOf([i] as long[])),
+        new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), new ASN1Set([new ASN1Integer(i), new ASN1Integer(-i)]))
+      ] as List<ASN1Object>)
+    }
+    new ASN1Sequence(objects as List<ASN1Object>)
+  }
+
+  /**
+   * Walks through the tree, recording the values and the identity of the decoded children.
+   */
+  private static Map visit(ASN1Sequence message) {
+    def identities = []
+    def values = []
+    for (ASN1Object entry : message) {
+      identities << System.identityHashCode(entry)
+      ASN1Sequence sequence = (ASN1Sequence) entry
+      for (ASN1Object object : sequence) {
+        if (object instanceof ASN1TaggedObject) {
+          ASN1Set set = (ASN1Set) object.getObject()
+          identities << System.identityHashCode(set)
+          values << set.getValue().collect { it.getValue() }
+        } else if (object instanceof ASN1BitString) {
+          values << object.toBitSet()
+        } else {
+          values << object.getValue()
+        }
+      }
+    }
+    [identities: identities, values: values]
+  }
+
+  /**
+   * Runs the task on all threads at once.
+   */
+  private static List concurrently(Closure task) {
+    def barrier = new CyclicBarrier(THREADS)
+    def executor = Executors.newFixedThreadPool(THREADS)
+    try {
+      def futures = (1..THREADS).collect {
+        executor.submit({
+          barrier.await()
+          task.call()
+        } as Callable)
+      }
+      return futures.collect { it.get(30, TimeUnit.SECONDS) }
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  private static byte[] toBytes(java.nio.ByteBuffer buffer) {
+    def bytes = new byte[buffer.remaining()]
+    buffer.duplicate().get(bytes)
+    bytes
+  }
+}
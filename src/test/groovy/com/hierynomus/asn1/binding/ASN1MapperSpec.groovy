@@ -0,0 +1,267 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.binding
+
+import com.hierynomus.asn1.ASN1ParseException
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import spock.lang.Shared
+import spock.lang.Specification
+
+import static com.hierynomus.asn1.codegen.ASN1ProcessorSpec.NEG_TOKEN_INIT_SOURCES
+import static com.hierynomus.asn1.codegen.ASN1ProcessorSpec.compile
+import static com.hierynomus.asn1.encodingrules.der.DEREncoderSpec.NEG_TOKEN_INIT
+
+class ASN1MapperSpec extends Specification {
+
+  static final String KDC_SOURCES = '''
+package krb;
+
+import java.util.List;
+import com.hierynomus.asn1.annotations.ASN1;
+import com.hierynomus.asn1.types.ASN1TagClass;
+import com.hierynomus.asn1.types.primitive.ASN1Integer;
+
+@ASN1.ASN1Sequence
+public class KdcRequest {
+    @ASN1.Tagged(1) @ASN1.ASN1Integer int pvno;
+    @ASN1.Tagged(2) @ASN1.ASN1Enumerated MessageType msgType;
+    @ASN1.Tagged(3) @ASN1.ASN1SequenceOf(optional = true) List<PaData> padata;
+    @ASN1.Tagged(4) @ASN1.ASN1Choice Body body;
+    @ASN1.Tagged(value = 5, explicit = false) @ASN1.ASN1Boolean(defaultValue = "true") boolean renewable;
+    @ASN1.Tagged(6) @ASN1.ASN1Integer(defaultValue = "-1") long till;
+    @ASN1.Tagged(value = 40, tagClass = ASN1TagClass.PRIVATE) @ASN1.ASN1Any(optional = true) ASN1Integer extension;
+    private String note;
+
+    public enum MessageType { AS_REQ, TGS_REQ }
+
+    @ASN1.ASN1Sequence
+    public static class PaData {
+        @ASN1.Tagged(1) @ASN1.ASN1Integer private Integer type;
+        @ASN1.Tagged(2) @ASN1.ASN1OctetString private byte[] value;
+
+        public Integer getType() { return type; }
+        public void setType(Integer type) { this.type = type; }
+        public byte[] getValue() { return value; }
+        public void setValue(byte[] value) { this.value = value; }
+    }
+
+    @ASN1.ASN1Choice
+    public static class Body {
+        @ASN1.Tagged(value = 0, explicit = false) @ASN1.ASN1OctetString byte[] raw;
+        @ASN1.ASN1Sequence PaData nested;
+        @ASN1.Tagged(value = 33) @ASN1.ASN1ObjectIdentifier String oid;
+        @ASN1.ASN1Choice Name name;
+    }
+
+    @ASN1.ASN1Choice
+    public static class Name {
+        @ASN1.Tagged(value = 7, explicit = false) @ASN1.ASN1OctetString byte[] principal;
+        @ASN1.ASN1Integer java.math.BigInteger id;
+    }
+}
+'''
+
+  @Shared
+  ClassLoader loader = compile(KDC_SOURCES)
+
+  def mapper = new ASN1Mapper()
+
+  def newInstance(String name) {
+    loader.loadClass(name).newInstance()
+  }
+
+  def request(Closure<?> body) {
+    def request = newInstance('krb.KdcRequest')
+    request.pvno = 5
+    request.msgType = loader.loadClass('krb.KdcRequest$MessageType').TGS_REQ
+    request.body = newInstance('krb.KdcRequest$Body')
+    request.renewable = true
+    request.till = -1
+    body(request)
+    request
+  }
+
+  def "should encode the same as the generated codec"() {
+    given:
+    def codec = loader.loadClass('krb.KdcRequestCodec')
+    def request = request(setup)
+
+    expect:
+    mapper.encode(request) == codec.encode(request)
+
+    where:
+    setup << [
+      { it.body.raw = [1, 2, 3] as byte[] },
+      { it.body.oid = "1.2.840.113554.1.2.2"; it.renewable = false; it.till = 1L << 40 },
+      { it.body.nested = newInstance('krb.KdcRequest$PaData'); it.body.nested.type = 2; it.body.nested.value = new byte[200] },
+      { it.body.name = newInstance('krb.KdcRequest$Name'); it.body.name.id = BigInteger.TEN.pow(30) },
+      { it.body.name = newInstance('krb.KdcRequest$Name'); it.body.name.principal = "krbtgt".bytes },
+      {
+        it.body.raw = new byte[0]
+        it.extension = new com.hierynomus.asn1.types.primitive.ASN1Integer(-7)
+        it.padata = (0..3).collect { i -> def pa = newInstance('krb.KdcRequest$PaData'); pa.type = i; pa.value = [i] as byte[]; pa }
+      }
+    ]
+  }
+
+  def "should decode what the generated codec encodes"() {
+    given:
+    def codec = loader.loadClass('krb.KdcRequestCodec')
+    def request = request {
+      it.body.name = newInstance('krb.KdcRequest$Name')
+      it.body.name.principal = "krbtgt".bytes
+      it.renewable = false
+      it.padata = (0..2).collect { i -> def pa = newInstance('krb.KdcRequest$PaData'); pa.type = i; pa.value = [i] as byte[]; pa }
+      it.extension = new com.hierynomus.asn1.types.primitive.ASN1Integer(-7)
+    }
+
+    when:
+    def decoded = mapper.decode(loader.loadClass('krb.KdcRequest'), codec.encode(request))
+
+    then:
+    decoded.pvno == 5
+    decoded.msgType.name() == "TGS_REQ"
+    decoded.padata*.type == [0, 1, 2]
+    decoded.padata*.value == [[0] as byte[], [1] as byte[], [2] as byte[]]
+    decoded.body.raw == null
+    decoded.body.name.principal == "krbtgt".bytes
+    !decoded.renewable
+    decoded.till == -1
+    decoded.extension.value == -7
+  }
+
+  def "should decode the NegTokenInit the same as the generated codec"() {
+    given:
+    def negTokenInitLoader = compile(NEG_TOKEN_INIT_SOURCES)
+    byte[] bytes = Arrays.copyOf(NEG_TOKEN_INIT, NEG_TOKEN_INIT.length)
+    bytes[0] = 0x30
+
+    when:
+    def token = mapper.decode(negTokenInitLoader.loadClass("spnego.GssToken"), bytes)
+
+    then:
+    token.thisMech == "1.3.6.1.5.5.2"
+    token.negTokenInit.mechTypes*.value == ["1.3.6.1.4.1.311.2.2.30", "1.3.6.1.4.1.311.2.2.10"]
+    mapper.encode(token) == bytes
+  }
+
+  def "should reject an unknown CHOICE alternative and ENUMERATED value"() {
+    given:
+    def request = request { it.body.raw = [1] as byte[] }
+    byte[] encoded = mapper.encode(request)
+    encoded[index] = value
+
+    when:
+    mapper.decode(loader.loadClass('krb.KdcRequest'), encoded)
+
+    then:
+    thrown(ASN1ParseException)
+
+    where:
+    index | value
+    // The tag of the body alternative, after the pvno and msgType components
+    14    | 0x81
+    // The value of the msgType
+    11    | 0x02
+  }
+
+  def "should reject classes that cannot be mapped"() {
+    when:
+    mapper.encode(value)
+
+    then:
+    def e = thrown(IllegalArgumentException)
+    e.message.contains(message)
+
+    where:
+    value                                   | message
+    "not annotated"                         | "not annotated as SEQUENCE or CHOICE"
+    new TwoOptionalIntegers()               | "cannot be told apart"
+    new OptionalPrimitive()                 | "should have a reference type"
+    new Unordered()                         | "not known at runtime"
+  }
+
+  def "should put the components in the order they are given"() {
+    given:
+    def type = compile('''
+package ordered;
+
+import com.hierynomus.asn1.annotations.ASN1;
+
+@ASN1.ASN1Sequence
+public class Ordered {
+    @ASN1.Order(1) @ASN1.ASN1Integer Integer number;
+    @ASN1.Order(0) @ASN1.ASN1OctetString byte[] name;
+}
+''').loadClass('ordered.Ordered')
+    def ordered = type.newInstance()
+    ordered.number = 7
+    ordered.name = "seven".bytes
+
+    when:
+    byte[] encoded = mapper.encode(ordered)
+
+    then:
+    encoded == new DEREncoder().encode(new ASN1Sequence([new ASN1OctetString("seven".bytes), new ASN1Integer(7)]))
+    encoded == type.classLoader.loadClass('ordered.OrderedCodec').encode(ordered)
+    mapper.decode(type, encoded).number == 7
+  }
+
+  @com.hierynomus.asn1.annotations.ASN1.ASN1Sequence
+  static class Unordered {
+    @com.hierynomus.asn1.annotations.ASN1.ASN1Integer
+    Integer a
+    @com.hierynomus.asn1.annotations.ASN1.ASN1OctetString
+    byte[] b
+  }
+
+  @com.hierynomus.asn1.annotations.ASN1.ASN1Sequence
+  static class TwoOptionalIntegers {
+    @com.hierynomus.asn1.annotations.ASN1.Order(0) @com.hierynomus.asn1.annotations.ASN1.ASN1Integer(optional = true)
+    Integer a
+    @com.hierynomus.asn1.annotations.ASN1.Order(1) @com.hierynomus.asn1.annotations.ASN1.ASN1Integer
+    Integer b
+  }
+
+  @com.hierynomus.asn1.annotations.ASN1.ASN1Sequence
+  static class OptionalPrimitive {
+    @com.hierynomus.asn1.annotations.ASN1.ASN1Integer(optional = true)
+    int a
+  }
+
+  def "should be usable from multiple threads"() {
+    given:
+    def codec = loader.loadClass('krb.KdcRequestCodec')
+    def request = request { it.body.oid = "1.2.3.4" }
+    def expected = codec.encode(request)
+    def type = loader.loadClass('krb.KdcRequest')
+    def results = Collections.synchronizedList([])
+
+    when:
+    (1..8).collect {
+      Thread.start {
+        results << (1..200).every { Arrays.equals(mapper.encode(mapper.decode(type, expected)), expected) }
+      }
+    }*.join()
+
+    then:
+    results == [true] * 8
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.codegen
+
+import com.hierynomus.asn1.ASN1ParseException
+import com.hierynomus.asn1.annotations.ASN1
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1Boolean
+import com.hierynomus.asn1.types.primitive.ASN1Enumerated
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import org.slf4j.LoggerFactory
+import spock.lang.Specification
+
+import javax.annotation.processing.Processor
+import javax.tools.DiagnosticCollector
+import javax.tools.JavaFileObject
+import javax.tools.ToolProvider
+
+import static com.hierynomus.asn1.encodingrules.der.DEREncoderSpec.NEG_TOKEN_INIT
+
+class ASN1ProcessorSpec extends Specification {
+
+  static final String NEG_TOKEN_INIT_SOURCES = '''
+package spnego;
+
+import java.util.List;
+import com.hierynomus.asn1.annotations.ASN1;
+import com.hierynomus.asn1.types.ASN1TagClass;
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier;
+
+@ASN1.ASN1Sequence
+public class GssToken {
+    @ASN1.Order(0) @ASN1.ASN1ObjectIdentifier String thisMech;
+    @ASN1.Order(1) @ASN1.Tagged(0) @ASN1.ASN1Sequence NegTokenInit negTokenInit;
+
+    @ASN1.ASN1Sequence
+    public static class NegTokenInit {
+        @ASN1.Tagged(0) @ASN1.ASN1SequenceOf(optional = true) List<ASN1ObjectIdentifier> mechTypes;
+        @ASN1.Tagged(1) @ASN1.ASN1Any(optional = true) com.hierynomus.asn1.types.string.ASN1BitString reqFlags;
+        @ASN1.Tagged(2) @ASN1.ASN1OctetString(optional = true) byte[] mechToken;
+        @ASN1.Tagged(3) @ASN1.ASN1OctetString(optional = true) byte[] mechListMIC;
+    }
+}
+'''
+
+  def "should decode a NegTokenInit into the annotated classes"() {
+    given:
+    def loader = compile(NEG_TOKEN_INIT_SOURCES)
+
+    when:
+    // The GSS-API token is an implicitly APPLICATION 0 tagged SEQUENCE
+    byte[] bytes = Arrays.copyOf(NEG_TOKEN_INIT, NEG_TOKEN_INIT.length)
+    bytes[0] = 0x30
+    def token = loader.loadClass("spnego.GssTokenCodec").decode(new BERDecoder(), bytes)
+
+    then:
+    token.thisMech == "1.3.6.1.5.5.2"
+    token.negTokenInit.mechTypes*.value == ["1.3.6.1.4.1.311.2.2.30", "1.3.6.1.4.1.311.2.2.10"]
+    token.negTokenInit.reqFlags == null
+    token.negTokenInit.mechToken == null
+    token.negTokenInit.mechListMIC == null
+
+    when:
+    def encoded = loader.loadClass("spnego.GssTokenCodec").encode(token)
+
+    then:
+    encoded == bytes
+  }
+
+  def "should encode and decode the same way as the object tree"() {
+    given:
+    def loader = compile('''
+package krb;
+
+import com.hierynomus.asn1.annotations.ASN1;
+
+@ASN1.ASN1Sequence
+public class Extension {
+    @ASN1.ASN1ObjectIdentifier String extnID;
+    @ASN1.ASN1Boolean(defaultValue = "false") boolean critical;
+    @ASN1.ASN1OctetString byte[] extnValue;
+    @ASN1.Tagged(value = 0, explicit = false) @ASN1.ASN1Integer(optional = true) java.math.BigInteger serial;
+    @ASN1.Tagged(1) @ASN1.ASN1Enumerated(defaultValue = "7") int state;
+    @ASN1.ASN1Integer long version;
+}
+''')
+    def codec = loader.loadClass("krb.ExtensionCodec")
+    def extension = loader.loadClass("krb.Extension").newInstance()
+    extension.extnID = "2.5.29.19"
+    extension.critical = critical
+    extension.extnValue = [1, 2, 3] as byte[]
+    extension.serial = serial
+    extension.state = state
+    extension.version = version
+
+    when:
+    def objects = [new ASN1ObjectIdentifier("2.5.29.19")]
+    if (critical) {
+      objects << new ASN1Boolean(true)
+    }
+    objects << new ASN1OctetString([1, 2, 3] as byte[])
+    if (serial != null) {
+      objects << new ASN1TaggedObject(ASN1Tag.contextSpecific(0).primitive(), new ASN1Integer(serial), false)
+    }
+    if (state != 7) {
+      objects << new ASN1TaggedObject(ASN1Tag.contextSpecific(1).constructed(), new ASN1Enumerated(state))
+    }
+    objects << new ASN1Integer(version)
+    def tree = new DEREncoder().encode(new ASN1Sequence(objects))
+
+    then:
+    codec.encode(extension) == tree
+
+    when:
+    def decoded = codec.decode(new BERDecoder(), tree)
+
+    then:
+    decoded.extnID == "2.5.29.19"
+    decoded.critical == critical
+    decoded.extnValue == [1, 2, 3] as byte[]
+    decoded.serial == serial
+    decoded.state == state
+    decoded.version == version
+
+    where:
+    critical | serial                            | state | version
+    false    | null                              | 7     | 0
+    true     | BigInteger.valueOf(-129)          | 1     | 128
+    false    | new BigInteger("123456789012345678901234567890") | 0 | Long.MIN_VALUE
+    true     | BigInteger.ZERO                   | -1    | Long.MAX_VALUE
+  }
+
+  def "should encode and decode a CHOICE"() {
+    given:
+    def loader = compile('''
+package ldap;
+
+import java.util.List;
+import com.hierynomus.asn1.annotations.ASN1;
+import com.hierynomus.asn1.types.ASN1TagClass;
+
+@ASN1.ASN1Sequence
+public class Message {
+    private int messageId;
+    @ASN1.ASN1Integer private int id;
+    @ASN1.ASN1Choice private Operation operation;
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+    public Operation getOperation() { return operation; }
+    public void setOperation(Operation operation) { this.operation = operation; }
+
+    public enum Scope { BASE, ONE, SUBTREE }
+
+    @ASN1.ASN1Choice
+    public static class Operation {
+        @ASN1.Tagged(value = 0, tagClass = ASN1TagClass.APPLICATION, explicit = false) @ASN1.ASN1Sequence Bind bind;
+        @ASN1.Tagged(value = 2, tagClass = ASN1TagClass.APPLICATION, explicit = false) @ASN1.ASN1OctetString byte[] unbind;
+        @ASN1.Tagged(value = 3, tagClass = ASN1TagClass.APPLICATION, explicit = false) @ASN1.ASN1Enumerated Scope search;
+    }
+
+    @ASN1.ASN1Sequence
+    public static class Bind {
+        @ASN1.ASN1Integer Integer version;
+        @ASN1.ASN1OctetString byte[] name;
+    }
+}
+''')
+    def codec = loader.loadClass('ldap.MessageCodec')
+    def message = loader.loadClass('ldap.Message').newInstance()
+    def operation = loader.loadClass('ldap.Message$Operation').newInstance()
+    message.id = 42
+    message.operation = operation
+
+    when:
+    def bind = loader.loadClass('ldap.Message$Bind').newInstance()
+    bind.version = 3
+    bind.name = "cn=admin".bytes
+    operation.bind = bind
+    def encoded = codec.encode(message)
+    def decoded = codec.decode(new BERDecoder(), encoded)
+
+    then:
+    encoded == new DEREncoder().encode(new ASN1Sequence([
+      new ASN1Integer(42),
+      new ASN1TaggedObject(ASN1Tag.application(0).constructed(), new ASN1Sequence([new ASN1Integer(3), new ASN1OctetString("cn=admin".bytes)]), false)]))
+    decoded.id == 42
+    decoded.operation.bind.version == 3
+    decoded.operation.bind.name == "cn=admin".bytes
+    decoded.operation.unbind == null
+
+    when:
+    operation.bind = null
+    operation.search = loader.loadClass('ldap.Message$Scope').SUBTREE
+    decoded = codec.decode(new BERDecoder(), codec.encode(message))
+
+    then:
+    decoded.operation.bind == null
+    decoded.operation.search.name() == "SUBTREE"
+
+    when:
+    operation.search = null
+    codec.encode(message)
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def "should put the components in the order they are given"() {
+    given:
+    def loader = compile('''
+package ordered;
+
+import com.hierynomus.asn1.annotations.ASN1;
+
+@ASN1.ASN1Sequence
+public class Ordered {
+    @ASN1.Order(1) @ASN1.ASN1Integer Integer number;
+    @ASN1.Order(0) @ASN1.ASN1OctetString byte[] name;
+}
+''')
+    def ordered = loader.loadClass('ordered.Ordered').newInstance()
+    ordered.number = 7
+    ordered.name = "seven".bytes
+
+    expect:
+    loader.loadClass('ordered.OrderedCodec').encode(ordered) == new DEREncoder().encode(new ASN1Sequence([new ASN1OctetString("seven".bytes), new ASN1Integer(7)]))
+  }
+
+  def "should reject encodings that do not match"() {
+    given:
+    def loader = compile(NEG_TOKEN_INIT_SOURCES)
+
+    when:
+    loader.loadClass("spnego.GssTokenCodec").decode(new BERDecoder(), new DEREncoder().encode(new ASN1Sequence([new ASN1Integer(1)])))
+
+    then:
+    def e = thrown(ASN1ParseException)
+    e.message.contains("GssToken.thisMech")
+  }
+
+  def "should report classes that cannot be mapped"() {
+    when:
+    compile("""
+package broken;
+
+import com.hierynomus.asn1.annotations.ASN1;
+
+@ASN1.ASN1Sequence
+public class Broken {
+    ${field}
+}
+""")
+
+    then:
+    def e = thrown(IllegalStateException)
+    e.message.contains(message)
+
+    where:
+    field                                                                          | message
+    '@ASN1.ASN1Integer(optional = true) int value;'                                | 'should have a reference type'
+    '@ASN1.ASN1Integer String value;'                                              | 'cannot be mapped onto a field of type java.lang.String'
+    '@ASN1.ASN1Integer(optional = true) Integer a; @ASN1.ASN1Integer Integer b;'   | 'cannot be told apart'
+    '@ASN1.ASN1Integer private int value;'                                         | 'should have a getter and a setter'
+    '@ASN1.Tagged(value = 0, explicit = false) @ASN1.ASN1Any com.hierynomus.asn1.types.ASN1Object value;' | 'can only be tagged explicitly'
+    '@ASN1.ASN1Boolean(defaultValue = "yes") boolean value;'                       | 'should be true or false'
+    '@ASN1.Tagged(1) @ASN1.ASN1Integer Integer a; @ASN1.Tagged(0) @ASN1.ASN1Integer Integer b;' | 'should increase in the order of their fields'
+    '@ASN1.Order(0) @ASN1.ASN1Integer Integer a; @ASN1.ASN1Integer Integer b;'     | 'Either all or none'
+    '@ASN1.Order(0) @ASN1.ASN1Integer Integer a; @ASN1.Order(0) @ASN1.ASN1Integer Integer b;' | 'cannot have the same order'
+  }
+
+  /**
+   * Compiles the sources with the {@link ASN1Processor}.
+   *
+   * @return a class loader for the compiled and generated classes.
+   * @throws IllegalStateException with the compiler errors, if the sources do not compile.
+   */
+  static ClassLoader compile(String... sources) {
+    compile([new ASN1Processor()], sources)
+  }
+
+  static ClassLoader compile(List<Processor> processors, String... sources) {
+    def dir = File.createTempDir()
+    def files = sources.collect { source ->
+      def packageName = (source =~ /package ([\w.]+);/)[0][1]
+      def className = (source =~ /public (?:final )?(?:class|enum|interface) (\w+)/)[0][1]
+      def file = new File(dir, "src/${packageName.replace('.', '/')}/${className}.java")
+      file.parentFile.mkdirs()
+      file.text = source
+      file
+    }
+    def classes = new File(dir, "classes")
+    classes.mkdirs()
+    def classPath = [ASN1, LoggerFactory].collect { new File(it.protectionDomain.codeSource.location.toURI()).path }
+    def compiler = ToolProvider.systemJavaCompiler
+    def diagnostics = new DiagnosticCollector<JavaFileObject>()
+    def fileManager = compiler.getStandardFileManager(diagnostics, null, null)
+    def task = compiler.getTask(null, fileManager, diagnostics,
+      ["-d", classes.path, "-s", classes.path, "-classpath", classPath.join(File.pathSeparator)],
+      null, fileManager.getJavaFileObjectsFromFiles(files))
+    task.processors = processors
+    if (!task.call()) {
+      throw new IllegalStateException(diagnostics.diagnostics.collect { it.getMessage(null) }.join("\n"))
+    }
+    fileManager.close()
+    new URLClassLoader([classes.toURI().toURL()] as URL[], ASN1ProcessorSpec.classLoader)
+  }
+}
@@ -0,0 +1,402 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.codegen
+
+import com.hierynomus.asn1.ASN1ParseException
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.constructed.ASN1Set
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1Boolean
+import com.hierynomus.asn1.types.primitive.ASN1Enumerated
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.primitive.ASN1Null
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import spock.lang.Specification
+
+import static com.hierynomus.asn1.codegen.ASN1ProcessorSpec.compile
+import static com.hierynomus.asn1.encodingrules.der.DEREncoderSpec.NEG_TOKEN_INIT
+
+class ModuleCompilerSpec extends Specification {
+
+  static final String SPNEGO = '''
+SpnegoTokens { iso(1) identified-organization(3) dod(6) internet(1) security(5) mechanism(5) snego (2) }
+DEFINITIONS EXPLICIT TAGS ::= BEGIN
+
+MechType ::= OBJECT IDENTIFIER
+    -- OID represents each security mechanism as suggested by [RFC2743]
+
+MechTypeList ::= SEQUENCE OF MechType
+
+InitialContextToken ::= [APPLICATION 0] IMPLICIT SEQUENCE {
+    thisMech MechType,
+    innerContextToken NegotiationToken
+}
+
+NegotiationToken ::= CHOICE {
+    negTokenInit    [0] NegTokenInit,
+    negTokenResp    [1] NegTokenResp
+}
+
+NegTokenInit ::= SEQUENCE {
+    mechTypes       [0] MechTypeList,
+    reqFlags        [1] ContextFlags  OPTIONAL,
+    mechToken       [2] OCTET STRING  OPTIONAL,
+    mechListMIC     [3] OCTET STRING  OPTIONAL,
+    ...
+}
+
+NegTokenResp ::= SEQUENCE {
+    negState       [0] ENUMERATED {
+        accept-completed    (0),
+        accept-incomplete   (1),
+        reject              (2),
+        request-mic         (3)
+    }                                 OPTIONAL,
+    supportedMech   [1] MechType      OPTIONAL,
+    responseToken   [2] OCTET STRING  OPTIONAL,
+    mechListMIC     [3] OCTET STRING  OPTIONAL,
+    ...
+}
+
+ContextFlags ::= BIT STRING {
+    delegFlag       (0),
+    mutualFlag      (1),
+    replayFlag      (2),
+    sequenceFlag    (3),
+    anonFlag        (4),
+    confFlag        (5),
+    integFlag       (6)
+} (SIZE (32))
+
+END
+'''
+
+  static final String DIRECTORY = '''
+Directory DEFINITIONS IMPLICIT TAGS EXTENSIBILITY IMPLIED ::= BEGIN
+
+maxInt INTEGER ::= 2147483647
+
+MessageID ::= INTEGER (0 .. maxInt)
+
+Message ::= SEQUENCE {
+    messageID       MessageID,
+    protocolOp      CHOICE {
+        searchRequest   SearchRequest,
+        searchDone      SearchDone,
+        unbindRequest   UnbindRequest,
+        ... },
+    controls        [0] Controls OPTIONAL
+}
+
+Controls ::= SEQUENCE OF control Control
+
+Control ::= SEQUENCE {
+    controlType     OCTET STRING,
+    criticality     BOOLEAN DEFAULT FALSE,
+    controlValue    OCTET STRING OPTIONAL
+}
+
+Result ::= SEQUENCE {
+    resultCode ENUMERATED {
+        success (0),
+        busy (51),
+        other (80),
+        ... },
+    diagnosticMessage OCTET STRING (SIZE (0..16))
+}
+
+SearchRequest ::= [APPLICATION 3] SEQUENCE {
+    baseObject      OCTET STRING,
+    sizeLimit       INTEGER (0 .. maxInt),
+    timeLimit       INTEGER (0 .. 4294967295) DEFAULT 60,
+    attributes      SET SIZE (1..MAX) OF attribute OCTET STRING,
+    final           [0] BOOLEAN OPTIONAL
+}
+
+SearchDone ::= [APPLICATION 5] Result
+
+UnbindRequest ::= [APPLICATION 2] NULL
+
+BindResponse ::= [APPLICATION 1] SEQUENCE {
+    COMPONENTS OF Result,
+    serverSaslCreds    [7] OCTET STRING OPTIONAL
+}
+
+END
+'''
+
+  static ClassLoader load(String... modules) {
+    def compiler = new ModuleCompiler("generated")
+    modules.each { compiler.addModules(it) }
+    compile([], compiler.compile().values() as String[])
+  }
+
+  static byte[] encode(def object) {
+    new DEREncoder().encode(object)
+  }
+
+  def "should decode a SPNEGO token into the classes compiled from its module"() {
+    given:
+    def loader = load(SPNEGO)
+
+    when:
+    def token = loader.loadClass("generated.InitialContextTokenCodec").decode(new BERDecoder(), NEG_TOKEN_INIT)
+
+    then:
+    token.thisMech == "1.3.6.1.5.5.2"
+    token.innerContextToken.negTokenResp == null
+    token.innerContextToken.negTokenInit.mechTypes == ["1.3.6.1.4.1.311.2.2.30", "1.3.6.1.4.1.311.2.2.10"]
+    token.innerContextToken.negTokenInit.reqFlags == null
+    token.innerContextToken.negTokenInit.mechToken == null
+  }
+
+  def "should encode a SPNEGO token into its original bytes"() {
+    given:
+    def loader = load(SPNEGO)
+    def codec = loader.loadClass("generated.InitialContextTokenCodec")
+
+    expect:
+    codec.encode(codec.decode(new BERDecoder(), NEG_TOKEN_INIT)) == NEG_TOKEN_INIT
+  }
+
+  def "should map an ENUMERATED onto an enum with the values of the module"() {
+    given:
+    def loader = load(SPNEGO)
+    def negState = loader.loadClass("generated.NegTokenRespNegState")
+    def response = loader.loadClass("generated.NegTokenResp").newInstance()
+    response.negState = negState.REQUEST_MIC
+    response.responseToken = [1, 2, 3] as byte[]
+
+    when:
+    byte[] encoded = loader.loadClass("generated.NegTokenRespCodec").encode(response)
+
+    then:
+    encoded == encode(new ASN1Sequence([
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), new ASN1Enumerated(3)),
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(2).constructed(), new ASN1OctetString([1, 2, 3] as byte[]))]))
+    loader.loadClass("generated.NegTokenRespCodec").decode(new BERDecoder(), encoded) == response
+  }
+
+  def "should skip unknown components of an extensible SEQUENCE"() {
+    given:
+    def loader = load(SPNEGO)
+    byte[] encoded = encode(new ASN1Sequence([
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), new ASN1Enumerated(0)),
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(4).constructed(), new ASN1Sequence([new ASN1Integer(5)])),
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(5).constructed(), new ASN1Integer(6))]))
+
+    when:
+    def response = loader.loadClass("generated.NegTokenRespCodec").decode(new BERDecoder(), encoded)
+
+    then:
+    response.negState.name() == "ACCEPT_COMPLETED"
+    response.supportedMech == null
+  }
+
+  def "should compile an IMPLICIT TAGS module with nested types"() {
+    given:
+    def loader = load(DIRECTORY)
+    def message = loader.loadClass("generated.Message").newInstance()
+    def request = loader.loadClass("generated.SearchRequest").newInstance()
+    request.baseObject = "dc=example".bytes
+    request.sizeLimit = 10
+    request.timeLimit = 60L
+    request.attributes = ["cn".bytes, "mail".bytes]
+    request.final_ = true
+    message.messageID = 7
+    message.protocolOp = loader.loadClass("generated.MessageProtocolOp").newInstance()
+    message.protocolOp.searchRequest = request
+    def control = loader.loadClass("generated.Control").newInstance()
+    control.controlType = "1.2.3".bytes
+    message.controls = [control]
+
+    when:
+    byte[] encoded = loader.loadClass("generated.MessageCodec").encode(message)
+
+    then:
+    encoded == encode(new ASN1Sequence([
+      new ASN1Integer(7),
+      new ASN1TaggedObject(ASN1Tag.application(3).constructed(), new ASN1Sequence([
+        new ASN1OctetString("dc=example".bytes),
+        new ASN1Integer(10),
+        new ASN1Set(new LinkedHashSet([new ASN1OctetString("cn".bytes), new ASN1OctetString("mail".bytes)])),
+        new ASN1TaggedObject(ASN1Tag.contextSpecific(0).primitive(), new ASN1Boolean(true), false)]), false),
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), new ASN1Sequence([new ASN1Sequence([new ASN1OctetString("1.2.3".bytes)])]), false)]))
+    loader.loadClass("generated.MessageCodec").decode(new BERDecoder(), encoded) == message
+  }
+
+  def "should encode the elements of a SET OF sorted on their encodings"() {
+    given:
+    def loader = load(DIRECTORY)
+    def request = loader.loadClass("generated.SearchRequest").newInstance()
+    request.baseObject = "dc=example".bytes
+    request.sizeLimit = 10
+    request.timeLimit = 60L
+    request.attributes = ["mail".bytes, "objectClass".bytes, "cn".bytes, "mail".bytes]
+
+    when:
+    byte[] encoded = loader.loadClass("generated.SearchRequestCodec").encode(request)
+
+    then:
+    encoded == encode(new ASN1TaggedObject(ASN1Tag.application(3).constructed(), new ASN1Sequence([
+      new ASN1OctetString("dc=example".bytes),
+      new ASN1Integer(10),
+      new ASN1Set([new ASN1OctetString("cn".bytes), new ASN1OctetString("mail".bytes), new ASN1OctetString("mail".bytes), new ASN1OctetString("objectClass".bytes)])]), false))
+    loader.loadClass("generated.SearchRequestCodec").decode(new BERDecoder(), encoded).attributes*.toList() == ["cn", "mail", "mail", "objectClass"]*.bytes*.toList()
+  }
+
+  def "should compile types defined as other types"() {
+    given:
+    def loader = load(DIRECTORY)
+    def done = loader.loadClass("generated.SearchDone").newInstance()
+    done.resultCode = loader.loadClass("generated.ResultResultCode").BUSY
+    done.diagnosticMessage = new byte[0]
+    def message = loader.loadClass("generated.Message").newInstance()
+    message.messageID = 8
+    message.protocolOp = loader.loadClass("generated.MessageProtocolOp").newInstance()
+    message.protocolOp.searchDone = done
+    def unbind = loader.loadClass("generated.Message").newInstance()
+    unbind.messageID = 9
+    unbind.protocolOp = loader.loadClass("generated.MessageProtocolOp").newInstance()
+    unbind.protocolOp.unbindRequest = new ASN1Null()
+
+    expect:
+    loader.loadClass("generated.Result").isAssignableFrom(done.class)
+    loader.loadClass("generated.SearchDoneCodec").encode(done) == encode(new ASN1TaggedObject(ASN1Tag.application(5).constructed(),
+      new ASN1Sequence([new ASN1Enumerated(51), new ASN1OctetString(new byte[0])]), false))
+    loader.loadClass("generated.MessageCodec").encode(message) == encode(new ASN1Sequence([new ASN1Integer(8),
+      new ASN1TaggedObject(ASN1Tag.application(5).constructed(), new ASN1Sequence([new ASN1Enumerated(51), new ASN1OctetString(new byte[0])]), false)]))
+    loader.loadClass("generated.MessageCodec").encode(unbind) == encode(new ASN1Sequence([new ASN1Integer(9),
+      new ASN1TaggedObject(ASN1Tag.application(2).primitive(), new ASN1Null(), false)]))
+  }
+
+  def "should include the components of COMPONENTS OF"() {
+    given:
+    def loader = load(DIRECTORY)
+    def response = loader.loadClass("generated.BindResponse").newInstance()
+    response.resultCode = loader.loadClass("generated.ResultResultCode").OTHER
+    response.diagnosticMessage = "no".bytes
+    response.serverSaslCreds = [1] as byte[]
+
+    expect:
+    loader.loadClass("generated.BindResponseCodec").encode(response) == encode(new ASN1TaggedObject(ASN1Tag.application(1).constructed(),
+      new ASN1Sequence([new ASN1Enumerated(80), new ASN1OctetString("no".bytes),
+                        new ASN1TaggedObject(ASN1Tag.contextSpecific(7).primitive(), new ASN1OctetString([1] as byte[]), false)]), false))
+  }
+
+  def "should check constraints when encoding"() {
+    given:
+    def loader = load(DIRECTORY)
+    def request = loader.loadClass("generated.SearchRequest").newInstance()
+    request.baseObject = new byte[0]
+    request.sizeLimit = sizeLimit
+    request.attributes = attributes
+
+    when:
+    loader.loadClass("generated.SearchRequestCodec").encode(request)
+
+    then:
+    def e = thrown(IllegalArgumentException)
+    e.message == message
+
+    where:
+    sizeLimit | attributes        || message
+    -1        | ["cn".bytes]      || "The value of SearchRequest.sizeLimit is not within 0..2147483647"
+    1         | []                || "The size of SearchRequest.attributes is not within 1..MAX"
+  }
+
+  def "should check constraints when decoding"() {
+    given:
+    def loader = load(DIRECTORY)
+    byte[] encoded = encode(new ASN1Sequence([new ASN1Enumerated(0), new ASN1OctetString(new byte[17])]))
+
+    when:
+    loader.loadClass("generated.ResultCodec").decode(new BERDecoder(), encoded)
+
+    then:
+    def e = thrown(ASN1ParseException)
+    e.message == "The size of Result.diagnosticMessage is not within 0..16"
+  }
+
+  def "should reject an unknown value of an ENUMERATED"() {
+    given:
+    def loader = load(DIRECTORY)
+    byte[] encoded = encode(new ASN1Sequence([new ASN1Enumerated(1), new ASN1OctetString(new byte[0])]))
+
+    when:
+    loader.loadClass("generated.ResultCodec").decode(new BERDecoder(), encoded)
+
+    then:
+    def e = thrown(ASN1ParseException)
+    e.message.contains("Unknown value 1 of ENUMERATED Result.resultCode")
+  }
+
+  def "should tag the components of an AUTOMATIC TAGS module"() {
+    given:
+    def loader = load('''
+Automatic DEFINITIONS AUTOMATIC TAGS ::= BEGIN
+Pair ::= SEQUENCE {
+    first INTEGER (0..255) OPTIONAL,
+    second CHOICE { number INTEGER (0..255), flag BOOLEAN }
+}
+END
+''')
+    def pair = loader.loadClass("generated.Pair").newInstance()
+    pair.second = loader.loadClass("generated.PairSecond").newInstance()
+    pair.second.flag = true
+
+    expect:
+    loader.loadClass("generated.PairCodec").encode(pair) == encode(new ASN1Sequence([
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(1).constructed(),
+        new ASN1TaggedObject(ASN1Tag.contextSpecific(1).primitive(), new ASN1Boolean(true), false))]))
+  }
+
+  def "should write the sources to a directory"() {
+    given:
+    def dir = File.createTempDir()
+    def module = new File(dir, "spnego.asn")
+    module.text = SPNEGO
+    def output = new File(dir, "generated")
+
+    when:
+    ModuleCompiler.main("com.example.spnego", output.path, module.path)
+
+    then:
+    new File(output, "com/example/spnego/NegTokenInit.java").text.contains("public class NegTokenInit {")
+    new File(output, "com/example/spnego/NegTokenInitCodec.java").isFile()
+    new File(output, "com/example/spnego/NegTokenRespNegState.java").isFile()
+  }
+
+  def "should report what cannot be compiled"() {
+    when:
+    new ModuleCompiler("generated").addModules(module).compile()
+
+    then:
+    def e = thrown(IllegalArgumentException)
+    e.message == message
+
+    where:
+    module                                                                                                        || message
+    "M DEFINITIONS ::= BEGIN T ::= SEQUENCE { a INTEGER, b } END"                                                  || "Line 1: Expected a type, found '}'"
+    "M DEFINITIONS ::= BEGIN T ::= SEQUENCE { a KerberosString } KerberosString ::= GeneralString END"             || "Cannot compile T.a: type GeneralString is not defined or not supported"
+    "M DEFINITIONS ::= BEGIN T ::= SEQUENCE { a [0] [1] INTEGER } END"                                             || "Cannot compile T.a: it has more than one tag, which is not supported"
+    "M DEFINITIONS ::= BEGIN T ::= SEQUENCE { a INTEGER OPTIONAL, b INTEGER } END"                                 || "Cannot compile T: The components a and b of SEQUENCE generated.T cannot be told apart, as they have the same tag"
+    "M DEFINITIONS ::= BEGIN T ::= CHOICE { a [0] IMPLICIT CHOICE { b BOOLEAN } } END"                             || "Cannot compile T.a: a CHOICE can only be tagged explicitly"
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.encodingrules.der
+
+import com.hierynomus.asn1.ASN1InputStream
+import com.hierynomus.asn1.ASN1OutputStream
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+class DEREncoderSpec extends Specification {
+  static def NEG_TOKEN_INIT = [0x60, 0x28, 0x06, 0x06, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x02, 0xA0, 0x1E, 0x30, 0x1C, 0xA0, 0x1A, 0x30, 0x18, 0x06, 0x0A, 0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x1E, 0x06, 0x0A, 0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x02, 0x02, 0x0A] as byte[]
+
+  static def negTokenInit() {
+    def mechTypes = new ASN1Sequence([new ASN1ObjectIdentifier("1.3.6.1.4.1.311.2.2.30"), new ASN1ObjectIdentifier("1.3.6.1.4.1.311.2.2.10")])
+    def negTokenInit = new ASN1Sequence([new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), mechTypes)])
+    def implicitSeq = new ASN1Sequence([new ASN1ObjectIdentifier("1.3.6.1.5.5.2"), new ASN1TaggedObject(ASN1Tag.contextSpecific(0).constructed(), negTokenInit)])
+    return new ASN1TaggedObject(ASN1Tag.application(0).constructed(), implicitSeq, false)
+  }
+
+  def "should encode a NegTokenInit into an exactly sized array"() {
+    expect:
+    new DEREncoder().encode(negTokenInit()) == NEG_TOKEN_INIT
+  }
+
+  def "should encode a decoded NegTokenInit into its original bytes"() {
+    given:
+    def decoded = new ASN1InputStream(new BERDecoder(), NEG_TOKEN_INIT).readObject()
+
+    expect:
+    new DEREncoder().encode(decoded) == NEG_TOKEN_INIT
+  }
+
+  def "should encode into a buffer and advance its position"() {
+    given:
+    def buffer = ByteBuffer.allocate(NEG_TOKEN_INIT.length + 4)
+    buffer.position(2)
+
+    when:
+    new DEREncoder().encode(negTokenInit(), buffer)
+
+    then:
+    buffer.position() == NEG_TOKEN_INIT.length + 2
+    Arrays.copyOfRange(buffer.array(), 2, NEG_TOKEN_INIT.length + 2) == NEG_TOKEN_INIT
+  }
+
+  def "should not encode into a buffer that is too small"() {
+    given:
+    def buffer = ByteBuffer.allocate(NEG_TOKEN_INIT.length - 1)
+
+    when:
+    new DEREncoder().encode(negTokenInit(), buffer)
+
+    then:
+    thrown(IllegalArgumentException.class)
+    buffer.position() == 0
+  }
+
+  @Unroll
+  def "should encode a value of #length bytes with length octets #lengthOctets"() {
+    given:
+    def octetString = new ASN1OctetString(new byte[length])
+    def baos = new ByteArrayOutputStream()
+    new ASN1OutputStream(new DEREncoder(), baos).writeObject(octetString)
+
+    when:
+    def encoded = new DEREncoder().encode(octetString)
+
+    then:
+    encoded.length == 1 + lengthOctets.size() + length
+    Arrays.copyOfRange(encoded, 1, 1 + lengthOctets.size()) == lengthOctets as byte[]
+    encoded == baos.toByteArray()
+
+    where:
+    length | lengthOctets
+    0      | [0x00]
+    127    | [0x7F]
+    128    | [0x81, 0x80]
+    256    | [0x82, 0x01, 0x00]
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.encodingrules.der
+
+import com.hierynomus.asn1.ASN1InputStream
+import com.hierynomus.asn1.ASN1OutputStream
+import com.hierynomus.asn1.ASN1ReverseWriter
+import com.hierynomus.asn1.ASN1Parser
+import com.hierynomus.asn1.ASN1Serializer
+import com.hierynomus.asn1.encodingrules.ASN1Decoder
+import com.hierynomus.asn1.encodingrules.ASN1Encoder
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.types.ASN1Encoding
+import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.ASN1TagClass
+import com.hierynomus.asn1.types.constructed.ASN1Sequence
+import com.hierynomus.asn1.types.constructed.ASN1Set
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1Boolean
+import com.hierynomus.asn1.types.primitive.ASN1Enumerated
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.primitive.ASN1Null
+import com.hierynomus.asn1.types.primitive.ASN1ObjectIdentifier
+import com.hierynomus.asn1.types.string.ASN1BitString
+import com.hierynomus.asn1.types.string.ASN1OctetString
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+import static com.hierynomus.asn1.encodingrules.der.DEREncoderSpec.NEG_TOKEN_INIT
+import static com.hierynomus.asn1.encodingrules.der.DEREncoderSpec.negTokenInit
+
+class ReverseDEREncoderSpec extends Specification {
+
+  def "should encode a NegTokenInit"() {
+    expect:
+    new ReverseDEREncoder().encode(negTokenInit()) == NEG_TOKEN_INIT
+  }
+
+  def "should encode a decoded NegTokenInit into its original bytes"() {
+    given:
+    def decoded = new ASN1InputStream(new BERDecoder(), NEG_TOKEN_INIT).readObject()
+
+    expect:
+    new ReverseDEREncoder().encode(decoded) == NEG_TOKEN_INIT
+  }
+
+  @Unroll
+  def "should encode #object.class.simpleName the same as the DEREncoder"() {
+    expect:
+    new ReverseDEREncoder(1).encode(object) == new DEREncoder().encode(object)
+
+    where:
+    object << [
+      new ASN1Boolean(true),
+      new ASN1Null(),
+      new ASN1Integer(-129),
+      new ASN1Enumerated(3),
+      new ASN1ObjectIdentifier("1.2.840.113549.1.1.11"),
+      new ASN1BitString([0x0F, 0xF0] as byte[], 4),
+      new ASN1OctetString(new byte[300]),
+      new ASN1Sequence([new ASN1OctetString(new byte[127]), new ASN1OctetString(new byte[128]), new ASN1Sequence([])]),
+      new ASN1Set([new ASN1Integer(1), new ASN1Integer(2), new ASN1Integer(3)] as Set),
+      new ASN1TaggedObject(ASN1Tag.contextSpecific(3).primitive(), new ASN1OctetString(new byte[3]), false),
+      new ASN1TaggedObject(ASN1Tag.application(1).constructed(), new ASN1Sequence([new ASN1Null()]), false)
+    ]
+  }
+
+  def "should sort the objects written since a size on their encodings"() {
+    given:
+    def writer = new ASN1ReverseWriter(new DEREncoder(), 4)
+    writer.writeObject(new ASN1Null())
+    int end = writer.size()
+    [new ASN1OctetString([0x01, 0x02] as byte[]), new ASN1Integer(300), new ASN1TaggedObject(ASN1Tag.contextSpecific(40).constructed(), new ASN1Integer(1)), new ASN1Integer(5)].each {
+      writer.writeObject(it)
+    }
+
+    when:
+    writer.sortObjects(end)
+
+    then:
+    writer.toByteArray() == [0x02, 0x01, 0x05, 0x02, 0x02, 0x01, 0x2C, 0x04, 0x02, 0x01, 0x02, 0xBF, 0x28, 0x03, 0x02, 0x01, 0x01, 0x05, 0x00] as byte[]
+  }
+
+  def "should reuse its buffer for the next object"() {
+    given:
+    def encoder = new ReverseDEREncoder(16)
+    encoder.encode(new ASN1OctetString(new byte[100]))
+
+    expect:
+    encoder.encode(new ASN1Integer(5)) == [0x02, 0x01, 0x05] as byte[]
+  }
+
+  def "should encode into a buffer and advance its position"() {
+    given:
+    def buffer = ByteBuffer.allocate(NEG_TOKEN_INIT.length + 1)
+
+    when:
+    new ReverseDEREncoder().encode(negTokenInit(), buffer)
+
+    then:
+    buffer.position() == NEG_TOKEN_INIT.length
+    Arrays.copyOf(buffer.array(), NEG_TOKEN_INIT.length) == NEG_TOKEN_INIT
+  }
+
+  def "should write objects of serializers that only serialize front to back"() {
+    given:
+    def tag = new ASN1Tag(ASN1TagClass.PRIVATE, 5, ASN1Encoding.PRIMITIVE) {
+      @Override
+      ASN1Parser newParser(ASN1Decoder decoder) {
+        return null
+      }
+
+      @Override
+      ASN1Serializer newSerializer(ASN1Encoder encoder) {
+        return new ASN1Serializer<ASN1OctetString>(encoder) {
+          @Override
+          int serializedLength(ASN1OctetString asn1Object) {
+            return asn1Object.value.length
+          }
+
+          @Override
+          void serialize(ASN1OctetString asn1Object, ASN1OutputStream stream) {
+            stream.write(asn1Object.value)
+          }
+        }
+      }
+    }
+
+    expect:
+    new ReverseDEREncoder().encode(new ASN1Sequence([new ASN1OctetString(tag, [0x01, 0x02] as byte[])])) == [0x30, 0x04, 0xC5, 0x02, 0x01, 0x02] as byte[]
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.types
+
+import com.hierynomus.asn1.ASN1InputStream
+import com.hierynomus.asn1.ASN1OutputStream
+import com.hierynomus.asn1.ASN1ParseException
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.encodingrules.der.ReverseDEREncoder
+import com.hierynomus.asn1.types.constructed.ASN1TaggedObject
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static com.hierynomus.asn1.types.ASN1TagClass.APPLICATION
+import static com.hierynomus.asn1.types.ASN1TagClass.CONTEXT_SPECIFIC
+import static com.hierynomus.asn1.types.ASN1TagClass.PRIVATE
+import static com.hierynomus.asn1.types.ASN1TagClass.UNIVERSAL
+
+class ASN1TagSpec extends Specification {
+
+  @Unroll
+  def "should return the same #asn1TagClass tag #tag on every lookup"() {
+    expect:
+    ASN1Tag.forTag(asn1TagClass, tag).is(ASN1Tag.forTag(asn1TagClass, tag))
+    ASN1Tag.forTag(asn1TagClass, tag).constructed().is(ASN1Tag.forTag(asn1TagClass, tag).constructed())
+    ASN1Tag.forTag(asn1TagClass, tag).constructed().primitive().is(ASN1Tag.forTag(asn1TagClass, tag))
+
+    where:
+    asn1TagClass     | tag
+    APPLICATION      | 0
+    CONTEXT_SPECIFIC | 30
+    PRIVATE          | 31
+    CONTEXT_SPECIFIC | 200
+  }
+
+  def "should return the universal tag constants"() {
+    expect:
+    ASN1Tag.forTag(UNIVERSAL, 0x10).is(ASN1Tag.SEQUENCE)
+    ASN1Tag.forTag(UNIVERSAL, 0x03).constructed().is(ASN1Tag.BIT_STRING.constructed())
+  }
+
+  @Unroll
+  def "should fail on the unknown universal tag #tag"() {
+    when:
+    ASN1Tag.forTag(UNIVERSAL, tag)
+
+    then:
+    thrown(ASN1ParseException.class)
+
+    where:
+    tag << [0x07, 0x1e, 0x1f, 1000]
+  }
+
+  @Unroll
+  def "should encode the identifier of #tag in #identifier.size() octets"() {
+    given:
+    def baos = new ByteArrayOutputStream()
+
+    when:
+    tag.writeIdentifier(baos)
+
+    then:
+    tag.identifierLength == identifier.size()
+    baos.toByteArray() == identifier as byte[]
+
+    where:
+    tag                                           | identifier
+    ASN1Tag.SEQUENCE                              | [0x30]
+    ASN1Tag.contextSpecific(30).constructed()     | [0xBE]
+    ASN1Tag.contextSpecific(31).constructed()     | [0xBF, 0x1F]
+    ASN1Tag.contextSpecific(200).constructed()    | [0xBF, 0x81, 0x48]
+    ASN1Tag.forTag(PRIVATE, 16384).primitive()    | [0xDF, 0x81, 0x80, 0x00]
+  }
+
+  @Unroll
+  def "should write and read tagged objects with tag number #tag using #encoder.class.simpleName"() {
+    given:
+    def object = new ASN1TaggedObject(ASN1Tag.contextSpecific(tag).constructed(), new ASN1Integer(5))
+    def baos = new ByteArrayOutputStream()
+    new ASN1OutputStream(encoder, baos).writeObject(object)
+
+    when:
+    def encoded = encoder.encode(object)
+    ASN1TaggedObject read = new ASN1InputStream(new BERDecoder(), encoded).readObject()
+
+    then:
+    encoded == baos.toByteArray()
+    read.tagNo == tag
+    read.getObject() == new ASN1Integer(5)
+
+    where:
+    [tag, encoder] << [[1, 30, 31, 127, 128, 718, 100000], [new DEREncoder(), new ReverseDEREncoder()]].combinations()
+  }
+}
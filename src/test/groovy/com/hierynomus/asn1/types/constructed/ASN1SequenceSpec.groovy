@@ -0,0 +1,85 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.types.constructed
+
+import com.hierynomus.asn1.ASN1InputStream
+import com.hierynomus.asn1.ASN1ParseException
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.types.primitive.ASN1Boolean
+import com.hierynomus.asn1.types.primitive.ASN1Integer
+import spock.lang.Specification
+
+class ASN1SequenceSpec extends Specification {
+
+  def "should only decode the objects of an ASN.1 SEQUENCE when they are accessed"() {
+    given:
+    // The BOOLEAN has an invalid length of 2
+    def bytes = [0x30, 0x07, 0x02, 0x01, 0x03, 0x01, 0x02, 0xFF, 0xFF] as byte[]
+
+    when:
+    ASN1Sequence seq = new ASN1InputStream(new BERDecoder(), bytes).readObject()
+
+    then:
+    seq.size() == 2
+    seq.get(0) == new ASN1Integer(3)
+
+    when:
+    seq.get(1)
+
+    then:
+    thrown(ASN1ParseException.class)
+  }
+
+  def "should fail decoding an ASN.1 SEQUENCE when the length of an object exceeds the SEQUENCE"() {
+    given:
+    def bytes = [0x30, 0x05, 0x02, 0x01, 0x03, 0x01, 0x02] as byte[]
+
+    when:
+    new ASN1InputStream(new BERDecoder(), bytes).readObject()
+
+    then:
+    thrown(ASN1ParseException.class)
+  }
+
+  def "should decode each object of an ASN.1 SEQUENCE only once"() {
+    given:
+    def bytes = [0x30, 0x06, 0x02, 0x01, 0x03, 0x01, 0x01, 0xFF] as byte[]
+    ASN1Sequence seq = new ASN1InputStream(new BERDecoder(), bytes).readObject()
+
+    when:
+    def first = seq.get(1)
+    def iterated = seq.iterator().toList()
+
+    then:
+    first == new ASN1Boolean(true)
+    seq.get(1).is(first)
+    iterated[1].is(first)
+  }
+
+  def "should not allow removing objects through the iterator of an ASN.1 SEQUENCE"() {
+    given:
+    def seq = new ASN1Sequence([new ASN1Boolean(true), new ASN1Integer(1)])
+    def iterator = seq.iterator()
+
+    when:
+    iterator.next()
+    iterator.remove()
+
+    then:
+    thrown(UnsupportedOperationException.class)
+    seq.size() == 2
+  }
+}
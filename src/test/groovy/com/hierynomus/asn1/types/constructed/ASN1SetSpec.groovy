@@ -15,10 +15,15 @@
  */
 package com.hierynomus.asn1.types.constructed
 
+import com.hierynomus.asn1.ASN1InputStream
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.encodingrules.der.ReverseDEREncoder
 import com.hierynomus.asn1.types.ASN1Object
 import com.hierynomus.asn1.types.constructed.ASN1Set
 import com.hierynomus.asn1.types.primitive.ASN1Boolean
 import com.hierynomus.asn1.types.primitive.ASN1Integer
+import com.hierynomus.asn1.types.string.ASN1OctetString
 import spock.lang.Specification
 
 class ASN1SetSpec extends Specification {
@@ -46,4 +51,61 @@ class ASN1SetSpec extends Specification {
     then:
     set.size() == 2
   }
+
+  def "should keep the order and the duplicates of a SET OF"() {
+    given:
+    def set = new ASN1Set([new ASN1Integer(3), new ASN1Integer(1), new ASN1Integer(3)])
+
+    expect:
+    set.size() == 3
+    set.iterator().collect { it.value } == [3, 1, 3]
+    set.get(2) == new ASN1Integer(3)
+  }
+
+  def "should encode a SET OF sorted on the encodings of its objects with #encoder.class.simpleName"() {
+    given:
+    def set = new ASN1Set([
+      new ASN1OctetString([0x01, 0x00] as byte[]),
+      new ASN1Integer(300),
+      new ASN1OctetString([0x01] as byte[]),
+      new ASN1Integer(-1),
+      new ASN1Integer(3),
+      new ASN1Integer(3)])
+
+    expect:
+    encoder.encode(set) == [0x31, 0x14,
+                            0x02, 0x01, 0x03,
+                            0x02, 0x01, 0x03,
+                            0x02, 0x01, 0xFF,
+                            0x02, 0x02, 0x01, 0x2C,
+                            0x04, 0x01, 0x01,
+                            0x04, 0x02, 0x01, 0x00] as byte[]
+
+    where:
+    encoder << [new DEREncoder(), new ReverseDEREncoder()]
+  }
+
+  def "should encode a decoded SET as it was decoded"() {
+    given:
+    def bytes = [0x31, 0x06, 0x02, 0x01, 0x05, 0x02, 0x01, 0x04] as byte[]
+    def set = new ASN1InputStream(new BERDecoder(), bytes).readObject() as ASN1Set
+
+    expect:
+    set.iterator().collect { it.value } == [5, 4]
+    new DEREncoder().encode(set) == bytes
+  }
+
+  def "should decode and encode a large SET OF"() {
+    given:
+    def set = new ASN1Set((0..<20000).collect { new ASN1Integer(20000 - it) as ASN1Object })
+    def encoded = new DEREncoder().encode(set)
+
+    when:
+    def decoded = new ASN1InputStream(new BERDecoder(), encoded).readObject() as ASN1Set
+
+    then:
+    decoded.size() == 20000
+    decoded.get(0) == new ASN1Integer(1)
+    decoded.getValue() == new ASN1Set(decoded.getValue()).getValue()
+  }
 }
@@ -66,6 +66,16 @@ class ASN1TaggedObjectSpec extends Specification {
     [0x81, 0x06, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x02] | ASN1Tag.forTag(CONTEXT_SPECIFIC, 0x01).primitive() | SPNEGO_OID
   }
 
+  def "should decode the object of an ASN.1 Tagged Object only once"() {
+    given:
+    def is = new ASN1InputStream(new BERDecoder(), [0xa1, 0x08, 0x06, 0x06, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x02] as byte[])
+    ASN1TaggedObject taggedObject = is.readObject()
+
+    expect:
+    taggedObject.getObject().is(taggedObject.getObject())
+    taggedObject.getObject(ASN1Tag.SEQUENCE).is(taggedObject.getObject(ASN1Tag.SEQUENCE))
+  }
+
   def "should not parse an implicit ASN.1 Tagged Object with as explicit"() {
     given:
     def is = new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream([0x60, 0x06, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x02] as byte[]))
@@ -0,0 +1,55 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.types.primitive
+
+import com.hierynomus.asn1.ASN1InputStream
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ASN1EnumeratedSpec extends Specification {
+
+  @Unroll
+  def "should encode and decode ENUMERATED #value as #bytes"() {
+    given:
+    def enumerated = new ASN1Enumerated(value)
+
+    expect:
+    new DEREncoder().encode(enumerated) == bytes as byte[]
+    new ASN1InputStream(new BERDecoder(), bytes as byte[]).readObject() == enumerated
+    new ASN1InputStream(new BERDecoder(), bytes as byte[]).readObject().getLongValue() == value
+
+    where:
+    value | bytes
+    0     | [0x0A, 0x01, 0x00]
+    2     | [0x0A, 0x01, 0x02]
+    -1    | [0x0A, 0x01, 0xFF]
+    200   | [0x0A, 0x02, 0x00, 0xC8]
+  }
+
+  def "should share the decoded ENUMERATEDs of single byte values"() {
+    expect:
+    new ASN1InputStream(new BERDecoder(), [0x0A, 0x01, 0x01] as byte[]).readObject().is(ASN1Enumerated.valueOf(1))
+  }
+
+  def "should consider an ENUMERATED created from a BigInteger equal to one created from a long"() {
+    expect:
+    new ASN1Enumerated(BigInteger.valueOf(3)) == new ASN1Enumerated(3)
+    new ASN1Enumerated(BigInteger.ONE.shiftLeft(70)).getValue() == BigInteger.ONE.shiftLeft(70)
+    !new ASN1Enumerated(BigInteger.ONE.shiftLeft(70)).isLong()
+  }
+}
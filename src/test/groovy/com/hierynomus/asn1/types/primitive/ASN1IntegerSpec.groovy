@@ -19,6 +19,8 @@ import com.hierynomus.asn1.ASN1InputStream
 import com.hierynomus.asn1.ASN1OutputStream
 import com.hierynomus.asn1.ASN1ParseException
 import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.encodingrules.der.ReverseDEREncoder
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -84,4 +86,64 @@ class ASN1IntegerSpec extends Specification {
     new ASN1Integer(new BigInteger(INT_VAL)) | LARGE_INT
   }
 
+  @Unroll
+  def "should keep INTEGER #value as a long and encode it the same as its BigInteger"() {
+    given:
+    def fromLong = new ASN1Integer(value)
+    def fromBigInteger = new ASN1Integer(BigInteger.valueOf(value))
+    def valueBytes = BigInteger.valueOf(value).toByteArray()
+    def encoded = ([0x02, valueBytes.length] + valueBytes.toList()) as byte[]
+
+    expect:
+    fromLong.isLong() && fromBigInteger.isLong()
+    fromLong == fromBigInteger
+    fromLong.getValue() == BigInteger.valueOf(value)
+    new DEREncoder().encode(fromLong) == encoded
+    new ReverseDEREncoder().encode(fromLong) == encoded
+    new ASN1InputStream(new BERDecoder(), encoded).readObject().getLongValue() == value
+
+    where:
+    value << [0L, 1L, -1L, 127L, 128L, -128L, -129L, 255L, 256L, 32767L, -32768L, 1L << 31, -(1L << 31) - 1, Long.MAX_VALUE, Long.MIN_VALUE]
+  }
+
+  def "should keep an INTEGER that does not fit into a long as a BigInteger"() {
+    given:
+    def value = new ASN1InputStream(new BERDecoder(), LARGE_INT as byte[]).readObject()
+
+    when:
+    value.getLongValue()
+
+    then:
+    !value.isLong()
+    thrown(IllegalStateException)
+    value.getValue() == new BigInteger(INT_VAL)
+  }
+
+  def "should share the decoded INTEGERs of single byte values"() {
+    given:
+    def decoder = new BERDecoder()
+
+    expect:
+    new ASN1InputStream(decoder, [0x02, 0x01, 0x05] as byte[]).readObject().is(ASN1Integer.valueOf(5))
+    new ASN1InputStream(decoder, [0x02, 0x01, 0x80] as byte[]).readObject().is(ASN1Integer.valueOf(-128))
+    !ASN1Integer.valueOf(128).is(ASN1Integer.valueOf(128))
+  }
+
+  def "should read a non-minimal INTEGER of more than 8 bytes that fits into a long"() {
+    when:
+    def value = new ASN1InputStream(new BERDecoder(), [0x02, 0x09, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01, 0x00] as byte[]).readObject()
+
+    then:
+    value.isLong()
+    value.getLongValue() == 256
+  }
+
+  def "should fail to read an INTEGER without value bytes"() {
+    when:
+    new ASN1InputStream(new BERDecoder(), [0x02, 0x00] as byte[]).readObject()
+
+    then:
+    thrown(ASN1ParseException)
+  }
+
 }
@@ -17,7 +17,9 @@ package com.hierynomus.asn1.types.primitive
 
 import com.hierynomus.asn1.ASN1InputStream
 import com.hierynomus.asn1.ASN1OutputStream
+import com.hierynomus.asn1.ASN1ParseException
 import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -53,4 +55,73 @@ class ASN1ObjectIdentifierSpec extends Specification {
     new ASN1ObjectIdentifier("1.2.840.113549.1.7.2") | [0x06, 0x09, 0x2a, 0x86, 0x48, 0x86, 0xf7, 0x0d, 0x01, 0x07, 0x02]
   }
 
+  def "should encode and decode OBJECT IDENTIFIER #oid with arcs #arcs"() {
+    given:
+    def encoded = new DEREncoder().encode(new ASN1ObjectIdentifier(oid))
+    def decoded = new ASN1InputStream(new BERDecoder(), encoded).readObject()
+
+    expect:
+    encoded == bytes as byte[]
+    decoded.getValue() == oid
+    decoded.getArcs() == arcs as long[]
+    new ASN1ObjectIdentifier(arcs as long[]) == decoded
+    new DEREncoder().encode(new ASN1ObjectIdentifier(arcs as long[])) == bytes as byte[]
+
+    where:
+    oid                             | arcs                                  | bytes
+    "0.0"                           | [0, 0]                                | [0x06, 0x01, 0x00]
+    "2.5.4.0"                       | [2, 5, 4, 0]                          | [0x06, 0x03, 0x55, 0x04, 0x00]
+    "1.3.127.128"                   | [1, 3, 127, 128]                      | [0x06, 0x04, 0x2b, 0x7f, 0x81, 0x00]
+    "2.999.3"                       | [2, 999, 3]                           | [0x06, 0x03, 0x88, 0x37, 0x03]
+    "1.2.840.113549.1.1.11"         | [1, 2, 840, 113549, 1, 1, 11]         | [0x06, 0x09, 0x2a, 0x86, 0x48, 0x86, 0xf7, 0x0d, 0x01, 0x01, 0x0b]
+    "1.2.9223372036854775807"       | [1, 2, Long.MAX_VALUE]                | [0x06, 0x0a, 0x2a, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x7f]
+  }
+
+  def "should keep an OBJECT IDENTIFIER with an arc that does not fit into a long"() {
+    given:
+    def oid = "2.25.329800735698586629295641978511506172918"
+    def decoded = new ASN1InputStream(new BERDecoder(), new DEREncoder().encode(new ASN1ObjectIdentifier(oid))).readObject()
+
+    when:
+    decoded.getArcs()
+
+    then:
+    decoded.getValue() == oid
+    decoded == new ASN1ObjectIdentifier(oid)
+    thrown(IllegalStateException)
+  }
+
+  def "should compare and hash OBJECT IDENTIFIERs on their encoded value"() {
+    given:
+    def decoded = new ASN1InputStream(new BERDecoder(), [0x06, 0x03, 0x55, 0x04, 0x03] as byte[]).readObject()
+
+    expect:
+    decoded == new ASN1ObjectIdentifier("2.5.4.3")
+    decoded.hashCode() == new ASN1ObjectIdentifier(2, 5, 4, 3).hashCode()
+    decoded != new ASN1ObjectIdentifier("2.5.4.6")
+    new HashSet([decoded, new ASN1ObjectIdentifier("2.5.4.3"), new ASN1ObjectIdentifier("2.5.4.6")]).size() == 2
+  }
+
+  def "should not decode the invalid OBJECT IDENTIFIER value #value"() {
+    when:
+    new ASN1ObjectIdentifier.Parser(null).parse(null, value as byte[])
+
+    then:
+    thrown(ASN1ParseException)
+
+    where:
+    value << [[], [0x2a, 0x86], [0x2a, 0x80, 0x01]]
+  }
+
+  def "should not create an OBJECT IDENTIFIER from '#oid'"() {
+    when:
+    new ASN1ObjectIdentifier(oid)
+
+    then:
+    thrown(IllegalArgumentException)
+
+    where:
+    oid << ["", "1", "3.1", "1.40", "1..2", "1.2.", "1.2.x", "1.2.-3"]
+  }
+
 }
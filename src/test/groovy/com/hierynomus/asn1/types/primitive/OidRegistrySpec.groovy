@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.types.primitive
+
+import com.hierynomus.asn1.ASN1InputStream
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+class OidRegistrySpec extends Specification {
+
+  static ASN1ObjectIdentifier decode(String oid) {
+    def encoded = new DEREncoder().encode(new ASN1ObjectIdentifier(oid))
+    return new ASN1InputStream(new BERDecoder(), encoded).readObject()
+  }
+
+  def "should decode a well-known OBJECT IDENTIFIER to the registered instance"() {
+    given:
+    def registered = OidRegistry.getDefault().lookup(new ASN1ObjectIdentifier("1.3.6.1.5.5.2"))
+
+    expect:
+    registered != null
+    decode("1.3.6.1.5.5.2").is(registered)
+    new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(new DEREncoder().encode(registered))).readObject().is(registered)
+  }
+
+  def "should decode repeated occurrences of an unregistered OBJECT IDENTIFIER to one instance"() {
+    given:
+    def first = decode("1.3.6.1.4.1.99999.1.2.3")
+
+    expect:
+    OidRegistry.getDefault().lookup(first) == null
+    decode("1.3.6.1.4.1.99999.1.2.3").is(first)
+  }
+
+  def "should keep the first registered instance"() {
+    given:
+    def registry = new OidRegistry(0)
+    def first = new ASN1ObjectIdentifier("1.2.3")
+
+    expect:
+    registry.register(first).is(first)
+    registry.register("1.2.3").is(first)
+    registry.intern(new ASN1ObjectIdentifier(1, 2, 3)).is(first)
+    registry.lookup(new ASN1ObjectIdentifier("1.2.4")) == null
+  }
+
+  def "should find the longest registered prefix"() {
+    given:
+    def registry = new OidRegistry(0)
+    def microsoft = registry.register("1.3.6.1.4.1.311")
+    def ntlm = registry.register("1.3.6.1.4.1.311.2.2.10")
+
+    expect:
+    registry.findPrefix(new ASN1ObjectIdentifier("1.3.6.1.4.1.311.2.2.10")).is(ntlm)
+    registry.findPrefix(new ASN1ObjectIdentifier("1.3.6.1.4.1.311.2.2.30")).is(microsoft)
+    registry.findPrefix(new ASN1ObjectIdentifier("1.3.6.1.4.1.3110")) == null
+    registry.findPrefix(new ASN1ObjectIdentifier("1.3.6.1.4")) == null
+  }
+
+  def "should check whether an OBJECT IDENTIFIER is under another one"() {
+    expect:
+    new ASN1ObjectIdentifier(oid).startsWith(new ASN1ObjectIdentifier(prefix)) == under
+
+    where:
+    oid                      | prefix            | under
+    "1.3.6.1.4.1.311.2.2.10" | "1.3.6.1.4.1.311" | true
+    "1.3.6.1.4.1.311"        | "1.3.6.1.4.1.311" | true
+    "1.3.6.1.4.1.3110"       | "1.3.6.1.4.1.311" | false
+    "1.3.6.1.4.1.311"        | "1.3.6.1.4.1.3"   | false
+    "1.3.6"                  | "1.3.6.1"         | false
+  }
+
+  def "should evict the least recently used unregistered OBJECT IDENTIFIER"() {
+    given:
+    def registry = new OidRegistry(2)
+    def a = registry.intern(new ASN1ObjectIdentifier("1.2.1"))
+    def b = registry.intern(new ASN1ObjectIdentifier("1.2.2"))
+
+    when:
+    registry.intern(new ASN1ObjectIdentifier("1.2.1"))
+    registry.intern(new ASN1ObjectIdentifier("1.2.3"))
+
+    then:
+    registry.intern(new ASN1ObjectIdentifier("1.2.1")).is(a)
+    !registry.intern(new ASN1ObjectIdentifier("1.2.2")).is(b)
+  }
+
+  def "should only copy the value of an OBJECT IDENTIFIER that is not yet interned"() {
+    given:
+    def registry = new OidRegistry(16)
+    def value = new ASN1ObjectIdentifier("1.2.840.99999.7").valueBytes
+    def buffer = ByteBuffer.allocate(value.length + 2).put((byte) 6).put((byte) value.length).put(value)
+    buffer.position(2)
+
+    when:
+    def first = registry.intern(buffer)
+
+    then:
+    first == new ASN1ObjectIdentifier("1.2.840.99999.7")
+    !first.valueBytes.is(value)
+    buffer.position() == 2
+    registry.intern(buffer).is(first)
+    registry.intern(ByteBuffer.wrap(value)).is(first)
+    registry.intern(new ASN1ObjectIdentifier("1.2.840.99999.7")).is(first)
+  }
+
+  def "should intern to one instance from multiple threads"() {
+    given:
+    def registry = new OidRegistry(OidRegistry.DEFAULT_CACHE_SIZE)
+    def oids = (1..200).collect { "1.3.6.1.4.1.99999.${it}".toString() }
+    def results = Collections.synchronizedList([])
+
+    when:
+    def threads = (1..4).collect {
+      Thread.start {
+        results << oids.collect { registry.intern(ByteBuffer.wrap(new ASN1ObjectIdentifier(it).valueBytes)) }
+      }
+    }
+    threads*.join()
+
+    then:
+    results.size() == 4
+    (0..<oids.size()).every { i -> results.every { it[i].is(results[0][i]) } }
+    results[0]*.value == oids
+  }
+}
@@ -17,6 +17,7 @@ package com.hierynomus.asn1.types.string
 
 import com.hierynomus.asn1.ASN1InputStream
 import com.hierynomus.asn1.ASN1OutputStream
+import com.hierynomus.asn1.ASN1ParseException
 import com.hierynomus.asn1.encodingrules.ber.BERDecoder
 import com.hierynomus.asn1.encodingrules.der.DEREncoder
 import com.hierynomus.asn1.types.ASN1Encoding
@@ -112,16 +113,124 @@ class ASN1BitStringSpec extends Specification {
     valueLength = bitValues.size()
   }
 
-  def "should retain knowledge that the ASN.1 BIT STRING was in Constructed Encoding"() {
+  @Unroll
+  def "should decode a constructed ASN.1 BIT STRING #encoding to a primitive one that encodes back"() {
+    given:
+    def decoder = new BERDecoder()
+
+    when:
+    ASN1BitString object = new ASN1InputStream(decoder, bytes as byte[]).readObject()
+    def encoded = new DEREncoder().encode(object)
+    ASN1BitString decoded = new ASN1InputStream(decoder, encoded).readObject()
+
+    then:
+    object.getTag().getAsn1Encoding() == ASN1Encoding.PRIMITIVE
+    object.length() == 22
+    encoded == [0x03, 0x04, 0x02, 0xF0, 0xF0, 0xF4] as byte[]
+    decoded.length() == 22
+    decoded.valueBytes == object.valueBytes
+
+    where:
+    encoding                        | bytes
+    "in the definite length form"   | [0x23, 0x09, 0x03, 0x03, 0x0, 0xF0, 0xF0, 0x03, 0x02, 0x02, 0xF4]
+    "in the indefinite length form" | [0x23, 0x80, 0x03, 0x03, 0x0, 0xF0, 0xF0, 0x03, 0x02, 0x02, 0xF4, 0x00, 0x00]
+    "with constructed segments"     | [0x23, 0x0F, 0x23, 0x05, 0x03, 0x03, 0x0, 0xF0, 0xF0, 0x23, 0x80, 0x03, 0x02, 0x02, 0xF4, 0x00, 0x00]
+  }
+
+  @Unroll
+  def "should not parse a constructed BIT STRING #problem"() {
+    when:
+    new ASN1InputStream(new BERDecoder(), bytes as byte[]).readObject()
+
+    then:
+    thrown(ASN1ParseException)
+
+    where:
+    problem                                             | bytes
+    "with unused bits in a segment that is not the last" | [0x23, 0x0A, 0x03, 0x02, 0x04, 0xF0, 0x03, 0x04, 0x00, 0x01, 0x02, 0x03]
+    "with unused bits in an indefinite length segment"   | [0x23, 0x80, 0x03, 0x02, 0x04, 0xF0, 0x03, 0x02, 0x00, 0x01, 0x00, 0x00]
+    "with unused bits in a nested segment"               | [0x23, 0x0B, 0x23, 0x04, 0x03, 0x02, 0x04, 0xF0, 0x03, 0x03, 0x00, 0x01, 0x02]
+    "with more than 7 unused bits in a segment"          | [0x23, 0x04, 0x03, 0x02, 0x08, 0xF0]
+    "with a segment that is not a BIT STRING"            | [0x23, 0x04, 0x04, 0x02, 0x00, 0xF0]
+  }
+
+  @Unroll
+  def "should not have unused bits when constructed from #sourceType with a multiple of 8 bits"() {
+    expect:
+    new DEREncoder().encode(new ASN1BitString(value)) == bytes as byte[]
+
+    where:
+    value                                      | sourceType  | bytes
+    toBooleans([1, 0, 0, 0, 0, 0, 0, 1] * 2)   | "boolean[]" | [0x03, 0x03, 0x00, 0x81, 0x81]
+    toBitSet([1, 0, 0, 0, 0, 0, 0, 1])         | "BitSet"    | [0x03, 0x02, 0x00, 0x81]
+    new boolean[0]                             | "boolean[]" | [0x03, 0x01, 0x00]
+  }
+
+  def "should count, compare and read words without the unused bits"() {
+    given:
+    // Bits 0, 1 and 2 are used, the unused bits are set, which BER allows
+    def bitString = new ASN1InputStream(new BERDecoder(), [0x03, 0x02, 0x05, 0xFF] as byte[]).readObject() as ASN1BitString
+
+    expect:
+    bitString.length() == 3
+    bitString.cardinality() == 3
+    bitString.getWord(0) == 0x07L
+    bitString.toBitSet() == toBitSet([1, 1, 1])
+    bitString == new ASN1BitString(toBooleans([1, 1, 1]))
+    !bitString.isSet(3)
+  }
+
+  def "should read large BIT STRINGs a word at a time"() {
     given:
-    def is = new ASN1InputStream(new BERDecoder(), [0x23, 0x09, 0x03, 0x03, 0x0, 0xF0, 0xF0, 0x03, 0x02, 0x02, 0xF4] as byte[])
+    def bits = (0..<200).collect { it % 3 == 0 ? 1 : 0 }
+    def bitString = new ASN1BitString(toBooleans(bits))
 
+    expect:
+    bitString.wordCount() == 4
+    bitString.cardinality() == bits.sum()
+    bitString.toBitSet() == toBitSet(bits)
+    BitSet.valueOf([bitString.getWord(0), bitString.getWord(1), bitString.getWord(2), bitString.getWord(3)] as long[]) == toBitSet(bits)
+    new ASN1BitString(toBitSet(bits)).toBitSet() == toBitSet(bits)
+  }
+
+  def "should test bits of BIT STRINGs against each other"() {
+    given:
+    def flags = new ASN1BitString(toBooleans([0, 1, 1, 0, 0, 0, 0, 0, 0, 1]))
+
+    expect:
+    flags.intersects(new ASN1BitString(toBooleans([1, 1])))
+    !flags.intersects(new ASN1BitString(toBooleans([1, 0, 0, 1])))
+    flags.containsAll(new ASN1BitString(toBooleans([0, 1, 1])))
+    flags.containsAll(new ASN1BitString(toBooleans([0, 0, 0, 0, 0, 0, 0, 0, 0, 1])))
+    !flags.containsAll(new ASN1BitString(toBooleans([0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 1])))
+    !flags.containsAll(new ASN1BitString(toBooleans([0] * 70 + [1])))
+  }
+
+  def "should read and write named bits"() {
+    given:
+    def flags = ASN1BitString.fromNamedBits(EnumSet.of(ContextFlag.mutualFlag, ContextFlag.integFlag))
+
+    expect:
+    new DEREncoder().encode(flags) == [0x03, 0x02, 0x01, 0x42] as byte[]
+    flags.isSet(ContextFlag.mutualFlag)
+    !flags.isSet(ContextFlag.anonFlag)
+    flags.getNamedBits(ContextFlag) == EnumSet.of(ContextFlag.mutualFlag, ContextFlag.integFlag)
+    ASN1BitString.fromNamedBits(EnumSet.noneOf(ContextFlag)).length() == 0
+  }
+
+  def "should not parse a BIT STRING with an invalid number of unused bits"() {
     when:
-    def object = is.readObject()
+    new ASN1InputStream(new BERDecoder(), bytes as byte[]).readObject()
 
     then:
-    object.getTag().getAsn1Encoding() == ASN1Encoding.CONSTRUCTED
-    (object as ASN1BitString).length() == 22
+    thrown(ASN1ParseException)
+
+    where:
+    bytes << [[0x03, 0x02, 0x08, 0xFF], [0x03, 0x01, 0x01], [0x03, 0x00]]
+  }
+
+  enum ContextFlag {
+    delegFlag, mutualFlag, replayFlag, sequenceFlag, anonFlag, confFlag, integFlag
   }
 
   def toBooleans(bitValues) {
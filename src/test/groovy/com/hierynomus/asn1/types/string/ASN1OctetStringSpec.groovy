@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.types.string
+
+import com.hierynomus.asn1.ASN1InputStream
+import com.hierynomus.asn1.ASN1ParseException
+import com.hierynomus.asn1.encodingrules.ber.BERDecoder
+import com.hierynomus.asn1.encodingrules.der.DEREncoder
+import com.hierynomus.asn1.types.ASN1Tag
+import com.hierynomus.asn1.types.primitive.ASN1Null
+import spock.lang.Specification
+import spock.lang.Unroll
+
+@Unroll
+class ASN1OctetStringSpec extends Specification {
+
+  def "should join the segments of a constructed OCTET STRING #encoding from #source"() {
+    given:
+    def is = stream(bytes as byte[])
+
+    when:
+    ASN1OctetString octetString = is.readObject()
+
+    then:
+    octetString.value == [0x01, 0x02, 0x03] as byte[]
+    octetString.length() == 3
+    is.readObject() instanceof ASN1Null
+
+    where:
+    encoding                                    | source   | stream                                                                             | bytes
+    "in the definite length form"               | "bytes"  | { byte[] b -> new ASN1InputStream(new BERDecoder(), b) }                           | [0x24, 0x07, 0x04, 0x02, 0x01, 0x02, 0x04, 0x01, 0x03, 0x05, 0x00]
+    "in the definite length form"               | "stream" | { byte[] b -> new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(b)) } | [0x24, 0x07, 0x04, 0x02, 0x01, 0x02, 0x04, 0x01, 0x03, 0x05, 0x00]
+    "in the indefinite length form"             | "bytes"  | { byte[] b -> new ASN1InputStream(new BERDecoder(), b) }                           | [0x24, 0x80, 0x04, 0x02, 0x01, 0x02, 0x04, 0x01, 0x03, 0x00, 0x00, 0x05, 0x00]
+    "in the indefinite length form"             | "stream" | { byte[] b -> new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(b)) } | [0x24, 0x80, 0x04, 0x02, 0x01, 0x02, 0x04, 0x01, 0x03, 0x00, 0x00, 0x05, 0x00]
+    "with constructed segments"                 | "bytes"  | { byte[] b -> new ASN1InputStream(new BERDecoder(), b) }                           | [0x24, 0x80, 0x24, 0x04, 0x04, 0x02, 0x01, 0x02, 0x24, 0x80, 0x04, 0x01, 0x03, 0x00, 0x00, 0x00, 0x00, 0x05, 0x00]
+    "with constructed segments"                 | "stream" | { byte[] b -> new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(b)) } | [0x24, 0x80, 0x24, 0x04, 0x04, 0x02, 0x01, 0x02, 0x24, 0x80, 0x04, 0x01, 0x03, 0x00, 0x00, 0x00, 0x00, 0x05, 0x00]
+  }
+
+  def "should not allow segments of a constructed OCTET STRING that are not OCTET STRINGs from #source"() {
+    when:
+    stream([0x24, 0x80, 0x04, 0x01, 0x01, 0x05, 0x00, 0x00, 0x00] as byte[]).readObject()
+
+    then:
+    thrown(ASN1ParseException.class)
+
+    where:
+    source   | stream
+    "bytes"  | { byte[] b -> new ASN1InputStream(new BERDecoder(), b) }
+    "stream" | { byte[] b -> new ASN1InputStream(new BERDecoder(), new ByteArrayInputStream(b)) }
+  }
+
+  def "should encode a constructed OCTET STRING #encoding decoded with BER as a primitive one"() {
+    given:
+    def decoder = new BERDecoder()
+
+    when:
+    ASN1OctetString octetString = new ASN1InputStream(decoder, bytes as byte[]).readObject()
+    def encoded = new DEREncoder().encode(octetString)
+    ASN1OctetString decoded = new ASN1InputStream(decoder, encoded).readObject()
+
+    then:
+    octetString.getTag() == ASN1Tag.OCTET_STRING
+    encoded == [0x04, 0x04, 0x01, 0x02, 0x03, 0x04] as byte[]
+    decoded.value == [0x01, 0x02, 0x03, 0x04] as byte[]
+
+    where:
+    encoding                        | bytes
+    "in the definite length form"   | [0x24, 0x08, 0x04, 0x02, 0x01, 0x02, 0x04, 0x02, 0x03, 0x04]
+    "in the indefinite length form" | [0x24, 0x80, 0x04, 0x02, 0x01, 0x02, 0x04, 0x02, 0x03, 0x04, 0x00, 0x00]
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.util
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+
+class MappedFileSpec extends Specification {
+  static final byte[] CONTENTS = (0..<1000).collect { (byte) (it * 7) } as byte[]
+
+  Path path
+
+  def setup() {
+    path = Files.createTempFile("mapped", ".der")
+    Files.write(path, CONTENTS)
+  }
+
+  def cleanup() {
+    Files.deleteIfExists(path)
+  }
+
+  @Unroll
+  def "should slice #length bytes at offset #offset"() {
+    given:
+    def file = MappedFile.open(path, 256, 32)
+
+    when:
+    def slice = file.slice(offset, length)
+
+    then:
+    slice.isReadOnly()
+    slice.position() == 0
+    toBytes(slice) == Arrays.copyOfRange(CONTENTS, (int) offset, (int) offset + length)
+
+    cleanup:
+    file.close()
+
+    where:
+    offset | length
+    0      | 100
+    250    | 30
+    250    | 100
+    768    | 232
+    1000   | 0
+  }
+
+  def "should read and skip across chunks"() {
+    given:
+    def file = MappedFile.open(path, 256, 32)
+    def is = file.newInputStream(200)
+
+    when:
+    def first = new byte[100]
+    def read = is.read(first)
+    def skipped = is.skip(500)
+    def b = is.read()
+    def rest = new byte[1000]
+    def restRead = is.read(rest)
+
+    then:
+    file.size() == 1000
+    // Up to the end of the overlap of the first chunk
+    read == 88
+    first[0..<88] == CONTENTS[200..<288]
+    skipped == 500
+    b == (CONTENTS[788] & 0xff)
+    restRead == 211
+    rest[0..<211] == CONTENTS[789..<1000]
+    is.skip(1000) == 0
+    is.read() == -1
+
+    cleanup:
+    file.close()
+  }
+
+  def "should not slice beyond the end of the file"() {
+    given:
+    def file = MappedFile.open(path)
+
+    when:
+    file.slice(990, 11)
+
+    then:
+    thrown(IllegalArgumentException)
+
+    cleanup:
+    file.close()
+  }
+
+  static byte[] toBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()]
+    buffer.duplicate().get(bytes)
+    return bytes
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ *    Copyright 2016 Jeroen van Erp <jeroen@hierynomus.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.hierynomus.asn1.util
+
+import spock.lang.Specification
+
+class ScratchBuffersSpec extends Specification {
+
+  def "should hand out the released array again"() {
+    given:
+    def buffer = ScratchBuffers.acquire(1000)
+    ScratchBuffers.release(buffer)
+
+    expect:
+    ScratchBuffers.acquire(1000).is(buffer)
+  }
+
+  def "should hand out a new array while the array of the thread is in use"() {
+    given:
+    def first = ScratchBuffers.acquire(1000)
+    ScratchBuffers.release(first)
+    def outer = ScratchBuffers.acquire(1000)
+
+    when:
+    def inner = ScratchBuffers.acquire(1000)
+
+    then:
+    outer.is(first)
+    !inner.is(outer)
+    inner.length >= 1000
+  }
+
+  def "should not keep arrays larger than the maximum"() {
+    given:
+    def buffer = ScratchBuffers.acquire(ScratchBuffers.MAX_RETAINED_LENGTH + 1)
+    ScratchBuffers.release(buffer)
+
+    expect:
+    !ScratchBuffers.acquire(ScratchBuffers.MAX_RETAINED_LENGTH + 1).is(buffer)
+  }
+
+  def "should keep the written bytes of a ScratchOutputStream valid after releasing it"() {
+    given:
+    def out = new ScratchBuffers.ScratchOutputStream()
+    out.write([1, 2, 3] as byte[])
+    def bytes = out.toByteArray()
+
+    when:
+    out.release()
+    def reused = ScratchBuffers.acquire(3)
+    reused[0] = 9
+
+    then:
+    bytes == [1, 2, 3] as byte[]
+    out.size() == 0
+  }
+}